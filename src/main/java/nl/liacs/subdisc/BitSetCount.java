@@ -0,0 +1,126 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+
+/*
+ * Intersection and and-not counts of Subgroup members with a fixed BitSet,
+ * like the (binary) target, without and() on a clone of the members.
+ *
+ * java.util.BitSet does not expose its words, so the fixed BitSet is given as
+ * a long[], obtained once through toWords().
+ * For sparse members, only the set bits of the members are visited, this
+ * performs no allocation at all.
+ * For dense members, visiting every set bit is slower than a word-parallel
+ * loop, then a single copy of the members is made, and popcounts are summed
+ * in one pass, instead of clone() + and() + cardinality() in three.
+ */
+final class BitSetCount
+{
+	// uninstantiable
+	private BitSetCount() {};
+
+	// nextSetBit() also scans the words in between members, so visiting the
+	// members is faster until there are more than a few per word
+	private static final int SPARSE_SHIFT = 1;
+
+	// words of theBitSet, sized for theNrBits, such that any row is in range
+	static final long[] toWords(BitSet theBitSet, int theNrBits)
+	{
+		return Arrays.copyOf(theBitSet.toLongArray(), ((theNrBits + 63) >>> 6));
+	}
+
+	private static final boolean isSparse(int theCardinality, long[] theWords)
+	{
+		return (theCardinality <= (theWords.length << SPARSE_SHIFT));
+	}
+
+	// cardinality of (theMembers AND theWords), theCardinality = |theMembers|
+	static final int countCommon(BitSet theMembers, int theCardinality, long[] theWords)
+	{
+		assert (theMembers.cardinality() == theCardinality);
+
+		int aCount = 0;
+
+		if (isSparse(theCardinality, theWords))
+		{
+			for (int i = theMembers.nextSetBit(0); i >= 0; i = theMembers.nextSetBit(i + 1))
+				aCount += (int) ((theWords[i >>> 6] >>> i) & 1L);
+		}
+		else
+		{
+			long[] m = theMembers.toLongArray();
+			for (int i = 0; i < m.length; ++i)
+				aCount += Long.bitCount(m[i] & theWords[i]);
+		}
+
+		return aCount;
+	}
+
+	// cardinality of (theMembers AND NOT theWords)
+	static final int countAndNot(BitSet theMembers, int theCardinality, long[] theWords)
+	{
+		return theCardinality - countCommon(theMembers, theCardinality, theWords);
+	}
+
+	/*
+	 * fused version for two fixed BitSets A and B, sets in theCounts:
+	 * [0] = |theMembers AND A|
+	 * [1] = |theMembers AND B|
+	 * [2] = |theMembers AND A AND B|
+	 */
+	static final void countCommon(BitSet theMembers, int theCardinality, long[] theA, long[] theB, int[] theCounts)
+	{
+		assert (theMembers.cardinality() == theCardinality);
+		assert (theA.length == theB.length);
+
+		int a = 0;
+		int b = 0;
+		int ab = 0;
+
+		if (isSparse(theCardinality, theA))
+		{
+			for (int i = theMembers.nextSetBit(0); i >= 0; i = theMembers.nextSetBit(i + 1))
+			{
+				int w = (i >>> 6);
+				long x = (theA[w] >>> i) & 1L;
+				long y = (theB[w] >>> i) & 1L;
+				a  += (int) x;
+				b  += (int) y;
+				ab += (int) (x & y);
+			}
+		}
+		else
+		{
+			long[] m = theMembers.toLongArray();
+			for (int i = 0; i < m.length; ++i)
+			{
+				long x = (m[i] & theA[i]);
+				a  += Long.bitCount(x);
+				b  += Long.bitCount(m[i] & theB[i]);
+				ab += Long.bitCount(x & theB[i]);
+			}
+		}
+
+		theCounts[0] = a;
+		theCounts[1] = b;
+		theCounts[2] = ab;
+	}
+
+	// cardinality of theWords
+	static final int cardinality(long[] theWords)
+	{
+		int aCount = 0;
+		for (long w : theWords)
+			aCount += Long.bitCount(w);
+		return aCount;
+	}
+
+	// cardinality of (theA AND theB)
+	static final int countCommon(long[] theA, long[] theB)
+	{
+		int aCount = 0;
+		for (int i = 0, j = Math.min(theA.length, theB.length); i < j; ++i)
+			aCount += Long.bitCount(theA[i] & theB[i]);
+		return aCount;
+	}
+}
@@ -0,0 +1,55 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+
+/*
+ * MemberSet that wraps a BitSet, the original representation of Subgroup
+ * members.
+ * The BitSet is not copied upon construction, callers should not modify it.
+ */
+final class BitSetMemberSet implements MemberSet
+{
+	private final BitSet itsBitSet;
+	private final int itsCardinality;
+
+	BitSetMemberSet(BitSet theBitSet)
+	{
+		itsBitSet      = theBitSet;
+		itsCardinality = theBitSet.cardinality();
+	}
+
+	@Override
+	public int cardinality()                 { return itsCardinality; }
+	@Override
+	public boolean get(int theRow)           { return itsBitSet.get(theRow); }
+	@Override
+	public int nextSetBit(int theFromRow)    { return itsBitSet.nextSetBit(theFromRow); }
+	@Override
+	public BitSet toBitSet()                 { return (BitSet) itsBitSet.clone(); }
+	@Override
+	public long getSizeInBytes()             { return (itsBitSet.size() >>> 3); }
+
+	// leap-frog over the set bits, BitSet.and() would modify one of the two
+	@Override
+	public int countCommon(BitSet theBitSet)
+	{
+		int aCount = 0;
+
+		for (int ai = itsBitSet.nextSetBit(0), bi = theBitSet.nextSetBit(0); ((ai >= 0) && (bi >= 0)); /* increments inside loop */)
+		{
+			if (ai < bi)
+				ai = itsBitSet.nextSetBit(bi);
+			else if (ai > bi)
+				bi = theBitSet.nextSetBit(ai);
+			else
+			{
+				// equal index set, increment, find new indexes
+				++aCount;
+				ai = itsBitSet.nextSetBit(ai + 1);
+				bi = theBitSet.nextSetBit(bi + 1);
+			}
+		}
+
+		return aCount;
+	}
+}
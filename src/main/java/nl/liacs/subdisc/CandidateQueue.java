@@ -1,20 +1,23 @@
 package nl.liacs.subdisc;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 /*
- * NOTE As it stands, this class has deadlock potential.
- * Always obtain lock in fixed order: itsQueue -> itsNextQueue -> itsTempQueue.
- * 
- * TODO Queue classes in Concurrency framework allow for better concurrency. Eg.
- * Higher concurrency through non-locking algorithms and compareAndSwap methods.
+ * NOTE Candidates are kept in ConcurrentSkipListSets, add(), removeFirst()
+ * and the trimming to itsMaximumQueueSize do not take a lock.
+ * The current and next level are held together in an immutable Levels, so
+ * moving to the next level is a single compareAndSet() of itsLevels, and
+ * size() reads both levels of the same Levels.
+ *
  * TODO additions to CandidateQueue and SubgroupSet need to be atomic, so not
  * only individual classes need to be thread safe
  * 
  * NOTE ROC_BEAM implementation uses Lists for sorted, indexed, storage of
  * Candidates. It allows for faster modification of the hull. Consequently,
- * itsNextQueue is not a TreeSet, however, when moving to a next level the,
- * itsNextQueue is 'transformed' into TreeSet itsQueue.
+ * its next level is not a Level, however, when moving to a next level the,
+ * ConvexHullROCNaive is 'transformed' into the current Level.
  */
 /**
  * A CandidateQueue holds a collection of {@link Candidate Candidate}s for
@@ -33,12 +36,9 @@ public class CandidateQueue
 	private final SearchStrategy itsSearchStrategy;
 	private final boolean isBeamSearchStrategy;
 	private final int itsMaxDepth;
-	private TreeSet<Candidate> itsQueue;
-	private TreeSet<Candidate> itsNextQueue;
-	private ConvexHullROCNaive itsNextQueueConvexHullROC;
-//	private ROCList itsNextQueueROCList;		// debug only
-//	private ConvexHullROC itsNextQueueROCBeam;	// debug only
-	private TreeSet<Candidate> itsTempQueue;
+	// null for natural ordering, DEPTH_FIRST and BREADTH_FIRST use their own
+	private final Comparator<Candidate> itsComparator;
+	private final AtomicReference<Levels> itsLevels;
 	private final int itsMaximumQueueSize;
 
 	public CandidateQueue(SearchParameters theSearchParameters, Candidate theRootCandidate)
@@ -60,7 +60,7 @@ public class CandidateQueue
 		else
 			itsMaximumQueueSize = Integer.MAX_VALUE;
 
-		// all SearchStrategies use itsQueue
+		// all SearchStrategies use a current Level
 		// most use Candidate's natural ordering (no Comparator)
 		// (though CandidateComparatorBestFirst has same behaviour)
 		// DEPTH_FIRST and BREADTH_FIRST use a different Comparator
@@ -68,31 +68,30 @@ public class CandidateQueue
 		switch (itsSearchStrategy)
 		{
 			case BEAM :
-				itsQueue = new TreeSet<Candidate>();
-				itsNextQueue = new TreeSet<Candidate>();
+				itsComparator = null;
+				itsLevels = new AtomicReference<Levels>(new Levels(newLevel(), newLevel(), null));
 				break;
 			case ROC_BEAM :
-			{
-				itsQueue = new TreeSet<Candidate>();
-				itsNextQueueConvexHullROC = new ConvexHullROCNaive();
-//				itsNextQueueROCList = new ROCList();
-//				itsNextQueueROCBeam = new ConvexHullROC(true);
+				itsComparator = null;
+				itsLevels = new AtomicReference<Levels>(new Levels(newLevel(), null, new ConvexHullROCNaive()));
 				break;
-			}
 			case COVER_BASED_BEAM_SELECTION :
-				itsQueue = new TreeSet<Candidate>();
-				// initialise now, avoids NullPointerException later
-				itsNextQueue = new TreeSet<Candidate>();
-				itsTempQueue = new TreeSet<Candidate>();
+				itsComparator = null;
+				// the next level holds all Candidates, it is not trimmed
+				// but selected from by CoverBasedSubgroupSelection
+				itsLevels = new AtomicReference<Levels>(new Levels(newLevel(), new Level((Comparator<Candidate>) null, Integer.MAX_VALUE), null));
 				break;
 			case BEST_FIRST :
-				itsQueue = new TreeSet<Candidate>();
+				itsComparator = null;
+				itsLevels = new AtomicReference<Levels>(new Levels(newLevel(), null, null));
 				break;
 			case DEPTH_FIRST :
-				itsQueue = new TreeSet<Candidate>(Candidate.getComparator(itsSearchStrategy));
+				itsComparator = Candidate.getComparator(itsSearchStrategy);
+				itsLevels = new AtomicReference<Levels>(new Levels(newLevel(), null, null));
 				break;
 			case BREADTH_FIRST :
-				itsQueue = new TreeSet<Candidate>(Candidate.getComparator(itsSearchStrategy));
+				itsComparator = Candidate.getComparator(itsSearchStrategy);
+				itsLevels = new AtomicReference<Levels>(new Levels(newLevel(), null, null));
 				break;
 			// unknown SearchStrategy / null - no AssertionError as
 			// this is a public constructor
@@ -101,7 +100,91 @@ public class CandidateQueue
 		}
 
 		// this.add() would be better
-		itsQueue.add(theRootCandidate);
+		itsLevels.get().itsCurrent.add(theRootCandidate);
+	}
+
+	private Level newLevel()
+	{
+		return new Level(itsComparator, itsMaximumQueueSize);
+	}
+
+	/*
+	 * Candidates of a single level, trimmed to theMaximumSize.
+	 * ConcurrentSkipListSet.size() is not a constant-time operation, so the
+	 * size is tracked separately, a slot is reserved by incrementAndGet(),
+	 * when this exceeds theMaximumSize, the slot is given back, and the
+	 * lowest ranking Candidate is removed.
+	 * A Candidate is only removed when at least theMaximumSize others
+	 * precede it, so after all additions, a Level holds the top-k of all
+	 * Candidates added to it, regardless of the order of additions.
+	 */
+	private static final class Level
+	{
+		private final ConcurrentSkipListSet<Candidate> itsCandidates;
+		private final AtomicInteger itsSize = new AtomicInteger(0);
+		private final int itsMaximumSize;
+
+		Level(Comparator<Candidate> theComparator, int theMaximumSize)
+		{
+			itsCandidates = new ConcurrentSkipListSet<Candidate>(theComparator);
+			itsMaximumSize = theMaximumSize;
+		}
+
+		// uses the Comparator of theCandidates
+		Level(SortedSet<Candidate> theCandidates, int theMaximumSize)
+		{
+			itsCandidates = new ConcurrentSkipListSet<Candidate>(theCandidates);
+			itsSize.set(itsCandidates.size());
+			itsMaximumSize = theMaximumSize;
+		}
+
+		boolean add(Candidate theCandidate)
+		{
+			if (!itsCandidates.add(theCandidate))
+				return false;
+
+			if (itsSize.incrementAndGet() > itsMaximumSize)
+			{
+				itsSize.decrementAndGet();
+				// only when a concurrent pollFirst() emptied the Level
+				if (itsCandidates.pollLast() == null)
+					itsSize.incrementAndGet();
+			}
+
+			return true;
+		}
+
+		Candidate pollFirst()
+		{
+			Candidate aCandidate = itsCandidates.pollFirst();
+			if (aCandidate != null)
+				itsSize.decrementAndGet();
+			return aCandidate;
+		}
+
+		// can be off during concurrent modification, never negative
+		int size() { return Math.max(0, itsSize.get()); }
+
+		NavigableSet<Candidate> getCandidates() { return itsCandidates; }
+	}
+
+	/*
+	 * The current and next level, replaced as a whole by moveToNextLevel().
+	 * itsNext is null for non-beam SearchStrategies, ROC_BEAM uses itsNextHull
+	 * instead, COVER_BASED_BEAM_SELECTION uses itsNext for all its Candidates.
+	 */
+	private static final class Levels
+	{
+		private final Level itsCurrent;
+		private final Level itsNext;
+		private final ConvexHullROCNaive itsNextHull;
+
+		Levels(Level theCurrent, Level theNext, ConvexHullROCNaive theNextHull)
+		{
+			itsCurrent  = theCurrent;
+			itsNext     = theNext;
+			itsNextHull = theNextHull;
+		}
 	}
 
 	// package private special constructor for Fraunhofer random seeds
@@ -154,17 +237,20 @@ public class CandidateQueue
 		if (itsSearchStrategy != SearchStrategy.ROC_BEAM)
 			aSubgroup.killMembers();
 
+		// NOTE a Candidate added to the next level while another thread
+		// moves to the next level could end up in the new current level,
+		// SubgroupDiscovery.mine() only moves when no Tests are running
+		Levels aLevels = itsLevels.get();
+
 		switch (itsSearchStrategy)
 		{
 			case BEAM :
-				return addToQueue(itsNextQueue, theCandidate);
+				return aLevels.itsNext.add(theCandidate);
 			case ROC_BEAM :
 			{
 				final SubgroupROCPoint p =
 					new SubgroupROCPoint(theCandidate.getSubgroup());
-				boolean isAdded = itsNextQueueConvexHullROC.add(p);
-//				itsNextQueueROCList.add(p);
-//				itsNextQueueROCBeam.add(new CandidateROCPoint(theCandidate));
+				boolean isAdded = aLevels.itsNextHull.add(p);
 
 // FIXME MM debug check
 if (Process.ROC_BEAM_TEST)
@@ -179,36 +265,20 @@ if (Process.ROC_BEAM_TEST)
 				return isAdded;
 			}
 			case COVER_BASED_BEAM_SELECTION :
-			{
-				//simply add candidate, regardless of the current size of itsTempQueue
-				synchronized (itsTempQueue) { return itsTempQueue.add(theCandidate); }
-			}
+				//simply add candidate, regardless of the current size of the next level
+				return aLevels.itsNext.add(theCandidate);
 			case BEST_FIRST :
-				return addToQueue(itsQueue, theCandidate);
+				return aLevels.itsCurrent.add(theCandidate);
 			case DEPTH_FIRST :
-				return addToQueue(itsQueue, theCandidate);
+				return aLevels.itsCurrent.add(theCandidate);
 			case BREADTH_FIRST :
-				return addToQueue(itsQueue, theCandidate);
+				return aLevels.itsCurrent.add(theCandidate);
 			// SearchStrategy is checked by constructor
 			default :
 				throw new AssertionError(itsSearchStrategy.toString());
 		}
 	}
 
-	//add candidate and trim queue to specified size itsMaximumQueueSize
-	private boolean addToQueue(TreeSet<Candidate> theQueue, Candidate theCandidate)
-	{
-		synchronized (theQueue)
-		{
-			boolean isAdded = theQueue.add(theCandidate);
-
-			if (isAdded && (theQueue.size() > itsMaximumQueueSize))
-				theQueue.pollLast();
-
-			return isAdded;
-		}
-	}
-
 	/**
 	 * Retrieves first {@link Candidate Candidate} from this CandidateQueue,
 	 * and moves to next level if required.
@@ -221,21 +291,23 @@ if (Process.ROC_BEAM_TEST)
 	 */
 	public Candidate removeFirst()
 	{
-		synchronized (itsQueue)
+		while (true)
 		{
-			if (isBeamSearchStrategy && itsQueue.size() == 0)
-				moveToNextLevel();
+			Levels aLevels = itsLevels.get();
+			Candidate aCandidate = aLevels.itsCurrent.pollFirst();
+
+			if ((aCandidate != null) || !isBeamSearchStrategy)
+				return aCandidate;
 
-			return itsQueue.pollFirst();
+			// current level is depleted, only one thread replaces it, others
+			// retry on the Levels it installed
+			if (itsLevels.compareAndSet(aLevels, moveToNextLevel(aLevels)))
+				return itsLevels.get().itsCurrent.pollFirst();
 		}
 	}
 
-	/*
-	 * removeFirst locks itsQueue, additional locks are acquired here
-	 * NOTE to avoid potential deadlock always obtain locks in fixed order:
-	 * itsQueue -> itsNextQueue -> itsTempQueue
-	 */
-	private void moveToNextLevel()
+	// returns the Levels that replace theLevels, see removeFirst()
+	private Levels moveToNextLevel(Levels theLevels)
 	{
 		Log.logCommandLine("\nLevel finished --------------------------------------------\n");
 
@@ -246,94 +318,75 @@ if (Process.ROC_BEAM_TEST)
 			case BEAM :
 			{
 				// make next level current
-				// synchronized (itsQueue) done by removeFirst()
-				itsQueue = itsNextQueue;
-				synchronized (itsNextQueue)
-				{
-					itsNextQueue = new TreeSet<Candidate>();
-				}
-				break;
+				return new Levels(theLevels.itsNext, newLevel(), null);
 			}
 			case ROC_BEAM :
 			{
-				// synchronized (itsQueue) done by removeFirst()
-				synchronized (itsNextQueueConvexHullROC)
-				{
+				ConvexHullROCNaive aHull = theLevels.itsNextHull;
 // FIXME MM REMOVE
 if (Process.ROC_BEAM_TEST)
 {
 System.out.println("ROC_BEAM for next level:");
 System.out.println("PRE (0.0, TPR) removal:");
-itsNextQueueConvexHullROC.debug();
-itsNextQueueConvexHullROC.removePureSubgroups();
+aHull.debug();
+aHull.removePureSubgroups();
 System.out.println("POST (0.0, TPR) removal:");
-itsNextQueueConvexHullROC.debug();
+aHull.debug();
 }
-					itsQueue = itsNextQueueConvexHullROC.toTreeSet();
-					itsNextQueueConvexHullROC = new ConvexHullROCNaive();
-//					itsNextQueueROCList = new ROCList();
-//					itsNextQueueROCBeam = new ConvexHullROC(true);
-				}
-				break;
+				return new Levels(new Level(aHull.toTreeSet(), itsMaximumQueueSize), null, new ConvexHullROCNaive());
 			}
 			case COVER_BASED_BEAM_SELECTION :
 			{
-				// lock in fixed order to avoid deadlock, excuse indenting
-				// synchronized (itsQueue) done by removeFirst()
-				synchronized (itsNextQueue) {
-				synchronized (itsTempQueue) {
-					if (!USE_OLD_COVER_BASED_SUBGROUP_SELECTION)
-					{
-						itsQueue     = (TreeSet<Candidate>) CoverBasedSubgroupSelection.postProcessCandidateSet(itsTempQueue, itsMaximumQueueSize);
-						itsNextQueue = new TreeSet<Candidate>();
-						itsTempQueue = new TreeSet<Candidate>();
-						// old optimised code - used up till Cortana.3138.jar
-						// postProcessCBBS();
-					}
-					else
+				SortedSet<Candidate> aCandidates = theLevels.itsNext.getCandidates();
+				SortedSet<Candidate> aSelection;
+
+				if (!USE_OLD_COVER_BASED_SUBGROUP_SELECTION)
+				{
+					aSelection = CoverBasedSubgroupSelection.postProcessCandidateSet(aCandidates, itsMaximumQueueSize);
+					// old optimised code - used up till Cortana.3138.jar
+					// aSelection = postProcessCBBS(aCandidates);
+				}
+				else
+				{
+					Log.logCommandLine("candidates: " + aCandidates.size());
+					TreeSet<Candidate> aNextQueue = new TreeSet<Candidate>();
+					int aLoopSize = Math.min(itsMaximumQueueSize, aCandidates.size());
+					BitSet aUsed = new BitSet(aCandidates.size());
+					for (int i=0; i<aLoopSize; i++) //copy candidates into aNextQueue
 					{
-						Log.logCommandLine("candidates: " + itsTempQueue.size());
-						int aLoopSize = Math.min(itsMaximumQueueSize, itsTempQueue.size());
-						BitSet aUsed = new BitSet(itsTempQueue.size());
-						for (int i=0; i<aLoopSize; i++) //copy candidates into itsNextQueue
+						Log.logCommandLine("loop " + i);
+						Candidate aBestCandidate = null;
+						double aMaxQuality = Float.NEGATIVE_INFINITY;
+						int aCount = 0;
+						int aChosen = 0;
+						for (Candidate aCandidate : aCandidates)
 						{
-							Log.logCommandLine("loop " + i);
-							Candidate aBestCandidate = null;
-							double aMaxQuality = Float.NEGATIVE_INFINITY;
-							int aCount = 0;
-							int aChosen = 0;
-							for (Candidate aCandidate : itsTempQueue)
+							if (!aUsed.get(aCount)) //is this one still available
 							{
-								if (!aUsed.get(aCount)) //is this one still available
+								double aQuality = computeMultiplicativeWeight(aNextQueue, aCandidate) * aCandidate.getPriority();
+								if (aQuality > aMaxQuality)
 								{
-									double aQuality = computeMultiplicativeWeight(aCandidate) * aCandidate.getPriority();
-									if (aQuality > aMaxQuality)
-									{
-										aMaxQuality = aQuality;
-										aBestCandidate = aCandidate;
-										aChosen = aCount;
-									}
+									aMaxQuality = aQuality;
+									aBestCandidate = aCandidate;
+									aChosen = aCount;
 								}
-								aCount++;
 							}
-							Log.logCommandLine("best (" + aChosen + "): " + aBestCandidate.getPriority() + ", " + computeMultiplicativeWeight(aBestCandidate) + ", " + aMaxQuality);
-							aUsed.set(aChosen, true);
-							aBestCandidate.setPriority(aMaxQuality);
-							addToQueue(itsNextQueue, aBestCandidate);
+							aCount++;
 						}
-						itsQueue = itsNextQueue;
-
-						Log.logCommandLine("========================================================");
-						Log.logCommandLine("used: " + aUsed.toString());
-						for (Candidate aCandidate : itsQueue)
-							Log.logCommandLine("priority: " + aCandidate.getPriority());
-
-						itsNextQueue = new TreeSet<Candidate>();
-						itsTempQueue = new TreeSet<Candidate>();
+						Log.logCommandLine("best (" + aChosen + "): " + aBestCandidate.getPriority() + ", " + computeMultiplicativeWeight(aNextQueue, aBestCandidate) + ", " + aMaxQuality);
+						aUsed.set(aChosen, true);
+						aBestCandidate.setPriority(aMaxQuality);
+						addToQueue(aNextQueue, aBestCandidate);
 					}
+					aSelection = aNextQueue;
+
+					Log.logCommandLine("========================================================");
+					Log.logCommandLine("used: " + aUsed.toString());
+					for (Candidate aCandidate : aSelection)
+						Log.logCommandLine("priority: " + aCandidate.getPriority());
 				}
-				}
-				break;
+
+				return new Levels(new Level(aSelection, itsMaximumQueueSize), new Level((Comparator<Candidate>) null, Integer.MAX_VALUE), null);
 			}
 			// should never happen
 			default :
@@ -341,6 +394,19 @@ itsNextQueueConvexHullROC.debug();
 		}
 	}
 
+	//add candidate and trim queue to specified size itsMaximumQueueSize
+	// for the single threaded old COVER_BASED_BEAM_SELECTION code only
+	@Deprecated
+	private boolean addToQueue(TreeSet<Candidate> theQueue, Candidate theCandidate)
+	{
+		boolean isAdded = theQueue.add(theCandidate);
+
+		if (isAdded && (theQueue.size() > itsMaximumQueueSize))
+			theQueue.pollLast();
+
+		return isAdded;
+	}
+
 	/**
 	 * Returns the total number of {@link Candidate Candidate}s in this
 	 * CandidateQueue.
@@ -354,50 +420,24 @@ itsNextQueueConvexHullROC.debug();
 	 */
 	public int size()
 	{
-		// do not use synchronized block on itsQueue and then place
-		// switch inside it, keep lock as short as possible
+		// both levels are read from the same Levels, no locks are needed
+		Levels aLevels = itsLevels.get();
+
 		switch (itsSearchStrategy)
 		{
 			case BEAM :
-			{
-				synchronized (itsQueue)
-				{
-					int qs = itsQueue.size();
-					synchronized (itsNextQueue)
-					{
-						return qs + itsNextQueue.size();
-					}
-				}
-			}
+				return aLevels.itsCurrent.size() + aLevels.itsNext.size();
 			case ROC_BEAM :
-			{
-				synchronized (itsQueue)
-				{
-					int qs = itsQueue.size();
-					synchronized (itsNextQueueConvexHullROC)
-					{
-						return qs + itsNextQueueConvexHullROC.size();
-					}
-				}
-			}
+				return aLevels.itsCurrent.size() + aLevels.itsNextHull.size();
 			case COVER_BASED_BEAM_SELECTION :
-			{
-				synchronized (itsQueue)
-				{
-					int qs = itsQueue.size();
-					synchronized (itsTempQueue)
-					{
-						return qs + itsTempQueue.size();
-					}
-				}
-			}
+				return aLevels.itsCurrent.size() + aLevels.itsNext.size();
 			// do not use fall-through
 			case BEST_FIRST :
-				synchronized (itsQueue) { return itsQueue.size(); }
+				return aLevels.itsCurrent.size();
 			case DEPTH_FIRST :
-				synchronized (itsQueue) { return itsQueue.size(); }
+				return aLevels.itsCurrent.size();
 			case BREADTH_FIRST :
-				synchronized (itsQueue) { return itsQueue.size(); }
+				return aLevels.itsCurrent.size();
 			// should never happen
 			default :
 				throw new AssertionError(itsSearchStrategy.toString());
@@ -417,7 +457,7 @@ itsNextQueueConvexHullROC.debug();
 	 */
 	public int currentLevelQueueSize()
 	{
-		synchronized (itsQueue) { return itsQueue.size(); }
+		return itsLevels.get().itsCurrent.size();
 	}
 
 	////////////////////////////////////////////////////////////////////////////
@@ -458,16 +498,13 @@ itsNextQueueConvexHullROC.debug();
 	* See van Leeuwen & Knobbe, ECML PKDD 2011. \n
 	*/
 	@Deprecated
-	private int computeCoverCount(int theRow)
+	private int computeCoverCount(SortedSet<Candidate> theNextQueue, int theRow)
 	{
 		int aResult = 0;
 
-		synchronized (itsNextQueue)
-		{
-			for (Candidate aCandidate: itsNextQueue)
-				if (aCandidate.getSubgroup().covers(theRow))
-					++aResult;
-		}
+		for (Candidate aCandidate: theNextQueue)
+			if (aCandidate.getSubgroup().covers(theRow))
+				++aResult;
 
 		return aResult;
 	}
@@ -477,7 +514,7 @@ itsNextQueueConvexHullROC.debug();
 	* See van Leeuwen & Knobbe, ECML PKDD 2011. \n
 	*/
 	@Deprecated
-	private double computeMultiplicativeWeight(Candidate theCandidate)
+	private double computeMultiplicativeWeight(SortedSet<Candidate> theNextQueue, Candidate theCandidate)
 	{
 		double aResult = 0;
 		double anAlpha = 0.9;
@@ -492,38 +529,36 @@ itsNextQueueConvexHullROC.debug();
 		BitSet aMember = aSubgroup.getMembers();
 
 		for(int i=aMember.nextSetBit(0); i>=0; i=aMember.nextSetBit(i+1))
-			aResult += Math.pow(anAlpha, computeCoverCount(i));
+			aResult += Math.pow(anAlpha, computeCoverCount(theNextQueue, i));
 
 		return aResult/aSubgroup.getCoverage();
 	}
 
 	/*
 	 * TODO MM
-	 * from here on itsTempQueue is not needed as Tree structure anymore
+	 * from here on theCandidates is not needed as Tree structure anymore
 	 * creating a linear access linear access data view of its items may be
 	 * faster to access, as it can be better predicted by the cpu
 	 * and avoids the use of extra positioning variables
 	 */
 	@Deprecated
-	private final void postProcessCBBS()
+	private final SortedSet<Candidate> postProcessCBBS(SortedSet<Candidate> theCandidates)
 	{
-		int aSize = itsTempQueue.size();
+		int aSize = theCandidates.size();
+		TreeSet<Candidate> aNextQueue = new TreeSet<Candidate>();
 
 		if (aSize == 0)
 		{
 			Log.logCommandLine("========================================================");
-			itsQueue = itsNextQueue;
-			itsNextQueue = new TreeSet<Candidate>();
-			itsTempQueue = new TreeSet<Candidate>();
-			return;
+			return aNextQueue;
 		}
 
-		// first() is safe when itsTempQueue is not empty
-		int aNrRows = itsTempQueue.first().getSubgroup().getParentSet().getTotalCoverage();
+		// first() is safe when theCandidates is not empty
+		int aNrRows = theCandidates.first().getSubgroup().getParentSet().getTotalCoverage();
 		int[] aCoverCounts = new int[aNrRows];
 
 		// in each execution of the loop, a Candidate will be added to
-		// itsNextQueue, and the cover counts go up
+		// aNextQueue, and the cover counts go up
 		// as cover counts go up, multiplicative weights go down
 		// so for each round, the maximum score a Candidate can attain
 		// is upper bounded by the score attained in the previous round
@@ -532,26 +567,26 @@ itsNextQueueConvexHullROC.debug();
 		// see the comment on the first loop below
 		double[] aLastQuality = new double[aSize];
 		int idx = -1;
-		for (Candidate c : itsTempQueue)
+		for (Candidate c : theCandidates)
 			aLastQuality[++idx] = c.getPriority();
 
 		int aLoopSize = Math.min(itsMaximumQueueSize, aSize);
 		BitSet aUsed = new BitSet(aSize);
 
 		Log.logCommandLine("candidates: " + aSize);
-		// the first loop is special, as there are no Candidates in itsNextQueue
+		// the first loop is special, as there are no Candidates in aNextQueue
 		// yet, the multiplicative weight for each Candidate is equal to 1.0
 		// so the Candidate with the highest priority wins
 		// and its new quality = 1.0 * c.getPriority()
 		// therefore the first execution of the loop is taken out
 		Log.logCommandLine("loop 0");
 		Log.logCommandLine(String.format("best (0): %f, 1.0, %1$f", aLastQuality[0]));
-		Candidate aFirst = itsTempQueue.first();
+		Candidate aFirst = theCandidates.first();
 		aUsed.set(0);
-		addToQueue(itsNextQueue, aFirst);
+		addToQueue(aNextQueue, aFirst);
 		updateCoverCounts(aCoverCounts, aFirst);
 
-		// copy candidates into itsNextQueue
+		// copy candidates into aNextQueue
 		for (int i = 1; i < aLoopSize; ++i)
 		{
 			Log.logCommandLine("loop " + i);
@@ -569,7 +604,7 @@ itsNextQueueConvexHullROC.debug();
 
 			// it might be faster to copy Candidates to array or List first
 			// and then use index-based access using first clear Bit of used
-			for (Candidate aCandidate : itsTempQueue)
+			for (Candidate aCandidate : theCandidates)
 			{
 				if (aUsed.get(++aCount))
 					continue;
@@ -596,18 +631,15 @@ itsNextQueueConvexHullROC.debug();
 			Log.logCommandLine(String.format("best (%d): %f, %f, %f", aChosen, aBestCandidate.getPriority(), aBestCandidateWeight, aMaxQuality));
 			aUsed.set(aChosen);
 			aBestCandidate.setPriority(aMaxQuality);
-			addToQueue(itsNextQueue, aBestCandidate);
+			addToQueue(aNextQueue, aBestCandidate);
 			updateCoverCounts(aCoverCounts, aBestCandidate);
 		}
-		itsQueue = itsNextQueue;
-
 		Log.logCommandLine("========================================================");
 		Log.logCommandLine("used: " + aUsed.toString());
-		for (Candidate aCandidate : itsQueue)
+		for (Candidate aCandidate : aNextQueue)
 			Log.logCommandLine("priority: " + aCandidate.getPriority());
 
-		itsNextQueue = new TreeSet<Candidate>();
-		itsTempQueue = new TreeSet<Candidate>();
+		return aNextQueue;
 	}
 
 	@Deprecated
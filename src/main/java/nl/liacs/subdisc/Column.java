@@ -1,5 +1,6 @@
 package nl.liacs.subdisc;
 
+import java.io.*;
 import java.util.*;
 
 import nl.liacs.subdisc.gui.*;
@@ -46,6 +47,8 @@ public class Column implements XMLNodeInterface
 	private boolean itsMissingValueIsUnique = true;
 	private int itsSize = 0;
 	private int itsCardinality = 0;
+	// LABEL_RANKING target, see getLabelRankings()
+	private volatile LabelRankings itsLabelRankings;
 	private float itsMin = Float.POSITIVE_INFINITY;
 	private float itsMax = Float.NEGATIVE_INFINITY;
 	private boolean isEnabled = true;
@@ -57,6 +60,11 @@ public class Column implements XMLNodeInterface
 	private static final int MASK_OFF = 0x7fffffff;
 	private float[] itsSortedFloats;
 	private int[] itsSortIndex;
+	// buildSorted(null) result, loaded by FileLoaderColumnar, reused by
+	// buildSorted() as long as itsFloatz is the array it was loaded for
+	private float[] itsPresortedFloats;
+	private int[] itsPresortIndex;
+	private float[] itsPresortedFloatz;
 
 //	private static final String falseFloat = "[-+]?0*(\\.0+)?"; // DO NOT REMOVE
 	private static final String trueFloat = "\\+?0*1(\\.0+)?";
@@ -244,6 +252,9 @@ public class Column implements XMLNodeInterface
 		aCopy.itsMax = itsMax;
 		aCopy.isEnabled = isEnabled;
 		aCopy.itsTargetStatus = itsTargetStatus;
+		aCopy.itsPresortedFloats = itsPresortedFloats;
+		aCopy.itsPresortIndex = itsPresortIndex;
+		aCopy.itsPresortedFloatz = itsPresortedFloatz;
 
 		return aCopy;
 	}
@@ -481,6 +492,7 @@ public class Column implements XMLNodeInterface
 	{
 		if (!isOutOfBounds(theIndex))
 			itsFloatz[theIndex] = theValue;
+		itsPresortedFloatz = null;
 	}
 
 	public int size() { return itsSize; }
@@ -1768,7 +1780,54 @@ public class Column implements XMLNodeInterface
 	// corresponding value from column.itsDistinctValuesU(non_zero_count_index) this uses aCollection.unmodifiableList<String> for the domain to avoid
 	// creating Objects, sharing is safe, and the JVM knows it will not change
 	List<String> itsDistinctValuesU = null;
-	void buildSharedDomain() { itsDistinctValuesU = Collections.unmodifiableList(itsDistinctValues); }
+	// the indexes of itsDistinctValuesU in the sort order of their values
+	int[] itsDistinctValuesOrder = null;
+	void buildSharedDomain()
+	{
+		itsDistinctValuesU = Collections.unmodifiableList(itsDistinctValues);
+
+		// codes are assigned in order of appearance, sort them once here, such
+		// that callers need not sort Strings for every BitSet they count
+		Integer[] anOrder = new Integer[itsDistinctValues.size()];
+		for (int i = 0; i < anOrder.length; ++i)
+			anOrder[i] = i;
+		final List<String> aDomain = itsDistinctValues;
+		Arrays.sort(anOrder, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer x, Integer y) { return aDomain.get(x).compareTo(aDomain.get(y)); }
+		});
+		itsDistinctValuesOrder = new int[anOrder.length];
+		for (int i = 0; i < anOrder.length; ++i)
+			itsDistinctValuesOrder[i] = anOrder[i];
+	}
+
+	// as getUniqueNominalDomainCounts(), with the true positives for each
+	// value, the counts are indexed by the codes of itsDistinctValuesU
+	// for the binary target of SINGLE_NOMINAL, see NominalCrossTable and
+	// SubgroupDiscovery.evaluateNominalEquals()
+	ValueCountTP getUniqueNominalDomainMap(BitSet theBitSet, BitSet theTarget)
+	{
+		if (itsType != AttributeType.NOMINAL)
+		{
+			logMessage("getUniqueNominalDomainMap", getTypeError("NOMINAL"));
+			return new ValueCountTP(new int[0], new int[0], 0, 0);
+		}
+
+		int[] aCnt = new int[itsDistinctValues.size()];
+		int[] aPos = new int[itsDistinctValues.size()];
+
+		for (int i = theBitSet.nextSetBit(0); i >= 0; i = theBitSet.nextSetBit(i + 1))
+		{
+			int idx = itsNominalz[i];
+			++aCnt[idx];
+			if (theTarget.get(i))
+				++aPos[idx];
+		}
+
+		return new ValueCountTP(aCnt, aPos, 0, 0);
+	}
+
 	int[] getUniqueNominalDomainCounts(BitSet theBitSet, int theBitSetCardinality)
 	{
 		// not a public method, caller should ensure (theBitSetCardinality > 1)
@@ -1858,6 +1917,15 @@ public class Column implements XMLNodeInterface
 	{
 		boolean isTargetNull = (theTarget == null);
 
+		if ((itsPresortedFloatz != null) && (itsPresortedFloatz == itsFloatz))
+		{
+			itsSortedFloats = itsPresortedFloats;
+			itsSortIndex = new int[itsFloatz.length];
+			for (int i = 0; i < itsFloatz.length; ++i)
+				itsSortIndex[i] = (isTargetNull || theTarget.get(i)) ? itsPresortIndex[i] : (MASK_ON | itsPresortIndex[i]);
+			return;
+		}
+
 		itsSortedFloats = Function.getUniqueValues(itsFloatz);	//this might include a NaN at the end in case of missing values
 //		if (Float.isNaN(aSortedFloats[aSortedFloats.length-1]))		//are there missing values (placed at the end by getUniqueValues)?
 //		{
@@ -1879,6 +1947,217 @@ public class Column implements XMLNodeInterface
 
 	final void removeSorted() { itsSortedFloats = null; itsSortIndex = null; }
 
+	/*
+	 * sorts the data of a NUMERIC Column once, as readColumnar() does, such
+	 * that buildSorted() of this Column and every copy() made afterwards only
+	 * applies the target mask, instead of sorting again
+	 * used before mining many copies of a Table, as swap-randomization does
+	 */
+	final void presort()
+	{
+		if ((itsType != AttributeType.NUMERIC) || (itsFloatz == null) || (itsPresortedFloatz == itsFloatz))
+			return;
+
+		// as buildSorted(null)
+		float[] aSortedFloats = Function.getUniqueValues(itsFloatz);
+		int[] aSortIndex = new int[itsFloatz.length];
+		for (int i = 0; i < itsFloatz.length; ++i)
+			aSortIndex[i] = Arrays.binarySearch(aSortedFloats, itsFloatz[i]);
+
+		itsPresortedFloats = aSortedFloats;
+		itsPresortIndex = aSortIndex;
+		itsPresortedFloatz = itsFloatz;
+	}
+
+	/*
+	 * data of this Column for FileLoaderColumnar, the header (type, name,
+	 * short, index, enabled, target status) is written by FileLoaderColumnar, such that it
+	 * can check Columns that are declared in XML before reading their data
+	 */
+	final void writeColumnar(FileLoaderColumnar.Output theOutput) throws IOException
+	{
+		close();
+
+		theOutput.putInt(itsSize);
+		theOutput.putInt(getCardinality());
+		theOutput.putBoolean(itsMissingValueIsUnique);
+		theOutput.putLongs(itsMissing.toLongArray());
+
+		switch (itsType)
+		{
+			case NOMINAL :
+			{
+				theOutput.putInt(itsDistinctValues.size());
+				for (String s : itsDistinctValues)
+					theOutput.putString(s);
+				theOutput.putInts(itsNominalz, itsSize);
+				break;
+			}
+			case NUMERIC :
+			{
+				theOutput.putFloats(itsFloatz, itsSize);
+
+				// as buildSorted(null), which is not used as it sets members
+				float[] aSortedFloats = Function.getUniqueValues(itsFloatz);
+				int[] aSortIndex = new int[itsSize];
+				for (int i = 0; i < itsSize; ++i)
+					aSortIndex[i] = Arrays.binarySearch(aSortedFloats, itsFloatz[i]);
+				theOutput.putFloats(aSortedFloats, aSortedFloats.length);
+				theOutput.putInts(aSortIndex, itsSize);
+				break;
+			}
+			case ORDINAL :
+				throw new AssertionError(itsType);
+			case BINARY :
+			{
+				theOutput.putLongs(itsBinaries.toLongArray());
+				break;
+			}
+			default :
+			{
+				logTypeError("Column.writeColumnar()");
+				throw new AssertionError(itsType);
+			}
+		}
+	}
+
+	// counterpart of writeColumnar(), replaces all data of this Column
+	final void readColumnar(FileLoaderColumnar.Input theInput) throws IOException
+	{
+		itsSize = theInput.getInt();
+		int aCardinality = theInput.getInt();
+		itsMissingValueIsUnique = theInput.getBoolean();
+		itsMissing = BitSet.valueOf(theInput.getLongs());
+
+		switch (itsType)
+		{
+			case NOMINAL :
+			{
+				int aNrDistinct = theInput.getInt();
+				itsDistinctValues = new ArrayList<String>(aNrDistinct);
+				itsDistinctValuesMap = new HashMap<String, Integer>(Math.max(MAP_DEFAULT_INIT_SIZE, (int) (aNrDistinct / 0.75f) + 1));
+				for (int i = 0; i < aNrDistinct; ++i)
+				{
+					String s = theInput.getString();
+					itsDistinctValues.add(s);
+					itsDistinctValuesMap.put(s, i);
+				}
+				itsNominalz = theInput.getInts();
+				break;
+			}
+			case NUMERIC :
+			{
+				itsFloatz = theInput.getFloats();
+				itsPresortedFloats = theInput.getFloats();
+				itsPresortIndex = theInput.getInts();
+				itsPresortedFloatz = itsFloatz;
+				itsMin = Float.POSITIVE_INFINITY;
+				itsMax = Float.NEGATIVE_INFINITY;
+				break;
+			}
+			case ORDINAL :
+				throw new AssertionError(itsType);
+			case BINARY :
+			{
+				itsBinaries = BitSet.valueOf(theInput.getLongs());
+				break;
+			}
+			default :
+			{
+				logTypeError("Column.readColumnar()");
+				throw new AssertionError(itsType);
+			}
+		}
+
+		// set last, getCardinality() would compute it for itsSize 0 and 1
+		itsCardinality = aCardinality;
+	}
+
+	/*
+	 * bulk alternatives to add() and close(), for the parallel loader in
+	 * DataLoaderTXT, the arguments are used as-is
+	 * like setType() during loading, these change the type of this Column,
+	 * but not its target status
+	 * theDistinctValues must be in order of first occurrence in theNominalz,
+	 * as add(String) would have created it
+	 */
+	final void setLoadedData(int[] theNominalz, List<String> theDistinctValues, BitSet theMissing)
+	{
+		int aNrDistinct = theDistinctValues.size();
+		itsDistinctValues = new ArrayList<String>(theDistinctValues);
+		itsDistinctValuesMap = new HashMap<String, Integer>(Math.max(MAP_DEFAULT_INIT_SIZE, (int) (aNrDistinct / 0.75f) + 1));
+		for (int i = 0; i < aNrDistinct; ++i)
+			itsDistinctValuesMap.put(itsDistinctValues.get(i), i);
+		itsNominalz = theNominalz;
+		itsFloatz = null;
+		itsBinaries = null;
+		itsType = AttributeType.NOMINAL;
+		itsSize = theNominalz.length;
+		itsMissing = theMissing;
+	}
+
+	final void setLoadedData(float[] theFloatz, BitSet theMissing)
+	{
+		itsFloatz = theFloatz;
+		itsPresortedFloatz = null;
+		itsBinaries = null;
+		itsType = AttributeType.NUMERIC;
+		itsSize = theFloatz.length;
+		itsMissing = theMissing;
+	}
+
+	final void setLoadedData(BitSet theBinaries, int theSize, BitSet theMissing)
+	{
+		assert (itsType == AttributeType.BINARY);
+
+		itsBinaries = theBinaries;
+		itsSize = theSize;
+		itsMissing = theMissing;
+	}
+
+	/*
+	 * non-missing values of theMembers in ascending order, theCardinality is
+	 * |theMembers|
+	 * when there are many members compared to the number of distinct values
+	 * the sort index of buildSorted() is used for a counting sort, otherwise,
+	 * or when there is no sort index, the values are copied and sorted
+	 */
+	final float[] getSortedValues(BitSet theMembers, int theCardinality)
+	{
+		assert (theMembers.cardinality() == theCardinality);
+
+		float[] aValues = new float[theCardinality];
+		int j = 0;
+
+		// n*log(n) compares for Arrays.sort(), n+U for counting
+		int aLog = 32 - Integer.numberOfLeadingZeros(theCardinality);
+		if ((itsSortIndex != null) && (((long) theCardinality * aLog) >= itsSortedFloats.length))
+		{
+			int[] aCounts = new int[itsSortedFloats.length];
+			for (int i = theMembers.nextSetBit(0); i >= 0; i = theMembers.nextSetBit(i + 1))
+				++aCounts[MASK_OFF & itsSortIndex[i]];
+
+			// NaN, if any, is the last sorted value
+			for (int k = 0; k < aCounts.length; ++k)
+			{
+				float f = itsSortedFloats[k];
+				if (Float.isNaN(f))
+					break;
+				for (int c = aCounts[k]; c > 0; --c)
+					aValues[j++] = f;
+			}
+		}
+		else
+		{
+			for (int i = theMembers.nextSetBit(0); i >= 0; i = theMembers.nextSetBit(i + 1))
+				if (!Float.isNaN(itsFloatz[i]))
+					aValues[j++] = itsFloatz[i];
+			Arrays.sort(aValues, 0, j);
+		}
+
+		return (j == theCardinality) ? aValues : Arrays.copyOf(aValues, j);
+	}
+
 	public final float getSortedValue(int index) { return itsSortedFloats[index]; }
 
 	public final int getSortedIndex(float theFloat) { return Arrays.binarySearch(itsSortedFloats, theFloat); }
@@ -1940,6 +2219,54 @@ public class Column implements XMLNodeInterface
 		}
 	}
 
+	/*
+	 * sufficient statistics of two target Columns (x, y) per value of this
+	 * Column, for DOUBLE_CORRELATION and DOUBLE_REGRESSION
+	 *
+	 * the sums are cumulative over the sort order of this Column, such that
+	 * the statistics of the records with a value in a range of sort indexes
+	 * [theFrom, theTo] are available in O(1), see getSum(), this covers the
+	 * Conditions of all numeric Operators
+	 *
+	 * itsCounts includes the records with a missing value for this Column, as
+	 * getValueCount() does, such that the loops over the counts are the same
+	 * for both, but the missing records are not in itsCoverages and the sums,
+	 * as the Conditions on this Column do not select them, see evaluate()
+	 */
+	static final class ValueCountXY
+	{
+		final int[]    itsCounts;     // of size column.cardinality
+		final int[]    itsCoverages;  // of size column.cardinality+1
+		final double[] itsXSums;      // of size column.cardinality+1
+		final double[] itsYSums;      // of size column.cardinality+1
+		final double[] itsXYSums;     // of size column.cardinality+1
+		final double[] itsXXSums;     // of size column.cardinality+1
+		final double[] itsYYSums;     // of size column.cardinality+1
+
+		private ValueCountXY(int[] theCounts, int[] theCoverages, double[] theXSums, double[] theYSums, double[] theXYSums, double[] theXXSums, double[] theYYSums)
+		{
+			itsCounts    = theCounts;
+			itsCoverages = theCoverages;
+			itsXSums     = theXSums;
+			itsYSums     = theYSums;
+			itsXYSums    = theXYSums;
+			itsXXSums    = theXXSums;
+			itsYYSums    = theYYSums;
+		}
+
+		// sum over the sort indexes theFrom up to and including theTo
+		static final double getSum(double[] theSums, int theFrom, int theTo)
+		{
+			return theSums[theTo + 1] - theSums[theFrom];
+		}
+
+		// number of non-missing records at sort indexes theFrom up to and including theTo
+		final int getCoverage(int theFrom, int theTo)
+		{
+			return itsCoverages[theTo + 1] - itsCoverages[theFrom];
+		}
+	}
+
 	public ValueCount getValueCount(BitSet theBitSet)
 	{
 		if (!isValidCall("getValueCount", theBitSet))
@@ -1983,7 +2310,8 @@ public class Column implements XMLNodeInterface
 			else
 			{
 				aMissingCount++;
-				//TODO: this doesn't work correctly
+				// NOTE buildSorted() also sets the target mask for missing
+				// values, NaN or not, they are in itsSortedFloats
 				if (itsSortIndex[i] >= 0) //it's a positive example
 					aMissingPositiveCount++;
 			}
@@ -2002,6 +2330,111 @@ public class Column implements XMLNodeInterface
 		return new ValueCountTP(aCnt, aPos, aMissingCount, aMissingPositiveCount);
 	}
 
+	/*
+	 * getValueCount() and getUniqueNumericDomainMap() for a block of Columns,
+	 * in a single pass over theBitSet, such that the member bits are walked
+	 * once instead of once per Column, the results are in the order of
+	 * theColumns, null Columns are skipped, and yield a null result
+	 *
+	 * callers should keep theColumns small, all count arrays are written
+	 * in the same pass, see SubgroupDiscovery.COUNT_BLOCK
+	 */
+	static ValueCount[] getValueCounts(BitSet theBitSet, Column[] theColumns)
+	{
+		int n = theColumns.length;
+		ValueCount[] aResult = new ValueCount[n];
+		int[][] aSortIndexes = new int[n][];
+		int[][] aCnts = new int[n][];
+		int m = 0;
+
+		for (int c = 0; c < n; ++c)
+		{
+			Column aColumn = theColumns[c];
+			if (aColumn == null)
+				continue;
+			if (!aColumn.isValidCall("getValueCounts", theBitSet))
+			{
+				aResult[c] = new ValueCount(new int[0]);
+				continue;
+			}
+
+			// NOTE (itsSortedFloats.length == itsCardinality)
+			aSortIndexes[m] = aColumn.itsSortIndex;
+			aCnts[m] = new int[aColumn.itsSortedFloats.length];
+			aResult[c] = new ValueCount(aCnts[m]);
+			++m;
+		}
+
+		for (int i = theBitSet.nextSetBit(0); i >= 0; i = theBitSet.nextSetBit(i + 1))
+			for (int c = 0; c < m; ++c)
+				++aCnts[c][aSortIndexes[c][i]];
+
+		return aResult;
+	}
+
+	// see getValueCounts(), as getUniqueNumericDomainMap(BitSet) per Column
+	static ValueCountTP[] getUniqueNumericDomainMaps(BitSet theBitSet, Column[] theColumns)
+	{
+		int n = theColumns.length;
+		ValueCountTP[] aResult = new ValueCountTP[n];
+		int[] aColumnIndexes = new int[n];
+		int[][] aSortIndexes = new int[n][];
+		BitSet[] aMissings = new BitSet[n];
+		int[][] aCnts = new int[n][];
+		int[][] aPoss = new int[n][];
+		int[] aMissingCounts = new int[n];
+		int[] aMissingPositiveCounts = new int[n];
+		int m = 0;
+
+		for (int c = 0; c < n; ++c)
+		{
+			Column aColumn = theColumns[c];
+			if (aColumn == null)
+				continue;
+			if (!aColumn.isValidCall("getUniqueNumericDomainMaps", theBitSet))
+			{
+				aResult[c] = new ValueCountTP(new int[0], new int[0], 0, 0);
+				continue;
+			}
+
+			aColumnIndexes[m] = c;
+			aSortIndexes[m] = aColumn.itsSortIndex;
+			// most Columns have no missing values, avoid the check for those
+			aMissings[m] = (aColumn.itsMissing.isEmpty() ? null : aColumn.itsMissing);
+			aCnts[m] = new int[aColumn.itsSortedFloats.length];
+			aPoss[m] = new int[aColumn.itsSortedFloats.length];
+			++m;
+		}
+
+		for (int i = theBitSet.nextSetBit(0); i >= 0; i = theBitSet.nextSetBit(i + 1))
+		{
+			for (int c = 0; c < m; ++c)
+			{
+				int idx = aSortIndexes[c][i];
+
+				if ((aMissings[c] != null) && aMissings[c].get(i))
+				{
+					++aMissingCounts[c];
+					// target mask as in getUniqueNumericDomainMap()
+					if (idx >= 0)
+						++aMissingPositiveCounts[c];
+				}
+				else if (idx >= 0) //it's a positive example
+				{
+					++aCnts[c][idx];
+					++aPoss[c][idx];
+				}
+				else
+					++aCnts[c][(MASK_OFF & idx)];
+			}
+		}
+
+		for (int c = 0; c < m; ++c)
+			aResult[aColumnIndexes[c]] = new ValueCountTP(aCnts[c], aPoss[c], aMissingCounts[c], aMissingPositiveCounts[c]);
+
+		return aResult;
+	}
+
 	//TODO fix this for missing values
 	ValueCountSum getUniqueNumericDomainMap(BitSet theBitSet, Column theTarget)
 	{
@@ -2045,6 +2478,58 @@ public class Column implements XMLNodeInterface
 		return new ValueCountSumSquaresSum(aCnt, aSum, aSquaresSum);
 	}
 
+	// a single pass over theBitSet, see ValueCountXY
+	ValueCountXY getValueCountXY(BitSet theBitSet, Column theX, Column theY)
+	{
+		if (!isValidCall("getValueCountXY", theBitSet))
+		{
+			double[] d = new double[1];
+			return new ValueCountXY(new int[0], new int[1], d, d, d, d, d);
+		}
+
+		// NOTE (itsSortedFloats.length == itsCardinality)
+		int n = itsSortedFloats.length;
+		int[]    aCnt = new int[n];
+		int[]    aCov = new int[n + 1];
+		double[] aX   = new double[n + 1];
+		double[] aY   = new double[n + 1];
+		double[] aXY  = new double[n + 1];
+		double[] aXX  = new double[n + 1];
+		double[] aYY  = new double[n + 1];
+
+		float[] x = theX.itsFloatz;
+		float[] y = theY.itsFloatz;
+		for (int i = theBitSet.nextSetBit(0); i >= 0; i = theBitSet.nextSetBit(i + 1))
+		{
+			// sums for value idx are stored at idx+1, aX[0] remains 0.0
+			int idx = (MASK_OFF & itsSortIndex[i]) + 1;
+			++aCnt[idx - 1];
+			// counted, but not selected by any Condition on this Column
+			if (itsMissing.get(i))
+				continue;
+			++aCov[idx];
+			double dx  = x[i];
+			double dy  = y[i];
+			aX[idx]   += dx;
+			aY[idx]   += dy;
+			aXY[idx]  += (dx * dy);
+			aXX[idx]  += (dx * dx);
+			aYY[idx]  += (dy * dy);
+		}
+
+		for (int i = 1; i <= n; ++i)
+		{
+			aCov[i] += aCov[i - 1];
+			aX[i]  += aX[i - 1];
+			aY[i]  += aY[i - 1];
+			aXY[i] += aXY[i - 1];
+			aXX[i] += aXX[i - 1];
+			aYY[i] += aYY[i - 1];
+		}
+
+		return new ValueCountXY(aCnt, aCov, aX, aY, aXY, aXX, aYY);
+	}
+
 	// NOTE
 	// this setup differs from the SortedMap implementation
 	// FIXME make the two equal, as it is easier to understand
@@ -2251,6 +2736,19 @@ public class Column implements XMLNodeInterface
 		}
 	}
 
+	/*
+	 * dictionary-encoded LABEL_RANKING target, every distinct ranking is
+	 * parsed once, built on first use, and again after the data changed
+	 * NOTE a concurrent first use might build it twice, which is harmless
+	 */
+	final LabelRankings getLabelRankings()
+	{
+		LabelRankings aRankings = itsLabelRankings;
+		if ((aRankings == null) || aRankings.isStale(itsNominalz, itsSize, itsDistinctValues.size()))
+			itsLabelRankings = aRankings = new LabelRankings(itsDistinctValues, itsNominalz, itsSize);
+		return aRankings;
+	}
+
 	/**
 	 * Returns the average label ranking
 	 */
@@ -2262,52 +2760,9 @@ public class Column implements XMLNodeInterface
 			return null;
 		}
 
-		LabelRanking aResult = new LabelRanking(itsDistinctValues.get(itsNominalz[0]));
-		int aSize = aResult.getSize(); //number of labels
-		int[] aTotalRanks = new int[aSize];
-
+		LabelRankings aRankings = getLabelRankings();
 		BitSet aMembers = (theSubgroup == null) ? null : theSubgroup.getMembers();
-		//summation of rankings (not necessary to divide by aSize, when you just look at the order)
-		for (int i=0; i<itsSize; ++i)
-		{
-			if (aMembers == null || aMembers.get(i)) //part of the subgroup?
-			{
-				String aValue = itsDistinctValues.get(itsNominalz[i]);
-				LabelRanking aRanking = new LabelRanking(aValue);
-				for (int j=0; j<aSize; j++)
-					aTotalRanks[j] += aRanking.getRank(j);
-			}
-		}
-
-		//make copy that can be sorted
-		int[] aRanks = Arrays.copyOf(aTotalRanks, aSize);
-		Arrays.sort(aRanks);
-
-		//translate average ranks to a ranking
-		for (int i=0; i<aSize; i++)
-		{
-			int aLookup = aTotalRanks[i];
-			int aFirst = -1;
-			int aLast = -1;
-			//look up rank for this average
-			for (int j=0; j<aSize; j++)
-			{
-				if (aLookup == aRanks[j])
-				{
-					if (aFirst >= 0)
-						aLast = j;
-					aFirst = j;
-				}
-			}
-			//TODO: properly deal with ties in the ranking
-			aResult.setRank(i, aFirst);
-		}
-//		for (int i=0; i<itsSize; i++)
-//		{
-//			itsIndex[itsRanking[i]] += getLetter(i);
-//		}
-
-		return aResult;
+		return aRankings.getAverageRanking(aRankings.getCounts(aMembers));
 	}
 
 	/**
@@ -2321,29 +2776,9 @@ public class Column implements XMLNodeInterface
 			return null;
 		}
 
-		//take the size of the first example as the total number of labels
-		LabelRankingMatrix aResult = new LabelRankingMatrix(itsDistinctValues.get(itsNominalz[0]).replace(">","").length());
-		// equivalent to below, as itsNominalz[0] should always be 0
-		//LabelRankingMatrix aResult = new LabelRankingMatrix(itsDistinctValues.get(0).length());
-		int aCount = 0;
-
+		LabelRankings aRankings = getLabelRankings();
 		BitSet aMembers = (theSubgroup == null) ? null : theSubgroup.getMembers();
-		//summation of rankings
-		for (int i=0; i<itsSize; ++i)
-		{
-			if (aMembers == null || aMembers.get(i)) //part of the subgroup?
-			{
-				String aValue = itsDistinctValues.get(itsNominalz[i]);
-				LabelRanking aRanking = new LabelRanking(aValue);
-				LabelRankingMatrix aRankingMatrix = new LabelRankingMatrix(aRanking); //translate to LRM
-				aResult.add(aRankingMatrix);
-				aCount++;
-			}
-		}
-		//divide by zero is not possible, subgroups always have members
-		aResult.divide(aCount);
-
-		return aResult;
+		return aRankings.getAverageRankingMatrix(aRankings.getCounts(aMembers));
 	}
 
 	public LabelRankingMatrix getAverageRankingMatrix0(Subgroup theSubgroup)
@@ -2354,66 +2789,9 @@ public class Column implements XMLNodeInterface
 			return null;
 		}
 
-		//take the size of the first example as the total number of labels
-//		LabelRankingMatrix aResult = new LabelRankingMatrix(itsNominals.get(0).length());
-//		LabelRankingMatrix aResult = new LabelRankingMatrix(itsDistinctValues.get(itsNominalz[0]).replace(">","").length());
-//		LabelRankingMatrix minusOnesMat = onesMat;
-//		LabelRankingMatrix zerosMat = onesMat;
-		// equivalent to below, as itsNominalz[0] should always be 0
-		//LabelRankingMatrix aResult = new LabelRankingMatrix(itsDistinctValues.get(0).length());
-		//int aCount = 0;
-
+		LabelRankings aRankings = getLabelRankings();
 		BitSet aMembers = (theSubgroup == null) ? null : theSubgroup.getMembers();
-		//summation of rankings
-
-		int rankSize = itsDistinctValues.get(itsNominalz[0]).replace(">","").length();
-		LabelRankingMatrix LRmode = new LabelRankingMatrix(rankSize);
-
-		int[][][] theModeMatrix = new int[3][rankSize][rankSize];
-		for (int s=0; s<3; s++)
-			for (int i=0; i<rankSize; i++)
-				for (int j=0; j<rankSize; j++)
-					theModeMatrix[s][i][j] = 0;
-
-		for (int k=0; k<itsSize; ++k)
-		{
-			if (aMembers == null || aMembers.get(k)) //part of the subgroup?
-			{
-				String aValue = itsDistinctValues.get(itsNominalz[k]);
-				LabelRanking aRanking = new LabelRanking(aValue);
-				LabelRankingMatrix aRankingMatrix = new LabelRankingMatrix(aRanking); //translate to LRM
-
-				int[][][] aModeMatrix = aRankingMatrix.getModeMatrix();
-
-				for (int s=0; s<3; s++)
-					for (int i=0; i<rankSize; i++)
-						for (int j=0; j<rankSize; j++)
-							theModeMatrix[s][i][j] += aModeMatrix[s][i][j];
-			}
-		}
-
-		for (int i=0; i<rankSize; i++)
-		{
-			for (int j=0; j<rankSize; j++)
-			{
-				if (theModeMatrix[0][i][j] > theModeMatrix[1][i][j])
-				{
-					if (theModeMatrix[0][i][j] >  theModeMatrix[2][i][j])
-						LRmode.itsMatrix[i][j] = -1;
-					else
-						LRmode.itsMatrix[i][j] = 1;
-				}
-				else
-				{
-					if (theModeMatrix[1][i][j] >  theModeMatrix[2][i][j])
-						LRmode.itsMatrix[i][j] = 0;
-					else
-						LRmode.itsMatrix[i][j] = 1;
-				}
-			}
-		}
-
-		return LRmode;
+		return aRankings.getModeMatrix(aRankings.getCounts(aMembers));
 	}
 
 	/**
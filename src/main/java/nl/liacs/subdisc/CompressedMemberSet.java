@@ -0,0 +1,420 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+
+/*
+ * Roaring-style compressed MemberSet.
+ *
+ * Rows are split in chunks of 2^16, the high 16 bits of a row index select the
+ * chunk, the low 16 bits are stored in the Container for that chunk.
+ * Empty chunks are not stored at all.
+ * For every chunk the smallest of the following Containers is used:
+ * ArrayContainer   sorted char[] of members, 2 bytes per member
+ * BitmapContainer  long[1024], 8 KB regardless of the number of members
+ * RunContainer     sorted runs of consecutive members, 4 bytes per run
+ *
+ * An ArrayContainer never holds more than 4096 members, at that point the
+ * BitmapContainer is as small.
+ * Low-coverage Subgroups mostly use ArrayContainers, Subgroups on sorted data
+ * (numeric half-intervals on a sorted Column for example) use RunContainers.
+ */
+final class CompressedMemberSet implements MemberSet
+{
+	private static final int CHUNK_BITS            = 16;
+	private static final int CHUNK_SIZE            = (1 << CHUNK_BITS);
+	private static final int LOW_MASK              = (CHUNK_SIZE - 1);
+	private static final int WORDS_PER_CHUNK       = (CHUNK_SIZE >>> 6);
+	private static final int MAX_ARRAY_CARDINALITY = 4096;
+
+	private final int[] itsKeys;             // chunk indices, ascending
+	private final Container[] itsContainers; // same order as itsKeys
+	private final int itsCardinality;
+
+	private CompressedMemberSet(int[] theKeys, Container[] theContainers, int theCardinality)
+	{
+		itsKeys        = theKeys;
+		itsContainers  = theContainers;
+		itsCardinality = theCardinality;
+	}
+
+	static CompressedMemberSet valueOf(BitSet theBitSet)
+	{
+		// single temporary copy, avoids bit-by-bit access to the BitSet
+		long[] aWords = theBitSet.toLongArray();
+		int aNrChunks = (aWords.length + WORDS_PER_CHUNK - 1) / WORDS_PER_CHUNK;
+
+		int[] aKeys = new int[aNrChunks];
+		Container[] aContainers = new Container[aNrChunks];
+		int aSize = 0;
+		int aCardinality = 0;
+
+		for (int k = 0; k < aNrChunks; ++k)
+		{
+			int aFrom = k * WORDS_PER_CHUNK;
+			int aTo   = Math.min(aFrom + WORDS_PER_CHUNK, aWords.length);
+
+			// a run starts at every set bit of which the predecessor is not set
+			int aCount = 0;
+			int aNrRuns = 0;
+			long aPrevious = 0L;
+			for (int i = aFrom; i < aTo; ++i)
+			{
+				long w = aWords[i];
+				aCount  += Long.bitCount(w);
+				aNrRuns += Long.bitCount(w & ~((w << 1) | (aPrevious >>> 63)));
+				aPrevious = w;
+			}
+
+			if (aCount == 0)
+				continue;
+
+			Container c;
+			if ((4 * aNrRuns) < Math.min(2 * aCount, 8 * WORDS_PER_CHUNK))
+				c = RunContainer.valueOf(aWords, aFrom, aTo, aNrRuns);
+			else if (aCount <= MAX_ARRAY_CARDINALITY)
+				c = ArrayContainer.valueOf(aWords, aFrom, aTo, aCount);
+			else
+				c = new BitmapContainer(Arrays.copyOfRange(aWords, aFrom, aFrom + WORDS_PER_CHUNK));
+
+			aKeys[aSize]       = k;
+			aContainers[aSize] = c;
+			++aSize;
+			aCardinality += aCount;
+		}
+
+		return new CompressedMemberSet(Arrays.copyOf(aKeys, aSize), Arrays.copyOf(aContainers, aSize), aCardinality);
+	}
+
+	@Override
+	public int cardinality()
+	{
+		return itsCardinality;
+	}
+
+	@Override
+	public boolean get(int theRow)
+	{
+		if (theRow < 0)
+			throw new IndexOutOfBoundsException("theRow < 0: " + theRow);
+
+		int i = Arrays.binarySearch(itsKeys, theRow >>> CHUNK_BITS);
+		return (i >= 0) && itsContainers[i].contains(theRow & LOW_MASK);
+	}
+
+	@Override
+	public int nextSetBit(int theFromRow)
+	{
+		if (theFromRow < 0)
+			throw new IndexOutOfBoundsException("theFromRow < 0: " + theFromRow);
+
+		int aKey = (theFromRow >>> CHUNK_BITS);
+		int i = Arrays.binarySearch(itsKeys, aKey);
+		if (i >= 0)
+		{
+			int n = itsContainers[i].next(theFromRow & LOW_MASK);
+			if (n >= 0)
+				return ((aKey << CHUNK_BITS) | n);
+			++i;
+		}
+		else
+			i = -(i + 1);
+
+		// Containers are never empty
+		return (i < itsKeys.length) ? ((itsKeys[i] << CHUNK_BITS) | itsContainers[i].next(0)) : -1;
+	}
+
+	@Override
+	public int countCommon(BitSet theBitSet)
+	{
+		int aCount = 0;
+		for (int i = 0; i < itsKeys.length; ++i)
+			aCount += itsContainers[i].countCommon(theBitSet, (itsKeys[i] << CHUNK_BITS));
+		return aCount;
+	}
+
+	@Override
+	public BitSet toBitSet()
+	{
+		if (itsKeys.length == 0)
+			return new BitSet();
+
+		long[] aWords = new long[(itsKeys[itsKeys.length-1] + 1) * WORDS_PER_CHUNK];
+		for (int i = 0; i < itsKeys.length; ++i)
+			itsContainers[i].addTo(aWords, itsKeys[i] * WORDS_PER_CHUNK);
+
+		return BitSet.valueOf(aWords);
+	}
+
+	@Override
+	public long getSizeInBytes()
+	{
+		// object and array headers are estimates
+		long aSize = 16L + (16L + 4L * itsKeys.length) + (16L + 4L * itsContainers.length);
+		for (Container c : itsContainers)
+			aSize += c.getSizeInBytes();
+		return aSize;
+	}
+
+	/*
+	 * relative to the words in [theFrom, theTo) of theWords, returns the first
+	 * set bit >= theLow, or -1 if there is none
+	 */
+	private static final int nextSet(long[] theWords, int theFrom, int theTo, int theLow)
+	{
+		int i = theFrom + (theLow >>> 6);
+		if (i >= theTo)
+			return -1;
+
+		for (long w = theWords[i] & (-1L << theLow); ; w = theWords[i])
+		{
+			if (w != 0L)
+				return ((i - theFrom) << 6) + Long.numberOfTrailingZeros(w);
+			if (++i == theTo)
+				return -1;
+		}
+	}
+
+	// as nextSet(), but returns the end of the range if there is no clear bit
+	private static final int nextClear(long[] theWords, int theFrom, int theTo, int theLow)
+	{
+		int i = theFrom + (theLow >>> 6);
+		if (i >= theTo)
+			return ((theTo - theFrom) << 6);
+
+		for (long w = ~theWords[i] & (-1L << theLow); ; w = ~theWords[i])
+		{
+			if (w != 0L)
+				return ((i - theFrom) << 6) + Long.numberOfTrailingZeros(w);
+			if (++i == theTo)
+				return ((theTo - theFrom) << 6);
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	///// Containers, all values are the low 16 bits of a row index        /////
+	////////////////////////////////////////////////////////////////////////////
+
+	private static abstract class Container
+	{
+		abstract boolean contains(int theLow);
+		// returns the first member >= theLow, or -1 if there is none
+		abstract int next(int theLow);
+		// theBase is the row index of the first row of this chunk
+		abstract int countCommon(BitSet theBitSet, int theBase);
+		// theOffset is the index of the first word of this chunk
+		abstract void addTo(long[] theWords, int theOffset);
+		abstract long getSizeInBytes();
+	}
+
+	private static final class ArrayContainer extends Container
+	{
+		private final char[] itsValues;
+
+		private ArrayContainer(char[] theValues)
+		{
+			itsValues = theValues;
+		}
+
+		static ArrayContainer valueOf(long[] theWords, int theFrom, int theTo, int theCardinality)
+		{
+			char[] aValues = new char[theCardinality];
+			int n = 0;
+			for (int i = theFrom; i < theTo; ++i)
+				for (long w = theWords[i]; w != 0L; w &= (w - 1L))
+					aValues[n++] = (char) (((i - theFrom) << 6) + Long.numberOfTrailingZeros(w));
+
+			assert (n == theCardinality);
+			return new ArrayContainer(aValues);
+		}
+
+		@Override
+		boolean contains(int theLow)
+		{
+			return (Arrays.binarySearch(itsValues, (char) theLow) >= 0);
+		}
+
+		@Override
+		int next(int theLow)
+		{
+			int i = Arrays.binarySearch(itsValues, (char) theLow);
+			if (i < 0)
+				i = -(i + 1);
+			return (i < itsValues.length) ? itsValues[i] : -1;
+		}
+
+		@Override
+		int countCommon(BitSet theBitSet, int theBase)
+		{
+			int aCount = 0;
+			for (char c : itsValues)
+				if (theBitSet.get(theBase + c))
+					++aCount;
+			return aCount;
+		}
+
+		@Override
+		void addTo(long[] theWords, int theOffset)
+		{
+			for (char c : itsValues)
+				theWords[theOffset + (c >>> 6)] |= (1L << c);
+		}
+
+		@Override
+		long getSizeInBytes()
+		{
+			return 16L + 16L + 2L * itsValues.length;
+		}
+	}
+
+	private static final class BitmapContainer extends Container
+	{
+		private final long[] itsWords;
+
+		BitmapContainer(long[] theWords)
+		{
+			assert (theWords.length == WORDS_PER_CHUNK);
+			itsWords = theWords;
+		}
+
+		@Override
+		boolean contains(int theLow)
+		{
+			return ((itsWords[theLow >>> 6] & (1L << theLow)) != 0L);
+		}
+
+		@Override
+		int next(int theLow)
+		{
+			return nextSet(itsWords, 0, WORDS_PER_CHUNK, theLow);
+		}
+
+		// BitSet offers no access to its words, get() creates an 8 KB copy
+		@Override
+		int countCommon(BitSet theBitSet, int theBase)
+		{
+			long[] aWords = theBitSet.get(theBase, theBase + CHUNK_SIZE).toLongArray();
+			int aCount = 0;
+			for (int i = 0; i < aWords.length; ++i)
+				aCount += Long.bitCount(itsWords[i] & aWords[i]);
+			return aCount;
+		}
+
+		@Override
+		void addTo(long[] theWords, int theOffset)
+		{
+			for (int i = 0; i < WORDS_PER_CHUNK; ++i)
+				theWords[theOffset + i] |= itsWords[i];
+		}
+
+		@Override
+		long getSizeInBytes()
+		{
+			return 16L + 16L + 8L * WORDS_PER_CHUNK;
+		}
+	}
+
+	private static final class RunContainer extends Container
+	{
+		// run i covers [itsStarts[i], itsStarts[i] + itsLengths[i]]
+		private final char[] itsStarts;
+		private final char[] itsLengths;
+
+		private RunContainer(char[] theStarts, char[] theLengths)
+		{
+			itsStarts  = theStarts;
+			itsLengths = theLengths;
+		}
+
+		static RunContainer valueOf(long[] theWords, int theFrom, int theTo, int theNrRuns)
+		{
+			char[] aStarts  = new char[theNrRuns];
+			char[] aLengths = new char[theNrRuns];
+			int aLimit = ((theTo - theFrom) << 6);
+
+			int n = 0;
+			for (int s = nextSet(theWords, theFrom, theTo, 0); s >= 0; )
+			{
+				int e = nextClear(theWords, theFrom, theTo, s);
+				aStarts[n]  = (char) s;
+				aLengths[n] = (char) (e - 1 - s);
+				++n;
+				s = (e >= aLimit) ? -1 : nextSet(theWords, theFrom, theTo, e);
+			}
+
+			assert (n == theNrRuns);
+			return new RunContainer(aStarts, aLengths);
+		}
+
+		// index of the run that starts at or before theLow, or -1
+		private int floor(int theLow)
+		{
+			int i = Arrays.binarySearch(itsStarts, (char) theLow);
+			return (i >= 0) ? i : -(i + 1) - 1;
+		}
+
+		@Override
+		boolean contains(int theLow)
+		{
+			int i = floor(theLow);
+			return (i >= 0) && (theLow <= (itsStarts[i] + itsLengths[i]));
+		}
+
+		@Override
+		int next(int theLow)
+		{
+			int i = floor(theLow);
+			if ((i >= 0) && (theLow <= (itsStarts[i] + itsLengths[i])))
+				return theLow;
+			return (++i < itsStarts.length) ? itsStarts[i] : -1;
+		}
+
+		// per run, skip over runs of set and clear bits in theBitSet
+		@Override
+		int countCommon(BitSet theBitSet, int theBase)
+		{
+			int aCount = 0;
+			for (int i = 0; i < itsStarts.length; ++i)
+			{
+				int aFirst = theBase + itsStarts[i];
+				int anEnd  = aFirst + itsLengths[i] + 1;
+				for (int r = theBitSet.nextSetBit(aFirst); (r >= 0) && (r < anEnd); r = theBitSet.nextSetBit(r))
+				{
+					int c = theBitSet.nextClearBit(r);
+					aCount += (Math.min(c, anEnd) - r);
+					r = c;
+				}
+			}
+			return aCount;
+		}
+
+		@Override
+		void addTo(long[] theWords, int theOffset)
+		{
+			for (int i = 0; i < itsStarts.length; ++i)
+			{
+				int aFirst = (theOffset << 6) + itsStarts[i];
+				int aLast  = aFirst + itsLengths[i];
+				int wf     = (aFirst >>> 6);
+				int wl     = (aLast >>> 6);
+				long mf    = (-1L << aFirst);
+				long ml    = (-1L >>> (63 - (aLast & 63)));
+
+				if (wf == wl)
+					theWords[wf] |= (mf & ml);
+				else
+				{
+					theWords[wf] |= mf;
+					for (int w = wf + 1; w < wl; ++w)
+						theWords[w] = -1L;
+					theWords[wl] |= ml;
+				}
+			}
+		}
+
+		@Override
+		long getSizeInBytes()
+		{
+			return 16L + 2L * (16L + 2L * itsStarts.length);
+		}
+	}
+}
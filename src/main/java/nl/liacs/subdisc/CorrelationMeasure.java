@@ -39,6 +39,23 @@ public class CorrelationMeasure
 		itsType = theBase.itsType;
 	}
 
+	/*
+	 * for the sums of a subset of the observations of theBase, obtained
+	 * without adding them one by one, see Column.ValueCountXY
+	 * NOTE as addObservation(), x is the second and y the first value
+	 */
+	CorrelationMeasure(CorrelationMeasure theBase, int theSampleSize, double theXSum, double theYSum, double theXYSum, double theXSquaredSum, double theYSquaredSum)
+	{
+		this(theBase);
+
+		itsSampleSize = theSampleSize;
+		itsXSum = theXSum;
+		itsYSum = theYSum;
+		itsXYSum = theXYSum;
+		itsXSquaredSum = theXSquaredSum;
+		itsYSquaredSum = theYSquaredSum;
+	}
+
 	private static boolean isValidCorrelationMeasureType(QM theType)
 	{
 		return QM.getQualityMeasures(TargetType.DOUBLE_CORRELATION).contains(theType);
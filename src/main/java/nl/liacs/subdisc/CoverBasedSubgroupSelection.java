@@ -2,12 +2,14 @@ package nl.liacs.subdisc;
 
 import java.text.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class CoverBasedSubgroupSelection
 {
 	private static final boolean USE_CORRECTED_MEASURE = true;  // true in git
 	private static final boolean DEBUG_PRINTS          = false; // false in git
 	private static final double  ALPHA                 = 0.9;   // as in papers
+	private static final int     PARALLEL_GRAIN        = 16;    // min. nr. Candidates per task, see Weights
 
 	static final SortedSet<Candidate> postProcessCandidateSet(SortedSet<Candidate> theCandidates, int theTopK)
 	{
@@ -50,30 +52,23 @@ public class CoverBasedSubgroupSelection
 		// upper bounded by the score attained in a previous iteration
 		// this allows for a useful optimisation, see main loop below
 		double[] aLastScores = new double[aSize];
-		// cache BitSets, as each call to Subgroup.getMembers() creates a clone
-		// TODO
-		// when aSize or aNrRows is very high, this uses a lot of memory
-		// Runtime.maxMemory/totalMemory/freeMemory can be used to estimate
-		// how many of the BitSets can be cached without OutOfMemory errors
-		BitSet[] aMembers = new BitSet[aSize];
-		int idx = -1;
-		for (Candidate c : theCandidates)
-		{
-			++idx;
-			aCandidates[idx] = c;
-			aLastScores[idx] = c.getPriority();
-			Subgroup s       = c.getSubgroup();
-			aMembers[idx]    = s.getMembers();
-			// NOTE when called from ResultWindow, members are set because a
-			// Table modification would make it impossible to evaluate the
-			// Subgroups (due to changed missing value, AttributeType, ...)
-			// currently there is no way to find out if this is a GUI-based call
-			if (isForCandidateSet)
-				s.killMembers();
-		}
+		for (int i = 0; i < aSize; ++i)
+			aLastScores[i] = aCandidates[i].getPriority();
+		// cache members, as each call to Subgroup.getMembers() creates a clone
+		// or even re-evaluates the ConditionList, as the CandidateQueue killed
+		// the members, this is done in parallel, and only the words from the
+		// first to the last set bit are kept, see Members
+		Members[] aMembers = new Members[aSize];
+		ForkJoinPool.commonPool().invoke(new Materialise(aCandidates, aMembers, isForCandidateSet, 0, aSize));
 
 		int aNrRows = theCandidates.first().getSubgroup().getParentSet().getTotalCoverage();
 		int[] aCoverCounts = new int[aNrRows];
+		int aLoopSize = Math.min(aSize, theTopK);
+		// a cover count is at most the number of Candidates in aResult
+		// POW[k] == Math.pow(ALPHA, k), so weights are the same as before
+		double[] POW = new double[aLoopSize + 1];
+		for (int k = 0; k < POW.length; ++k)
+			POW[k] = Math.pow(ALPHA, k);
 
 		// Subgroups are added based on highest score, so an array would do, but
 		// CandidateQueue/ResultSet would then take the Subgroups from the array
@@ -91,8 +86,14 @@ public class CoverBasedSubgroupSelection
 		print("loop 0");
 		update(isForCandidateSet, aUsed, aCandidates, aMembers, aCoverCounts, aResult, 0, 1.0, aLastScores[0]);
 
+		// weights are computed in parallel for a chunk of Candidates, but the
+		// chunk is processed in order, as in the serial version
+		int aChunkSize = PARALLEL_GRAIN * Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+		int[] aChunk = new int[aChunkSize];
+		double[] aWeights = new double[aChunkSize];
+
 		// keep unset outside of the valid range of indexes (so not 0)
-		for (int i = 1, min = Math.min(aSize, theTopK), unset = -1; i < min; ++i)
+		for (int i = 1, unset = -1; i < aLoopSize; ++i)
 		{
 			print("loop " + i);
 
@@ -112,7 +113,7 @@ public class CoverBasedSubgroupSelection
 
 			// a minor optimisation would keep track of the smallest clear index
 			// and start at that index, instead of 1 (index 0 is always set)
-			for (int j = aUsed.nextClearBit(1); j < aSize; j = aUsed.nextClearBit(j+1))
+			for (int j = aUsed.nextClearBit(1); j < aSize; )
 			{
 				// score can not get better than last time, so if that would not
 				// have been good enough there is no use in checking Candidate
@@ -122,29 +123,47 @@ public class CoverBasedSubgroupSelection
 				// loop-iterations, by the time it is used, multiple (remaining)
 				// values in aLastQualities might be equal, but not all based on
 				// the last state of the cover counts, and need to be updated
-				if ((aBestIndex != unset) && (aLastScores[j] < aMaxScore))
-					continue;
-
-				Candidate aCandidate = aCandidates[j];
-				double aPriority     = aCandidate.getPriority();
-				double aWeight       = computeMultiplicativeWeight(aMembers[j], aCandidate.getSubgroup().getCoverage(), aCoverCounts);
-				double aScore        = (USE_CORRECTED_MEASURE ? (aPriority - ((1.0 - aWeight) * aPriority)) : (aWeight * aPriority));
-				aLastScores[j]       = aScore;
-
-				// the use of > causes the first (encountered) of multiple
-				// equal-scoring (remaining) Candidates to be selected
-				// single-thread experiment results are invocation-invariant
-				// for multi-threaded experiments this was not true for the old
-				// implementation, as either [x AND y] or [y AND x] might arrive
-				// first, based on Operating System-controlled scheduling of
-				// Thread execution and time-slicing
-				// these are out of the control of the algorithm/SubDisc/JVM
-				// TODO check: the new algorithm should be invocation-invariant
-				if ((aBestIndex == unset) || (aScore > aMaxScore))
+				//
+				// NOTE aMaxScore only rises while the chunk is processed, so a
+				// Candidate that is skipped here would be skipped below also
+				int n = 0;
+				for ( ; (j < aSize) && (n < aChunkSize); j = aUsed.nextClearBit(j+1))
+					if ((aBestIndex == unset) || !(aLastScores[j] < aMaxScore))
+						aChunk[n++] = j;
+
+				// the cover counts do not change during this iteration
+				if (n > PARALLEL_GRAIN)
+					ForkJoinPool.commonPool().invoke(new Weights(aChunk, aWeights, aMembers, aCoverCounts, POW, 0, n));
+				else
+					for (int k = 0; k < n; ++k)
+						aWeights[k] = aMembers[aChunk[k]].computeMultiplicativeWeight(aCoverCounts, POW);
+
+				for (int k = 0; k < n; ++k)
 				{
-					aBestIndex           = j;
-					aMaxScore            = aScore;
-					aBestCandidateWeight = aWeight;
+					int c = aChunk[k];
+					if ((aBestIndex != unset) && (aLastScores[c] < aMaxScore))
+						continue;
+
+					double aPriority     = aCandidates[c].getPriority();
+					double aWeight       = aWeights[k];
+					double aScore        = (USE_CORRECTED_MEASURE ? (aPriority - ((1.0 - aWeight) * aPriority)) : (aWeight * aPriority));
+					aLastScores[c]       = aScore;
+
+					// the use of > causes the first (encountered) of multiple
+					// equal-scoring (remaining) Candidates to be selected
+					// single-thread experiment results are invocation-invariant
+					// for multi-threaded experiments this was not true for the old
+					// implementation, as either [x AND y] or [y AND x] might arrive
+					// first, based on Operating System-controlled scheduling of
+					// Thread execution and time-slicing
+					// these are out of the control of the algorithm/SubDisc/JVM
+					// TODO check: the new algorithm should be invocation-invariant
+					if ((aBestIndex == unset) || (aScore > aMaxScore))
+					{
+						aBestIndex           = c;
+						aMaxScore            = aScore;
+						aBestCandidateWeight = aWeight;
+					}
 				}
 			}
 
@@ -163,35 +182,145 @@ public class CoverBasedSubgroupSelection
 	}
 
 	// hope JVM inlines this
-	private static final void update(boolean isForCandidateSet, BitSet theUsed, Candidate[] theCandidates, BitSet[] theMembers, int[] theCoverCounts, SortedSet<Candidate> theResult, int theBestIndex, double theBestCandidateWeight, double theMaxScore)
+	private static final void update(boolean isForCandidateSet, BitSet theUsed, Candidate[] theCandidates, Members[] theMembers, int[] theCoverCounts, SortedSet<Candidate> theResult, int theBestIndex, double theBestCandidateWeight, double theMaxScore)
 	{
-		DecimalFormat df = new DecimalFormat("0", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
-		df.setMaximumFractionDigits(340); // 340 = DecimalFormat.DOUBLE_FRACTION_DIGITS
-
 		theUsed.set(theBestIndex);
 		Candidate c = theCandidates[theBestIndex];
-		print(c.getSubgroup().toString());
-		print(String.format("best (%d): %s, %s, %s%n", theBestIndex, df.format(c.getPriority()), df.format(theBestCandidateWeight), df.format(theMaxScore)));
+		if (DEBUG_PRINTS)
+		{
+			DecimalFormat df = new DecimalFormat("0", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+			df.setMaximumFractionDigits(340); // 340 = DecimalFormat.DOUBLE_FRACTION_DIGITS
+
+			print(c.getSubgroup().toString());
+			print(String.format("best (%d): %s, %s, %s%n", theBestIndex, df.format(c.getPriority()), df.format(theBestCandidateWeight), df.format(theMaxScore)));
+		}
 		if (isForCandidateSet) // could be unconditional, ResultSet ignores it
 			c.setPriority(theMaxScore);
 		theResult.add(c);
-		updateCoverCounts(theMembers[theBestIndex], theCoverCounts);
+		theMembers[theBestIndex].updateCoverCounts(theCoverCounts);
 	}
 
-	private static final void updateCoverCounts(BitSet theMembers, int[] theCoverCounts)
+	/*
+	 * The members of a Candidate, as the words of a BitSet, from the first to
+	 * the last non-zero word, for low coverage Subgroups this is only a small
+	 * part of the BitSet of all rows, the Subgroup's members can be killed.
+	 * Members are visited in ascending order, so the summation order of the
+	 * weights is the same as that of a nextSetBit() loop.
+	 */
+	private static final class Members
 	{
-		for (int i = theMembers.nextSetBit(0); i >= 0; i = theMembers.nextSetBit(i+1))
-			++theCoverCounts[i];
+		private final long[] itsWords;
+		private final int itsFirstRow; // row of bit 0 of itsWords[0]
+		private final int itsCoverage;
+
+		Members(BitSet theMembers, int theCoverage)
+		{
+			int aFirstWord = (theMembers.isEmpty() ? 0 : (theMembers.nextSetBit(0) >>> 6));
+			long[] aWords  = theMembers.toLongArray();
+			itsWords       = Arrays.copyOfRange(aWords, aFirstWord, aWords.length);
+			itsFirstRow    = (aFirstWord << 6);
+			itsCoverage    = theCoverage;
+		}
+
+		void updateCoverCounts(int[] theCoverCounts)
+		{
+			for (int w = 0, r = itsFirstRow; w < itsWords.length; ++w, r += 64)
+				for (long aWord = itsWords[w]; aWord != 0L; aWord &= (aWord - 1L))
+					++theCoverCounts[r + Long.numberOfTrailingZeros(aWord)];
+		}
+
+		double computeMultiplicativeWeight(int[] theCoverCounts, double[] thePow)
+		{
+			double aResult = 0.0;
+
+			for (int w = 0, r = itsFirstRow; w < itsWords.length; ++w, r += 64)
+				for (long aWord = itsWords[w]; aWord != 0L; aWord &= (aWord - 1L))
+					aResult += thePow[theCoverCounts[r + Long.numberOfTrailingZeros(aWord)]];
+
+			return aResult / itsCoverage;
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static final class Materialise extends RecursiveAction
+	{
+		private final Candidate[] itsCandidates;
+		private final Members[] itsMembers;
+		private final boolean isForCandidateSet;
+		private final int itsFrom;
+		private final int itsTo;
+
+		Materialise(Candidate[] theCandidates, Members[] theMembers, boolean isForCandidateSet, int theFrom, int theTo)
+		{
+			itsCandidates          = theCandidates;
+			itsMembers             = theMembers;
+			this.isForCandidateSet = isForCandidateSet;
+			itsFrom                = theFrom;
+			itsTo                  = theTo;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ((itsTo - itsFrom) > PARALLEL_GRAIN)
+			{
+				int aMiddle = (itsFrom + itsTo) >>> 1;
+				invokeAll(new Materialise(itsCandidates, itsMembers, isForCandidateSet, itsFrom, aMiddle),
+						new Materialise(itsCandidates, itsMembers, isForCandidateSet, aMiddle, itsTo));
+				return;
+			}
+
+			for (int i = itsFrom; i < itsTo; ++i)
+			{
+				Subgroup s    = itsCandidates[i].getSubgroup();
+				itsMembers[i] = new Members(s.getMembers(), s.getCoverage());
+				// NOTE when called from ResultWindow, members are set because a
+				// Table modification would make it impossible to evaluate the
+				// Subgroups (due to changed missing value, AttributeType, ...)
+				// currently there is no way to find out if this is a GUI-based call
+				if (isForCandidateSet)
+					s.killMembers();
+			}
+		}
 	}
 
-	private static final double computeMultiplicativeWeight(BitSet theMembers, int theCoverage, int[] theCoverCounts)
+	// computes theWeights[i] for Candidate theChunk[i], for i in [from, to)
+	@SuppressWarnings("serial")
+	private static final class Weights extends RecursiveAction
 	{
-		double aResult = 0.0;
+		private final int[] itsChunk;
+		private final double[] itsWeights;
+		private final Members[] itsMembers;
+		private final int[] itsCoverCounts;
+		private final double[] itsPow;
+		private final int itsFrom;
+		private final int itsTo;
 
-		for (int i = theMembers.nextSetBit(0); i >= 0; i = theMembers.nextSetBit(i+1))
-			aResult += Math.pow(ALPHA, theCoverCounts[i]);
+		Weights(int[] theChunk, double[] theWeights, Members[] theMembers, int[] theCoverCounts, double[] thePow, int theFrom, int theTo)
+		{
+			itsChunk       = theChunk;
+			itsWeights     = theWeights;
+			itsMembers     = theMembers;
+			itsCoverCounts = theCoverCounts;
+			itsPow         = thePow;
+			itsFrom        = theFrom;
+			itsTo          = theTo;
+		}
 
-		return aResult / theCoverage;
+		@Override
+		protected void compute()
+		{
+			if ((itsTo - itsFrom) > PARALLEL_GRAIN)
+			{
+				int aMiddle = (itsFrom + itsTo) >>> 1;
+				invokeAll(new Weights(itsChunk, itsWeights, itsMembers, itsCoverCounts, itsPow, itsFrom, aMiddle),
+						new Weights(itsChunk, itsWeights, itsMembers, itsCoverCounts, itsPow, aMiddle, itsTo));
+				return;
+			}
+
+			for (int i = itsFrom; i < itsTo; ++i)
+				itsWeights[i] = itsMembers[itsChunk[i]].computeMultiplicativeWeight(itsCoverCounts, itsPow);
+		}
 	}
 
 	private static final void print(String theMessage)
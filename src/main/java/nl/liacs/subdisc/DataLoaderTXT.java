@@ -1,11 +1,19 @@
 package nl.liacs.subdisc;
 
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class DataLoaderTXT implements FileLoaderInterface
 {
 	private static final char[] DELIMITERS = { '\t', ',', ';' };
+	// regular loading of files of at least this size uses loadFileParallel()
+	static long PARALLEL_MIN_BYTES = (1L << 23);
+	static int NR_THREADS = Runtime.getRuntime().availableProcessors();
+	static int MIN_CHUNK_BYTES = (1 << 20);
 
 	private Table itsTable = null;
 	private int itsDelimiter = 0;
@@ -30,6 +38,8 @@ public class DataLoaderTXT implements FileLoaderInterface
 			return;
 		}
 
+		if (isParallel(theFile) && loadFileParallel(theFile))
+			return;
 		loadFile(theFile);
 	}
 
@@ -125,28 +135,10 @@ public class DataLoaderTXT implements FileLoaderInterface
 			BitSet aFloats = new BitSet(aNrColumns);
 			String[] aTrueBinaryValues = new String[aNrColumns];
 			String[] aFalseBinaryValues = new String[aNrColumns];
+			initialiseBinaryValues(aLine, aColumns, aTrueBinaryValues, aFalseBinaryValues);
 			// Scanner is faster for long lines, but it is harder to identify faulty lines. Using .split() this would be trivial.
-			Scanner aScanner = new Scanner(aLine).useDelimiter(getDelimiterString());
-			//initialise the true and false binary values for the columns that appear to be binary
-			int aColumn = 0;
-			while (aScanner.hasNext() && aColumn < aNrColumns)
-			{
-
-				if (aColumns.get(aColumn).getType() == AttributeType.BINARY)
-				{
-					String s = aScanner.next();
-					s = removeQuotes(s);
-					if (AttributeType.isValidBinaryValue(s))
-					{
-						boolean aValue = AttributeType.isValidBinaryTrueValue(s);
-						if (aValue) //this was true
-							aTrueBinaryValues[aColumn] = s;
-						else
-							aFalseBinaryValues[aColumn] = s;
-					}
-				}
-				aColumn++;
-			}
+			Scanner aScanner;
+			int aColumn;
 
 			for (int i=0; i<aNrColumns; i++)
 				if (AttributeType.BINARY == aColumns.get(i).getType())
@@ -293,6 +285,1081 @@ public class DataLoaderTXT implements FileLoaderInterface
 		}
 	}
 
+	//initialise the true and false binary values for the columns that appear to be binary
+	private void initialiseBinaryValues(String theLine, List<Column> theColumns, String[] theTrueBinaryValues, String[] theFalseBinaryValues)
+	{
+		final int aNrColumns = theColumns.size();
+		Scanner aScanner = new Scanner(theLine).useDelimiter(getDelimiterString());
+		int aColumn = 0;
+		while (aScanner.hasNext() && aColumn < aNrColumns)
+		{
+
+			if (theColumns.get(aColumn).getType() == AttributeType.BINARY)
+			{
+				String s = aScanner.next();
+				s = removeQuotes(s);
+				if (AttributeType.isValidBinaryValue(s))
+				{
+					boolean aValue = AttributeType.isValidBinaryTrueValue(s);
+					if (aValue) //this was true
+						theTrueBinaryValues[aColumn] = s;
+					else
+						theFalseBinaryValues[aColumn] = s;
+				}
+			}
+			aColumn++;
+		}
+	}
+
+	/*
+	 * Parallel alternative to loadFile(), used for regular loading of files
+	 * of at least PARALLEL_MIN_BYTES, see isParallel().
+	 *
+	 * The header and first data line are handled as in loadFile(). The rest
+	 * of the file is split into Chunks that end directly after a '\n', and
+	 * each Chunk is read and tokenised by its own task, without Scanner or
+	 * regular expressions.
+	 * A Column can only change type from BINARY to NUMERIC to NOMINAL, and
+	 * its type at the start of a Chunk depends on all Chunks before it. So a
+	 * Chunk starts with the types of the first data line, and also records
+	 * what the type at its end would be for a later type at its start. The
+	 * actual start types then follow from a single pass over the Chunks, and
+	 * only Chunks that started with a wrong type are parsed again.
+	 * Finally, each Column is assembled from the Chunks, applying the
+	 * conversions of Column.setType() and Column.toNominalType(String,
+	 * String) to the values before a type change. The values of a NOMINAL
+	 * Column are merged in Chunk order, so the result equals that of
+	 * loadFile(), including the order of the distinct values.
+	 *
+	 * NOTE lines with too many fields make loadFile() fail, here the extra
+	 * fields are ignored, and reported like lines with too few fields
+	 *
+	 * returns false if the file was not loaded, loadFile() should be used
+	 */
+	private boolean loadFileParallel(File theFile)
+	{
+		message("loadFileParallel", "analysing " + theFile.getAbsolutePath());
+		long aBegin = System.currentTimeMillis();
+
+		RandomAccessFile aFile = null;
+		ForkJoinPool aPool = null;
+		try
+		{
+			aFile = new RandomAccessFile(theFile, "r");
+			FileChannel aChannel = aFile.getChannel();
+			Charset aCharset = Charset.defaultCharset();
+
+			Head aHead = readHead(aChannel, aCharset);
+			if (aHead == null)
+				return false;
+
+			establishDelimiter(aHead.itsHeaderLine, aHead.itsDataLine);
+			// temporary Table holding the first data line
+			itsNrLines = 1;
+			createTable(theFile, aHead.itsHeaderLine, aHead.itsDataLine);
+			List<Column> aColumns = itsTable.getColumns();
+			final int aNrColumns = aColumns.size();
+			String[] aTrueBinaryValues = new String[aNrColumns];
+			String[] aFalseBinaryValues = new String[aNrColumns];
+			initialiseBinaryValues(aHead.itsDataLine, aColumns, aTrueBinaryValues, aFalseBinaryValues);
+
+			List<Chunk> aChunks = new ArrayList<Chunk>();
+			aChunks.add(new Chunk(aColumns, aTrueBinaryValues, aFalseBinaryValues));
+			int[] aStates = aChunks.get(0).getEnds();
+
+			long aSize = aChannel.size();
+			long aLength = aSize - aHead.itsEnd;
+			int aNrChunks = (int) Math.max(Math.min(4L * NR_THREADS, 1L + (aLength / MIN_CHUNK_BYTES)), 1L + (aLength >> 28));
+			long[] aBounds = getBounds(aChannel, aHead.itsEnd, aSize, aNrChunks);
+			int anEstimate = (int) Math.min(Integer.MAX_VALUE, (aLength / (aBounds.length - 1)) / (aHead.itsDataLine.length() + 1) + 16);
+			for (int i = 1; i < aBounds.length; ++i)
+				aChunks.add(new Chunk(aChannel, aCharset, getDelimiter(), aBounds[i-1], aBounds[i], aStates.clone(), anEstimate));
+
+			message("loadFileParallel", String.format("loading data using %d threads, %d chunks", NR_THREADS, aBounds.length - 1));
+			aPool = new ForkJoinPool(NR_THREADS);
+			invokeAll(aPool, aChunks.subList(1, aChunks.size()));
+
+			// actual start states, Chunks with a wrong start are parsed again
+			List<Chunk> aRedo = new ArrayList<Chunk>();
+			for (int i = 1, j = aChunks.size(); i < j; ++i)
+			{
+				Chunk aChunk = aChunks.get(i);
+				int[] anEnds = aChunk.getEnds(aStates);
+				if (!Arrays.equals(aStates, aChunk.itsStarts))
+				{
+					aChunk = new Chunk(aChunk, aStates.clone());
+					aChunks.set(i, aChunk);
+					aRedo.add(aChunk);
+				}
+				aStates = anEnds;
+			}
+			if (!aRedo.isEmpty())
+			{
+				message("loadFileParallel", String.format("re-parsing %d chunks, because of type changes", aRedo.size()));
+				invokeAll(aPool, aRedo);
+			}
+
+			// assemble Columns
+			List<Callable<Column>> aTasks = new ArrayList<Callable<Column>>(aNrColumns);
+			for (Column c : aColumns)
+				aTasks.add(new Assembler(c, aChunks));
+			List<Column> anAssembled = invokeAll(aPool, aTasks);
+
+			int aNrDataLines = 0;
+			for (Chunk c : aChunks)
+				aNrDataLines += c.itsNrDataLines;
+			itsNrLines = aNrDataLines;
+			itsTable = new Table(theFile, itsNrLines, aNrColumns);
+			itsTable.getColumns().addAll(anAssembled);
+
+			logMessages(aChunks, aHead.itsNrLines, anAssembled);
+			message("loadFileParallel", String.format("%d lines of data loaded in %d ms", itsNrLines, System.currentTimeMillis() - aBegin));
+			for (Column c : anAssembled)
+				System.out.println("Column " + c.getName() + " (" + c.getType() + ")");
+		}
+		catch (IOException e)
+		{
+//			new ErrorDialog(e, ErrorDialog.fileReaderError);
+			e.printStackTrace();
+		}
+		finally
+		{
+			if (aPool != null)
+				aPool.shutdown();
+			try
+			{
+				if (aFile != null)
+					aFile.close();
+			}
+			catch (IOException e)
+			{
+//				new ErrorDialog(e, ErrorDialog.fileReaderError);
+				e.printStackTrace();
+			}
+		}
+
+		return true;
+	}
+
+	/*
+	 * NOTE the byte ranges of the Chunks are decoded separately, so '\n' and
+	 * '\r' should be single bytes that are no part of any other character
+	 */
+	private static boolean isParallel(File theFile)
+	{
+		if ((NR_THREADS <= 1) || (theFile.length() < PARALLEL_MIN_BYTES))
+			return false;
+
+		Charset aCharset = Charset.defaultCharset();
+		return (StandardCharsets.UTF_8.equals(aCharset) || (aCharset.newEncoder().maxBytesPerChar() == 1.0f)) &&
+			Arrays.equals("\r\n".getBytes(aCharset), new byte[] { '\r', '\n' });
+	}
+
+	private static <T> List<T> invokeAll(ForkJoinPool thePool, List<? extends Callable<T>> theTasks) throws IOException
+	{
+		List<T> aResults = new ArrayList<T>(theTasks.size());
+		try
+		{
+			for (Future<T> f : thePool.invokeAll(theTasks))
+				aResults.add(f.get());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		catch (ExecutionException e)
+		{
+			Throwable aCause = e.getCause();
+			if (aCause instanceof IOException)
+				throw (IOException) aCause;
+			if (aCause instanceof RuntimeException)
+				throw (RuntimeException) aCause;
+			throw new AssertionError(aCause);
+		}
+		return aResults;
+	}
+
+	// type changes and incorrect numbers of fields, in order of occurrence
+	private static void logMessages(List<Chunk> theChunks, int theNrLines, List<Column> theColumns)
+	{
+		SortedMap<Long, String> aMessages = new TreeMap<Long, String>();
+		int aLineNr = theNrLines;
+		for (Chunk aChunk : theChunks.subList(1, theChunks.size()))
+		{
+			for (int i = 0, j = aChunk.itsCells.length; i < j; ++i)
+			{
+				Cells c = aChunk.itsCells[i];
+				String aName = theColumns.get(i).getName();
+				if (c.itsNumericLine > 0)
+					aMessages.put(((long) (aLineNr + c.itsNumericLine) << 32) | i,
+							aName + " was binary, is numeric (line " + (aLineNr + c.itsNumericLine) + ")");
+				if (c.itsNominalLine > 0)
+					aMessages.put(((long) (aLineNr + c.itsNominalLine) << 32) | i,
+							aName + (((aChunk.itsStarts[i] == BINARY) && (c.itsNumericFrom == c.itsNominalFrom)) ? " was binary" : " was float") + ", is nominal (line " + (aLineNr + c.itsNominalLine) + ")");
+			}
+			for (int[] e : aChunk.itsFieldErrors)
+				aMessages.put(((long) (aLineNr + e[0]) << 32) | Integer.MAX_VALUE,
+						String.format("DataLoaderTXT.loadFileParallel(): incorrect number of fields on line %d. %d expected, %d found.",
+								aLineNr + e[0], theColumns.size(), e[1]));
+			aLineNr += aChunk.itsNrLines;
+		}
+
+		for (String s : aMessages.values())
+			Log.logCommandLine(s);
+	}
+
+	private static byte[] read(FileChannel theChannel, long thePosition, int theLength) throws IOException
+	{
+		ByteBuffer aBuffer = ByteBuffer.allocate(theLength);
+		while (aBuffer.hasRemaining())
+			if (theChannel.read(aBuffer, thePosition + aBuffer.position()) < 0)
+				throw new EOFException();
+		return aBuffer.array();
+	}
+
+	// header and first data line of a file, as found by loadFile()
+	private static final class Head
+	{
+		private String itsHeaderLine;
+		private String itsDataLine;
+		private int itsNrLines;	// including empty lines
+		private long itsEnd;	// offset of the line after itsDataLine
+	}
+
+	// null if there is no data line, or the first lines are unusually long
+	private static Head readHead(FileChannel theChannel, Charset theCharset) throws IOException
+	{
+		final long aSize = theChannel.size();
+
+		for (int aLength = (1 << 16); aLength <= (1 << 28); aLength *= 2)
+		{
+			byte[] aBytes = read(theChannel, 0L, (int) Math.min(aLength, aSize));
+			final int n = aBytes.length;
+			final boolean isComplete = (n == aSize);
+			Head aHead = new Head();
+
+			for (int p = 0; p < n; )
+			{
+				int q = p;
+				while ((q < n) && (aBytes[q] != '\n') && (aBytes[q] != '\r'))
+					++q;
+				// line or line terminator might continue after aBytes
+				if (!isComplete && ((q == n) || ((q == n-1) && (aBytes[q] == '\r'))))
+					break;
+
+				int aNext = q + 1;
+				if ((aNext < n) && (aBytes[q] == '\r') && (aBytes[aNext] == '\n'))
+					++aNext;
+
+				++aHead.itsNrLines;
+				if (q > p)
+				{
+					String aLine = new String(aBytes, p, q - p, theCharset);
+					if (aHead.itsHeaderLine == null)
+						aHead.itsHeaderLine = aLine;
+					else
+					{
+						aHead.itsDataLine = aLine;
+						aHead.itsEnd = Math.min(aNext, n);
+						return aHead;
+					}
+				}
+				p = aNext;
+			}
+
+			if (isComplete)
+				return null;
+		}
+
+		return null;
+	}
+
+	// Chunk boundaries, all but the last directly follow a '\n'
+	private static long[] getBounds(FileChannel theChannel, long theStart, long theEnd, int theNrChunks) throws IOException
+	{
+		long[] aBounds = new long[theNrChunks + 1];
+		int aNrBounds = 0;
+		aBounds[aNrBounds++] = theStart;
+
+		ByteBuffer aBuffer = ByteBuffer.allocate(1 << 16);
+		for (int i = 1; i < theNrChunks; ++i)
+		{
+			long p = Math.max(theStart + ((theEnd - theStart) / theNrChunks) * i, aBounds[aNrBounds-1]);
+			long aBound = theEnd;
+			while (p < theEnd)
+			{
+				aBuffer.clear();
+				int aNrRead = theChannel.read(aBuffer, p);
+				if (aNrRead <= 0)
+					break;
+				int j = 0;
+				while ((j < aNrRead) && (aBuffer.get(j) != '\n'))
+					++j;
+				if (j < aNrRead)
+				{
+					aBound = p + j + 1;
+					break;
+				}
+				p += aNrRead;
+			}
+
+			if (aBound < theEnd && aBound > aBounds[aNrBounds-1])
+				aBounds[aNrBounds++] = aBound;
+		}
+		aBounds[aNrBounds++] = theEnd;
+
+		return Arrays.copyOf(aBounds, aNrBounds);
+	}
+
+	private static final int BINARY = 0;
+	private static final int NUMERIC = 1;
+	private static final int NOMINAL = 2;
+
+	private static int toState(AttributeType theType)
+	{
+		switch (theType)
+		{
+			case BINARY :	return BINARY;
+			case NUMERIC :	return NUMERIC;
+			case NOMINAL :	return NOMINAL;
+			default :	throw new AssertionError(theType);
+		}
+	}
+
+	/*
+	 * the lines in a byte range of the file, parsed into Cells, starting
+	 * with the types in itsStarts
+	 */
+	private static final class Chunk implements Callable<Chunk>
+	{
+		private final FileChannel itsChannel;
+		private final Charset itsCharset;
+		private final char itsDelimiter;
+		private final long itsFrom;
+		private final long itsTo;
+		private final int[] itsStarts;
+		private final int itsEstimate;
+
+		private Cells[] itsCells;
+		private int itsNrLines = 0;	// including empty lines
+		private int itsNrDataLines = 0;
+		private final List<int[]> itsFieldErrors = new ArrayList<int[]>(0); // {line, fields}
+
+		Chunk(FileChannel theChannel, Charset theCharset, char theDelimiter, long theFrom, long theTo, int[] theStarts, int theEstimate)
+		{
+			itsChannel = theChannel;
+			itsCharset = theCharset;
+			itsDelimiter = theDelimiter;
+			itsFrom = theFrom;
+			itsTo = theTo;
+			itsStarts = theStarts;
+			itsEstimate = theEstimate;
+		}
+
+		// same byte range, other start types
+		Chunk(Chunk theChunk, int[] theStarts)
+		{
+			this(theChunk.itsChannel, theChunk.itsCharset, theChunk.itsDelimiter, theChunk.itsFrom, theChunk.itsTo, theStarts, theChunk.itsEstimate);
+		}
+
+		// the first data line, as parsed by createTable()
+		Chunk(List<Column> theColumns, String[] theTrueBinaryValues, String[] theFalseBinaryValues)
+		{
+			this(null, null, '\0', 0L, 0L, new int[theColumns.size()], 1);
+
+			itsCells = new Cells[itsStarts.length];
+			for (int i = 0; i < itsStarts.length; ++i)
+			{
+				Column c = theColumns.get(i);
+				itsStarts[i] = toState(c.getType());
+				Cells aCells = new Cells(itsStarts[i], 1);
+				if (c.getMissing().get(0))
+					aCells.itsMissing.set(0);
+				switch (itsStarts[i])
+				{
+					case BINARY :
+					{
+						if (c.getBinary(0))
+							aCells.itsBinaries.set(0);
+						aCells.itsTrue = theTrueBinaryValues[i];
+						aCells.itsFalse = theFalseBinaryValues[i];
+						break;
+					}
+					case NUMERIC :
+					{
+						aCells.itsFloatz[0] = c.getFloat(0);
+						break;
+					}
+					case NOMINAL :
+					{
+						aCells.itsNominalz[0] = aCells.itsDictionary.add(c.getNominal(0));
+						break;
+					}
+				}
+				aCells.itsSize = 1;
+				aCells.finish(null);
+				itsCells[i] = aCells;
+			}
+			itsNrDataLines = 1;
+		}
+
+		int[] getEnds()
+		{
+			return getEnds(itsStarts);
+		}
+
+		/*
+		 * end types for start types that are no smaller than itsStarts
+		 * if this Chunk had started with theStarts
+		 */
+		int[] getEnds(int[] theStarts)
+		{
+			int[] anEnds = new int[theStarts.length];
+			for (int i = 0; i < anEnds.length; ++i)
+			{
+				Cells c = itsCells[i];
+				assert (theStarts[i] >= itsStarts[i]);
+				if (theStarts[i] == itsStarts[i])
+					anEnds[i] = c.itsState;
+				else if (theStarts[i] == NUMERIC)
+					anEnds[i] = c.isUnparseable ? NOMINAL : NUMERIC;
+				else
+					anEnds[i] = NOMINAL;
+			}
+			return anEnds;
+		}
+
+		@Override
+		public Chunk call() throws IOException
+		{
+			// copy of the bytes, decoded like the FileReader of loadFile()
+			CharBuffer aBuffer = itsCharset.decode(ByteBuffer.wrap(read(itsChannel, itsFrom, (int) (itsTo - itsFrom))));
+			final char[] c = aBuffer.array();
+			final int n = aBuffer.limit();
+
+			itsCells = new Cells[itsStarts.length];
+			for (int i = 0; i < itsStarts.length; ++i)
+				itsCells[i] = new Cells(itsStarts[i], itsEstimate);
+
+			for (int p = 0; p < n; )
+			{
+				int q = p;
+				while ((q < n) && (c[q] != '\n') && (c[q] != '\r'))
+					++q;
+
+				++itsNrLines;
+				if (q > p)
+				{
+					++itsNrDataLines;
+					parseLine(c, p, q);
+				}
+
+				if ((q + 1 < n) && (c[q] == '\r') && (c[q + 1] == '\n'))
+					++q;
+				p = q + 1;
+			}
+
+			for (Cells aCells : itsCells)
+				aCells.finish(c);
+
+			return this;
+		}
+
+		// as the Scanner of loadFile(), including joining of quoted fields
+		private void parseLine(char[] c, int theFrom, int theTo)
+		{
+			final int aNrColumns = itsCells.length;
+			int aColumn = 0;
+			int p = theFrom;
+			boolean hasNext = true;
+
+			while (hasNext && (aColumn < aNrColumns))
+			{
+				int aStart = p;
+				int q = indexOf(c, p, theTo);
+				hasNext = (q < theTo);
+				p = q + 1;
+
+				//the delimiter came before the quote was closed
+				if (opensQuotes(c, aStart, q))
+				{
+					while (hasNext)
+					{
+						int aNext = p;
+						q = indexOf(c, p, theTo);
+						hasNext = (q < theTo);
+						p = q + 1;
+						if (closesQuotes(c, aNext, q))
+							break;
+					}
+				}
+
+				// removeQuotes(s.trim())
+				int a = aStart;
+				int b = q;
+				while ((a < b) && (c[a] <= ' '))
+					++a;
+				while ((b > a) && (c[b-1] <= ' '))
+					--b;
+				if (((b - a) > 2) && (((c[a] == '\"') && (c[b-1] == '\"')) || ((c[a] == '\'') && (c[b-1] == '\''))))
+				{
+					++a;
+					--b;
+				}
+
+				itsCells[aColumn++].add(c, a, b, itsNrLines);
+			}
+
+			if (hasNext || (aColumn != aNrColumns))
+			{
+				for (int aFields = aColumn; hasNext; ++aFields)
+				{
+					int q = indexOf(c, p, theTo);
+					hasNext = (q < theTo);
+					p = q + 1;
+					aColumn = aFields + 1;
+				}
+				itsFieldErrors.add(new int[] { itsNrLines, aColumn });
+			}
+		}
+
+		private int indexOf(char[] c, int theFrom, int theTo)
+		{
+			final char aDelimiter = itsDelimiter;
+			int i = theFrom;
+			while ((i < theTo) && (c[i] != aDelimiter))
+				++i;
+			return i;
+		}
+
+		private static boolean opensQuotes(char[] c, int theFrom, int theTo)
+		{
+			if (theFrom == theTo)
+				return false;
+			char aStart = c[theFrom];
+			char anEnd = c[theTo-1];
+
+			if (aStart != '\'' && aStart != '\"')
+				return false;
+			return (aStart != anEnd);
+		}
+
+		private static boolean closesQuotes(char[] c, int theFrom, int theTo)
+		{
+			if (theFrom == theTo)
+				return false;
+			char aStart = c[theFrom];
+			char anEnd = c[theTo-1];
+
+			if ((aStart == '\"' || aStart == '\'') && ((theTo - theFrom) > 1))
+				return false;
+			return (anEnd == '\'' || anEnd == '\"');
+		}
+	}
+
+	/*
+	 * the values of one Column in a Chunk
+	 * a Chunk that starts as BINARY has binary values in [0, itsNumericFrom),
+	 * floats in [itsNumericFrom, itsNominalFrom) and nominal values in
+	 * [itsNominalFrom, itsSize), later start types have no binary and
+	 * possibly no float values
+	 */
+	private static final class Cells
+	{
+		private int itsState;
+		private int itsSize = 0;
+		private int itsCapacity;
+		private final BitSet itsMissing = new BitSet();
+		private BitSet itsBinaries;
+		private float[] itsFloatz;
+		private int[] itsNominalz;
+		private Dictionary itsDictionary;
+		private int itsNumericFrom = -1;
+		private int itsNominalFrom = -1;
+		// local line numbers of the type changes, 0 if none
+		private int itsNumericLine = 0;
+		private int itsNominalLine = 0;
+		// whether a non-missing value would not parse as float
+		private boolean isUnparseable = false;
+		// last binary values, as chars in the Chunk, or as String
+		private int itsTrueFrom = -1;
+		private int itsTrueTo;
+		private int itsFalseFrom = -1;
+		private int itsFalseTo;
+		private String itsTrue;
+		private String itsFalse;
+
+		Cells(int theStart, int theCapacity)
+		{
+			itsState = theStart;
+			itsCapacity = theCapacity;
+
+			switch (theStart)
+			{
+				case BINARY :
+				{
+					itsBinaries = new BitSet();
+					break;
+				}
+				case NUMERIC :
+				{
+					toNumeric(0);
+					break;
+				}
+				case NOMINAL :
+				{
+					itsNumericFrom = 0;
+					toNominal(0);
+					break;
+				}
+			}
+		}
+
+		private void toNumeric(int theLine)
+		{
+			itsState = NUMERIC;
+			itsNumericFrom = itsSize;
+			itsNumericLine = theLine;
+			itsFloatz = new float[itsCapacity];
+		}
+
+		private void toNominal(int theLine)
+		{
+			itsState = NOMINAL;
+			itsNominalFrom = itsSize;
+			itsNominalLine = theLine;
+			itsNominalz = new int[itsCapacity];
+			itsDictionary = new Dictionary();
+		}
+
+		private void ensureCapacity()
+		{
+			if (itsSize < itsCapacity)
+				return;
+
+			itsCapacity = (int) Math.min(Integer.MAX_VALUE - 8, 2L * itsCapacity);
+			if (itsFloatz != null)
+				itsFloatz = Arrays.copyOf(itsFloatz, itsCapacity);
+			if (itsNominalz != null)
+				itsNominalz = Arrays.copyOf(itsNominalz, itsCapacity);
+		}
+
+		// the loadFile() state machine for a value, missing or not
+		void add(char[] c, int theFrom, int theTo, int theLine)
+		{
+			ensureCapacity();
+
+			if (isEmptyString(c, theFrom, theTo))
+			{
+				itsMissing.set(itsSize);
+				switch (itsState)
+				{
+					case BINARY :	break;
+					case NUMERIC :	itsFloatz[itsSize] = Float.NaN; break;
+					case NOMINAL :	itsNominalz[itsSize] = itsDictionary.add("?"); break;
+				}
+				++itsSize;
+				return;
+			}
+
+			switch (itsState)
+			{
+				case BINARY :
+				{
+					int aValue = toBinary(c, theFrom, theTo);
+					if (aValue == 1 || aValue == 3)
+					{
+						itsBinaries.set(itsSize);
+						itsTrueFrom = theFrom;
+						itsTrueTo = theTo;
+					}
+					else if (aValue == 0 || aValue == 2)
+					{
+						itsFalseFrom = theFrom;
+						itsFalseTo = theTo;
+					}
+					else
+					{
+						// if neither missing nor binary, then it shouldn't be binary
+						try
+						{
+							float f = parseFloat(c, theFrom, theTo);
+							toNumeric(theLine);
+							itsFloatz[itsSize] = f;
+						}
+						catch (NumberFormatException e)
+						{
+							isUnparseable = true;
+							itsNumericFrom = itsSize;
+							toNominal(theLine);
+							itsNominalz[itsSize] = itsDictionary.add(c, theFrom, theTo);
+						}
+						break;
+					}
+					// "true" and "false" are binary, but not float
+					isUnparseable |= (aValue >= 2);
+					break;
+				}
+				case NUMERIC :
+				{
+					try
+					{
+						itsFloatz[itsSize] = parseFloat(c, theFrom, theTo);
+					}
+					catch (NumberFormatException e)
+					{
+						isUnparseable = true;
+						toNominal(theLine);
+						itsNominalz[itsSize] = itsDictionary.add(c, theFrom, theTo);
+					}
+					break;
+				}
+				case NOMINAL :
+				{
+					itsNominalz[itsSize] = itsDictionary.add(c, theFrom, theTo);
+					break;
+				}
+			}
+			++itsSize;
+		}
+
+		// null for the first data line, whose values are set already
+		void finish(char[] c)
+		{
+			if (itsNumericFrom < 0)
+				itsNumericFrom = itsSize;
+			if (itsNominalFrom < 0)
+				itsNominalFrom = itsSize;
+			if (c != null && itsTrueFrom >= 0)
+				itsTrue = new String(c, itsTrueFrom, itsTrueTo - itsTrueFrom);
+			if (c != null && itsFalseFrom >= 0)
+				itsFalse = new String(c, itsFalseFrom, itsFalseTo - itsFalseFrom);
+		}
+	}
+
+	// isEmptyString(), without creating a String
+	private static boolean isEmptyString(char[] c, int theFrom, int theTo)
+	{
+		for (int i = theFrom; i < theTo; ++i)
+		{
+			switch (c[i])
+			{
+				case ' ' :
+				case '\t' :
+				case '\n' :
+				case '\u000B' :
+				case '\f' :
+				case '\r' :
+					continue;
+				default :
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * as AttributeType.isValidBinaryValue() and isValidBinaryTrueValue()
+	 * returns -1 for non-binary values, 0 for "0", 1 for "1", and 2 or 3 for
+	 * the false and true words, that can not be parsed as float
+	 */
+	private static int toBinary(char[] c, int theFrom, int theTo)
+	{
+		int a = theFrom;
+		int b = theTo;
+		while ((a < b) && (c[a] <= ' '))
+			++a;
+		while ((b > a) && (c[b-1] <= ' '))
+			--b;
+
+		switch (b - a)
+		{
+			case 1 :
+				return (c[a] == '1') ? 1 : (c[a] == '0') ? 0 : -1;
+			case 4 :
+			case 5 :
+			{
+				String s = new String(c, a, b - a);
+				if (AttributeType.isValidBinaryTrueValue(s))
+					return 3;
+				if (AttributeType.isValidBinaryFalseValue(s))
+					return 2;
+				return -1;
+			}
+			default :
+				return -1;
+		}
+	}
+
+	private static final float[] POWERS_OF_TEN = { 1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f };
+
+	/*
+	 * Float.parseFloat(new String(c, theFrom, theTo-theFrom)), but without
+	 * creating a String for plain decimals with at most 7 digits
+	 * these are computed as (float) digits / 10^fraction-digits, the single
+	 * correctly rounded division Float.parseFloat() also uses for them
+	 */
+	static float parseFloat(char[] c, int theFrom, int theTo) throws NumberFormatException
+	{
+		int i = theFrom;
+		boolean isNegative = false;
+		if ((i < theTo) && ((c[i] == '-') || (c[i] == '+')))
+			isNegative = (c[i++] == '-');
+
+		int aDigits = 0;
+		int aNrSignificant = 0;
+		int aNrFractionDigits = -1;
+		boolean hasDigit = false;
+		for ( ; i < theTo; ++i)
+		{
+			char d = c[i];
+			if ((d >= '0') && (d <= '9'))
+			{
+				// leading zeros are not significant
+				if ((aDigits != 0) || (d != '0'))
+				{
+					if (aNrSignificant == 7)
+						break;
+					aDigits = (10 * aDigits) + (d - '0');
+					++aNrSignificant;
+				}
+				hasDigit = true;
+				if (aNrFractionDigits >= 0)
+					++aNrFractionDigits;
+			}
+			else if ((d == '.') && (aNrFractionDigits < 0))
+				aNrFractionDigits = 0;
+			else
+				break;
+		}
+
+		if ((i < theTo) || !hasDigit || (aNrFractionDigits >= POWERS_OF_TEN.length))
+			return Float.parseFloat(new String(c, theFrom, theTo - theFrom));
+
+		float f = (float) aDigits;
+		if (aNrFractionDigits > 0)
+			f /= POWERS_OF_TEN[aNrFractionDigits];
+		return isNegative ? -f : f;
+	}
+
+	// open addressing map of Strings to their index, looks up chars in place
+	private static final class Dictionary
+	{
+		private final ArrayList<String> itsValues = new ArrayList<String>();
+		private int[] itsSlots = new int[16];	// index + 1, 0 is free
+
+		int size() { return itsValues.size(); }
+		String get(int theIndex) { return itsValues.get(theIndex); }
+		List<String> getValues() { return itsValues; }
+
+		int add(char[] c, int theFrom, int theTo)
+		{
+			int h = 0;
+			for (int i = theFrom; i < theTo; ++i)
+				h = (31 * h) + c[i];
+
+			final int aMask = itsSlots.length - 1;
+			for (int i = mix(h) & aMask; ; i = (i + 1) & aMask)
+			{
+				int aSlot = itsSlots[i];
+				if (aSlot == 0)
+					return insert(i, new String(c, theFrom, theTo - theFrom));
+
+				String s = itsValues.get(aSlot - 1);
+				if ((s.hashCode() == h) && equals(s, c, theFrom, theTo))
+					return aSlot - 1;
+			}
+		}
+
+		int add(String theValue)
+		{
+			final int h = theValue.hashCode();
+			final int aMask = itsSlots.length - 1;
+			for (int i = mix(h) & aMask; ; i = (i + 1) & aMask)
+			{
+				int aSlot = itsSlots[i];
+				if (aSlot == 0)
+					return insert(i, theValue);
+				if (theValue.equals(itsValues.get(aSlot - 1)))
+					return aSlot - 1;
+			}
+		}
+
+		private int insert(int theSlot, String theValue)
+		{
+			itsValues.add(theValue);
+			int anIndex = itsValues.size();
+			itsSlots[theSlot] = anIndex;
+
+			// load factor 0.5
+			if ((2 * anIndex) > itsSlots.length)
+			{
+				int[] aSlots = new int[2 * itsSlots.length];
+				final int aMask = aSlots.length - 1;
+				for (int i = 0; i < anIndex; ++i)
+				{
+					int j = mix(itsValues.get(i).hashCode()) & aMask;
+					while (aSlots[j] != 0)
+						j = (j + 1) & aMask;
+					aSlots[j] = i + 1;
+				}
+				itsSlots = aSlots;
+			}
+
+			return anIndex - 1;
+		}
+
+		private static int mix(int theHash)
+		{
+			int h = theHash * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+
+		private static boolean equals(String theString, char[] c, int theFrom, int theTo)
+		{
+			if (theString.length() != (theTo - theFrom))
+				return false;
+			for (int i = theFrom; i < theTo; ++i)
+				if (theString.charAt(i - theFrom) != c[i])
+					return false;
+			return true;
+		}
+	}
+
+	/*
+	 * a Column from its Cells in all Chunks, values before a type change
+	 * are converted like Column.setType() and toNominalType(String, String)
+	 * do during loadFile()
+	 */
+	private static final class Assembler implements Callable<Column>
+	{
+		private final Column itsColumn;
+		private final List<Chunk> itsChunks;
+
+		Assembler(Column theColumn, List<Chunk> theChunks)
+		{
+			itsColumn = theColumn;
+			itsChunks = theChunks;
+		}
+
+		@Override
+		public Column call()
+		{
+			final int anIndex = itsColumn.getIndex();
+			final int aState = itsChunks.get(itsChunks.size() - 1).itsCells[anIndex].itsState;
+
+			int aSize = 0;
+			for (Chunk aChunk : itsChunks)
+				aSize += aChunk.itsCells[anIndex].itsSize;
+
+			BitSet aMissing = new BitSet(aSize);
+			int anOffset = 0;
+			for (Chunk aChunk : itsChunks)
+			{
+				Cells c = aChunk.itsCells[anIndex];
+				for (int i = c.itsMissing.nextSetBit(0); i >= 0; i = c.itsMissing.nextSetBit(i + 1))
+					aMissing.set(anOffset + i);
+				anOffset += c.itsSize;
+			}
+
+			// initial type, setLoadedData() changes it, as setType() would
+			Column aColumn = new Column(itsColumn.getName(), null, itsColumn.getType(), anIndex, 1);
+			switch (aState)
+			{
+				case BINARY :
+				{
+					BitSet aBinaries = new BitSet(aSize);
+					anOffset = 0;
+					for (Chunk aChunk : itsChunks)
+					{
+						Cells c = aChunk.itsCells[anIndex];
+						for (int i = c.itsBinaries.nextSetBit(0); i >= 0; i = c.itsBinaries.nextSetBit(i + 1))
+							aBinaries.set(anOffset + i);
+						anOffset += c.itsSize;
+					}
+					aColumn.setLoadedData(aBinaries, aSize, aMissing);
+					break;
+				}
+				case NUMERIC :
+				{
+					float[] aFloatz = new float[aSize];
+					anOffset = 0;
+					for (Chunk aChunk : itsChunks)
+					{
+						Cells c = aChunk.itsCells[anIndex];
+						// binary values as Column.setType(NUMERIC)
+						for (int i = 0; i < c.itsNumericFrom; ++i)
+							aFloatz[anOffset + i] = c.itsBinaries.get(i) ? 1.0f : 0.0f;
+						if (c.itsNumericFrom < c.itsSize)
+							System.arraycopy(c.itsFloatz, c.itsNumericFrom, aFloatz, anOffset + c.itsNumericFrom, c.itsSize - c.itsNumericFrom);
+						anOffset += c.itsSize;
+					}
+					aColumn.setLoadedData(aFloatz, aMissing);
+					break;
+				}
+				case NOMINAL :
+				{
+					// was the Column NUMERIC at some point, and last binary values
+					boolean wasNumeric = false;
+					String aTrue = null;
+					String aFalse = null;
+					for (Chunk aChunk : itsChunks)
+					{
+						Cells c = aChunk.itsCells[anIndex];
+						wasNumeric |= (c.itsNominalFrom > c.itsNumericFrom);
+						if (c.itsTrue != null)
+							aTrue = c.itsTrue;
+						if (c.itsFalse != null)
+							aFalse = c.itsFalse;
+					}
+					if (wasNumeric)
+					{
+						aTrue = Float.toString(1.0f);
+						aFalse = Float.toString(0.0f);
+					}
+					else if (aTrue == null && aFalse == null)
+						aTrue = aFalse = "?";
+					else if (aTrue == null || aFalse == null)
+					{
+						// NOTE loadFile() would fail on this
+						aTrue = (aTrue == null) ? "?" : aTrue;
+						aFalse = (aFalse == null) ? "?" : aFalse;
+					}
+
+					Dictionary aDictionary = new Dictionary();
+					int[] aNominalz = new int[aSize];
+					anOffset = 0;
+					for (Chunk aChunk : itsChunks)
+					{
+						Cells c = aChunk.itsCells[anIndex];
+						for (int i = 0; i < c.itsNumericFrom; ++i)
+							aNominalz[anOffset + i] = aDictionary.add(c.itsBinaries.get(i) ? aTrue : aFalse);
+						for (int i = c.itsNumericFrom; i < c.itsNominalFrom; ++i)
+							aNominalz[anOffset + i] = aDictionary.add(Float.toString(c.itsFloatz[i]));
+						if (c.itsNominalFrom < c.itsSize)
+						{
+							// Chunk values, in order of first occurrence
+							Dictionary aLocal = c.itsDictionary;
+							int[] aMap = new int[aLocal.size()];
+							for (int i = 0; i < aMap.length; ++i)
+								aMap[i] = aDictionary.add(aLocal.get(i));
+							for (int i = c.itsNominalFrom; i < c.itsSize; ++i)
+								aNominalz[anOffset + i] = aMap[c.itsNominalz[i]];
+						}
+						anOffset += c.itsSize;
+					}
+					aColumn.setLoadedData(aNominalz, aDictionary.getValues(), aMissing);
+					break;
+				}
+				default :
+					throw new AssertionError(aState);
+			}
+
+			return aColumn;
+		}
+	}
+
 	// cumbersome, but cleanly handles empty lines before/ after header line
 	private boolean analyse(File theFile)
 	{
@@ -77,6 +77,7 @@ public class FileHandler
 		{
 			Log.logCommandLine(
 				"FileHandler Constructor: Table is 'null', trying normal loading.");
+			itsFile = theFile;
 			openFile(showWindows);
 		}
 		else
@@ -127,6 +128,16 @@ public class FileHandler
 					new FileLoaderARFF(itsFile, itsTable);
 				break;
 			}
+			case COLUMNAR :
+			{
+				// regular loading
+				if (itsTable == null )
+					itsTable = new FileLoaderColumnar(itsFile).getTable();
+				// load from XML, see Table(XMLNode, pathToXML)
+				else
+					new FileLoaderColumnar(itsFile, itsTable);
+				break;
+			}
 			case XML :
 			{
 				FileLoaderXML aLoader = new FileLoaderXML(itsFile, showWindows);
@@ -221,6 +232,7 @@ public class FileHandler
 		JFileChooser aChooser = new JFileChooser(new File(itsLastFileLocation));
 		aChooser.addChoosableFileFilter(new FileTypeFilter(FileType.TXT));
 		aChooser.addChoosableFileFilter(new FileTypeFilter(FileType.ARFF));
+		aChooser.addChoosableFileFilter(new FileTypeFilter(FileType.COLUMNAR));
 		aChooser.addChoosableFileFilter(new FileTypeFilter(FileType.XML));
 		aChooser.setFileFilter(new FileTypeFilter(FileType.ALL_DATA_FILES));
 
@@ -0,0 +1,441 @@
+package nl.liacs.subdisc;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+
+/*
+ * Binary columnar Table format, for fast repeated loading of the same data,
+ * for example by XMLAutoRun experiments that use a '.sdt' File as source.
+ *
+ * A Table is written once through write(), or main(), after it was loaded
+ * from a TXT or ARFF File. Loading involves no parsing, the File is mapped
+ * through FileChannel.map() and the data is copied into the Columns in bulk.
+ *
+ * Layout, all values are little-endian, strings are UTF-8 with an int length:
+ *   int MAGIC, int VERSION
+ *   string name, int nrRows, int nrColumns, int nr Column entries
+ *   per Column:
+ *     header: string type, string name, string short (or length -1), int index,
+ *             boolean enabled, int target status, see readHeader()
+ *     data  : see Column.writeColumnar(), nominals are dictionary-encoded,
+ *             numerics include the sort index of Column.buildSorted(), and
+ *             every Column includes its missing values bitmap
+ *
+ * NOTE Column kernels operate on float[], int[] and BitSet, so the mapped
+ * data is copied, it is not used off-heap
+ */
+public class FileLoaderColumnar implements FileLoaderInterface
+{
+	private static final int MAGIC   = 0x54445353; // "SSDT", little-endian
+	private static final int VERSION = 1;
+
+	private Table itsTable = null;
+
+	// default file loader
+	public FileLoaderColumnar(File theFile)
+	{
+		if (isReadable(theFile))
+			loadFile(theFile);
+	}
+
+	// XML-loader, Table is created based on XML, data is loaded here
+	public FileLoaderColumnar(File theFile, Table theTable)
+	{
+		if (!isReadable(theFile))
+			return;
+
+		itsTable = theTable;
+		if (itsTable == null)
+			message("<init>", "Table is null, attempting regular file-load.");
+		loadFile(theFile);
+	}
+
+	private static boolean isReadable(File theFile)
+	{
+		String aWarning = null;
+
+		if (theFile == null)
+			aWarning = "file can not be null";
+		else if (!theFile.exists())
+			aWarning = theFile.getAbsolutePath() + ", file does not exist";
+		else if (!theFile.canRead())
+			aWarning = theFile.getAbsolutePath() + ", file not readable";
+
+		if (aWarning != null)
+			message("<init>", aWarning);
+
+		return (aWarning == null);
+	}
+
+	private static void message(String theMethod, String theMessage)
+	{
+		Log.logCommandLine(String.format("%s.%s(): %s",
+							FileLoaderColumnar.class.getSimpleName(),
+							theMethod,
+							theMessage));
+	}
+
+	private void loadFile(File theFile)
+	{
+		Input anInput = null;
+		try
+		{
+			anInput = new Input(theFile);
+
+			if (anInput.getInt() != MAGIC)
+				throw new IOException("not a columnar Table File");
+			int aVersion = anInput.getInt();
+			if (aVersion != VERSION)
+				throw new IOException("unsupported version: " + aVersion);
+
+			String aName = anInput.getString();
+			int aNrRows = anInput.getInt();
+			int aNrColumns = anInput.getInt();
+			int aNrEntries = anInput.getInt();
+
+			// loaded from XML, check declared Columns, keep their settings
+			boolean isXMLTable = (itsTable != null);
+			if (isXMLTable && (aNrEntries != itsTable.getColumns().size()))
+				throw new IOException(String.format("number of Columns declared in XML: %d, in File: %d", itsTable.getColumns().size(), aNrEntries));
+			if (!isXMLTable)
+				itsTable = new Table(theFile, aName, aNrRows, aNrColumns);
+
+			List<Column> aColumns = itsTable.getColumns();
+			for (int i = 0; i < aNrEntries; ++i)
+			{
+				Column aColumn = readHeader(anInput, isXMLTable ? aColumns.get(i) : null);
+				aColumn.readColumnar(anInput);
+				if (!isXMLTable)
+					aColumns.add(aColumn);
+			}
+		}
+		catch (IOException e)
+		{
+			message("loadFile", "error while loading '" + theFile.getAbsolutePath() + "': " + e.getMessage());
+			// a partially loaded Table is not returned
+			if (itsTable != null)
+				itsTable.getColumns().clear();
+		}
+		finally
+		{
+			if (anInput != null)
+				anInput.close();
+		}
+	}
+
+	// returns theXMLColumn, after checking it, or a new Column
+	private static Column readHeader(Input theInput, Column theXMLColumn) throws IOException
+	{
+		AttributeType aType = AttributeType.valueOf(theInput.getString());
+		String aName = theInput.getString();
+		String aShort = theInput.getString();
+		int anIndex = theInput.getInt();
+		boolean isEnabled = theInput.getBoolean();
+		int aTargetStatus = theInput.getInt();
+
+		if (theXMLColumn == null)
+		{
+			// the data is replaced by Column.readColumnar(), use minimal size
+			Column aColumn = new Column(aName, aShort, aType, anIndex, 1);
+			aColumn.setIsEnabled(isEnabled);
+			aColumn.setTargetStatus(aTargetStatus);
+			return aColumn;
+		}
+
+		if (!aName.equals(theXMLColumn.getName()) || (aType != theXMLColumn.getType()))
+			throw new IOException(String.format("Column '%s' (%s) from XML does not match Column '%s' (%s) from File",
+								theXMLColumn.getName(),
+								theXMLColumn.getType(),
+								aName,
+								aType));
+
+		return theXMLColumn;
+	}
+
+	@Override
+	public Table getTable() { return itsTable; }
+
+	/**
+	 * Writes the supplied {@link Table} to the supplied {@link File}, such
+	 * that it can be loaded by a FileLoaderColumnar.
+	 *
+	 * @param theTable the Table to write.
+	 * @param theFile the File to write to, it is overwritten if it exists.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static void write(Table theTable, File theFile) throws IOException
+	{
+		Output anOutput = new Output(theFile);
+		try
+		{
+			anOutput.putInt(MAGIC);
+			anOutput.putInt(VERSION);
+			anOutput.putString(theTable.getName());
+			anOutput.putInt(theTable.getNrRows());
+			anOutput.putInt(theTable.getNrColumns());
+
+			List<Column> aColumns = theTable.getColumns();
+			anOutput.putInt(aColumns.size());
+			for (Column c : aColumns)
+			{
+				anOutput.putString(c.getType().name());
+				anOutput.putString(c.getName());
+				anOutput.putString(c.hasShort() ? c.getShort() : null);
+				anOutput.putInt(c.getIndex());
+				anOutput.putBoolean(c.getIsEnabled());
+				anOutput.putInt(c.getTargetStatus());
+				c.writeColumnar(anOutput);
+			}
+		}
+		finally
+		{
+			anOutput.close();
+		}
+	}
+
+	/**
+	 * Converts a data File that can be loaded by {@link FileHandler} to a
+	 * columnar File.
+	 *
+	 * @param args the data File and the columnar File to write.
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length != 2)
+		{
+			System.out.println("usage: FileLoaderColumnar <data file> <columnar file>");
+			return;
+		}
+
+		Table aTable = new FileHandler(new File(args[0]), null, false).getTable();
+		if (aTable == null)
+			return;
+
+		Timer aTimer = new Timer();
+		write(aTable, new File(args[1]));
+		message("main", String.format("writing time '%s': %s", args[1], aTimer.getElapsedTimeString()));
+	}
+
+	/*
+	 * sequential reader of a mapped File, large Files are mapped in windows,
+	 * as a single MappedByteBuffer is limited to Integer.MAX_VALUE bytes
+	 */
+	static final class Input
+	{
+		private static final int WINDOW = (1 << 30);
+
+		private final RandomAccessFile itsFile;
+		private final FileChannel itsChannel;
+		private final long itsSize;
+		private long itsOffset; // of itsBuffer in the File
+		private ByteBuffer itsBuffer;
+
+		Input(File theFile) throws IOException
+		{
+			itsFile = new RandomAccessFile(theFile, "r");
+			itsChannel = itsFile.getChannel();
+			itsSize = itsChannel.size();
+			map(0L);
+		}
+
+		private void map(long theOffset) throws IOException
+		{
+			itsOffset = theOffset;
+			itsBuffer = itsChannel.map(FileChannel.MapMode.READ_ONLY, theOffset, Math.min(WINDOW, itsSize - theOffset));
+			itsBuffer.order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		// ensures theNrBytes are available, if theNrBytes is in the File
+		private void ensure(int theNrBytes) throws IOException
+		{
+			if (itsBuffer.remaining() >= theNrBytes)
+				return;
+
+			long aPosition = itsOffset + itsBuffer.position();
+			if (aPosition + theNrBytes > itsSize)
+				throw new EOFException();
+			map(aPosition);
+		}
+
+		int getInt() throws IOException         { ensure(4); return itsBuffer.getInt(); }
+		boolean getBoolean() throws IOException { ensure(1); return (itsBuffer.get() != 0); }
+
+		// null is written as length -1
+		String getString() throws IOException
+		{
+			int aLength = getInt();
+			if (aLength < 0)
+				return null;
+
+			byte[] aBytes = new byte[aLength];
+			ensure(aLength);
+			itsBuffer.get(aBytes);
+			return new String(aBytes, StandardCharsets.UTF_8);
+		}
+
+		// NOTE the views of the bulk reads are bounded by the current window
+
+		int[] getInts() throws IOException
+		{
+			int[] anInts = new int[getInt()];
+			for (int i = 0; i < anInts.length; )
+			{
+				ensure(4);
+				int n = Math.min(anInts.length - i, (itsBuffer.remaining() >>> 2));
+				itsBuffer.asIntBuffer().get(anInts, i, n);
+				itsBuffer.position(itsBuffer.position() + (n << 2));
+				i += n;
+			}
+			return anInts;
+		}
+
+		long[] getLongs() throws IOException
+		{
+			long[] aLongs = new long[getInt()];
+			for (int i = 0; i < aLongs.length; )
+			{
+				ensure(8);
+				int n = Math.min(aLongs.length - i, (itsBuffer.remaining() >>> 3));
+				itsBuffer.asLongBuffer().get(aLongs, i, n);
+				itsBuffer.position(itsBuffer.position() + (n << 3));
+				i += n;
+			}
+			return aLongs;
+		}
+
+		float[] getFloats() throws IOException
+		{
+			float[] aFloats = new float[getInt()];
+			for (int i = 0; i < aFloats.length; )
+			{
+				ensure(4);
+				int n = Math.min(aFloats.length - i, (itsBuffer.remaining() >>> 2));
+				itsBuffer.asFloatBuffer().get(aFloats, i, n);
+				itsBuffer.position(itsBuffer.position() + (n << 2));
+				i += n;
+			}
+			return aFloats;
+		}
+
+		void close()
+		{
+			try
+			{
+				itsFile.close();
+			}
+			catch (IOException e)
+			{
+				message("close", e.getMessage());
+			}
+		}
+	}
+
+	// sequential writer, through a direct buffer
+	static final class Output
+	{
+		private static final int BUFFER_SIZE = (1 << 20);
+
+		private final FileOutputStream itsStream;
+		private final FileChannel itsChannel;
+		private final ByteBuffer itsBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+		Output(File theFile) throws IOException
+		{
+			itsStream = new FileOutputStream(theFile);
+			itsChannel = itsStream.getChannel();
+		}
+
+		private void ensure(int theNrBytes) throws IOException
+		{
+			if (itsBuffer.remaining() < theNrBytes)
+				flush();
+		}
+
+		private void flush() throws IOException
+		{
+			itsBuffer.flip();
+			while (itsBuffer.hasRemaining())
+				itsChannel.write(itsBuffer);
+			itsBuffer.clear();
+		}
+
+		void putInt(int theInt) throws IOException             { ensure(4); itsBuffer.putInt(theInt); }
+		void putBoolean(boolean theBoolean) throws IOException { ensure(1); itsBuffer.put((byte) (theBoolean ? 1 : 0)); }
+
+		void putString(String theString) throws IOException
+		{
+			if (theString == null)
+			{
+				putInt(-1);
+				return;
+			}
+
+			byte[] aBytes = theString.getBytes(StandardCharsets.UTF_8);
+			putInt(aBytes.length);
+			for (int i = 0; i < aBytes.length; )
+			{
+				ensure(1);
+				int n = Math.min(aBytes.length - i, itsBuffer.remaining());
+				itsBuffer.put(aBytes, i, n);
+				i += n;
+			}
+		}
+
+		// the first theLength values of theInts
+		void putInts(int[] theInts, int theLength) throws IOException
+		{
+			putInt(theLength);
+			for (int i = 0; i < theLength; )
+			{
+				ensure(4);
+				int n = Math.min(theLength - i, (itsBuffer.remaining() >>> 2));
+				itsBuffer.asIntBuffer().put(theInts, i, n);
+				itsBuffer.position(itsBuffer.position() + (n << 2));
+				i += n;
+			}
+		}
+
+		void putLongs(long[] theLongs) throws IOException
+		{
+			putInt(theLongs.length);
+			for (int i = 0; i < theLongs.length; )
+			{
+				ensure(8);
+				int n = Math.min(theLongs.length - i, (itsBuffer.remaining() >>> 3));
+				itsBuffer.asLongBuffer().put(theLongs, i, n);
+				itsBuffer.position(itsBuffer.position() + (n << 3));
+				i += n;
+			}
+		}
+
+		// the first theLength values of theFloats
+		void putFloats(float[] theFloats, int theLength) throws IOException
+		{
+			putInt(theLength);
+			for (int i = 0; i < theLength; )
+			{
+				ensure(4);
+				int n = Math.min(theLength - i, (itsBuffer.remaining() >>> 2));
+				itsBuffer.asFloatBuffer().put(theFloats, i, n);
+				itsBuffer.position(itsBuffer.position() + (n << 2));
+				i += n;
+			}
+		}
+
+		void close() throws IOException
+		{
+			try
+			{
+				flush();
+			}
+			finally
+			{
+				itsStream.close();
+			}
+		}
+	}
+}
@@ -24,6 +24,14 @@ public enum FileType
 			return Collections.singletonList(".arff");
 		}
 	},
+	COLUMNAR("Columnar Table Files")
+	{
+		@Override
+		public List<String> getExtensions()
+		{
+			return Collections.singletonList(".sdt");
+		}
+	},
 	XML("XML Files")
 	{
 		@Override
@@ -48,6 +56,7 @@ public enum FileType
 			List<String> returnList = new ArrayList<String>();
 			returnList.addAll(TXT.getExtensions());
 			returnList.addAll(ARFF.getExtensions());
+			returnList.addAll(COLUMNAR.getExtensions());
 			returnList.addAll(XML.getExtensions());
 			return returnList;
 		}
@@ -0,0 +1,189 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+
+/*
+ * Dictionary-encoded LABEL_RANKING target, see Column.getLabelRankings().
+ *
+ * A ranking target is a NOMINAL Column, with only a few distinct rankings
+ * compared to its number of records. Every distinct ranking is parsed once,
+ * and its ranks and pairwise comparisons are stored by its code in the
+ * Column. The average ranking, LabelRankingMatrix and mode matrix of a set of
+ * records then follow from the number of records for each code, see
+ * getCounts(), instead of parsing the ranking of every record.
+ *
+ * The number of labels is that of the ranking of the first record, as in the
+ * original per-record code, ranks of malformed rankings beyond their own
+ * size are 0, see LabelRanking.getRank().
+ *
+ * NOTE matrix entries are summed as int, these are exact, whereas the
+ * per-record float summation was exact only up to 2^24 records
+ */
+final class LabelRankings
+{
+	private final String itsFirst;		// ranking of the first record
+	private final int itsNrLabels;
+	private final int[] itsNominalz;
+	private final int itsSize;
+	private final int[][] itsRanks;		// [code][label]
+	private final byte[][] itsSigns;	// [code][i*itsNrLabels+j], -1, 0 or 1
+
+	LabelRankings(List<String> theDistinctValues, int[] theNominalz, int theSize)
+	{
+		itsFirst = theDistinctValues.get(theNominalz[0]);
+		itsNrLabels = new LabelRanking(itsFirst).getSize();
+		itsNominalz = theNominalz;
+		itsSize = theSize;
+
+		final int aNrCodes = theDistinctValues.size();
+		final int L = itsNrLabels;
+		itsRanks = new int[aNrCodes][L];
+		itsSigns = new byte[aNrCodes][L * L];
+		for (int c = 0; c < aNrCodes; ++c)
+		{
+			LabelRanking aRanking = new LabelRanking(theDistinctValues.get(c));
+			int[] aRanks = itsRanks[c];
+			for (int i = 0; i < L; ++i)
+				aRanks[i] = aRanking.getRank(i);
+
+			// as LabelRankingMatrix(LabelRanking)
+			byte[] aSigns = itsSigns[c];
+			for (int i = 0; i < L; ++i)
+				for (int j = 0; j < L; ++j)
+					aSigns[(i * L) + j] = (byte) ((aRanks[i] < aRanks[j]) ? 1 : (aRanks[i] > aRanks[j]) ? -1 : 0);
+		}
+	}
+
+	// the data of the Column changed since this was created
+	final boolean isStale(int[] theNominalz, int theSize, int theNrDistinctValues)
+	{
+		return (itsNominalz != theNominalz) || (itsSize != theSize) || (itsRanks.length != theNrDistinctValues);
+	}
+
+	/*
+	 * number of records for each code, theMembers null means all records
+	 */
+	final int[] getCounts(BitSet theMembers)
+	{
+		int[] aCounts = new int[itsRanks.length];
+
+		if (theMembers == null)
+		{
+			for (int i = 0; i < itsSize; ++i)
+				++aCounts[itsNominalz[i]];
+		}
+		else
+		{
+			for (int i = theMembers.nextSetBit(0); (i >= 0) && (i < itsSize); i = theMembers.nextSetBit(i + 1))
+				++aCounts[itsNominalz[i]];
+		}
+
+		return aCounts;
+	}
+
+	/*
+	 * see Column.getAverageRanking(), the order of the summed ranks is
+	 * translated to a ranking
+	 */
+	final LabelRanking getAverageRanking(int[] theCounts)
+	{
+		LabelRanking aResult = new LabelRanking(itsFirst);
+		final int aSize = itsNrLabels;
+		int[] aTotalRanks = new int[aSize];
+
+		for (int c = 0; c < theCounts.length; ++c)
+		{
+			int n = theCounts[c];
+			if (n == 0)
+				continue;
+			int[] aRanks = itsRanks[c];
+			for (int j = 0; j < aSize; ++j)
+				aTotalRanks[j] += n * aRanks[j];
+		}
+
+		//make copy that can be sorted
+		int[] aRanks = Arrays.copyOf(aTotalRanks, aSize);
+		Arrays.sort(aRanks);
+
+		//translate average ranks to a ranking
+		for (int i = 0; i < aSize; ++i)
+		{
+			int aLookup = aTotalRanks[i];
+			int aFirst = -1;
+			//look up rank for this average
+			for (int j = 0; j < aSize; ++j)
+				if (aLookup == aRanks[j])
+					aFirst = j;
+			//TODO: properly deal with ties in the ranking
+			aResult.setRank(i, aFirst);
+		}
+
+		return aResult;
+	}
+
+	/*
+	 * see Column.getAverageRankingMatrix()
+	 */
+	final LabelRankingMatrix getAverageRankingMatrix(int[] theCounts)
+	{
+		final int L = itsNrLabels;
+		int[] aSums = new int[L * L];
+		int aCount = 0;
+
+		for (int c = 0; c < theCounts.length; ++c)
+		{
+			int n = theCounts[c];
+			if (n == 0)
+				continue;
+			aCount += n;
+			byte[] aSigns = itsSigns[c];
+			for (int k = 0; k < aSums.length; ++k)
+				aSums[k] += n * aSigns[k];
+		}
+
+		LabelRankingMatrix aResult = new LabelRankingMatrix(L);
+		for (int i = 0; i < L; ++i)
+			for (int j = 0; j < L; ++j)
+				aResult.itsMatrix[i][j] = aSums[(i * L) + j];
+		//divide by zero is not possible, subgroups always have members
+		aResult.divide(aCount);
+
+		return aResult;
+	}
+
+	/*
+	 * see Column.getAverageRankingMatrix0(), for each pair of labels the most
+	 * frequent comparison, preferring 1 over 0 over -1 for ties
+	 */
+	final LabelRankingMatrix getModeMatrix(int[] theCounts)
+	{
+		final int L = itsNrLabels;
+		// [sign+1][i*L+j], the index of LabelRankingMatrix.getModeMatrix()
+		int[][] aModes = new int[3][L * L];
+
+		for (int c = 0; c < theCounts.length; ++c)
+		{
+			int n = theCounts[c];
+			if (n == 0)
+				continue;
+			byte[] aSigns = itsSigns[c];
+			for (int k = 0; k < aSigns.length; ++k)
+				aModes[aSigns[k] + 1][k] += n;
+		}
+
+		LabelRankingMatrix aResult = new LabelRankingMatrix(L);
+		for (int i = 0; i < L; ++i)
+		{
+			for (int j = 0; j < L; ++j)
+			{
+				int k = (i * L) + j;
+				if (aModes[0][k] > aModes[1][k])
+					aResult.itsMatrix[i][j] = (aModes[0][k] > aModes[2][k]) ? -1 : 1;
+				else
+					aResult.itsMatrix[i][j] = (aModes[1][k] > aModes[2][k]) ? 0 : 1;
+			}
+		}
+
+		return aResult;
+	}
+}
@@ -1,6 +1,7 @@
 package nl.liacs.subdisc;
 
 import java.io.*;
+import java.util.concurrent.*;
 
 public class Log
 {
@@ -107,7 +108,90 @@ public class Log
 	public static void logCommandLine(String s)
 	{
 		if (COMMANDLINELOG)
-			System.out.println(s);
+		{
+			CommandLineBuffer aBuffer = COMMANDLINEBUFFER.get();
+			if ((aBuffer == null) || !aBuffer.append(s))
+				System.out.println(s);
+		}
+	}
+
+	/*
+	 * for tasks that run concurrently, such as the experiments of
+	 * XMLAutoRun.runAllFromFile(), see CommandLineBuffered
+	 *
+	 * the buffer is inherited by the threads a task creates, such that the
+	 * output of the mining threads of its SubgroupDiscovery is buffered also
+	 * a thread that outlives the task, and still holds its buffer, logs to the
+	 * commandline directly, see CommandLineBuffer.close()
+	 */
+	private static final InheritableThreadLocal<CommandLineBuffer> COMMANDLINEBUFFER = new InheritableThreadLocal<CommandLineBuffer>();
+
+	private static final class CommandLineBuffer
+	{
+		private StringBuilder itsOutput = new StringBuilder();
+
+		synchronized boolean append(String s)
+		{
+			if (itsOutput == null)
+				return false;
+			itsOutput.append(s).append(System.lineSeparator());
+			return true;
+		}
+
+		synchronized String close()
+		{
+			String s = itsOutput.toString();
+			itsOutput = null;
+			return s;
+		}
+	}
+
+	/*
+	 * runs theCallable, keeping the logCommandLine() output of its thread in
+	 * a buffer of its own, instead of interleaving it with the output of
+	 * other tasks that run at the same time
+	 * the thread that collects the results calls logOutput() for every task,
+	 * in the order of the tasks, COMMANDLINELOG is not changed
+	 */
+	static final class CommandLineBuffered<V> implements Callable<V>
+	{
+		private final Callable<V> itsCallable;
+		private String itsOutput;
+
+		CommandLineBuffered(Callable<V> theCallable)
+		{
+			itsCallable = theCallable;
+		}
+
+		@Override
+		public V call() throws Exception
+		{
+			CommandLineBuffer aBuffer = new CommandLineBuffer();
+			COMMANDLINEBUFFER.set(aBuffer);
+			try
+			{
+				return itsCallable.call();
+			}
+			finally
+			{
+				COMMANDLINEBUFFER.remove();
+				itsOutput = aBuffer.close();
+			}
+		}
+
+		// call after Future.get(), that ensures itsOutput is visible
+		void logOutput()
+		{
+			if ((itsOutput != null) && !itsOutput.isEmpty())
+				System.out.print(itsOutput);
+			itsOutput = null;
+		}
+
+		// for tasks of which the output is not of interest
+		void discardOutput()
+		{
+			itsOutput = null;
+		}
 	}
 
 	public static void toUniqueFile(String theFileName, String theContent) {
@@ -0,0 +1,61 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+
+/*
+ * Read-only set of members (row indices) of a Subgroup.
+ *
+ * Mining itself works on java.util.BitSet, as Column.evaluate() and all of the
+ * counting code in Column expect one, but a BitSet always uses (nrRows / 8)
+ * bytes, also for Subgroups that cover only a few rows.
+ * A MemberSet is used to store the members of Subgroups that are kept for a
+ * longer time, in the CandidateQueue and the result SubgroupSet, such that
+ * Subgroup.getMembersUnsafe() does not need to re-evaluate every Condition
+ * starting from SubgroupSet.getAllDataBitSetClone().
+ *
+ * Two implementations exist:
+ * BITSET      wraps a BitSet, this is the original representation
+ * COMPRESSED  Roaring-style run/array/bitmap containers, see
+ *             CompressedMemberSet
+ *
+ * NOTE implementations are immutable, and can be read by multiple threads
+ */
+interface MemberSet
+{
+	enum Type { BITSET, COMPRESSED }
+
+	/** Returns the number of members. */
+	int cardinality();
+
+	/** Returns whether theRow is a member. */
+	boolean get(int theRow);
+
+	/** Returns the first member >= theFromRow, or -1 if there is none. */
+	int nextSetBit(int theFromRow);
+
+	/** Returns the number of members that are also set in theBitSet. */
+	int countCommon(BitSet theBitSet);
+
+	/** Returns a new BitSet with the same members, modifying it is safe. */
+	BitSet toBitSet();
+
+	/** Returns an estimate of the memory used by this MemberSet. */
+	long getSizeInBytes();
+
+	/*
+	 * theBitSet is not copied for Type.BITSET, it should not be modified
+	 * after this call
+	 */
+	static MemberSet valueOf(BitSet theBitSet, Type theType)
+	{
+		if (theBitSet == null || theType == null)
+			throw new IllegalArgumentException("arguments can not be null");
+
+		switch (theType)
+		{
+			case BITSET     : return new BitSetMemberSet(theBitSet);
+			case COMPRESSED : return CompressedMemberSet.valueOf(theBitSet);
+			default         : throw new AssertionError(theType);
+		}
+	}
+}
@@ -2,6 +2,8 @@ package nl.liacs.subdisc;
 
 import java.util.*;
 
+import nl.liacs.subdisc.Column.ValueCountTP;
+
 public class NominalCrossTable
 {
 	private final String[] itsValues;
@@ -10,35 +12,35 @@ public class NominalCrossTable
 
 	public NominalCrossTable(Column theColumn, BitSet theSubgroupMembers, BitSet theTarget)
 	{
-		//itsValues = theColumn.getUniqueNominalBinaryDomain(theSubgroupMembers);
-		// FIXME code is changed because Column.getUniqueNumericDomain(BitSet)
-		// will be removed
-		// the new methods is about as fast, even when it also establishes value
-		// counts (which are ignored), and needs to sort the domain
-		// the final version of this method will be implemented in the same way
-		// as ValueInfo, it holds same count + true positive for numeric values
-		// that is required here (RealBaseIntervalCrossTable already uses it)
+		// counts are established on the codes of the Column, values with a
+		// count of 0 are omitted, the others are in the sort order of their
+		// values, see Column.buildSharedDomain()
+		// NOTE this used to look up every member value in the sorted domain
+		// using Arrays.binarySearch(), which compares Strings, not codes
 		List<String> aDomain = theColumn.itsDistinctValuesU;
-		int aNrMembers = theSubgroupMembers.cardinality();
-		int[] aCounts = theColumn.getUniqueNominalDomainCounts(theSubgroupMembers, aNrMembers);
+		int[] anOrder = theColumn.itsDistinctValuesOrder;
+		ValueCountTP aCounts = theColumn.getUniqueNominalDomainMap(theSubgroupMembers, theTarget);
+		int[] aCnt = aCounts.itsCounts;
+		int[] aPos = aCounts.itsTruePositives;
 
-		itsValues = new String[aCounts[aCounts.length-1]];
-		for (int i = 0, j = -1; i < aCounts.length-1; ++i)
-			if (aCounts[i] > 0)
-				itsValues[++j] = aDomain.get(i);
-		Arrays.sort(itsValues);
+		int aSize = 0;
+		for (int i : aCnt)
+			if (i > 0)
+				++aSize;
 
-		itsPositiveCounts = new int[itsValues.length];
-		itsNegativeCounts = new int[itsValues.length];
+		itsValues = new String[aSize];
+		itsPositiveCounts = new int[aSize];
+		itsNegativeCounts = new int[aSize];
 
-		// check only SG.members, combine 2 loops
-		for (int i = theSubgroupMembers.nextSetBit(0); i >= 0; i = theSubgroupMembers.nextSetBit(i + 1))
+		for (int i = 0, j = -1; i < anOrder.length; ++i)
 		{
-			int anIndex = Arrays.binarySearch(itsValues, theColumn.getNominal(i));
-			if (theTarget.get(i))
-				++itsPositiveCounts[anIndex];
-			else
-				++itsNegativeCounts[anIndex];
+			int aCode = anOrder[i];
+			if (aCnt[aCode] == 0)
+				continue;
+
+			itsValues[++j] = aDomain.get(aCode);
+			itsPositiveCounts[j] = aPos[aCode];
+			itsNegativeCounts[j] = aCnt[aCode] - aPos[aCode];
 		}
 	}
 
@@ -47,112 +49,50 @@ public class NominalCrossTable
 	public int getNegativeCount(int theIndex) { return itsNegativeCounts[theIndex]; }
 	public int size() { return itsValues.length; }
 
-	// Get the domain sorted by p/n
-	// Michael says: rather cumbersome, there must be a cleaner way to do this
-	// MM probably yes, will look at this later
-	// TODO using / auto-(un)boxing of integer <-> Integer is extremely slow
-	// TODO code inefficiently mixes / duplicates arrays (data) and List (view)
-	public List<Integer> getSortedDomainIndices()
+	// Get the domain sorted by p/n, highest first
+	// ties remain in the sort order of the values, as with Collections.sort()
+	// of the original List<Integer> version, but without boxing, and products
+	// are long as int overflows for counts over 46340
+	public int[] getSortedDomainIndices()
 	{
-		List<Integer> aSortedIndexList = new ArrayList<Integer>(itsValues.length);
-		for (int i = 0; i < itsValues.length; i++)
-			aSortedIndexList.add(Integer.valueOf(i));
-
-		// as long a itsPositiveCounts / itsNegativeCounts do not change
-		// CrossTableComparator could be saved as member of this class,
-		// instead of being recreated for each call to getSortedDomainIndices
-		// MM getSortedDomainIndices() is only called once for each
-		// evaluated candidate, saving is not needed
-		// also, although Subgroups build from different Conditions may
-		// have the exact same members keeping every NCT for each BitSet
-		// configuration is a bit over the top
-
-		CrossTableComparator aCTC = new CrossTableComparator(itsPositiveCounts, itsNegativeCounts);
-
-		boolean anOptimalSort = false;
+		int[] aSortedIndices = new int[itsValues.length];
+		for (int i = 0; i < aSortedIndices.length; ++i)
+			aSortedIndices[i] = i;
 
-		if (anOptimalSort)
-		{
-			sortValues(aSortedIndexList, 0, aSortedIndexList.size()-1, aCTC);
-		}
-		else
-		{
-			Collections.sort(aSortedIndexList, aCTC);
-		}
+		mergeSort(aSortedIndices, new int[aSortedIndices.length], 0, aSortedIndices.length);
 
-		return aSortedIndexList;
+		return aSortedIndices;
 	}
 
-	/*
-	 * Sort values based on pos/neg ratios.
-	 * Complexity is asymptotically optimal, however, if aOptimalSort==false
-	 * it reverts to java's builtin (merge) sort, which is not optimal but
-	 * probably more optimized.
-	 */
-	private void sortValues(List<Integer> aSortedIndexList, int l, int r, CrossTableComparator aCTC)
+	// stable, sorts theIndices[theFrom, theTo), theBuffer is scratch space
+	private void mergeSort(int[] theIndices, int[] theBuffer, int theFrom, int theTo)
 	{
-		if (r <= l)
+		if (theTo - theFrom < 2)
 			return;
 
-		int i = l - 1;
-		int j = r;
-		int p = l - 1;
-		int q = r;
+		int aMid = (theFrom + theTo) >>> 1;
+		mergeSort(theIndices, theBuffer, theFrom, aMid);
+		mergeSort(theIndices, theBuffer, aMid, theTo);
+
+		// already in order
+		if (compare(theIndices[aMid-1], theIndices[aMid]) <= 0)
+			return;
 
-		Integer arr = aSortedIndexList.get(r);
-		for ( ; ; )
+		System.arraycopy(theIndices, theFrom, theBuffer, theFrom, theTo - theFrom);
+		for (int i = theFrom, j = aMid, k = theFrom; k < theTo; ++k)
 		{
-			while (aCTC.compare(aSortedIndexList.get(++i), arr) < 0 );
-			while (aCTC.compare(arr, aSortedIndexList.get(--j)) < 0 )
-				if (j == l) break;
-			if (i >= j) break;
-			aSortedIndexList.set(j, aSortedIndexList.set(i, aSortedIndexList.get(j)));
-			if (aCTC.compare(aSortedIndexList.get(i), arr) == 0) {
-				p++;
-				aSortedIndexList.set(i, aSortedIndexList.set(p, aSortedIndexList.get(i)));
-			}
-			if (aCTC.compare(arr, aSortedIndexList.get(j)) == 0) {
-				q--;
-				aSortedIndexList.set(q, aSortedIndexList.set(j, aSortedIndexList.get(q)));
-			}
+			if ((j >= theTo) || ((i < aMid) && (compare(theBuffer[i], theBuffer[j]) <= 0)))
+				theIndices[k] = theBuffer[i++];
+			else
+				theIndices[k] = theBuffer[j++];
 		}
-
-		aSortedIndexList.set(r, aSortedIndexList.set(i, aSortedIndexList.get(r)));
-
-		j = i - 1;
-		i = i + 1;
-
-		for (int k = l; k < p; k++, j--)
-			aSortedIndexList.set(j, aSortedIndexList.set(k, aSortedIndexList.get(j)));
-		for (int k = r-1; k > q; k--, i++)
-			aSortedIndexList.set(k, aSortedIndexList.set(i, aSortedIndexList.get(k)));
-
-		sortValues(aSortedIndexList, l, j, aCTC);
-		sortValues(aSortedIndexList, i, r, aCTC);
-
-		return;
 	}
 
-	// move to separate class upon discretion
-	private class CrossTableComparator implements Comparator<Integer>
+	// < 0 when p/n for theIndex1 is higher than that for theIndex2
+	private int compare(int theIndex1, int theIndex2)
 	{
-		private final int[] itsPosCounts;
-		private final int[] itsNegCounts;
-
-		/** no null check, may throw null pointer exception */
-		CrossTableComparator(int[] thePositiveCounts, int[] theNegativeCounts)
-		{
-			itsPosCounts = thePositiveCounts;
-			itsNegCounts = theNegativeCounts;
-		}
-
-		@Override
-		public int compare(Integer index1, Integer index2)
-		{
-			// avoid explicit auto-(un)boxing, gives compiler / JVM
-			// more freedom to optimise
-			return (itsPosCounts[index2] * itsNegCounts[index1]) -
-				(itsPosCounts[index1] * itsNegCounts[index2]);
-		}
+		long x = ((long) itsPositiveCounts[theIndex2]) * itsNegativeCounts[theIndex1];
+		long y = ((long) itsPositiveCounts[theIndex1]) * itsNegativeCounts[theIndex2];
+		return Long.compare(x, y);
 	}
 }
@@ -0,0 +1,193 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+
+import nl.liacs.subdisc.ConditionListBuilder.ConditionList;
+
+/*
+ * Members of ConditionList prefixes, used when killed Subgroup members are
+ * re-evaluated, see Subgroup.getMembersUnsafe().
+ *
+ * Sibling Candidates share long prefixes, the members of the longest cached
+ * prefix are reused, only the remaining Conditions are evaluated.
+ * Prefixes are taken in canonical order, as (A AND B) and (B AND A) have the
+ * same members.
+ * The cache is least recently used, and is bounded by the size of the cached
+ * BitSets in bytes.
+ *
+ * A PrefixCache is used for one mining run, as Conditions of different Tables
+ * can compare as equal, see SubgroupSet.setPrefixCache().
+ *
+ * NOTE cached BitSets are never modified, Column.evaluate() does not modify
+ * its input, the BitSets are trimmed clones, so reading them from multiple
+ * threads is safe
+ */
+final class PrefixCache
+{
+	// bytes of cached BitSets for all mining runs that run at the same time,
+	// see SearchParameters.getPrefixCacheBudget() and share()
+	static final long BUDGET = (Runtime.getRuntime().maxMemory() >>> 4);
+
+	private final long itsBudget;
+	private final LinkedHashMap<Key, BitSet> itsMap = new LinkedHashMap<Key, BitSet>(16, 0.75f, true);
+	private long itsSize;
+
+	private long itsHits;
+	private long itsMisses;
+	private long itsEvictions;
+
+	/*
+	 * the budget of each of theNrRuns mining runs that run at the same time,
+	 * such that their caches together use at most theBudget
+	 */
+	static long share(long theBudget, int theNrRuns)
+	{
+		return (theNrRuns <= 1) ? theBudget : (theBudget / theNrRuns);
+	}
+
+	PrefixCache(long theBudget)
+	{
+		if (theBudget <= 0L)
+			throw new IllegalArgumentException("budget must be > 0");
+
+		itsBudget = theBudget;
+	}
+
+	/*
+	 * returns a new BitSet with the members of theConditions, starting from
+	 * the longest cached prefix, or all data of theSubgroupSet when there is
+	 * none, the prefixes that are evaluated on the way are added to the cache
+	 */
+	BitSet evaluate(ConditionList theConditions, SubgroupSet theSubgroupSet)
+	{
+		Condition[] aConditions = ConditionListBuilder.toCanonicalOrder(theConditions);
+		int aSize = aConditions.length;
+
+		BitSet b = null;
+		int k = aSize - 1;
+		for ( ; k > 0; --k)
+			if ((b = get(new Key(aConditions, k))) != null)
+				break;
+
+		// only a ConditionList of size > 1 has a prefix to share
+		if (aSize > 1)
+			count(k > 0);
+		if (b == null)
+			b = theSubgroupSet.getAllDataBitSetClone();
+
+		for (int i = k; i < aSize; ++i)
+		{
+			Condition c = aConditions[i];
+			b = c.getColumn().evaluate(b, c);
+
+			if (i < aSize - 1)
+				put(new Key(aConditions, i + 1), (BitSet) b.clone());
+		}
+
+		return b;
+	}
+
+	private synchronized BitSet get(Key theKey)
+	{
+		return itsMap.get(theKey);
+	}
+
+	private synchronized void count(boolean isHit)
+	{
+		if (isHit)
+			++itsHits;
+		else
+			++itsMisses;
+	}
+
+	private synchronized void put(Key theKey, BitSet theMembers)
+	{
+		long aSize = (theMembers.size() >>> 3);
+		if (aSize > itsBudget)
+			return;
+
+		BitSet anOld = itsMap.put(theKey, theMembers);
+		itsSize += (anOld == null ? aSize : aSize - (anOld.size() >>> 3));
+
+		// eldest is least recently used
+		for (Iterator<BitSet> i = itsMap.values().iterator(); (itsSize > itsBudget) && i.hasNext(); )
+		{
+			itsSize -= (i.next().size() >>> 3);
+			i.remove();
+			++itsEvictions;
+		}
+	}
+
+	synchronized long getHits()      { return itsHits; }
+	synchronized long getMisses()    { return itsMisses; }
+	synchronized long getEvictions() { return itsEvictions; }
+	synchronized long getSize()      { return itsSize; }
+
+	@Override
+	public synchronized String toString()
+	{
+		return String.format("hits=%d misses=%d evictions=%d entries=%d bytes=%d/%d", itsHits, itsMisses, itsEvictions, itsMap.size(), itsSize, itsBudget);
+	}
+
+	/*
+	 * the first itsLength Conditions of a canonical Condition[], equality is
+	 * based on Condition.compareTo(), as Condition does not override equals()
+	 */
+	private static final class Key
+	{
+		private final Condition[] itsConditions;
+		private final int itsLength;
+		private final int itsHashCode;
+
+		Key(Condition[] theConditions, int theLength)
+		{
+			itsConditions = theConditions;
+			itsLength     = theLength;
+
+			int h = theLength;
+			for (int i = 0; i < theLength; ++i)
+				h = (31 * h) + hashCode(theConditions[i]);
+			itsHashCode = h;
+		}
+
+		private static final int hashCode(Condition theCondition)
+		{
+			int h = (31 * theCondition.getColumn().getIndex()) + theCondition.getOperator().ordinal();
+
+			switch (theCondition.getColumn().getType())
+			{
+				case NOMINAL :
+				{
+					String s = theCondition.getNominalValue();
+					return (31 * h) + (s == null ? 0 : s.hashCode());
+				}
+				// Interval falls back to h, equals() resolves collisions
+				case NUMERIC : return (31 * h) + Float.floatToIntBits(theCondition.getNumericValue());
+				case BINARY  : return (31 * h) + (theCondition.getBinaryValue() ? 1 : 0);
+				default      : return h;
+			}
+		}
+
+		@Override
+		public int hashCode() { return itsHashCode; }
+
+		@Override
+		public boolean equals(Object theObject)
+		{
+			if (this == theObject)
+				return true;
+			if (!(theObject instanceof Key))
+				return false;
+
+			Key k = (Key) theObject;
+			if ((itsHashCode != k.itsHashCode) || (itsLength != k.itsLength))
+				return false;
+
+			for (int i = 0; i < itsLength; ++i)
+				if (itsConditions[i].compareTo(k.itsConditions[i]) != 0)
+					return false;
+
+			return true;
+		}
+	}
+}
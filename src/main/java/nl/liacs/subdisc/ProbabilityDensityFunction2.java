@@ -1,6 +1,7 @@
 package nl.liacs.subdisc;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import nl.liacs.subdisc.histo.*;
 
@@ -20,6 +21,10 @@ public class ProbabilityDensityFunction2 extends ProbabilityDensityFunction
 	// kernel spans [-CUTOFF : CUTOFF], and consists of SAMPLES points
 	private static final double CUTOFF = 4.0;
 	private static final double SAMPLES = 1001;
+	// see Kernel, the grid is split in blocks of at least KERNEL_GRAIN points
+	// it is not split when there are less than KERNEL_PARALLEL_MIN values
+	private static final int KERNEL_GRAIN = 64;
+	private static final int KERNEL_PARALLEL_MIN = 4096;
 
 	// related to original domain
 	private final Column itsData;
@@ -89,13 +94,29 @@ public class ProbabilityDensityFunction2 extends ProbabilityDensityFunction
 		{
 			BitSet anAllData = new BitSet(aSize);
 			anAllData.set(0, aSize);
-			itsDensity = getDensity(itsData, anAllData, k+1);
+			itsDensity = getDensity(getSums(anAllData, aSize, k+1), aSize);
 		}
 		else
-			itsDensity = getDensity(itsData, theSelection, k+1);
+		{
+			int aCount = theSelection.cardinality();
+			itsDensity = getDensity(getSums(theSelection, aCount, k+1), aCount);
+		}
+
+		itsBasePDF = null;
+		itsSums = null;
+		itsCount = 0;
 	}
 
-	private float[] itsComplementDensity; // FIXME MM --- HACK
+	// FIXME MM --- HACK
+	// for a subgroup, the complement density is only computed when it is
+	// requested, as (sums for all data - sums for subgroup), see getSums()
+	private final ProbabilityDensityFunction2 itsBasePDF;
+	private final double[] itsSums;
+	private final int itsCount;
+	private float[] itsComplementDensity;
+	// only for a base PDF, the sums for all rows of itsData, see getAllSums()
+	private volatile double[] itsAllSums;
+
 	// create for subgroup, relative to existing PDF (use same Column data)
 	public ProbabilityDensityFunction2(ProbabilityDensityFunction thePDF, BitSet theMembers)
 	{
@@ -109,12 +130,11 @@ public class ProbabilityDensityFunction2 extends ProbabilityDensityFunction
 		itsHi = aPDF.itsHi;
 		itsLo = aPDF.itsLo;
 		dx = aPDF.dx;
-		itsDensity = aPDF.getDensity(aPDF.itsData, theMembers, aPDF.itsDensity.length);
 
-		BitSet aComplement = (BitSet) theMembers.clone();
-		// DO NOT USE theMembers.size()
-		aComplement.flip(0, itsData.size());
-		itsComplementDensity = aPDF.getDensity(aPDF.itsData, aComplement, aPDF.itsDensity.length);
+		itsBasePDF = aPDF;
+		itsCount = theMembers.cardinality();
+		itsSums = aPDF.getSums(theMembers, itsCount, aPDF.itsDensity.length);
+		itsDensity = getDensity(itsSums, itsCount);
 	}
 
 	// TODO MM rounding error might cause: itsLo+(n*dx) < itsHi
@@ -137,41 +157,172 @@ public class ProbabilityDensityFunction2 extends ProbabilityDensityFunction
 		return density;
 	}
 
-	private final float[] getDensity(Column theData, BitSet theMembers, int n)
+	/*
+	 * Returns, for each of the n grid points mu, the sum of phi((x-mu)/h) for
+	 * all members x with |(x-mu)/h| < CUTOFF, like the original getDensity(),
+	 * but it does not loop over all members for each grid point.
+	 * The values of the members are obtained in sorted order, using the sort
+	 * order of itsData when available, equal values are processed once. As
+	 * the grid points increase, the window of values within CUTOFF of a grid
+	 * point only moves to the right. Missing (NaN) values are not in the sums,
+	 * but count for the normalisation, as in the original code.
+	 * Summation is in double, and in order of the values, not of the members,
+	 * so densities can differ from the original code in the last float bits.
+	 */
+	private final double[] getSums(BitSet theMembers, int theCardinality, int n)
 	{
-		// cache these values first
-		// results in higher memory use + slightly larger rounding error
-		double[] d_h = new double[theMembers.cardinality()];
-		for (int i = 0, j = theMembers.nextSetBit(0); j >= 0; j = theMembers.nextSetBit(j + 1), ++i)
-			d_h[i] = itsData.getFloat(j) / itsH;
+		float[] aSorted = itsData.getSortedValues(theMembers, theCardinality);
 
-		float[] density = new float[n];
-		for (int i = 0; i < density.length; ++i)
+		// distinct values, divided by h, and their counts
+		double[] d_h = new double[aSorted.length];
+		int[] aCounts = new int[aSorted.length];
+		int aSize = 0;
+		for (int i = 0; i < aSorted.length; ++i)
+		{
+			if ((i == 0) || (aSorted[i] != aSorted[i-1]))
+				d_h[aSize++] = aSorted[i] / itsH;
+			++aCounts[aSize-1];
+		}
+
+		double[] aSums = new double[n];
+		Kernel aKernel = new Kernel(d_h, aCounts, aSize, aSums, 0, n);
+		if (aSize >= KERNEL_PARALLEL_MIN)
+			aKernel.invoke();
+		else
+			aKernel.compute(0, n);
+
+		return aSums;
+	}
+
+	/*
+	 * Computes theSums for grid points [from, to), and when there are more
+	 * than KERNEL_GRAIN grid points, splits them into halves. Each block finds
+	 * its first value using a binary search.
+	 */
+	@SuppressWarnings("serial")
+	private final class Kernel extends RecursiveAction
+	{
+		private final double[] itsValues;
+		private final int[] itsCounts;
+		private final int itsSize;
+		private final double[] itsSums;
+		private final int itsFrom;
+		private final int itsTo;
+
+		Kernel(double[] theValues, int[] theCounts, int theSize, double[] theSums, int theFrom, int theTo)
+		{
+			itsValues = theValues;
+			itsCounts = theCounts;
+			itsSize   = theSize;
+			itsSums   = theSums;
+			itsFrom   = theFrom;
+			itsTo     = theTo;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ((itsTo - itsFrom) <= KERNEL_GRAIN)
+			{
+				compute(itsFrom, itsTo);
+				return;
+			}
+
+			int aMiddle = (itsFrom + itsTo) >>> 1;
+			invokeAll(new Kernel(itsValues, itsCounts, itsSize, itsSums, itsFrom, aMiddle),
+					new Kernel(itsValues, itsCounts, itsSize, itsSums, aMiddle, itsTo));
+		}
+
+		// the diff-tests are those of the original code, they are monotone in
+		// the values and in mu_h, so the window contains the same values
+		void compute(int theFrom, int theTo)
 		{
-			double mu = itsLo + (i * dx); // XXX recompute x_grid
-			double mu_h = mu / itsH;
+			if (theFrom >= theTo)
+				return;
+
+			// first value with (diff > -CUTOFF) for the first grid point
+			double mu_h = (itsLo + (theFrom * dx)) / itsH;
+			int lo = 0;
+			for (int hi = itsSize; lo < hi; )
+			{
+				int m = (lo + hi) >>> 1;
+				if ((itsValues[m] - mu_h) > -CUTOFF)
+					hi = m;
+				else
+					lo = m + 1;
+			}
 
-			for (int j = 0; j < d_h.length; ++j)
+			for (int i = theFrom; i < theTo; ++i)
 			{
-				double diff = d_h[j] - mu_h;
-				// TODO MM should find start i before this loop
-				// and break as soon as diff > CUTOFF
-				if (Math.abs(diff) < CUTOFF)
-					density[i] += Gaussian.phi(diff);
+				mu_h = (itsLo + (i * dx)) / itsH; // XXX recompute x_grid
+
+				while ((lo < itsSize) && !((itsValues[lo] - mu_h) > -CUTOFF))
+					++lo;
+
+				double aSum = 0.0;
+				for (int j = lo; j < itsSize; ++j)
+				{
+					double diff = itsValues[j] - mu_h;
+					if (!(diff < CUTOFF))
+						break;
+					aSum += (itsCounts[j] * Gaussian.phi(diff));
+				}
+				itsSums[i] = aSum;
 			}
 		}
+	}
+
+	private final float[] getDensity(double[] theSums, int theCount)
+	{
 		//Vec.divide(density, theMembers.cardinality()*itsH);
-		double nh = d_h.length*itsH;
+		double nh = theCount*itsH;
+		float[] density = new float[theSums.length];
 		for (int i = 0; i < density.length; ++i)
-			density[i] /= nh;
+			density[i] = (float) (theSums[i] / nh);
 
 		return density;
 	}
 
+	// the sums for the complement of a subgroup are derived from these
+	private final double[] getAllSums()
+	{
+		double[] aSums = itsAllSums;
+		if (aSums != null)
+			return aSums;
+
+		synchronized (this)
+		{
+			if (itsAllSums == null)
+			{
+				// DO NOT USE theMembers.size()
+				BitSet anAllData = new BitSet(itsData.size());
+				anAllData.set(0, itsData.size());
+				itsAllSums = getSums(anAllData, itsData.size(), itsDensity.length);
+			}
+			return itsAllSums;
+		}
+	}
+
+	private final float[] getComplementDensity()
+	{
+		double[] anAllSums = itsBasePDF.getAllSums();
+		double[] aSums = new double[itsSums.length];
+		// the difference could be slightly negative due to rounding errors
+		for (int i = 0; i < aSums.length; ++i)
+			aSums[i] = Math.max(0.0, anAllSums[i] - itsSums[i]);
+
+		return getDensity(aSums, itsData.size() - itsCount);
+	}
+
 	// as for ProbabilityDensityHistogram - all @Override
 	@Override public float getDensity(int theIndex) { return itsDensity[theIndex]; }
 	// FIXME MM --- HACK
-	public float getComplementDensity(int theIndex) { return itsComplementDensity[theIndex]; }
+	public float getComplementDensity(int theIndex)
+	{
+		if (itsComplementDensity == null)
+			itsComplementDensity = getComplementDensity();
+		return itsComplementDensity[theIndex];
+	}
 	@Override public float getMiddle(int theIndex) { return (float)(itsLo + (theIndex + 0.5f)*dx); }
 	@Override public int size() { return itsDensity.length; }
 	// NOTE all original code calls smooth() just once
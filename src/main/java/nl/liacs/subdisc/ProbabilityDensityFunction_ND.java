@@ -2,6 +2,7 @@ package nl.liacs.subdisc;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import Jama.*;
 
@@ -20,6 +21,10 @@ public class ProbabilityDensityFunction_ND
 	// but a #_RESOLUTION of 1 or sqrt(2) is good enough 
 	private static final double X_RESOLUTION = Math.sqrt(2.0);
 	private static final double Y_RESOLUTION = Math.sqrt(2.0);
+	// see Kernel2D, grid rows per task, and the smallest value computed by
+	// recurrence, smaller values are computed by Math.exp(), see addKernel()
+	private static final int KERNEL_GRAIN = 4;
+	private static final double RECURRENCE_MIN = 1.0e-290;
 
 	// structured as: [ x1d1, x1d2, ..., x1dd, x2d1, x2d2, x2dd, ..., xndd ]
 	private final float[] itsData;
@@ -171,8 +176,6 @@ public class ProbabilityDensityFunction_ND
 		double yvar_i = cm_inv[1][1];
 		for (int i = 0; i < x_n; ++i)
 		{
-if (i % 1000 == 0)
-System.out.println("grid row: " + i);
 			float[] r = new float[y_n];
 			densities[i] = r;
 
@@ -602,8 +605,6 @@ double C_kde_integral = 0.0;
 ////////////////////////////////////////////////////////////////////////////////
 		for (int i = 0; i < x_n; ++i)
 		{
-if (i % 100 == 0)
-System.out.println("ROW:"+i);
 			float[] r = qm_only ? null : new float[y_n];
 			if (!qm_only)
 				densityDifference[i] = r;
@@ -913,88 +914,298 @@ debug(String.format("        dx=%f\t        dy=%f\t         dxdy=%f", dx, dy, dx
 debug(String.format(" SG_xsigma=%f\t SG_ysigma=%f\txsigma*ysigma=%f", S_xsigma, S_ysigma, (S_xsigma * S_ysigma)));
 debug(String.format("!SG_xsigma=%f\t!SG_ysigma=%f\txsigma*ysigma=%f", C_xsigma, C_ysigma, (C_xsigma * C_ysigma)));
 Timer t = new Timer();
-double S_kde_integral = 0.0;
-double C_kde_integral = 0.0;
 ////////////////////////////////////////////////////////////////////////////////
 
 		boolean qm_only = (theQM != null);
-		float[][] aPDFSubgroup = qm_only ? null : new float[x_n][y_n];
-		float[][] aPDFComplement = qm_only ? null : new float[x_n][y_n];
-		float[][] aPDFDifference = qm_only ? null : new float[x_n][y_n];
+		float[][] aPDFSubgroup = qm_only ? null : new float[x_n][];
+		float[][] aPDFComplement = qm_only ? null : new float[x_n][];
+		float[][] aPDFDifference = qm_only ? null : new float[x_n][];
 		double difference = 0.0;
 		// Kh = 1/n*sum(1/h*K(x/h)), 1/n*1/sqrt(2*PI)^k*|SIGMA|)
 		double S_f = dxdy / (2.0 * Math.PI * Math.sqrt(det(S_cm)) * S_size);
 		double C_f = dxdy / (2.0 * Math.PI * Math.sqrt(det(C_cm)) * C_size);
 
+		Kernel2D k = new Kernel2D(itsData, theSubgroup, theQM, S_size, N,
+						x_min, dx, x_n, y_min, dy, y_n,
+						new double[] { S_xvar_i, S_cov2_i, S_yvar_i }, S_f,
+						new double[] { C_xvar_i, C_cov2_i, C_yvar_i }, C_f,
+						aPDFSubgroup, aPDFComplement, aPDFDifference);
+		k.invoke();
+
+		// rows are added in order, so the first infinite row ends the loop
 		for (int i = 0; i < x_n; ++i)
 		{
-			float[] aRowSubgroup = qm_only ? null : new float[y_n];
-			float[] aRowComplement = qm_only ? null : new float[y_n];
-			float[] aRowDifference = qm_only ? null : new float[y_n];
+			difference += k.itsRowDifferences[i];
 
-			if (!qm_only)
+			// no need to continue
+			if (Double.isInfinite(difference))
 			{
-				aPDFSubgroup[i] = aRowSubgroup;
-				aPDFComplement[i] = aRowComplement;
-				aPDFDifference[i] = aRowDifference;
+				debug(String.format("[%d,%d]=(%20.16f,%20.16f) %20.16f %20.16f", i, k.itsInfinite[1], (x_min + (i*dx)), (y_min + (k.itsInfinite[1]*dy)), k.itsInfiniteKDEs[0], k.itsInfiniteKDEs[1]));
+				debug("QM = " + difference);
+				debug(t.getElapsedTimeString());
+				return new float[][][] {{ {(float)difference}, null, null }};
 			}
+		}
 
-			double x = (x_min + (i*dx)); // x-coord
-			for (int j = 0; j < y_n; ++j)
+		if (qm_only)
+		{
+			debug("QM = " + difference);
+			debug(t.getElapsedTimeString());
+			return new float[][][] {{ {(float)difference}, null, null }};
+		}
+
+		debug(t.getElapsedTimeString());
+		return new float[][][] { aPDFSubgroup, aPDFComplement, aPDFDifference };
+	}
+
+	/*
+	 * Computes the subgroup and complement KDEs of getDensityDifference2D()
+	 * for the grid rows [from, to), and when there are more than KERNEL_GRAIN
+	 * rows, splits them into halves. Each task re-uses two scratch rows, that
+	 * hold the kernel sums for all y of the current grid row.
+	 *
+	 * For a grid row x and data point (x_k, y_k), the kernel values for all
+	 * grid y form a (discretised) 1D Gaussian in y. On a regular grid, the
+	 * ratio of successive values changes by a constant factor q, so starting
+	 * at its peak, the kernel values follow by two multiplications per grid
+	 * point, instead of a Math.exp(), see addKernel(). The sums per grid point
+	 * still add the data points in order, as the original code did.
+	 *
+	 * The per row results are stored, they are combined in order by the
+	 * caller, and rows after an infinite row are not computed.
+	 */
+	@SuppressWarnings("serial")
+	private static final class Kernel2D extends RecursiveAction
+	{
+		private final float[] itsData;
+		private final BitSet itsSubgroup;
+		private final QM itsQM;
+		private final int itsCoverage;
+		private final int itsNrRecords;
+		private final double itsXMin, itsDX, itsYMin, itsDY;
+		private final int itsXN, itsYN;
+		// { xvar_i, cov2_i, yvar_i } for subgroup and complement
+		private final double[][] itsInverses;
+		private final double[] itsFactors;
+		private final boolean[] isPositiveDefinite;
+		private final double[] itsQs;
+		private final float[][][] itsPDFs; // null, or subgroup, complement, difference
+		// results, per grid row
+		final double[] itsRowDifferences;
+		// first infinite row and column, and the subgroup and complement KDE
+		final int[] itsInfinite;
+		final double[] itsInfiniteKDEs;
+		private final int itsFrom;
+		private final int itsTo;
+
+		Kernel2D(float[] theData, BitSet theSubgroup, QM theQM, int theCoverage, int theNrRecords,
+				double theXMin, double theDX, int theXN, double theYMin, double theDY, int theYN,
+				double[] theSubgroupInverse, double theSubgroupFactor,
+				double[] theComplementInverse, double theComplementFactor,
+				float[][] thePDFSubgroup, float[][] thePDFComplement, float[][] thePDFDifference)
+		{
+			itsData = theData;
+			itsSubgroup = theSubgroup;
+			itsQM = theQM;
+			itsCoverage = theCoverage;
+			itsNrRecords = theNrRecords;
+			itsXMin = theXMin;
+			itsDX = theDX;
+			itsXN = theXN;
+			itsYMin = theYMin;
+			itsDY = theDY;
+			itsYN = theYN;
+			itsInverses = new double[][] { theSubgroupInverse, theComplementInverse };
+			itsFactors = new double[] { theSubgroupFactor, theComplementFactor };
+			isPositiveDefinite = new boolean[2];
+			itsQs = new double[2];
+			for (int i = 0; i < 2; ++i)
 			{
-				double y = (y_min + (j*dy)); // y-coord
+				double[] m = itsInverses[i];
+				// the Gaussian in y has a peak only when yvar_i > 0
+				isPositiveDefinite[i] = (m[0] > 0.0) && (m[2] > 0.0) && ((4.0 * m[0] * m[2]) > (m[1] * m[1]));
+				itsQs[i] = Math.exp(-m[2] * itsDY * itsDY);
+			}
+			itsPDFs = (thePDFSubgroup == null) ? null : new float[][][] { thePDFSubgroup, thePDFComplement, thePDFDifference };
+			itsRowDifferences = new double[theXN];
+			itsInfinite = new int[] { Integer.MAX_VALUE, -1 };
+			itsInfiniteKDEs = new double[2];
+			itsFrom = 0;
+			itsTo = theXN;
+		}
 
-				double S_kde = 0.0;
-				double C_kde = 0.0;
-				for (int k = 0, m = 0; k < N; ++k, ++m)
+		private Kernel2D(Kernel2D theKernel, int theFrom, int theTo)
+		{
+			itsData = theKernel.itsData;
+			itsSubgroup = theKernel.itsSubgroup;
+			itsQM = theKernel.itsQM;
+			itsCoverage = theKernel.itsCoverage;
+			itsNrRecords = theKernel.itsNrRecords;
+			itsXMin = theKernel.itsXMin;
+			itsDX = theKernel.itsDX;
+			itsXN = theKernel.itsXN;
+			itsYMin = theKernel.itsYMin;
+			itsDY = theKernel.itsDY;
+			itsYN = theKernel.itsYN;
+			itsInverses = theKernel.itsInverses;
+			itsFactors = theKernel.itsFactors;
+			isPositiveDefinite = theKernel.isPositiveDefinite;
+			itsQs = theKernel.itsQs;
+			itsPDFs = theKernel.itsPDFs;
+			itsRowDifferences = theKernel.itsRowDifferences;
+			itsInfinite = theKernel.itsInfinite;
+			itsInfiniteKDEs = theKernel.itsInfiniteKDEs;
+			itsFrom = theFrom;
+			itsTo = theTo;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ((itsTo - itsFrom) > KERNEL_GRAIN)
+			{
+				int aMiddle = (itsFrom + itsTo) >>> 1;
+				invokeAll(new Kernel2D(this, itsFrom, aMiddle), new Kernel2D(this, aMiddle, itsTo));
+				return;
+			}
+
+			double[][] aRows = new double[2][itsYN];
+			for (int i = itsFrom; i < itsTo; ++i)
+			{
+				synchronized (itsInfinite)
 				{
-					double px = x - itsData[  m];
-					double py = y - itsData[++m]; // NOTE increment
+					if (itsInfinite[0] < i)
+						return;
+				}
 
-					// TODO MM CUTOFF checks go here
+				double x = (itsXMin + (i*itsDX)); // x-coord
 
-					if (theSubgroup.get(k))
-						S_kde += Math.exp(-0.5 * ((px*px*S_xvar_i) + (px*py*S_cov2_i) + (py*py*S_yvar_i)));
+				Arrays.fill(aRows[0], 0.0);
+				Arrays.fill(aRows[1], 0.0);
+				for (int k = 0, m = 0; k < itsNrRecords; ++k, m += 2)
+				{
 					// toComplement check would go here
-					else
-						C_kde += Math.exp(-0.5 * ((px*px*C_xvar_i) + (px*py*C_cov2_i) + (py*py*C_yvar_i)));
+					int c = itsSubgroup.get(k) ? 0 : 1;
+					addKernel(aRows[c], x - itsData[m], itsData[m+1], itsInverses[c], isPositiveDefinite[c], itsQs[c]);
 				}
-				S_kde *= S_f;
-				C_kde *= C_f;
-				S_kde_integral += S_kde;
-				C_kde_integral += C_kde;
 
-				if (!qm_only)
+				double difference = 0.0;
+				for (int j = 0; j < itsYN; ++j)
 				{
-					aRowSubgroup[j] = (float) S_kde;
-					aRowComplement[j] = (float) C_kde;
-					aRowDifference[j] = (float)(S_kde-C_kde);
+					double S_kde = aRows[0][j] * itsFactors[0];
+					double C_kde = aRows[1][j] * itsFactors[1];
+
+					if (itsPDFs == null)
+						difference += divergence(itsQM, S_kde, C_kde, itsCoverage, itsNrRecords);
+
+					// no need to continue
+					if (Double.isInfinite(difference))
+					{
+						synchronized (itsInfinite)
+						{
+							if (i < itsInfinite[0])
+							{
+								itsInfinite[0] = i;
+								itsInfinite[1] = j;
+								itsInfiniteKDEs[0] = S_kde;
+								itsInfiniteKDEs[1] = C_kde;
+							}
+						}
+						break;
+					}
 				}
-				else
-					difference += divergence(theQM, S_kde, C_kde, S_size, N);
+				itsRowDifferences[i] = difference;
 
-				// no need to continue
-				if (Double.isInfinite(difference))
+				if (itsPDFs != null)
 				{
-					debug(String.format("[%d,%d]=(%20.16f,%20.16f) %20.16f %20.16f", i, j, x, y, S_kde, C_kde));
-					debug("QM = " + difference);
-					debug(t.getElapsedTimeString());
-					return new float[][][] {{ {(float)difference}, null, null }};
+					float[] aRowSubgroup = new float[itsYN];
+					float[] aRowComplement = new float[itsYN];
+					float[] aRowDifference = new float[itsYN];
+					for (int j = 0; j < itsYN; ++j)
+					{
+						double S_kde = aRows[0][j] * itsFactors[0];
+						double C_kde = aRows[1][j] * itsFactors[1];
+						aRowSubgroup[j] = (float) S_kde;
+						aRowComplement[j] = (float) C_kde;
+						aRowDifference[j] = (float)(S_kde-C_kde);
+					}
+					itsPDFs[0][i] = aRowSubgroup;
+					itsPDFs[1][i] = aRowComplement;
+					itsPDFs[2][i] = aRowDifference;
 				}
 			}
 		}
-System.out.println("S_kde_integral = " + S_kde_integral);
-System.out.println("C_kde_integral = " + C_kde_integral);
 
-		if (qm_only)
+		/*
+		 * Adds exp(-0.5 * ((px*px*xvar_i) + (px*py*cov2_i) + (py*py*yvar_i)))
+		 * to theRow[j], for py = (y_min + (j*dy)) - y, for all grid y.
+		 * The exponent is a parabola in j, its (nearest) peak j0 is computed
+		 * like the original code, going up (or down), the ratio r of successive
+		 * values is multiplied by q = exp(-yvar_i*dy*dy) for every step.
+		 * Values smaller than RECURRENCE_MIN are computed like the original
+		 * code, such that values that underflow to 0.0, and the divergences
+		 * that depend on that, are the same. After the first 0.0, values only
+		 * get smaller, so the loop ends.
+		 */
+		private final void addKernel(double[] theRow, double px, double y, double[] theInverse, boolean isPositiveDefinite, double q)
 		{
-			debug("QM = " + difference);
-			debug(t.getElapsedTimeString());
-			return new float[][][] {{ {(float)difference}, null, null }};
-		}
+			double xvar_i = theInverse[0];
+			double cov2_i = theInverse[1];
+			double yvar_i = theInverse[2];
+			int n = theRow.length;
 
-		debug(t.getElapsedTimeString());
-		return new float[][][] { aPDFSubgroup, aPDFComplement, aPDFDifference };
+			if (!isPositiveDefinite)
+			{
+				for (int j = 0; j < n; ++j)
+				{
+					double py = (itsYMin + (j*itsDY)) - y;
+					theRow[j] += Math.exp(-0.5 * ((px*px*xvar_i) + (px*py*cov2_i) + (py*py*yvar_i)));
+				}
+				return;
+			}
+
+			double j_peak = ((y - ((px*cov2_i) / (2.0*yvar_i))) - itsYMin) / itsDY;
+			int j0 = (int) Math.max(0.0, Math.min(n-1.0, Math.rint(j_peak)));
+			double py0 = (itsYMin + (j0*itsDY)) - y;
+			double v0 = Math.exp(-0.5 * ((px*px*xvar_i) + (px*py0*cov2_i) + (py0*py0*yvar_i)));
+			theRow[j0] += v0;
+
+			// up: r = v(j+1)/v(j)
+			double v = v0;
+			double r = Math.exp(-0.5 * ((px*cov2_i*itsDY) + (yvar_i*itsDY*itsDY) + (2.0*yvar_i*py0*itsDY)));
+			for (int j = j0+1; j < n; ++j, r *= q)
+			{
+				double w = v*r;
+				if (w >= RECURRENCE_MIN)
+					v = w;
+				else
+				{
+					double py = (itsYMin + (j*itsDY)) - y;
+					v = Math.exp(-0.5 * ((px*px*xvar_i) + (px*py*cov2_i) + (py*py*yvar_i)));
+					if (v == 0.0)
+						break;
+				}
+				theRow[j] += v;
+			}
+
+			// down: s = v(j-1)/v(j)
+			v = v0;
+			double s = Math.exp(-0.5 * ((yvar_i*itsDY*itsDY) - (px*cov2_i*itsDY) - (2.0*yvar_i*py0*itsDY)));
+			for (int j = j0-1; j >= 0; --j, s *= q)
+			{
+				double w = v*s;
+				if (w >= RECURRENCE_MIN)
+					v = w;
+				else
+				{
+					double py = (itsYMin + (j*itsDY)) - y;
+					v = Math.exp(-0.5 * ((px*px*xvar_i) + (px*py*cov2_i) + (py*py*yvar_i)));
+					if (v == 0.0)
+						break;
+				}
+				theRow[j] += v;
+			}
+		}
 	}
 
 	/*
@@ -1,6 +1,7 @@
 package nl.liacs.subdisc;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import javax.swing.*;
 
@@ -202,123 +203,141 @@ public class Process
 		caucWrite("caucLight", aTarget, statistics);
 	}
 
-	private static void caucHeavy(Table theTable, int theFold, BitSet theBitSet, SearchParameters theSearchParameters, boolean showWindows, int theNrThreads)
+	/*
+	 * runs SD for every threshold of the numeric target, using a binary
+	 * target holding the members with a value <= the threshold
+	 *
+	 * the thresholds are mined concurrently, every threshold on its own copy
+	 * of theTable, see Table.copyWith(), theTable, theSearchParameters and
+	 * its TargetConcept are not modified
+	 * the descriptive Columns are presorted once, such that every copy only
+	 * applies the mask of its binary target to the shared sort index
+	 * when thresholds run concurrently each is mined by a single thread, the
+	 * results are processed in threshold order, as before
+	 * the commandline output of every threshold is buffered, and logged in
+	 * threshold order also, see Log.CommandLineBuffered
+	 */
+	static SubgroupSet caucHeavy(Table theTable, int theFold, BitSet theBitSet, SearchParameters theSearchParameters, boolean showWindows, int theNrThreads)
 	{
-		// set to false, so normal SD is run
-		CAUC_HEAVY = false;
-		// use 'showWindows = false' below to avoid numerous windows
-		final boolean showWindowsSetting = showWindows;
-
-		final Column aBackup = theSearchParameters.getTargetConcept().getPrimaryTarget().copy();
-		final BitSet aMembers = membersCheck(theBitSet, aBackup.size());
-//		final float[] aDomain = aBackup.getUniqueNumericDomain(aMembers);
+		final Column aTarget = theSearchParameters.getTargetConcept().getPrimaryTarget();
+		final BitSet aMembers = membersCheck(theBitSet, aTarget.size());
+//		final float[] aDomain = aTarget.getUniqueNumericDomain(aMembers);
 		// FIXME code is changed because Column.getUniqueNumericDomain(BitSet)
 		// will be removed (counts are not used, but code is 4x faster still)
 		// but currently this code is not used, so leave it at this for now
 		//
-		// NOTE using aBackup.size() would be faster than aMembers.cardinality()
-		DomainMapNumeric dm = aBackup.getUniqueNumericDomainMap(aMembers, aMembers.cardinality());
+		// NOTE using aTarget.size() would be faster than aMembers.cardinality()
+		DomainMapNumeric dm = aTarget.getUniqueNumericDomainMap(aMembers, aMembers.cardinality());
 		final float[] aDomain = Arrays.copyOf(dm.itsDomain, dm.itsSize);
-
-		final List<Column> aColumns = theTable.getColumns();
-		final String aName = aBackup.getName();
-		final String aShort = aBackup.getShort();
-		final int anIndex = aBackup.getIndex();
-		final int aNrRows = aBackup.getIndex();
+		// last index is whole dataset
+		final int aNrThresholds = Math.max(0, aDomain.length-1);
+		final int[] aRanks = caucRanks(aTarget, aMembers, aDomain);
 
 		// column will be binary instead of numeric
-		final TargetConcept tc = theSearchParameters.getTargetConcept();
+		final TargetConcept tc = theSearchParameters.getTargetConcept().copy(theTable);
 		tc.setTargetType(TargetType.SINGLE_NOMINAL.GUI_TEXT);
 		tc.setTargetValue("1");
+		final SearchParameters aSearchParameters = theSearchParameters.copy(tc);
 		// set an alternative quality measure
-		final QM backupQM = theSearchParameters.getQualityMeasure();
 		// XXX WRACC is used, but there is no motivation for this choice
 		final QM altQM = QM.WRACC;
-		theSearchParameters.setQualityMeasure(altQM);
+		aSearchParameters.setQualityMeasure(altQM);
 		// set an alternative quality measure minimum
-		final float backupMM = theSearchParameters.getQualityMeasureMinimum();
-		//theSearchParameters.setQualityMeasureMinimum(Float.parseFloat(altQM.MEASURE_DEFAULT));
+		//aSearchParameters.setQualityMeasureMinimum(Float.parseFloat(altQM.MEASURE_DEFAULT));
 		// XXX WOUTER uses 0.01 to compare to old results
 		// QualityMeasure.getMeasureMinimum(WRACC) changed from 0.01 to 0.02 in QM in r1282 (no mention in log)
 		// WRACC.MEASURE_DEFAULT changed from 0.01 to 0.02 in QM in r1569 (synch of both implementations)
-		theSearchParameters.setQualityMeasureMinimum(0.01f);
+		aSearchParameters.setQualityMeasureMinimum(0.01f);
+
+		// sort once, all copies share the presort and only apply their mask
+		for (Column c : theTable.getColumns())
+			c.presort();
+
+		int aNrThreads = (theNrThreads <= 0) ? Runtime.getRuntime().availableProcessors() : theNrThreads;
+		aNrThreads = Math.max(1, Math.min(aNrThreads, aNrThresholds));
+		final int aNrMiningThreads = (aNrThreads == 1) ? theNrThreads : 1;
+		// the thresholds that run at the same time share one prefix cache budget
+		aSearchParameters.setPrefixCacheBudget(PrefixCache.share(aSearchParameters.getPrefixCacheBudget(), aNrThreads));
 
 		Comparator<Subgroup> cmp = new SubgroupConditionListComparator();
 		SubgroupSet aHeavySubgroupSet = new SubgroupSet(cmp);
 
-		// last index is whole dataset
-		for (int i = 0, j = aDomain.length-1; i < j; ++i)
+		// every threshold buffers its own output, it is logged in order
+		List<Log.CommandLineBuffered<SubgroupDiscovery>> aTasks = new ArrayList<Log.CommandLineBuffered<SubgroupDiscovery>>(aNrThresholds);
+		ForkJoinPool aPool = new ForkJoinPool(aNrThreads);
+		try
 		{
-			BitSet aCAUCSet = (BitSet) aMembers.clone();
-			caucMembers(aBackup, aDomain[i], aCAUCSet);
-
-			// create temporary Column
-			Column aColumn = new Column(aName,
-							aShort,
-							AttributeType.BINARY,
-							anIndex,
-							aNrRows);
-
-			// set Column members
-			for (int k = 0, m = aBackup.size(); k < m; ++k)
-				aColumn.add(aCAUCSet.get(k));
-
-			// use Column in Table
-			aColumns.set(anIndex, aColumn);
-
-			// set the new column as primary target
-			theSearchParameters.getTargetConcept().setPrimaryTarget(aColumn);
-
-			// run SD
-			boolean aCommandlinelogState = Log.COMMANDLINELOG;
-			Log.COMMANDLINELOG = false;
-			SubgroupDiscovery sd =
-				runSubgroupDiscovery(theTable, theFold, aMembers, theSearchParameters, false, theNrThreads, null);
-			Log.COMMANDLINELOG = aCommandlinelogState;
+			List<Future<SubgroupDiscovery>> aFutures = new ArrayList<Future<SubgroupDiscovery>>(aNrThresholds);
+			for (int i = 0; i < aNrThresholds; ++i)
+			{
+				aTasks.add(new Log.CommandLineBuffered<SubgroupDiscovery>(new CaucThreshold(theTable, theFold, aMembers, aTarget, aRanks, i, tc, aSearchParameters, aNrMiningThreads)));
+				aFutures.add(aPool.submit(aTasks.get(i)));
+			}
 
-			// For seeing the intermediate ROC curves, uncomment the next line
-			//new ROCCurveWindow(sd.getResult(), theSearchParameters, sd.getQualityMeasure());
+			for (int i = 0; i < aNrThresholds; ++i)
+			{
+				SubgroupDiscovery sd = aFutures.get(i).get();
+				// done with it, do not hold on to all results
+				aFutures.set(i, null);
+				aTasks.get(i).logOutput();
 
-			Log.logCommandLine("Threshold value : " + aDomain[i]);
+				// For seeing the intermediate ROC curves, uncomment the next line
+				//new ROCCurveWindow(sd.getResult(), sd.getSearchParameters(), sd.getQualityMeasure());
 
-			if (CAUC_HEAVY_CONVEX)
-			{
-				// this seems pointless, but the ROC curve needs to be computed to prevent the next line from NullPointerError'ing
-				ROCCurve aROCCurve = new ROCCurve(sd.getResult(), theSearchParameters, sd.getQualityMeasure());
+				Log.logCommandLine("Threshold value : " + aDomain[i]);
 
-				SubgroupSet aROCSubgroups = sd.getResult().getROCListSubgroupSet();
+				if (CAUC_HEAVY_CONVEX)
+				{
+					// this seems pointless, but the ROC curve needs to be computed to prevent the next line from NullPointerError'ing
+					ROCCurve aROCCurve = new ROCCurve(sd.getResult(), sd.getSearchParameters(), sd.getQualityMeasure());
 
-				// force update(), should have been in .getROCListSubgroupSet()
-				aROCSubgroups.size();
+					SubgroupSet aROCSubgroups = sd.getResult().getROCListSubgroupSet();
 
-				//Log.logCommandLine("ROC subgroups : " + aSize);
-				for (Subgroup s : aROCSubgroups)
-					Log.logCommandLine("    " + s.getConditions().toString());
+					// force update(), should have been in .getROCListSubgroupSet()
+					aROCSubgroups.size();
 
-				//select convex hull subgroups from the resulting subgroup set
-				aHeavySubgroupSet.addAll(aROCSubgroups);
+					//Log.logCommandLine("ROC subgroups : " + aSize);
+					for (Subgroup s : aROCSubgroups)
+						Log.logCommandLine("    " + s.getConditions().toString());
 
-				// compile statistics
-//				statistics.add(compileStatistics(aDomain[i],
-//								aCAUCSet.cardinality(),
-//								sd.getResult()));
-			}
-			else
-			{
-				SubgroupSet aResult = sd.getResult();
-				int aSize = aResult.size();
-				if (aSize>0)
+					//select convex hull subgroups from the resulting subgroup set
+					aHeavySubgroupSet.addAll(aROCSubgroups);
+				}
+				else
 				{
-					Subgroup aTopOneSubgroup = aResult.first();
-					Log.logCommandLine("Subgroup : ");
-					Log.logCommandLine("    " + aTopOneSubgroup.getConditions().toString());
-					aHeavySubgroupSet.add(aTopOneSubgroup);
+					SubgroupSet aResult = sd.getResult();
+					int aSize = aResult.size();
+					if (aSize>0)
+					{
+						Subgroup aTopOneSubgroup = aResult.first();
+						Log.logCommandLine("Subgroup : ");
+						Log.logCommandLine("    " + aTopOneSubgroup.getConditions().toString());
+						aHeavySubgroupSet.add(aTopOneSubgroup);
+					}
 				}
 			}
 		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable aCause = e.getCause();
+			if (aCause instanceof RuntimeException)
+				throw (RuntimeException) aCause;
+			if (aCause instanceof Error)
+				throw (Error) aCause;
+			throw new AssertionError(aCause);
+		}
+		finally
+		{
+			aPool.shutdownNow();
+		}
 
 		// dump results
-//		caucWrite("caucHeavy", aBackup, statistics);
+//		caucWrite("caucHeavy", aTarget, statistics);
 
 		Log.logCommandLine("======================================================");
 		Log.logCommandLine("Diverse Subgroup Set Size : " + aHeavySubgroupSet.size());
@@ -334,17 +353,88 @@ public class Process
 		Log.logCommandLine("Joint Entropy             : " + aSubgroupSetWithEntropy.getJointEntropy());
 		Log.logCommandLine("Entropy / Set Size        : " + aSubgroupSetWithEntropy.getJointEntropy()/aHeavySubgroupSet.size());
 
-		// restore original Column
-		aColumns.set(anIndex, aBackup);
-		tc.setPrimaryTarget(aBackup);
-		tc.setTargetType(TargetType.SINGLE_NUMERIC.GUI_TEXT);
-		// restore original SearchParameters
-		theSearchParameters.setQualityMeasure(backupQM);
-		theSearchParameters.setQualityMeasureMinimum(backupMM);
-
-		// back to start
-		CAUC_HEAVY = true;
-		showWindows = showWindowsSetting;
+		return aHeavySubgroupSet;
+	}
+
+	/*
+	 * the binary target of threshold i holds the members with a value <=
+	 * aDomain[i], as caucMembers() does, that is, the members with a rank
+	 * <= i, where the rank is the index of the value in theDomain
+	 * non-members get Integer.MAX_VALUE, missing values (NaN) are never
+	 * larger than a threshold, so their rank is 0
+	 */
+	static int[] caucRanks(Column theColumn, BitSet theMembers, float[] theDomain)
+	{
+		int[] aRanks = new int[theColumn.size()];
+		Arrays.fill(aRanks, Integer.MAX_VALUE);
+
+		for (int k = theMembers.nextSetBit(0); k >= 0; k = theMembers.nextSetBit(k + 1))
+		{
+			float f = theColumn.getFloat(k);
+			if (Float.isNaN(f))
+				aRanks[k] = 0;
+			else
+			{
+				// first value >= f, always found, theDomain holds all values
+				int i = Arrays.binarySearch(theDomain, f);
+				aRanks[k] = (i >= 0) ? i : ~i;
+			}
+		}
+
+		return aRanks;
+	}
+
+	// a single threshold of caucHeavy(), mined on its own copy of the Table
+	private static final class CaucThreshold implements Callable<SubgroupDiscovery>
+	{
+		private final Table itsTable;
+		private final int itsFold;
+		private final BitSet itsMembers;
+		private final Column itsTarget;
+		private final int[] itsRanks;
+		private final int itsThreshold;
+		private final TargetConcept itsTargetConcept;
+		private final SearchParameters itsSearchParameters;
+		private final int itsNrThreads;
+
+		CaucThreshold(Table theTable, int theFold, BitSet theMembers, Column theTarget, int[] theRanks, int theThreshold, TargetConcept theTargetConcept, SearchParameters theSearchParameters, int theNrThreads)
+		{
+			itsTable = theTable;
+			itsFold = theFold;
+			itsMembers = theMembers;
+			itsTarget = theTarget;
+			itsRanks = theRanks;
+			itsThreshold = theThreshold;
+			itsTargetConcept = theTargetConcept;
+			itsSearchParameters = theSearchParameters;
+			itsNrThreads = theNrThreads;
+		}
+
+		@Override
+		public SubgroupDiscovery call()
+		{
+			final int aNrRows = itsTarget.size();
+
+			BitSet aCAUCSet = new BitSet(aNrRows);
+			for (int k = itsMembers.nextSetBit(0); k >= 0; k = itsMembers.nextSetBit(k + 1))
+				if (itsRanks[k] <= itsThreshold)
+					aCAUCSet.set(k);
+
+			// create temporary Column, not row by row through add()
+			Column aColumn = new Column(itsTarget.getName(),
+							itsTarget.getShort(),
+							AttributeType.BINARY,
+							itsTarget.getIndex(),
+							aNrRows);
+			aColumn.setLoadedData(aCAUCSet, aNrRows, new BitSet());
+
+			// use Column in a copy of the Table, set it as primary target
+			Table aTable = itsTable.copyWith(aColumn);
+			SearchParameters aSearchParameters = itsSearchParameters.copy(itsTargetConcept.copy(aTable));
+
+			// run SD
+			return runSubgroupDiscovery(aTable, itsFold, itsMembers, aSearchParameters, false, itsNrThreads, null);
+		}
 	}
 
 	private static BitSet membersCheck(BitSet theBitSet, int theSize)
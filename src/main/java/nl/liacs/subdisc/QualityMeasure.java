@@ -465,6 +465,137 @@ public class QualityMeasure
 		return returnValue;
 	}
 
+	/*
+	 * SINGLE_NOMINAL optimistic estimates
+	 * a refinement of a Subgroup selects a subset of its members, so for any
+	 * refinement HB' <= HB and nHB' <= nHB, the optimistic estimate is the
+	 * maximum quality over this (HB', nHB') rectangle
+	 *
+	 * MONOTONE QMs increase with HB' and decrease with nHB', the maximum is at
+	 * the (HB, 0) corner, for HB = 0 it is at (0, 1), as B' > 0
+	 * CONVEX QMs attain the maximum at a corner, (0, 0) is not a Subgroup
+	 * COVERAGE can only decrease
+	 * see Morishita and Sese (2000) and Grosskreutz et al. (2008)
+	 *
+	 * the minimum coverage is ignored, the estimates are valid, though less
+	 * tight than possible
+	 */
+	private static final Set<QM> OPTIMISTIC_ESTIMATE_MONOTONE =
+		EnumSet.of(QM.WRACC, QM.CORTANA_QUALITY, QM.BINOMIAL, QM.JACCARD, QM.TARGET_SHARE, QM.SPECIFICITY, QM.SENSITIVITY, QM.LAPLACE, QM.F_MEASURE, QM.G_MEASURE, QM.LIFT, QM.RELATIVE_LIFT);
+	private static final Set<QM> OPTIMISTIC_ESTIMATE_CONVEX =
+		EnumSet.of(QM.ABSWRACC, QM.CHI_SQUARED, QM.INFORMATION_GAIN, QM.MUTUAL_INFORMATION, QM.PURITY);
+
+	/*
+	 * SINGLE_NUMERIC, for a refinement of size k the sum of deviations from
+	 * the total average is maximal for the k largest values of the Subgroup,
+	 * so the optimistic estimate is the maximum over all k of the quality of
+	 * the top-k values, and of the bottom-k for the INVERSE QMs
+	 * see Lemmerich, Atzmueller and Puppe (2016)
+	 *
+	 * T_TEST has no (finite) estimate, two equal values have no deviation
+	 */
+	private static final Set<QM> OPTIMISTIC_ESTIMATE_NUMERIC =
+		EnumSet.of(QM.Z_SCORE, QM.INVERSE_Z_SCORE, QM.ABS_Z_SCORE, QM.MEAN_TEST, QM.INVERSE_MEAN_TEST, QM.ABS_MEAN_TEST);
+
+	static final boolean hasOptimisticEstimate(QM theMeasure)
+	{
+		return OPTIMISTIC_ESTIMATE_MONOTONE.contains(theMeasure) ||
+			OPTIMISTIC_ESTIMATE_CONVEX.contains(theMeasure) ||
+			OPTIMISTIC_ESTIMATE_NUMERIC.contains(theMeasure) ||
+			(theMeasure == QM.COVERAGE);
+	}
+
+	/**
+	 * Returns an upper bound on the quality of any refinement of a Subgroup
+	 * with the supplied counts, or {@code Double.POSITIVE_INFINITY} if there
+	 * is no optimistic estimate for this QualityMeasure.
+	 */
+	public double getOptimisticEstimate(int theCountHeadBody, int theCoverage)
+	{
+		assert (theCoverage > 0);
+		assert (theCountHeadBody >= 0);
+		assert (theCountHeadBody <= theCoverage);
+
+		int HB  = theCountHeadBody;
+		int nHB = theCoverage - theCountHeadBody;
+		int N   = itsNrRecords;
+		int H   = itsTotalTargetCoverage;
+		QM  m   = itsQualityMeasure;
+
+		if (OPTIMISTIC_ESTIMATE_MONOTONE.contains(m))
+			return calculate(m, N, H, HB, Math.max(HB, 1));
+
+		if (OPTIMISTIC_ESTIMATE_CONVEX.contains(m))
+		{
+			double anEstimate = calculate(m, N, H, HB, theCoverage);
+			if (HB > 0)
+				anEstimate = Math.max(anEstimate, calculate(m, N, H, HB, HB));
+			if (nHB > 0)
+				anEstimate = Math.max(anEstimate, calculate(m, N, H, 0, nHB));
+			return anEstimate;
+		}
+
+		if (m == QM.COVERAGE)
+			return theCoverage;
+
+		return Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Returns an upper bound on the quality of any refinement of a Subgroup
+	 * with the supplied (non-missing) target values, in ascending order, or
+	 * {@code Double.POSITIVE_INFINITY} if there is no optimistic estimate for
+	 * this QualityMeasure.
+	 */
+	public double getOptimisticEstimate(float[] theSortedValues)
+	{
+		QM m = itsQualityMeasure;
+		int n = theSortedValues.length;
+
+		// quality of an empty Statistics is NaN, do not prune
+		if (!OPTIMISTIC_ESTIMATE_NUMERIC.contains(m) || (n == 0))
+			return Double.POSITIVE_INFINITY;
+
+		boolean isZScore = (m == QM.Z_SCORE || m == QM.INVERSE_Z_SCORE || m == QM.ABS_Z_SCORE);
+		if (isZScore && (itsNrRecords <= 1))
+			return 0.0;
+
+		// max over k of (sum of k deviations / sqrt(k)), for top-k / bottom-k
+		double aTop = Double.NEGATIVE_INFINITY;
+		double aBottom = Double.NEGATIVE_INFINITY;
+		double aTopSum = 0.0;
+		double aBottomSum = 0.0;
+		double anAbsSum = 0.0;
+		for (int k = 1; k <= n; ++k)
+		{
+			double aSqrt = Math.sqrt(k);
+			aTopSum    += (theSortedValues[n - k] - itsTotalAverage);
+			aBottomSum += (theSortedValues[k - 1] - itsTotalAverage);
+			anAbsSum   += Math.abs(theSortedValues[k - 1]);
+			aTop    = Math.max(aTop, aTopSum / aSqrt);
+			aBottom = Math.max(aBottom, -aBottomSum / aSqrt);
+		}
+
+		double anEstimate;
+		switch (m)
+		{
+			case Z_SCORE :
+			case MEAN_TEST :         anEstimate = aTop; break;
+			case INVERSE_Z_SCORE :
+			case INVERSE_MEAN_TEST : anEstimate = aBottom; break;
+			default :                anEstimate = Math.max(aTop, aBottom); break;
+		}
+
+		// NOTE calculate(Statistics) uses float sums, their rounding error is
+		// typically sqrt(n) ulps, do not underestimate the computed quality
+		anEstimate += (Math.sqrt(n) * Math.ulp((float) (anAbsSum + (n * Math.abs(itsTotalAverage)))));
+
+		if (isZScore)
+			anEstimate /= itsTotalStandardDeviation;
+
+		return Double.isNaN(anEstimate) ? Double.POSITIVE_INFINITY : anEstimate;
+	}
+
 	private static final double mi(double a, double b, double c)
 	{
 		// by definition 0*log(x) = 0 (NOTE 0*Infinity would return NaN)
@@ -182,6 +182,27 @@ public class RegressionMeasure
 		}
 	}
 
+	/*
+	 * non-base RM from the sums of a subset of the observations of theBase,
+	 * see Column.ValueCountXY, it holds no data points, so the error terms
+	 * are computed from the sums, see updateErrorTerms()
+	 */
+	RegressionMeasure(RegressionMeasure theBase, int theSampleSize, double theXSum, double theYSum, double theXYSum, double theXSquaredSum, double theYSquaredSum)
+	{
+		itsQualityMeasure = theBase.itsQualityMeasure;
+		itsBase = theBase;
+
+		itsSampleSize = theSampleSize;
+		itsXSum = theXSum;
+		itsYSum = theYSum;
+		itsXYSum = theXYSum;
+		itsXSquaredSum = theXSquaredSum;
+		itsYSquaredSum = theYSquaredSum;
+
+		itsData = null;
+		itsComplementData = null;
+	}
+
 	//TODO test and verify method
 	public double getEvaluationMeasureValue()
 	{
@@ -498,6 +519,12 @@ public class RegressionMeasure
 	 */
 	private void updateErrorTerms()
 	{
+		if (itsData == null)
+		{
+			updateErrorTermsFromSums();
+			return;
+		}
+
 		itsErrorTermSquaredSum = 0;
 		for(int i=0; i<itsSampleSize; i++)
 		{
@@ -520,6 +547,37 @@ public class RegressionMeasure
 
 	}
 
+	/*
+	 * as updateErrorTerms(), the squared error terms for the current
+	 * regression function y = b*x + a expand to
+	 * SUM(y*y) - 2b*SUM(x*y) - 2a*SUM(y) + b*b*SUM(x*x) + 2ab*SUM(x) + n*a*a
+	 * the complement uses the regression function of this measure, as
+	 * updateErrorTerms() does, and its sums are those of the base minus these
+	 *
+	 * NOTE cancellation could make the sum of a near-perfect fit negative,
+	 * so it is bounded by 0.0
+	 */
+	private void updateErrorTermsFromSums()
+	{
+		itsErrorTermSquaredSum = getErrorTermSquaredSum(itsSampleSize, itsXSum, itsYSum, itsXYSum, itsXSquaredSum, itsYSquaredSum);
+
+		if (itsBase != null)
+			itsComplementErrorTermSquaredSum = getErrorTermSquaredSum(itsBase.getSampleSize()-itsSampleSize,
+																		itsBase.getXSum()-itsXSum,
+																		itsBase.getYSum()-itsYSum,
+																		itsBase.getXYSum()-itsXYSum,
+																		itsBase.getXSquaredSum()-itsXSquaredSum,
+																		itsBase.itsYSquaredSum-itsYSquaredSum);
+	}
+
+	private double getErrorTermSquaredSum(double theSampleSize, double theXSum, double theYSum, double theXYSum, double theXSquaredSum, double theYSquaredSum)
+	{
+		double b = itsSlope;
+		double a = itsIntercept;
+		double aSum = theYSquaredSum - 2*b*theXYSum - 2*a*theYSum + b*b*theXSquaredSum + 2*a*b*theXSum + theSampleSize*a*a;
+		return Math.max(0.0, aSum);
+	}
+
 	/**
 	 * Determine the error term for a given point
 	 *
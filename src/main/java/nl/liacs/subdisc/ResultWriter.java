@@ -0,0 +1,137 @@
+package nl.liacs.subdisc;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+
+/*
+ * Streaming writer for result files, see XMLAutoRun.save() and
+ * SubgroupSet.saveExtent().
+ *
+ * All output goes through a single reusable ByteBuffer to a FileChannel, there
+ * is no Writer, no char to byte encoder, and ints are written digit by digit.
+ * ASCII text, as all numbers and most Conditions are, is copied into the
+ * buffer directly, other text is encoded using the platform default charset,
+ * as the FileWriter that was used before did.
+ *
+ * NOTE not thread safe, a ResultWriter is used by one thread at a time
+ */
+public final class ResultWriter implements Closeable
+{
+	private static final int BUFFER_SIZE = (1 << 16);
+
+	private final FileChannel itsChannel;
+	private final ByteBuffer itsBuffer;
+	// Integer.MIN_VALUE has 11 characters
+	private final byte[] itsDigits = new byte[11];
+
+	public ResultWriter(File theFile) throws IOException
+	{
+		this(theFile, BUFFER_SIZE);
+	}
+
+	// theBufferSize bytes are buffered before they are written to theFile
+	// NOTE writeInt() and writeLong() need a buffer of at least 8 bytes
+	ResultWriter(File theFile, int theBufferSize) throws IOException
+	{
+		itsChannel = new FileOutputStream(theFile).getChannel();
+		itsBuffer = ByteBuffer.allocate(theBufferSize);
+	}
+
+	public void write(String theString) throws IOException
+	{
+		final int aLength = theString.length();
+
+		for (int i = 0; i < aLength; ++i)
+		{
+			if (theString.charAt(i) >= 0x80)
+			{
+				byte[] aBytes = theString.getBytes(Charset.defaultCharset());
+				write(aBytes, 0, aBytes.length);
+				return;
+			}
+		}
+
+		for (int i = 0; i < aLength; ++i)
+		{
+			if (!itsBuffer.hasRemaining())
+				drain();
+			itsBuffer.put((byte) theString.charAt(i));
+		}
+	}
+
+	// same characters as String.valueOf(int)
+	public void write(int theValue) throws IOException
+	{
+		int i = itsDigits.length;
+		// negative values do not overflow for Integer.MIN_VALUE
+		int v = (theValue < 0) ? theValue : -theValue;
+		do
+		{
+			itsDigits[--i] = (byte) ('0' - (v % 10));
+			v /= 10;
+		}
+		while (v != 0);
+		if (theValue < 0)
+			itsDigits[--i] = '-';
+
+		write(itsDigits, i, itsDigits.length - i);
+	}
+
+	// same characters as String.valueOf(double), there is no cheaper way
+	public void write(double theValue) throws IOException
+	{
+		write(Double.toString(theValue));
+	}
+
+	public void write(byte[] theBytes, int theOffset, int theLength) throws IOException
+	{
+		while (theLength > 0)
+		{
+			if (!itsBuffer.hasRemaining())
+				drain();
+			int n = Math.min(theLength, itsBuffer.remaining());
+			itsBuffer.put(theBytes, theOffset, n);
+			theOffset += n;
+			theLength -= n;
+		}
+	}
+
+	// big-endian, as DataOutputStream
+	void writeInt(int theValue) throws IOException
+	{
+		if (itsBuffer.remaining() < Integer.BYTES)
+			drain();
+		itsBuffer.putInt(theValue);
+	}
+
+	// big-endian, as DataOutputStream
+	void writeLong(long theValue) throws IOException
+	{
+		if (itsBuffer.remaining() < Long.BYTES)
+			drain();
+		itsBuffer.putLong(theValue);
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			drain();
+		}
+		finally
+		{
+			itsChannel.close();
+		}
+	}
+
+	private void drain() throws IOException
+	{
+		itsBuffer.flip();
+		while (itsBuffer.hasRemaining())
+			itsChannel.write(itsBuffer);
+		itsBuffer.clear();
+	}
+}
@@ -16,7 +16,7 @@ public class SearchParameters implements XMLNodeInterface
 	public static final float BETA_DEFAULT = 1.0f;
 	public static final int POST_PROCESSING_COUNT_DEFAULT = 20;
 
-	// when adding/removing members be sure to update addNodeTo() and loadData()
+	// when adding/removing members be sure to update addNodeTo(), loadData() and copy()
 	private TargetConcept	itsTargetConcept;
 	private QM		itsQualityMeasure;
 	private float		itsQualityMeasureMinimum;
@@ -45,6 +45,17 @@ public class SearchParameters implements XMLNodeInterface
 
 	private float		itsOverallRankingLoss;
 
+	// per mining run memory settings, these are not part of the XML
+	// representation of compacted members, null disables it, such that
+	// killed members are always re-evaluated, see Subgroup.compactMembers()
+	private MemberSet.Type	itsMembersAtRest = MemberSet.Type.COMPRESSED;
+	// vertical (dEclat-style) mining: total bytes for COMPRESSED diffsets,
+	// see Subgroup.compactMembers(), 0 disables diffsets
+	private long		itsDiffSetBudget = 0L;
+	// bytes of cached BitSets to re-evaluate killed members, see PrefixCache,
+	// 0 disables the cache, lowered for mining runs that run concurrently
+	private long		itsPrefixCacheBudget = PrefixCache.BUDGET;
+
 	// TODO MM add to loadData() + autorun.dtd
 	private List<ConditionList> itsBeamSeed;
 
@@ -168,6 +179,55 @@ public class SearchParameters implements XMLNodeInterface
 	public void setBeamSeed(List<ConditionList> theBeamSeed)	{ itsBeamSeed = theBeamSeed; }
 	public float getOverallRankingLoss()				{ return itsOverallRankingLoss; }
 	public void setOverallRankingLoss(float theOverallRankingLoss)	{ itsOverallRankingLoss = theOverallRankingLoss; }
+	MemberSet.Type getMembersAtRest()				{ return itsMembersAtRest; }
+	void setMembersAtRest(MemberSet.Type theType)			{ itsMembersAtRest = theType; }
+	public long getDiffSetBudget()					{ return itsDiffSetBudget; }
+	public void setDiffSetBudget(long theDiffSetBudget)		{ if (theDiffSetBudget < 0L) throw new IllegalArgumentException("theDiffSetBudget must be >= 0"); itsDiffSetBudget = theDiffSetBudget; }
+	public long getPrefixCacheBudget()				{ return itsPrefixCacheBudget; }
+	public void setPrefixCacheBudget(long thePrefixCacheBudget)	{ if (thePrefixCacheBudget < 0L) throw new IllegalArgumentException("thePrefixCacheBudget must be >= 0"); itsPrefixCacheBudget = thePrefixCacheBudget; }
+
+	/**
+	 * Creates a copy of these SearchParameters, that uses the
+	 * {@link TargetConcept} passed in as parameter.
+	 * These SearchParameters are not modified.
+	 *
+	 * @param theTargetConcept the TargetConcept for the copy.
+	 *
+	 * @return a new SearchParameters, with the same settings as this one.
+	 */
+	SearchParameters copy(TargetConcept theTargetConcept)
+	{
+		SearchParameters aCopy = new SearchParameters();
+		aCopy.itsTargetConcept = theTargetConcept;
+		aCopy.itsQualityMeasure = itsQualityMeasure;
+		aCopy.itsQualityMeasureMinimum = itsQualityMeasureMinimum;
+		aCopy.itsSearchDepth = itsSearchDepth;
+		aCopy.itsMinimumCoverage = itsMinimumCoverage;
+		aCopy.itsMaximumCoverageFraction = itsMaximumCoverageFraction;
+		aCopy.itsMinimumSupport = itsMinimumSupport;
+		aCopy.itsMaximumSubgroups = itsMaximumSubgroups;
+		aCopy.itsFilterSubgroups = itsFilterSubgroups;
+		aCopy.itsMinimumImprovement = itsMinimumImprovement;
+		aCopy.itsMaximumTime = itsMaximumTime;
+		aCopy.itsSearchStrategy = itsSearchStrategy;
+		aCopy.itsSearchStrategyWidth = itsSearchStrategyWidth;
+		aCopy.itsNominalSets = itsNominalSets;
+		aCopy.itsNumericOperatorSetting = itsNumericOperatorSetting;
+		aCopy.itsNumericStrategy = itsNumericStrategy;
+		aCopy.itsNrBins = itsNrBins;
+		aCopy.itsNrThreads = itsNrThreads;
+		aCopy.itsAlpha = itsAlpha;
+		aCopy.itsBeta = itsBeta;
+		aCopy.itsPostProcessingDoAutoRun = itsPostProcessingDoAutoRun;
+		aCopy.itsPostProcessingCount = itsPostProcessingCount;
+		aCopy.itsOverallRankingLoss = itsOverallRankingLoss;
+		aCopy.itsBeamSeed = itsBeamSeed;
+		aCopy.itsMembersAtRest = itsMembersAtRest;
+		aCopy.itsDiffSetBudget = itsDiffSetBudget;
+		aCopy.itsPrefixCacheBudget = itsPrefixCacheBudget;
+
+		return aCopy;
+	}
 
 	/**
 	 * Creates an {@link XMLNode XMLNode} representation of this
@@ -2,6 +2,7 @@ package nl.liacs.subdisc;
 
 import java.nio.*;
 import java.util.*;
+import java.util.concurrent.atomic.*;
 import java.util.concurrent.locks.*;
 
 import nl.liacs.subdisc.ConditionListBuilder.ConditionList;
@@ -49,9 +50,18 @@ public class Subgroup implements Comparable<Subgroup>
 
 	// not strictly required - but easier in current setup, might change one day
 	private BitSet itsMembers;
+	// optional - set by compactMembers(), survives killMembers(), see NOTE there
+	private MemberSet itsMembersAtRest;
+	// optional - set by compactMembers(), (parent AND NOT members), see NOTE
+	private MemberSet itsDiffSet;
+	// optional - set for refinements, only kept when itsDiffSet is used
+	private Subgroup itsDiffSetParent;
 	// required for members (can be null at any moment, so not a ReadWriteLock)
 	private final Lock itsMembersLock = new ReentrantLock();
 
+	// COMPRESSED members are only kept when using at most 1/x of the BitSet
+	private static final int MEMBERS_AT_REST_MIN_RATIO = 8;
+
 	// not strictly required - but easier in current setup, might change one day
 	private int itsID = 0;
 
@@ -161,6 +171,7 @@ public class Subgroup implements Comparable<Subgroup>
 		// itsCoverage           set through constructorMembersInit below
 		itsParentSet          = theSubgroup.itsParentSet;
 		hasQuality            = false;                             // yes false
+		itsDiffSetParent      = getDiffSetParent(theSubgroup);         // see compactMembers()
 		itsMeasureValue       = theSubgroup.itsMeasureValue;       // see NOTE
 		itsSecondaryStatistic = theSubgroup.itsSecondaryStatistic; // see NOTE
 		itsTertiaryStatistic  = theSubgroup.itsTertiaryStatistic;  // see NOTE
@@ -199,6 +210,13 @@ public class Subgroup implements Comparable<Subgroup>
 		}
 	}
 
+	// the parent is only kept when the mining run of theParent uses diffsets
+	private static Subgroup getDiffSetParent(Subgroup theParent)
+	{
+		SubgroupSet aSet = theParent.itsParentSet;
+		return ((aSet != null) && (aSet.getDiffSetBudget() != null)) ? theParent : null;
+	}
+
 	// safe, clean code using private copy constructor
 	public Subgroup getRefinedSubgroup(Condition theCondition)
 	{
@@ -227,6 +245,7 @@ public class Subgroup implements Comparable<Subgroup>
 		itsCoverage   = theCoverage;
 		itsParentSet  = theSubgroup.itsParentSet;
 		hasQuality    = false;
+		itsDiffSetParent = getDiffSetParent(theSubgroup); // see compactMembers()
 		// itsMeasureValue
 		// itsSecondaryStatistic
 		// itsTertiaryStatistic
@@ -288,22 +307,8 @@ public class Subgroup implements Comparable<Subgroup>
 		{
 			if (itsMembers == null)
 			{
-				// the default Constructor ensures SubgroupSet
-				BitSet b = itsParentSet.getAllDataBitSetClone();
-
-				// does nothing when ConditionList is empty
-				for (int i = 0, j = itsConditions.size(); i < j; ++i)
-				{
-					Condition c = itsConditions.get(i);
-					// FIXME MM for now leave 'true' in git, uses original code
-					//       so far, profiling showed not much difference
-//					if (true) {
-					b = c.getColumn().evaluate(b, c);
-//					} else { c.getColumn().doNotUse(b, c, true); }
-				}
-
 				// only assign to itsMembers when aBitSet is in its final state, avoid intermediate non-null state of itsMembers
-				itsMembers = b;
+				itsMembers = createMembers();
 				// coverage should not have changed
 				assert (itsCoverage == itsMembers.cardinality());
 			}
@@ -317,6 +322,55 @@ public class Subgroup implements Comparable<Subgroup>
 		}
 	}
 
+	// returns a new BitSet, itsMembers is not assigned
+	// for a diffset, this recurses up to the first ancestor that has members,
+	// compacted members, or no diffset, the latter re-evaluates its Conditions
+	private final BitSet createMembers()
+	{
+		itsMembersLock.lock();
+		try
+		{
+			if (itsMembers != null)
+				return (BitSet) itsMembers.clone();
+
+			if (itsMembersAtRest != null)
+				return itsMembersAtRest.toBitSet();
+
+			if (itsDiffSet != null)
+			{
+				BitSet b = itsDiffSetParent.createMembers();
+				for (int i = itsDiffSet.nextSetBit(0); i >= 0; i = itsDiffSet.nextSetBit(i + 1))
+					b.clear(i);
+				return b;
+			}
+
+			// reuse the members of the longest cached prefix, if any
+			PrefixCache aCache = itsParentSet.getPrefixCache();
+			if (aCache != null)
+				return aCache.evaluate(itsConditions, itsParentSet);
+
+			// the default Constructor ensures SubgroupSet
+			BitSet b = itsParentSet.getAllDataBitSetClone();
+
+			// does nothing when ConditionList is empty
+			for (int i = 0, j = itsConditions.size(); i < j; ++i)
+			{
+				Condition c = itsConditions.get(i);
+				// FIXME MM for now leave 'true' in git, uses original code
+				//       so far, profiling showed not much difference
+//				if (true) {
+				b = c.getColumn().evaluate(b, c);
+//				} else { c.getColumn().doNotUse(b, c, true); }
+			}
+
+			return b;
+		}
+		finally
+		{
+			itsMembersLock.unlock();
+		}
+	}
+
 	public ConditionList getConditions() { return itsConditions; }
 	public int getDepth()                 { return itsConditions.size(); }
 	// could be out of sync with itsMembers in between addCondition() update
@@ -385,7 +439,122 @@ public class Subgroup implements Comparable<Subgroup>
 	 */
 	void killMembers()                { itsMembersLock.lock(); try { itsMembers = null; } finally { itsMembersLock.unlock(); }}
 	void reviveMembers()              { getMembersUnsafe(); }
-	public boolean covers(int theRow) { return getMembersUnsafe().get(theRow); }
+
+	/*
+	 * package private, called by SubgroupDiscovery for Subgroups that go into
+	 * the CandidateQueue or result SubgroupSet, before these kill the members
+	 * NOTE
+	 * a compacted copy of the members, when small enough, survives
+	 * killMembers(), reviving it is much cheaper than re-evaluating the
+	 * ConditionList
+	 * for long data and low coverage Subgroups a CompressedMemberSet uses only
+	 * a fraction of the memory of a BitSet
+	 * when the compacted members are too large, the difference with the parent
+	 * is stored instead, as in dEclat, when small enough and theDiffSetBudget
+	 * (bytes) allows it, reviving then costs a walk up to the first ancestor
+	 * with compacted members plus the size of the diffsets on the way, instead
+	 * of a full scan for every Condition
+	 * the budget is never given back, as it is unknown when Subgroups become
+	 * unreachable, when it runs out, members are re-evaluated as before
+	 * for Subgroups created through direct computation there are no members
+	 * to compact, these are still re-evaluated when needed
+	 * theMembersAtRest is the representation of the compacted members, see
+	 * SearchParameters.getMembersAtRest(), null disables compaction, such
+	 * that killed members are always re-evaluated from the ConditionList
+	 */
+	void compactMembers(MemberSet.Type theMembersAtRest, AtomicLong theDiffSetBudget)
+	{
+		itsMembersLock.lock();
+		try
+		{
+			// the parent is only referenced for a diffset
+			Subgroup aParent = itsDiffSetParent;
+			itsDiffSetParent = null;
+
+			if (theMembersAtRest == null)
+				return;
+			if ((itsMembers == null) || (itsMembersAtRest != null) || (itsDiffSet != null))
+				return;
+
+			long aBitSetBytes = (itsMembers.size() >>> 3);
+			MemberSet m = MemberSet.valueOf(itsMembers, theMembersAtRest);
+			if ((theMembersAtRest == MemberSet.Type.BITSET) || ((m.getSizeInBytes() * MEMBERS_AT_REST_MIN_RATIO) <= aBitSetBytes))
+			{
+				itsMembersAtRest = m;
+				return;
+			}
+
+			if ((aParent == null) || (theDiffSetBudget == null))
+				return;
+
+			// (parent AND NOT members), as members are a subset of the parent
+			BitSet aDiff = aParent.createMembers();
+			aDiff.andNot(itsMembers);
+			MemberSet d = MemberSet.valueOf(aDiff, MemberSet.Type.COMPRESSED);
+			long aSize = d.getSizeInBytes();
+			// there is a budget, so no MEMBERS_AT_REST_MIN_RATIO is required
+			if (aSize >= aBitSetBytes)
+				return;
+			if (theDiffSetBudget.addAndGet(-aSize) < 0L)
+			{
+				theDiffSetBudget.addAndGet(aSize);
+				return;
+			}
+
+			itsDiffSet       = d;
+			itsDiffSetParent = aParent;
+		}
+		finally
+		{
+			itsMembersLock.unlock();
+		}
+	}
+
+	public boolean covers(int theRow)
+	{
+		itsMembersLock.lock();
+		try
+		{
+			// avoid inflating compacted members for a single lookup
+			if (itsMembers == null)
+			{
+				if (itsMembersAtRest != null)
+					return itsMembersAtRest.get(theRow);
+				if (itsDiffSet != null)
+					return !itsDiffSet.get(theRow) && itsDiffSetParent.covers(theRow);
+			}
+			return getMembersUnsafe().get(theRow);
+		}
+		finally
+		{
+			itsMembersLock.unlock();
+		}
+	}
+
+	/*
+	 * package private, a read-only view of the members, for streaming writers
+	 * like covers(), compacted members are not inflated, and itsMembers is
+	 * not copied, when there are neither, the members are created and
+	 * compacted, but not assigned to itsMembers, such that holding the
+	 * MemberSets of all Subgroups of a SubgroupSet costs no more than their
+	 * compacted size, instead of a BitSet each
+	 */
+	MemberSet getMemberSet()
+	{
+		itsMembersLock.lock();
+		try
+		{
+			if (itsMembers != null)
+				return MemberSet.valueOf(itsMembers, MemberSet.Type.BITSET);
+			if (itsMembersAtRest != null)
+				return itsMembersAtRest;
+			return MemberSet.valueOf(createMembers(), MemberSet.Type.COMPRESSED);
+		}
+		finally
+		{
+			itsMembersLock.unlock();
+		}
+	}
 
 	public int getID()                { return itsID; }
 	public void setID(int theID)      { itsID = theID; }
@@ -483,8 +652,50 @@ public class Subgroup implements Comparable<Subgroup>
 
 		itsMembersLock.lock();
 		// throughout countCommon() itsMembers must not be modified
-		try     { return countCommon(getMembersUnsafe(), theBitSet); }
-		finally { itsMembersLock.unlock(); }
+		try
+		{
+			if ((itsMembers == null) && (itsMembersAtRest != null))
+				return itsMembersAtRest.countCommon(theBitSet);
+			return countCommon(getMembersUnsafe(), theBitSet);
+		}
+		finally
+		{
+			itsMembersLock.unlock();
+		}
+	}
+
+	// as above, for a fixed BitSet in words, see BitSetCount, no clone is made
+	final int countCommon(long[] theWords)
+	{
+		if (theWords == null)
+			throw new IllegalArgumentException("arguments can not be null");
+
+		itsMembersLock.lock();
+		try
+		{
+			return BitSetCount.countCommon(getMembersUnsafe(), itsCoverage, theWords);
+		}
+		finally
+		{
+			itsMembersLock.unlock();
+		}
+	}
+
+	// fused version for two fixed BitSets, see BitSetCount
+	final void countCommon(long[] theA, long[] theB, int[] theCounts)
+	{
+		if (theA == null || theB == null || theCounts == null)
+			throw new IllegalArgumentException("arguments can not be null");
+
+		itsMembersLock.lock();
+		try
+		{
+			BitSetCount.countCommon(getMembersUnsafe(), itsCoverage, theA, theB, theCounts);
+		}
+		finally
+		{
+			itsMembersLock.unlock();
+		}
 	}
 
 	// FIXME MM - there is a reasonable chance that an and() on the two BitSets
@@ -12,6 +12,7 @@ import javax.swing.*;
 import nl.liacs.subdisc.Column.DomainMapNumeric;
 import nl.liacs.subdisc.Column.ValueCount;
 import nl.liacs.subdisc.Column.ValueCountTP;
+import nl.liacs.subdisc.Column.ValueCountXY;
 import nl.liacs.subdisc.ColumnConditionBasesBuilder.ColumnConditionBases;
 import nl.liacs.subdisc.ColumnConditionBasesBuilder.ColumnConditionBasesBinary;
 import nl.liacs.subdisc.ColumnConditionBasesBuilder.ColumnConditionBasesNominalElementOf;
@@ -56,6 +57,12 @@ public class SubgroupDiscovery
 
 	private static final int[] FOR_REAL_PRINTS = { 10, 100 };			// print CoverRedundancy and JointEntropy for topK for For Real paper
 
+	private static final int INTRA_CANDIDATE_GRAIN = 8;				// max nr. ColumnConditionBases per task when a Candidate is refined in parallel
+
+	private static final int COUNT_BLOCK = 8;					// max nr. numeric Columns counted in a single pass over the parent members, see Test.evaluate()
+
+	private static final boolean USE_OPTIMISTIC_ESTIMATE_PRUNING     = true;	// SINGLE_NOMINAL/SINGLE_NUMERIC exhaustive strategies only, see isOptimisticEstimatePruning()
+
 	// statistics for debugging - related to booleans above
 	private AtomicLong itsBestPairsCount  = new AtomicLong(0);
 	private AtomicLong itsBestPairsDiffer = new AtomicLong(0);
@@ -90,10 +97,14 @@ public class SubgroupDiscovery
 
 	// target concept type-specific information, including base models
 	private BitSet itsBinaryTarget;                 // SINGLE_NOMINAL
+	private long[] itsBinaryTargetWords;            // SINGLE_NOMINAL, itsBinaryTarget for BitSetCount
+	private Map<Column, long[]> itsBinaryWords;     // SINGLE_NOMINAL, BINARY description Columns for BitSetCount
 	private Column itsTargetRankings;               // SINGLE_NOMINAL (label ranking)
 	private Column itsNumericTarget;                // SINGLE_NUMERIC
 	private Column itsPrimaryColumn;                // DOUBLE_CORRELATION / DOUBLE_REGRESSION / DOUBLE_BINARY / SCAPE
 	private Column itsSecondaryColumn;              // DOUBLE_CORRELATION / DOUBLE_REGRESSION / DOUBLE_BINARY / SCAPE
+	private long[] itsPrimaryWords;                 // DOUBLE_BINARY / SCAPE, itsPrimaryColumn for BitSetCount
+	private long[] itsSecondaryWords;               // DOUBLE_BINARY, itsSecondaryColumn for BitSetCount
 	private CorrelationMeasure itsBaseCM;           // DOUBLE_CORRELATION
 	private RegressionMeasure itsBaseRM;            // DOUBLE_REGRESSION
 	private BinaryTable itsBinaryTable;             // MULTI_LABEL
@@ -117,8 +128,16 @@ public class SubgroupDiscovery
 
 	// candidate and result set - check() increments itsCandidateCount
 	private AtomicLong itsCandidateCount = new AtomicLong(0);
+	// Candidates not added or not refined, as no refinement can enter itsResult
+	private AtomicLong itsPrunedCount = new AtomicLong(0);
+	private boolean isOptimisticEstimatePruning = false;
 	private CandidateQueue itsCandidateQueue;
 	private final SubgroupSet itsResult;
+	// set by preMining(), for the whole run, see Subgroup.compactMembers()
+	private MemberSet.Type itsMembersAtRest;
+	// bytes for diffsets, and bytes left, null when diffsets are not used
+	private long itsDiffSetBudgetTotal;
+	private AtomicLong itsDiffSetBudget;
 
 	// for mining
 	private long itsEndTime = Long.MIN_VALUE;
@@ -171,6 +190,7 @@ public class SubgroupDiscovery
 		BitSet aBitSet = new BitSet(itsTable.getNrRows());
 		aBitSet.set(0, itsTable.getNrRows());
 		itsBinaryTarget = aTC.getPrimaryTarget().evaluate(aBitSet, aCondition);
+		itsBinaryTargetWords = BitSetCount.toWords(itsBinaryTarget, itsTable.getNrRows());
 		itsResult = new SubgroupSet(itsSearchParameters.getMaximumSubgroups(), theSelection, itsTable.getNrRows(), itsBinaryTarget);
 	}
 
@@ -258,6 +278,11 @@ public class SubgroupDiscovery
                 		itsBaseCM = new CorrelationMeasure(itsSearchParameters.getQualityMeasure(), itsPrimaryColumn, itsSecondaryColumn);
 			}
         	}
+		else
+		{
+			itsPrimaryWords   = BitSetCount.toWords(itsPrimaryColumn.getBinaries(), itsTable.getNrRows());
+			itsSecondaryWords = BitSetCount.toWords(itsSecondaryColumn.getBinaries(), itsTable.getNrRows());
+		}
 
 		itsResult = new SubgroupSet(itsSearchParameters.getMaximumSubgroups(), theSelection, itsTable.getNrRows());
 	}
@@ -283,6 +308,7 @@ public class SubgroupDiscovery
 		//					 itsPrimaryColumn, itsSecondaryColumn, itsSearchParameters.getOverallRankingLoss());
 		// unable to reproduce error MM
 		itsQualityMeasure = new QualityMeasure(itsSearchParameters.getQualityMeasure(), itsNrRows, itsPrimaryColumn.getBinaries().cardinality(), itsPrimaryColumn, itsSecondaryColumn);
+		itsPrimaryWords = BitSetCount.toWords(itsPrimaryColumn.getBinaries(), itsTable.getNrRows());
 		itsQualityMeasureMinimum = itsSearchParameters.getQualityMeasureMinimum();
 
 		itsResult = new SubgroupSet(itsSearchParameters.getMaximumSubgroups(), theSelection, itsTable.getNrRows());
@@ -460,32 +486,38 @@ public class SubgroupDiscovery
 			return;
 		}
 
+		// set before any Test is submitted, never modified afterwards
+		if (isDirectSingleBinary())
+			itsBinaryWords = getBinaryWords(aColumnConditionBasesSet);
+
 		if (theNrThreads == 0)
 			theNrThreads = Runtime.getRuntime().availableProcessors();
 		/*
 		 * essential multi-thread setup
-		 * uses semaphores so only nrThreads can run at the same time
-		 * AND ExecutorService can only start new Test after old one
-		 * completes
+		 * Tests run in a work-stealing ForkJoinPool, every worker has its own
+		 * deque, so sub-tasks forked by a Test stay local to that worker, but
+		 * can be stolen by idle workers
+		 * the CandidateQueue remains the single authority for the order in
+		 * which Candidates are refined, a TestTracker ensures only nrThreads
+		 * Tests are running at the same time, and the dispatching thread
+		 * blocks, instead of spins, when it has to wait for running Tests
 		 */
-		ExecutorService es = Executors.newFixedThreadPool(theNrThreads);
-		Semaphore s = new Semaphore(theNrThreads);
+		ForkJoinPool aPool = new ForkJoinPool(theNrThreads);
+		TestTracker aTracker = new TestTracker(theNrThreads);
 		int aSearchDepth = itsSearchParameters.getSearchDepth();
 
 		while (!isTimeToStop())
 		{
-			// wait until a Thread becomes available
-			try { s.acquire(); }
-			catch (InterruptedException e) { e.printStackTrace(); }
+			// wait until a worker becomes available
+			long aNrFinished;
+			try { aNrFinished = aTracker.acquire(); }
+			catch (InterruptedException e) { e.printStackTrace(); break; }
 
 			/*
-			 * if other threads still have Candidates to add they
-			 * are blocked from doing so through this lock on
-			 * itsCandidateQueue, and therefore can not release
-			 * their permit
-			 * although they could have added their Candidates
-			 * immediately prior this lock, without releasing their
-			 * permit yet
+			 * Candidates are only taken from the CandidateQueue after a
+			 * worker became available, such that Candidates added by the
+			 * last Test are considered, this makes the result of a single
+			 * threaded run identical to that of the original dispatch loop
 			 *
 			 * NOTE for beam search strategies (COVER-BASED/ BEAM)
 			 * CandidateQueue will moveToNext level upon depletion
@@ -494,16 +526,19 @@ public class SubgroupDiscovery
 			 * therefore only after all but the last Candidates are
 			 * processed (added to next level) can we take the last
 			 * one and let the next level become the current
+			 * this level barrier is the isAlone() check below, no
+			 * other Test can add to the next level at that point
 			 *
 			 * NOTE 2 although individual methods of CandidateQueue
 			 * are thread save, we need a compound action here
 			 * so synchronized is still needed
 			 */
 			Candidate aCandidate = null;
+			boolean alone;
 			synchronized (itsCandidateQueue)
 			{
 				int aTotalSize = itsCandidateQueue.size();
-				boolean alone = (s.availablePermits() == theNrThreads-1);
+				alone = aTracker.isAlone();
 				if (itsCandidateQueue.currentLevelQueueSize() > 0)
 					aCandidate = itsCandidateQueue.removeFirst();
 				else if ((aTotalSize > 0) && alone)
@@ -536,32 +571,23 @@ public class SubgroupDiscovery
 				assert (aSubgroup.getDepth() < aSearchDepth);
 				assert (aSubgroup.getCoverage() > 1);
 
-				es.execute(new Test(aSubgroup, s, aColumnConditionBasesSet, aFilter));
+				aPool.execute(new Test(aSubgroup, aTracker, aColumnConditionBasesSet, aFilter));
 			}
 			// queue was empty, but other threads were running, they
 			// may be in the process of adding new Candidates
-			// wait until at least one finishes, or this one becomes
-			// only thread
+			// give back the worker, and wait until at least one Test
+			// finishes, then check the CandidateQueue again
 			else
 			{
-				try
-				{
-					final int aNrFree = s.drainPermits();
-					if (aNrFree < theNrThreads-1)
-					{
-						s.acquire();
-						s.release(aNrFree+2);
-					}
-					else
-						s.release(aNrFree+1);
-					//continue;
-				}
-				catch (InterruptedException e) { e.printStackTrace(); }
+				assert (!alone);
+				try { aTracker.cancel(aNrFinished); }
+				catch (InterruptedException e) { e.printStackTrace(); break; }
 			}
 		}
-		es.shutdown();
+		aPool.shutdown();
 		// wait for last active threads to complete
-		while (!es.isTerminated()) {};
+		try { aPool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS); }
+		catch (InterruptedException e) { e.printStackTrace(); }
 
 		postMining(theBeginTime);
 
@@ -570,6 +596,8 @@ public class SubgroupDiscovery
 			Log.logCommandLine("TWO DIFFERENT BEST SUBGROUPS: " + itsBestPairsDiffer + "/" + itsBestPairsCount);
 		if (DEBUG_PRINTS_FOR_SKIP)
 			Log.logCommandLine("SKIP COUNT: " + itsSkipCount);
+		if (itsDiffSetBudget != null)
+			Log.logCommandLine("DIFFSET BYTES: " + (itsDiffSetBudgetTotal - itsDiffSetBudget.get()) + "/" + itsDiffSetBudgetTotal);
 		// super temporary - no boolean controlling logging output
 
 		if (DEBUG_PRINTS_FOR_BEST_INTERVAL && NumericStrategy.NUMERIC_INTERVALS == itsSearchParameters.getNumericStrategy())
@@ -595,8 +623,7 @@ public class SubgroupDiscovery
 		// ease log parsing: always print, also maxDepth=1/non-level-wise search
 		if (DEBUG_PRINTS_NEXT_LEVEL_CANDIDATES)// && !itsCandidateQueueSizes.isEmpty())
 			Log.logCommandLine("NR CANDIDATES FOR NEXT LEVEL: " + itsCandidateQueueSizes);
-		for (int topK : FOR_REAL_PRINTS)
-			itsResult.postProcessGetCoverRedundancyAndJointEntropy(topK);
+		itsResult.postProcessGetCoverRedundancyAndJointEntropy(FOR_REAL_PRINTS);
 	}
 
 	private final ConditionBaseSet preMining(long theBeginTime, int theNrThreads)
@@ -609,6 +636,20 @@ public class SubgroupDiscovery
 		// uses ConditionBaseSet to check for irrelevant Conditions in knowledge
 		loadExternalKnowledge(aConditions);
 
+		isOptimisticEstimatePruning = isOptimisticEstimatePruning();
+
+		// settings are read once, changes during mining have no effect
+		itsMembersAtRest = itsSearchParameters.getMembersAtRest();
+		itsDiffSetBudgetTotal = itsSearchParameters.getDiffSetBudget();
+		itsDiffSetBudget = (itsDiffSetBudgetTotal > 0L) ? new AtomicLong(itsDiffSetBudgetTotal) : null;
+		// refinements keep their parent for a diffset, released by postMining()
+		itsResult.setDiffSetBudget(itsDiffSetBudget);
+
+		// for re-evaluation of killed members, released by postMining()
+		final long aPrefixCacheBudget = itsSearchParameters.getPrefixCacheBudget();
+		if (aPrefixCacheBudget > 0L)
+			itsResult.setPrefixCache(new PrefixCache(aPrefixCacheBudget));
+
 		// make subgroup to start with, containing all elements
 		Subgroup aStart = new Subgroup(ConditionListBuilder.emptyList(), itsResult.getAllDataBitSetClone(), itsResult);
 
@@ -721,6 +762,22 @@ public class SubgroupDiscovery
 				&& (s.getNumericStrategy() != NumericStrategy.NUMERIC_VIKAMINE_CONSECUTIVE_ALL && s.getNumericStrategy() != NumericStrategy.NUMERIC_VIKAMINE_CONSECUTIVE_BEST));
 	}
 
+	// for DOUBLE_CORRELATION and DOUBLE_REGRESSION the quality follows from
+	// the sufficient statistics (n, sums of x, y, xy, xx, yy) of a Subgroup,
+	// for numeric Conditions these are obtained per parent and Column in a
+	// single pass over the parent members, see Column.getValueCountXY()
+	//
+	// evaluateNumericRegularGeneric(): for NUMERIC description Attributes
+	//
+	// for COOKS_DISTANCE this is not possible, it uses the data points
+	private final boolean isDirectDouble()
+	{
+		SearchParameters s = itsSearchParameters;
+		TargetType t = s.getTargetType();
+		return ((t == TargetType.DOUBLE_CORRELATION) || ((t == TargetType.DOUBLE_REGRESSION) && (s.getQualityMeasure() != QM.COOKS_DISTANCE)))
+				&& (s.getNumericStrategy() != NumericStrategy.NUMERIC_VIKAMINE_CONSECUTIVE_ALL && s.getNumericStrategy() != NumericStrategy.NUMERIC_VIKAMINE_CONSECUTIVE_BEST);
+	}
+
 	private static final void deleteSortData(List<Column> theColumns)
 	{
 		for (Column c : theColumns)
@@ -776,6 +833,44 @@ public class SubgroupDiscovery
 		return false;
 	}
 
+	/*
+	 * for SINGLE_NOMINAL and SINGLE_NUMERIC, the optimistic estimate bounds
+	 * the quality of all refinements of a Subgroup, when it is below the
+	 * lowest score in a full itsResult, or the quality minimum, the Subgroup
+	 * need not be refined
+	 * NOTE this is exact for exhaustive strategies only, for beam strategies
+	 * the Candidate would take a beam slot, skipping it changes the search
+	 */
+	private final boolean isOptimisticEstimatePruning()
+	{
+		TargetType aTargetType = itsSearchParameters.getTargetType();
+
+		return USE_OPTIMISTIC_ESTIMATE_PRUNING &&
+			((aTargetType == TargetType.SINGLE_NOMINAL) || (aTargetType == TargetType.SINGLE_NUMERIC && !TEMPORARY_CODE)) &&
+			!itsSearchParameters.getSearchStrategy().requiresSearchWidthParameter() &&
+			QualityMeasure.hasOptimisticEstimate(itsSearchParameters.getQualityMeasure());
+	}
+
+	// in SINGLE_NOMINAL the tertiary statistic is the number of positives
+	// in SINGLE_NUMERIC the estimate uses the sorted target values, obtained
+	// through the sort index prepareData() built for the target Column
+	private final boolean isPrunable(Subgroup theSubgroup)
+	{
+		double aDouble;
+		if (itsSearchParameters.getTargetType() == TargetType.SINGLE_NUMERIC)
+			aDouble = itsQualityMeasure.getOptimisticEstimate(itsNumericTarget.getSortedValues(theSubgroup.getMembers(), theSubgroup.getCoverage()));
+		else
+			aDouble = itsQualityMeasure.getOptimisticEstimate((int) theSubgroup.getTertiaryStatistic(), theSubgroup.getCoverage());
+
+		// qualities are stored as float, compare likewise
+		float anEstimate = (float) aDouble;
+
+		if (!ignoreQualityMinimum && (anEstimate <= itsQualityMeasureMinimum))
+			return true;
+
+		return !itsResult.hasPotential(anEstimate);
+	}
+
 	// NOTE itsCandidateCount and currently refined subgroup are unrelated
 	private final void setTitle(Subgroup theSubgroup)
 	{
@@ -796,6 +891,7 @@ public class SubgroupDiscovery
 			StringBuilder sb = new StringBuilder(aCurrent.length() + 32);
 			sb.append("d=").append(Integer.toString(theSubgroup.getDepth()))
 				.append(" cands=").append(FORMATTER.format(itsCandidateCount.get()))
+				.append(" pruned=").append(FORMATTER.format(itsPrunedCount.get()))
 				.append(" evaluating: ").append(aCurrent);
 
 			itsMainWindow.setTitle(sb.toString());
@@ -815,20 +911,98 @@ public class SubgroupDiscovery
 	////////////////////////////////////////////////////////////////////////////
 
 	/*
-	 * After Test is done, it releases its semaphore, so ExecutorService can start a new Test.
+	 * Replaces the Semaphore that was used to limit the number of running
+	 * Tests, the essential difference is that the dispatching thread can wait
+	 * for a change (a Test that finishes) without releasing and re-acquiring
+	 * permits in a loop.
+	 * Every Test is registered through acquire(), and calls release() when it
+	 * is done, also when it throws, such that mine() can never wait forever.
+	 */
+	private static final class TestTracker
+	{
+		private final int itsMaximum;
+		private final Lock itsLock = new ReentrantLock();
+		private final java.util.concurrent.locks.Condition itsChange = itsLock.newCondition();
+		private int itsNrRunning = 0;
+		private long itsNrFinished = 0L;
+
+		TestTracker(int theMaximum)
+		{
+			assert (theMaximum > 0);
+			itsMaximum = theMaximum;
+		}
+
+		// blocks until a worker is free, returns the number of finished Tests
+		long acquire() throws InterruptedException
+		{
+			itsLock.lock();
+			try
+			{
+				while (itsNrRunning == itsMaximum)
+					itsChange.await();
+				++itsNrRunning;
+				return itsNrFinished;
+			}
+			finally
+			{
+				itsLock.unlock();
+			}
+		}
+
+		// true when the caller holds the only acquired worker
+		boolean isAlone()
+		{
+			itsLock.lock();
+			try { return (itsNrRunning == 1); }
+			finally { itsLock.unlock(); }
+		}
+
+		// give back an acquired worker, wait until another Test finishes
+		void cancel(long theNrFinished) throws InterruptedException
+		{
+			itsLock.lock();
+			try
+			{
+				--itsNrRunning;
+				while ((itsNrFinished == theNrFinished) && (itsNrRunning > 0))
+					itsChange.await();
+			}
+			finally
+			{
+				itsLock.unlock();
+			}
+		}
+
+		void release()
+		{
+			itsLock.lock();
+			try
+			{
+				--itsNrRunning;
+				++itsNrFinished;
+				itsChange.signalAll();
+			}
+			finally
+			{
+				itsLock.unlock();
+			}
+		}
+	}
+
+	/*
+	 * After Test is done, it releases its worker, so mine() can start a new Test.
 	 */
 	private class Test implements Runnable
 	{
 		private final Subgroup itsSubgroup;
-		private final Semaphore itsSemaphore;
+		private final TestTracker itsTracker;
 		private final List<ColumnConditionBases> itsColumnConditionBasesSet;
 		private final Fltr itsFilter;
 
-//		public Test(Subgroup theSubgroup, Semaphore theSemaphore, ConditionBaseSet theConditionBaseSet)
-		public Test(Subgroup theSubgroup, Semaphore theSemaphore, List<ColumnConditionBases> theColumnConditionBasesSet, Fltr theFilter)
+		public Test(Subgroup theSubgroup, TestTracker theTracker, List<ColumnConditionBases> theColumnConditionBasesSet, Fltr theFilter)
 		{
 			itsSubgroup                = theSubgroup;
-			itsSemaphore               = theSemaphore;
+			itsTracker                 = theTracker;
 			itsColumnConditionBasesSet = theColumnConditionBasesSet;
 			itsFilter                  = theFilter;
 		}
@@ -836,19 +1010,45 @@ public class SubgroupDiscovery
 		@Override
 		public void run()
 		{
-			if (false) { runX(); return; }
+			try
+			{
+				if (false)
+					runX();
+				else
+					refine();
+			}
+			finally
+			{
+				itsTracker.release();
+			}
+		}
+
+		private void refine()
+		{
+			// itsResult may have improved since itsSubgroup was added
+			if (isOptimisticEstimatePruning && (itsSubgroup.getDepth() > 0) && isPrunable(itsSubgroup))
+			{
+				itsPrunedCount.incrementAndGet();
+				return;
+			}
 
 			// Subgroup.getMembers() creates expensive clone, reuse
+			// NOTE the clone is trimmed, so it can safely be read by multiple
+			// threads, BitSet.clone() of an untrimmed BitSet would modify it
 			BitSet aParentMembers = itsSubgroup.getMembers();
 			int aParentCoverage   = itsSubgroup.getCoverage();
 			assert (aParentMembers.cardinality() == aParentCoverage);
 
+			// Fltr.nextSkip() walks the ConditionList sequentially, so
+			// determine which ColumnConditionBases to evaluate up front, this
+			// keeps the Filter out of the (possibly parallel) evaluation
 			ConditionList aConditionList = itsSubgroup.getConditions();
 			int nextSkipSG = itsFilter.nextSkip(aConditionList, 0);
 			assert ((nextSkipSG == Fltr.NOTHING_TO_SKIP) || ((nextSkipSG >= 0) && (nextSkipSG < aConditionList.size())));
 			Column toSkip = (nextSkipSG != Fltr.NOTHING_TO_SKIP ?  aConditionList.getCanonical(nextSkipSG).getColumn() : null);
 
-			for (int i = 0, j = itsColumnConditionBasesSet.size(); i < j && !isTimeToStop(); ++i)
+			List<ColumnConditionBases> aColumnConditionBasesSet = new ArrayList<ColumnConditionBases>(itsColumnConditionBasesSet.size());
+			for (int i = 0, j = itsColumnConditionBasesSet.size(); i < j; ++i)
 			{
 				ColumnConditionBases ccb = itsColumnConditionBasesSet.get(i);
 				// FIXME one time operation per mine(), but cumbersome, optimise
@@ -874,6 +1074,60 @@ public class SubgroupDiscovery
 				if (!skipThisCB && DEBUG_PRINTS_FOR_SKIP)
 					Log.logCommandLine(String.format("NO-SKIP\t%s AND %s%n", itsSubgroup, cb));
 
+				aColumnConditionBasesSet.add(ccb);
+			}
+
+			// near the root there are few Candidates but many Columns, when
+			// workers are idle they steal (parts of) this column range
+			// NOTE a single worker uses the serial loop, as the order in which
+			// refinements are checked can influence the result in case of ties
+			int aSize = aColumnConditionBasesSet.size();
+			ForkJoinPool aPool = ForkJoinTask.getPool();
+			if ((aPool == null) || (aPool.getParallelism() <= 1) || (aSize <= INTRA_CANDIDATE_GRAIN))
+				evaluate(aParentMembers, aColumnConditionBasesSet, 0, aSize);
+			else
+				new ColumnRange(aParentMembers, aColumnConditionBasesSet, 0, aSize).invoke();
+
+			// children with a diffset revive through their parent, do not
+			// let it hold on to its revived members when it is done
+			if (itsDiffSetBudget != null)
+				itsSubgroup.killMembers();
+		}
+
+		/*
+		 * The ColumnConditionBases are evaluated in blocks of COUNT_BLOCK,
+		 * the value counts of all regular numeric Columns in a block are
+		 * established in a single pass over theParentMembers, instead of one
+		 * pass per Column, the block keeps the number of count arrays that
+		 * are written in that pass small.
+		 * The order in which refinements are evaluated does not change.
+		 */
+		private final void evaluate(BitSet theParentMembers, List<ColumnConditionBases> theColumnConditionBasesSet, int theFrom, int theTo)
+		{
+			for (int b = theFrom; b < theTo && !isTimeToStop(); b += COUNT_BLOCK)
+			{
+				int aTo = Math.min(b + COUNT_BLOCK, theTo);
+
+				// isDirectDouble() uses ValueCountXY, it is not batched
+				Column[] aColumns = getNumericRegularColumns(theColumnConditionBasesSet, b, aTo);
+				ValueCountTP[] aValueCountTPs = null;
+				ValueCount[] aValueCounts = null;
+				if ((aColumns != null) && isDirectSingleBinary())
+					aValueCountTPs = Column.getUniqueNumericDomainMaps(theParentMembers, aColumns);
+				else if ((aColumns != null) && !isDirectDouble())
+					aValueCounts = Column.getValueCounts(theParentMembers, aColumns);
+
+				evaluate(theParentMembers, theColumnConditionBasesSet, b, aTo, aValueCountTPs, aValueCounts);
+			}
+		}
+
+		// theValueCountTPs and theValueCounts are indexed from theFrom, or null
+		private final void evaluate(BitSet theParentMembers, List<ColumnConditionBases> theColumnConditionBasesSet, int theFrom, int theTo, ValueCountTP[] theValueCountTPs, ValueCount[] theValueCounts)
+		{
+			for (int i = theFrom; i < theTo && !isTimeToStop(); ++i)
+			{
+				ColumnConditionBases ccb = theColumnConditionBasesSet.get(i);
+
 				// using a TestFactory some of the if-checks could be removed
 				// ValueSets would never occur when !useBestValueSets
 				// for BestInterval the reasoning is the same
@@ -881,20 +1135,86 @@ public class SubgroupDiscovery
 				//   ClassLabel+EQUALS                v. ValueSet+ELEMENT_OF
 				//   regular+(EQUALS/BETWEEN,LEQ,GEQ) v. BestInterval+BETWEEN
 				if (ccb instanceof ColumnConditionBasesBinary)
-					evaluateBinary(itsSubgroup, aParentMembers, (ColumnConditionBasesBinary) ccb);
+					evaluateBinary(itsSubgroup, theParentMembers, (ColumnConditionBasesBinary) ccb);
 				else if (ccb instanceof ColumnConditionBasesNominalEquals)
-					evaluateNominalEquals(itsSubgroup, aParentMembers, (ColumnConditionBasesNominalEquals) ccb);
+					evaluateNominalEquals(itsSubgroup, theParentMembers, (ColumnConditionBasesNominalEquals) ccb);
 				else if (ccb instanceof ColumnConditionBasesNominalElementOf)
-					evaluateNominalElementOf(itsSubgroup, aParentMembers, (ColumnConditionBasesNominalElementOf) ccb);
+					evaluateNominalElementOf(itsSubgroup, theParentMembers, (ColumnConditionBasesNominalElementOf) ccb);
 				else if (ccb instanceof ColumnConditionBasesNumericRegular)
-					evaluateNumericRegular(itsSubgroup, aParentMembers, (ColumnConditionBasesNumericRegular) ccb);
+					evaluateNumericRegular(itsSubgroup, theParentMembers, (ColumnConditionBasesNumericRegular) ccb,
+											(theValueCountTPs == null ? null : theValueCountTPs[i - theFrom]),
+											(theValueCounts == null ? null : theValueCounts[i - theFrom]));
 				else if (ccb instanceof ColumnConditionBasesNumericIntervals)
-					evaluateNumericIntervals(itsSubgroup, aParentMembers, (ColumnConditionBasesNumericIntervals) ccb);
+					evaluateNumericIntervals(itsSubgroup, theParentMembers, (ColumnConditionBasesNumericIntervals) ccb);
 				else
 					throw new AssertionError("Test.run() unexpected subclass of ColumnConditionBases");
 			}
+		}
 
-			itsSemaphore.release();
+		// the Column of every ColumnConditionBasesNumericRegular, null for
+		// other types, returns null when there are fewer than two of them
+		private final Column[] getNumericRegularColumns(List<ColumnConditionBases> theColumnConditionBasesSet, int theFrom, int theTo)
+		{
+			Column[] aColumns = new Column[theTo - theFrom];
+			int n = 0;
+
+			for (int i = theFrom; i < theTo; ++i)
+			{
+				ColumnConditionBases ccb = theColumnConditionBasesSet.get(i);
+				if (!(ccb instanceof ColumnConditionBasesNumericRegular))
+					continue;
+
+				for (int j = 0; j < 3; ++j)
+				{
+					ConditionBase cb = ccb.get(j);
+					if (cb != null)
+					{
+						aColumns[i - theFrom] = cb.getColumn();
+						++n;
+						break;
+					}
+				}
+			}
+
+			return (n < 2 ? null : aColumns);
+		}
+
+		/*
+		 * Splits the ColumnConditionBases of a single Candidate in halves,
+		 * until at most INTRA_CANDIDATE_GRAIN remain, one half is forked onto
+		 * the deque of the current worker, where idle workers can steal it.
+		 * evaluate*() methods only read theParentMembers, and add results
+		 * through the thread-safe checkAndLog().
+		 */
+		@SuppressWarnings("serial")
+		private final class ColumnRange extends RecursiveAction
+		{
+			private final BitSet itsParentMembers;
+			private final List<ColumnConditionBases> itsColumnConditionBasesSet;
+			private final int itsFrom;
+			private final int itsTo;
+
+			ColumnRange(BitSet theParentMembers, List<ColumnConditionBases> theColumnConditionBasesSet, int theFrom, int theTo)
+			{
+				itsParentMembers           = theParentMembers;
+				itsColumnConditionBasesSet = theColumnConditionBasesSet;
+				itsFrom                    = theFrom;
+				itsTo                      = theTo;
+			}
+
+			@Override
+			protected void compute()
+			{
+				if (((itsTo - itsFrom) <= INTRA_CANDIDATE_GRAIN) || isTimeToStop())
+				{
+					evaluate(itsParentMembers, itsColumnConditionBasesSet, itsFrom, itsTo);
+					return;
+				}
+
+				int aMiddle = (itsFrom + itsTo) >>> 1;
+				invokeAll(new ColumnRange(itsParentMembers, itsColumnConditionBasesSet, itsFrom, aMiddle),
+						new ColumnRange(itsParentMembers, itsColumnConditionBasesSet, aMiddle, itsTo));
+			}
 		}
 
 		public void runX()
@@ -1180,8 +1500,6 @@ public class SubgroupDiscovery
 				else
 					throw new AssertionError("Test.run() unexpected subclass of ColumnConditionBases");
 			}
-
-			itsSemaphore.release();
 		}
 	}
 
@@ -1216,6 +1534,8 @@ public class SubgroupDiscovery
 
 		// postProcessCook() output is supposed to go in between
 		Log.logCommandLine("number of candidates: " + aNrCandidates);
+		if (isOptimisticEstimatePruning)
+			Log.logCommandLine("number of pruned    : " + itsPrunedCount.get());
 		postProcessCook();
 		// for CBSS this reports 100, not aNrSubgroups
 		Log.logCommandLine("number of subgroups : " + getNumberOfSubgroups());
@@ -1225,6 +1545,17 @@ public class SubgroupDiscovery
 
 		// TODO probably also should be called before Process.echoMiningEnd()
 		postProcessMultiLabelAutoRun(); // IDs must be set first,  might set new
+
+		// refinements made after mining do not keep their parent
+		itsResult.setDiffSetBudget(null);
+
+		// killed members are re-evaluated from scratch again from now on
+		PrefixCache aCache = itsResult.getPrefixCache();
+		if (aCache != null)
+		{
+			Log.logCommandLine("prefix cache: " + aCache);
+			itsResult.setPrefixCache(null);
+		}
 	}
 
 	private static final void setTitle(JFrame theMainWindow, long theElapsedTime, long theNrCandidates)
@@ -1416,6 +1747,21 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		}
 	}
 
+	// one copy of every BINARY description Column, used by evaluateBinary()
+	private final Map<Column, long[]> getBinaryWords(List<ColumnConditionBases> theColumnConditionBasesSet)
+	{
+		Map<Column, long[]> aMap = new IdentityHashMap<Column, long[]>();
+
+		for (ColumnConditionBases ccb : theColumnConditionBasesSet)
+			if (ccb instanceof ColumnConditionBasesBinary)
+			{
+				Column aColumn = ccb.get(0).getColumn();
+				aMap.put(aColumn, BitSetCount.toWords(aColumn.getBinaries(), itsTable.getNrRows()));
+			}
+
+		return aMap;
+	}
+
 	// XXX (c = false) is checked first, (c = true) is conditionally, it depends on data and search characteristics  whether this is the best order
 	private final void evaluateBinary(Subgroup theParent, BitSet theParentMembers, ColumnConditionBasesBinary theColumnConditionBases)
 	{
@@ -1426,6 +1772,12 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		ConditionBase aConditionBase = theColumnConditionBases.get(0);
 		Column aColumn = aConditionBase.getColumn();
 
+		if (isDirectSingleBinary() && (itsBinaryWords != null))
+		{
+			evaluateBinaryDirect(theParent, theParentMembers, aConditionBase, itsBinaryWords.get(aColumn));
+			return;
+		}
+
 		BitSet aChildMembers = aColumn.evaluateBinary(theParentMembers, false);
 		int aChildCoverage = (aChildMembers == null ? 0 : aChildMembers.cardinality());
 
@@ -1433,11 +1785,9 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		if ((aChildCoverage == 0) || (aChildCoverage == aParentCoverage))
 			return;
 
-		int aNrTruePositives = INVALID_NR_TRUE_POSITIVES;
-
 		// check for (aColumn = false)
 		if (aChildCoverage >= itsMinimumCoverage)
-			aNrTruePositives = evaluateBinaryRefinementsHelper(theParent, new Condition(aConditionBase, false), aChildMembers, aChildCoverage);
+			evaluateBinaryRefinementsHelper(theParent, new Condition(aConditionBase, false), aChildMembers, aChildCoverage);
 
 		if (isTimeToStop())
 			return;
@@ -1447,55 +1797,64 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		aChildCoverage = (aParentCoverage - aChildCoverage);
 		if (aChildCoverage >= itsMinimumCoverage)
 		{
-			Condition aCondition = new Condition(aConditionBase, true);
-
-			// (aColumn = false) is not evaluated when < itsMinimumCoverage
-			// NOTE if-check can never be true unless isDirectSetting()
-			if (aNrTruePositives != INVALID_NR_TRUE_POSITIVES)
-			{
-				aNrTruePositives = ((int) theParent.getTertiaryStatistic()) - aNrTruePositives;
-				Subgroup aChildSubgroup = directComputation(theParent, aCondition, itsQualityMeasure, aChildCoverage, aNrTruePositives);
-				checkAndLog(aChildSubgroup, aParentCoverage);
-			}
-			else
-			{
-				aChildMembers = aColumn.evaluateBinary(theParentMembers, true);
-				evaluateBinaryRefinementsHelper(theParent, aCondition, aChildMembers, aChildCoverage);
-			}
+			aChildMembers = aColumn.evaluateBinary(theParentMembers, true);
+			evaluateBinaryRefinementsHelper(theParent, new Condition(aConditionBase, true), aChildMembers, aChildCoverage);
 		}
 	}
 
-	// return is always INVALID_NR_TRUE_POSITIVES when !isDirectSetting()
-	private static final int INVALID_NR_TRUE_POSITIVES = -1;
-	private final int evaluateBinaryRefinementsHelper(Subgroup theParent, Condition theAddedCondition, BitSet theChildMembers, int theChildCoverage)
+	/*
+	 * no child members are created, both coverages and true positive counts
+	 * are obtained in a single pass over theParentMembers, see BitSetCount
+	 * [0] = |parent AND (aColumn = true)|
+	 * [1] = |parent AND target|
+	 * [2] = |parent AND (aColumn = true) AND target|
+	 * like before, the Filter is not used in the direct setting
+	 */
+	private final void evaluateBinaryDirect(Subgroup theParent, BitSet theParentMembers, ConditionBase theConditionBase, long[] theColumnWords)
 	{
-		boolean isDirectSetting = isDirectSingleBinary();
-		final Subgroup aChild;
-		int aNrTruePositives = INVALID_NR_TRUE_POSITIVES;
+		int aParentCoverage = theParent.getCoverage();
+		int[] aCounts = new int[3];
+		BitSetCount.countCommon(theParentMembers, aParentCoverage, theColumnWords, itsBinaryTargetWords, aCounts);
 
-		if (isDirectSetting)
-		{
-			// safe: it is a clone, and subgroup coverage is stored: theCoverage
-			theChildMembers.and(itsBinaryTarget);
-			aNrTruePositives = theChildMembers.cardinality();
+		int aCoverageTrue  = aCounts[0];
+		int aCoverageFalse = (aParentCoverage - aCoverageTrue);
 
-			aChild = directComputation(theParent, theAddedCondition, itsQualityMeasure, theChildCoverage, aNrTruePositives);
-		}
-		else
+		// ignore both f and t
+		if ((aCoverageFalse == 0) || (aCoverageTrue == 0))
+			return;
+
+		// check for (aColumn = false)
+		if (aCoverageFalse >= itsMinimumCoverage)
 		{
-			if ((itsFilter != null) && !itsFilter.isUseful(theParent.getConditions(), theAddedCondition))
-				return INVALID_NR_TRUE_POSITIVES;
+			Subgroup aChild = directComputation(theParent, new Condition(theConditionBase, false), itsQualityMeasure, aCoverageFalse, (aCounts[1] - aCounts[2]));
+			checkAndLog(aChild, aParentCoverage);
+		}
+
+		if (isTimeToStop())
+			return;
 
-			aChild = theParent.getRefinedSubgroup(theAddedCondition, theChildMembers, theChildCoverage);
+		// check for (aColumn = true)
+		if (aCoverageTrue >= itsMinimumCoverage)
+		{
+			Subgroup aChild = directComputation(theParent, new Condition(theConditionBase, true), itsQualityMeasure, aCoverageTrue, aCounts[2]);
+			checkAndLog(aChild, aParentCoverage);
+		}
+	}
 
-			// SINGLE_NOMINAL only, not for PROP_SCORE_WRACC and PROP_SCORE_RATIO
-			if (isDirectSetting)
-				aNrTruePositives = (int) aChild.getTertiaryStatistic();
+	private final void evaluateBinaryRefinementsHelper(Subgroup theParent, Condition theAddedCondition, BitSet theChildMembers, int theChildCoverage)
+	{
+		if (isDirectSingleBinary())
+		{
+			// safe: it is a clone, and subgroup coverage is stored: theCoverage
+			int aNrTruePositives = BitSetCount.countCommon(theChildMembers, theChildCoverage, itsBinaryTargetWords);
+			checkAndLog(directComputation(theParent, theAddedCondition, itsQualityMeasure, theChildCoverage, aNrTruePositives), theParent.getCoverage());
+			return;
 		}
 
-		checkAndLog(aChild, theParent.getCoverage());
+		if ((itsFilter != null) && !itsFilter.isUseful(theParent.getConditions(), theAddedCondition))
+			return;
 
-		return aNrTruePositives;
+		checkAndLog(theParent.getRefinedSubgroup(theAddedCondition, theChildMembers, theChildCoverage), theParent.getCoverage());
 	}
 
 	// two methods, as BestValueSet and BestInterval already computed the score
@@ -1515,6 +1874,42 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		return theParent.getRefinedSubgroup(theAddedCondition, q, s, t, theChildCoverage);
 	}
 
+	// see isDirectDouble(), the statistics are set as evaluateCandidateDoubleCorrelation() and evaluateCandidateDoubleRegression() do
+	// NOTE theChildCoverage excludes the parent members with a missing value
+	// for the Column of theAddedCondition, as do theSums, see ValueCountXY
+	private final Subgroup directComputation(Subgroup theParent, Condition theAddedCondition, int theChildCoverage, ValueCountXY theSums, int theFrom, int theTo)
+	{
+		assert (theChildCoverage == theSums.getCoverage(theFrom, theTo));
+
+		// x is itsPrimaryColumn, y is itsSecondaryColumn
+		double x  = ValueCountXY.getSum(theSums.itsXSums,  theFrom, theTo);
+		double y  = ValueCountXY.getSum(theSums.itsYSums,  theFrom, theTo);
+		double xy = ValueCountXY.getSum(theSums.itsXYSums, theFrom, theTo);
+		double xx = ValueCountXY.getSum(theSums.itsXXSums, theFrom, theTo);
+		double yy = ValueCountXY.getSum(theSums.itsYYSums, theFrom, theTo);
+
+		double q;
+		double s;
+		double t;
+		if (itsSearchParameters.getTargetType() == TargetType.DOUBLE_CORRELATION)
+		{
+			// NOTE CorrelationMeasure uses the primary Column for its y-values
+			CorrelationMeasure aCM = new CorrelationMeasure(itsBaseCM, theChildCoverage, y, x, xy, yy, xx);
+			s = aCM.getCorrelation();
+			t = aCM.computeCorrelationDistance();
+			q = aCM.getEvaluationMeasureValue();
+		}
+		else
+		{
+			RegressionMeasure aRM = new RegressionMeasure(itsBaseRM, theChildCoverage, x, y, xy, xx, yy);
+			q = aRM.getEvaluationMeasureValue();
+			s = aRM.getSlope();
+			t = aRM.getIntercept();
+		}
+
+		return theParent.getRefinedSubgroup(theAddedCondition, (float) q, s, t, theChildCoverage);
+	}
+
 	////////////////////////////////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////
 	///// nominal                                                          /////
@@ -1535,12 +1930,42 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		ConditionList aParentConditions = (isFilterNull ? null : theParent.getConditions());
 		////////////////////////////////////////////////////////////////////////
 
-		int[] aCounts = aColumn.getUniqueNominalDomainCounts(theParentMembers, aParentCoverage);
+		// for SINGLE_NOMINAL the true positives are counted on the codes of
+		// aColumn also, the quality of a child then follows directly from its
+		// counts, as in evaluateBinaryDirect()
+		boolean isDirect = isDirectSingleBinary();
+		int[] aCounts;
+		int[] aTruePositives;
+		int aNrDistinct = 0;
+		if (isDirect)
+		{
+			// Column.evaluate() excludes missing values, X = '?' selects none
+			BitSet aMembers = theParentMembers;
+			if (aColumn.getHasMissingValues())
+			{
+				aMembers = (BitSet) theParentMembers.clone();
+				aMembers.andNot(aColumn.getMissing());
+			}
+
+			ValueCountTP v = aColumn.getUniqueNominalDomainMap(aMembers, itsBinaryTarget);
+			aCounts = v.itsCounts;
+			aTruePositives = v.itsTruePositives;
+			for (int i : aCounts)
+				if (i > 0)
+					++aNrDistinct;
+		}
+		else
+		{
+			aCounts = aColumn.getUniqueNominalDomainCounts(theParentMembers, aParentCoverage);
+			aTruePositives = null;
+			aNrDistinct = aCounts[aCounts.length-1];
+		}
 
 		// avoid entering loop and checking 0-count values, no useful Refinement
 		// is possible, as it would have the same coverage as anOldCoverage
-		int aNrDistinct = aCounts[aCounts.length-1];
-		if (aNrDistinct <= 1)
+		// NOTE for isDirect missing values are not counted, such that a single
+		// value could still select a subset of the parent
+		if (aNrDistinct <= (isDirect ? 0 : 1))
 			return;
 
 		List<String> aDomain = aColumn.itsDistinctValuesU;
@@ -1563,7 +1988,8 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 			if (!isFilterNull && !itsFilter.isUseful(aParentConditions, aCondition))
 				continue;
 
-			Subgroup aNewSubgroup = theParent.getRefinedSubgroup(aCondition);
+			Subgroup aNewSubgroup = isDirect ? directComputation(theParent, aCondition, itsQualityMeasure, aCount, aTruePositives[i]) :
+							theParent.getRefinedSubgroup(aCondition);
 			checkAndLog(aNewSubgroup, aParentCoverage);
 		}
 	}
@@ -1676,8 +2102,8 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 			int aBestN = Integer.MIN_VALUE;
 
 			// construct and check all subsets on the convex hull
-			List<Integer> aSortedDomainIndices = aNCT.getSortedDomainIndices();
-			int aSortedDomainIndicesSize = aSortedDomainIndices.size();
+			int[] aSortedDomainIndices = aNCT.getSortedDomainIndices();
+			int aSortedDomainIndicesSize = aSortedDomainIndices.length;
 
 			// upper part of the hull
 			int aP = 0;
@@ -1685,12 +2111,12 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 			int aPrevBestI = -1;
 			for (int i = 0; i < aSortedDomainIndicesSize - 1 && !isTimeToStop(); i++)
 			{
-				int anIndex = aSortedDomainIndices.get(i);
+				int anIndex = aSortedDomainIndices[i];
 				int aPi = aNCT.getPositiveCount(anIndex);
 				int aNi = aNCT.getNegativeCount(anIndex);
 				aP += aPi;
 				aN += aNi;
-				int aNextIndex = aSortedDomainIndices.get(i+1);
+				int aNextIndex = aSortedDomainIndices[i+1];
 				// FIXME multiplications might overflow, though == remains valid
 				if (i < aSortedDomainIndicesSize-2 && aPi * aNCT.getNegativeCount(aNextIndex) == aNCT.getPositiveCount(aNextIndex) * aNi) // skip checking degenerate hull points
 					continue;
@@ -1703,7 +2129,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 
 					for (int j = aPrevBestI+1; j <= i; j++)
 					{
-						String aValue = aNCT.getValue(aSortedDomainIndices.get(j));
+						String aValue = aNCT.getValue(aSortedDomainIndices[j]);
 						aDomainBestSubSet.add(aValue);
 					}
 					aPrevBestI = i;
@@ -1727,7 +2153,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 					aDomainBestSubSet.clear();
 					for (int j = aPrevBestI + 1; j < aSortedDomainIndicesSize; j++)
 					{
-						String aValue = aNCT.getValue(aSortedDomainIndices.get(j));
+						String aValue = aNCT.getValue(aSortedDomainIndices[j]);
 						aDomainBestSubSet.add(aValue);
 					}
 				}
@@ -1739,12 +2165,12 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 				aPrevBestI = -1;
 				for (int i = aSortedDomainIndicesSize - 1; i > 0 && !isTimeToStop(); i--)
 				{
-					int anIndex = aSortedDomainIndices.get(i).intValue();
+					int anIndex = aSortedDomainIndices[i];
 					int aPi = aNCT.getPositiveCount(anIndex);
 					int aNi = aNCT.getNegativeCount(anIndex);
 					aP += aPi;
 					aN += aNi;
-					int aPrevIndex = aSortedDomainIndices.get(i-1);
+					int aPrevIndex = aSortedDomainIndices[i-1];
 					if (i > 1 && aPi * aNCT.getNegativeCount(aPrevIndex) == aNCT.getPositiveCount(aPrevIndex) * aNi)
 						continue; // skip degenerate hull points
 					double aQuality = itsQualityMeasure.calculate(aP, aP + aN);
@@ -1761,7 +2187,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 						}
 						for (int j = aPrevBestI-1; j >= i; j--)
 						{
-							String aValue = aNCT.getValue(aSortedDomainIndices.get(j));
+							String aValue = aNCT.getValue(aSortedDomainIndices[j]);
 							aDomainBestSubSet.add(aValue);
 						}
 						aPrevBestI = i;
@@ -1855,6 +2281,14 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 	 * for >= the first, and therefore largest best Subgroup is retained
 	 */
 	private final void evaluateNumericRegular(Subgroup theParent, BitSet theParentMembers, ColumnConditionBasesNumericRegular theColumnConditionBases)
+	{
+		evaluateNumericRegular(theParent, theParentMembers, theColumnConditionBases, null, null);
+	}
+
+	// theValueCountTP and theValueCount can hold the counts of the parent
+	// members, as established for a block of Columns, see Test.evaluate()
+	// when null, the counts are established here
+	private final void evaluateNumericRegular(Subgroup theParent, BitSet theParentMembers, ColumnConditionBasesNumericRegular theColumnConditionBases, ValueCountTP theValueCountTP, ValueCount theValueCount)
 	{
 		assert (EnumSet.of(NumericStrategy.NUMERIC_ALL, NumericStrategy.NUMERIC_BEST,
 							NumericStrategy.NUMERIC_BEST_BINS, NumericStrategy.NUMERIC_BINS).contains(itsSearchParameters.getNumericStrategy()));
@@ -1878,29 +2312,38 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		// but expect there to be more optimised settings, so keep split here
 		if (isDirectSingleBinary())
 		{
-			ValueCountTP v = aColumn.getUniqueNumericDomainMap(theParentMembers);
+			ValueCountTP v = (theValueCountTP != null ? theValueCountTP : aColumn.getUniqueNumericDomainMap(theParentMembers));
 			if (doEq_Test) evaluateNumericRegularSingleBinary(theParent, e, v);
 			if (doLeqTest) evaluateNumericRegularSingleBinary(theParent, l, v);
 			if (doGeqTest) evaluateNumericRegularSingleBinary(theParent, g, v);
 		}
+		else if (isDirectDouble())
+		{
+			// a single pass over the parent members, not one per child
+			ValueCountXY v = aColumn.getValueCountXY(theParentMembers, itsPrimaryColumn, itsSecondaryColumn);
+			if (doEq_Test) evaluateNumericRegularGeneric(theParent, e, v.itsCounts, v);
+			if (doLeqTest) evaluateNumericRegularGeneric(theParent, l, v.itsCounts, v);
+			if (doGeqTest) evaluateNumericRegularGeneric(theParent, g, v.itsCounts, v);
+		}
 		else
 		{
-			ValueCount v = aColumn.getValueCount(theParentMembers);
-			if (doEq_Test) evaluateNumericRegularGeneric(theParent, e, v);
-			if (doLeqTest) evaluateNumericRegularGeneric(theParent, l, v);
-			if (doGeqTest) evaluateNumericRegularGeneric(theParent, g, v);
+			ValueCount v = (theValueCount != null ? theValueCount : aColumn.getValueCount(theParentMembers));
+			if (doEq_Test) evaluateNumericRegularGeneric(theParent, e, v.itsCounts, null);
+			if (doLeqTest) evaluateNumericRegularGeneric(theParent, l, v.itsCounts, null);
+			if (doGeqTest) evaluateNumericRegularGeneric(theParent, g, v.itsCounts, null);
 		}
 	}
 
 	// generic version, use plain ValueCount, no model-specific info
-	private final void evaluateNumericRegularGeneric(Subgroup theParent, ConditionBase theConditionBase, ValueCount theValueInfo)
+	// theSums is non-null for isDirectDouble(), see evaluateCandidate()
+	private final void evaluateNumericRegularGeneric(Subgroup theParent, ConditionBase theConditionBase, int[] theCounts, ValueCountXY theSums)
 	{
 		NumericStrategy ns = itsSearchParameters.getNumericStrategy();
 
 		// split code path - BEST_BINS/BINS use substantially different loop
 		if (ns.isDiscretiser())
 		{
-			evaluateNumericRegularGenericCoarse(theParent, theConditionBase, theValueInfo);
+			evaluateNumericRegularGenericCoarse(theParent, theConditionBase, theCounts, theSums);
 			return;
 		}
 
@@ -1913,7 +2356,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		BestSubgroupsForCandidateSetAndResultSet aBestSubgroups = (isAllStrategy ? null : new BestSubgroupsForCandidateSetAndResultSet());
 		////////////////////////////////////////////////////////////////////////
 
-		int[] aCounts = theValueInfo.itsCounts;
+		int[] aCounts = theCounts;
 
 		// a lot of code, but keep it together for now, loops differ in subtle
 		// ways, keeping them together for now aids interpretation
@@ -1932,8 +2375,11 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 				if (aCount == aParentCoverage)
 					break;
 
+				if (Float.isNaN(aColumn.getSortedValue(i))) // missing value
+					continue;
+
 				Condition anAddedCondition = new Condition(theConditionBase, aColumn.getSortedValue(i), i);
-				evaluateCandidate(theParent, anAddedCondition, aCount, isAllStrategy, aBestSubgroups);
+				evaluateCandidate(theParent, anAddedCondition, aCount, isAllStrategy, aBestSubgroups, theSums, i, i);
 			}
 		}
 		else if (anOperator == Operator.LESS_THAN_OR_EQUAL)
@@ -1953,7 +2399,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 					continue;
 
 				Condition anAddedCondition = new Condition(theConditionBase, aColumn.getSortedValue(i), i);
-				evaluateCandidate(theParent, anAddedCondition, cover, isAllStrategy, aBestSubgroups);
+				evaluateCandidate(theParent, anAddedCondition, cover, isAllStrategy, aBestSubgroups, theSums, 0, i);
 			}
 		}
 		else if (anOperator == Operator.GREATER_THAN_OR_EQUAL)
@@ -1972,7 +2418,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 				if (cover != aParentCoverage && !Float.isNaN(aColumn.getSortedValue(i)))
 				{
 					Condition anAddedCondition = new Condition(theConditionBase, aColumn.getSortedValue(i), i);
-					evaluateCandidate(theParent, anAddedCondition, cover, isAllStrategy, aBestSubgroups);
+					evaluateCandidate(theParent, anAddedCondition, cover, isAllStrategy, aBestSubgroups, theSums, i, aCounts.length-1);
 				}
 
 				// before moving to next, subtract counts related to this value
@@ -1991,7 +2437,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 	}
 
 	// generic version, use plain ValueCount, no model-specific info
-	private final void evaluateNumericRegularGenericCoarse(Subgroup theParent, ConditionBase theConditionBase, ValueCount theValueInfo)
+	private final void evaluateNumericRegularGenericCoarse(Subgroup theParent, ConditionBase theConditionBase, int[] theCounts, ValueCountXY theSums)
 	{
 		NumericStrategy ns = itsSearchParameters.getNumericStrategy();
 		assert (ns == NumericStrategy.NUMERIC_BEST_BINS || ns == NumericStrategy.NUMERIC_BINS);
@@ -2008,7 +2454,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		long aParentCoverage  = theParent.getCoverage();
 		long b                = 1L;
 		Column aColumn        = theConditionBase.getColumn();
-		int[] aCounts         = theValueInfo.itsCounts;
+		int[] aCounts         = theCounts;
 		boolean isAllStrategy = (ns == NumericStrategy.NUMERIC_BINS);
 		BestSubgroupsForCandidateSetAndResultSet aBestSubgroups = (isAllStrategy ? null : new BestSubgroupsForCandidateSetAndResultSet());
 
@@ -2017,6 +2463,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		{
 			// last cover used for evaluation, and last lower bound
 			int last_cover = 0;
+			int last_i = -1;
 			float f = Float.NEGATIVE_INFINITY;
 			for (int i = 0, next = getNextBinBoundary(aParentCoverage, b, aNrBins), cover = 0; i < aCounts.length && b < aNrBins && !isTimeToStop(); ++i)
 			{
@@ -2034,9 +2481,10 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 
 				float n = aColumn.getSortedValue(i);
 				Condition anAddedCondition = new Condition(theConditionBase, new Interval(f, n));
-				evaluateCandidate(theParent, anAddedCondition, (cover-last_cover), isAllStrategy, aBestSubgroups);
+				evaluateCandidate(theParent, anAddedCondition, (cover-last_cover), isAllStrategy, aBestSubgroups, theSums, last_i+1, i);
 
 				last_cover = cover;
+				last_i = i;
 				f = n;
 
 				while ((next = getNextBinBoundary(aParentCoverage, ++b, aNrBins)) <= cover-1)
@@ -2057,11 +2505,16 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 			// half-interval: <= f would select all data, and be useless), or
 			// 2. the sum is lower: add Interval that selects the remaining data
 			// TODO both conditions should never be true -> could be assert
-			if ((last_cover != aParentCoverage) && (Float.compare(Float.POSITIVE_INFINITY, f) != 0))
+			//
+			// when no Interval was evaluated, the loop ended at a value with
+			// (cover == aParentCoverage), and (-inf, +inf) would select all
+			// parent members but those with a missing value, as for <= no
+			// Condition is evaluated then
+			if ((last_i >= 0) && (last_cover != aParentCoverage) && (Float.compare(Float.POSITIVE_INFINITY, f) != 0))
 			{
 				Condition anAddedCondition = new Condition(theConditionBase, new Interval(f, Float.POSITIVE_INFINITY));
 				last_cover = (((int) aParentCoverage) - last_cover);
-				evaluateCandidate(theParent, anAddedCondition, last_cover, isAllStrategy, aBestSubgroups);
+				evaluateCandidate(theParent, anAddedCondition, last_cover, isAllStrategy, aBestSubgroups, theSums, last_i+1, aCounts.length-1);
 			}
 		}
 		else if (anOperator == Operator.LESS_THAN_OR_EQUAL)
@@ -2081,7 +2534,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 					break;
 
 				Condition aCondition = new Condition(theConditionBase, aColumn.getSortedValue(i), i);
-				evaluateCandidate(theParent, aCondition, cover, isAllStrategy, aBestSubgroups);
+				evaluateCandidate(theParent, aCondition, cover, isAllStrategy, aBestSubgroups, theSums, 0, i);
 
 				while ((next = getNextBinBoundary(aParentCoverage, ++b, aNrBins)) <= cover-1)
 					; // deliberately empty
@@ -2105,7 +2558,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 				if (cover-aCount < next && cover != aParentCoverage && !Float.isNaN(aColumn.getSortedValue(i)))
 				{
 					Condition aCondition = new Condition(theConditionBase, aColumn.getSortedValue(i), i);
-					evaluateCandidate(theParent, aCondition, cover, isAllStrategy, aBestSubgroups);
+					evaluateCandidate(theParent, aCondition, cover, isAllStrategy, aBestSubgroups, theSums, i, aCounts.length-1);
 
 					while ((next = (int) (aParentCoverage - ((++b * aParentCoverage) / aNrBins))) > (cover-aCount))
 						; // deliberately empty
@@ -2464,16 +2917,30 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 
 	// this is the version used by evaluateNumericRegularGeneric(Coarse)
 	// FIXME temporarily a separate method, will merge both evaluateCandidates()
+	// for isDirectDouble() theSums is non-null, and the child consists of the
+	// parent members with a value at sort index theFrom up to and including
+	// theTo, its quality follows from theSums without accessing its members,
+	// members with a missing value are excluded, see directComputation()
 	private final void evaluateCandidate(Subgroup theParent, Condition theAddedCondition, int theChildCoverage, boolean isAllStrategy, 
-					     BestSubgroupsForCandidateSetAndResultSet theBestSubgroups)
+					     BestSubgroupsForCandidateSetAndResultSet theBestSubgroups, ValueCountXY theSums, int theFrom, int theTo)
 	{
 		if ((itsFilter != null) && !itsFilter.isUseful(theParent.getConditions(), theAddedCondition))
 			return;
 
 		int aParentCoverage = theParent.getCoverage();
-		assert (theChildCoverage < aParentCoverage);
+		boolean isDirect = (theSums != null);
+		// theChildCoverage is the sum of the counts, that include the parent
+		// members with a missing value, the Condition does not select these
+		int aChildCoverage = isDirect ? theSums.getCoverage(theFrom, theTo) : theChildCoverage;
+		assert (aChildCoverage < aParentCoverage);
+
+		// all selected parent members have a missing value for this Column,
+		// the child would be empty, assuming itsMinimumCoverage >= 1
+		if (aChildCoverage == 0)
+			return;
 
-		Subgroup aChild = theParent.getRefinedSubgroup(theAddedCondition);
+		Subgroup aChild = isDirect ? directComputation(theParent, theAddedCondition, aChildCoverage, theSums, theFrom, theTo) :
+						theParent.getRefinedSubgroup(theAddedCondition);
 
 		// ALL or BINS
 		if (isAllStrategy)
@@ -2483,7 +2950,7 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		}
 		// BEST or BESTBINS
 		else
-			checkForBest(aChild, aParentCoverage, theBestSubgroups, false);
+			checkForBest(aChild, aParentCoverage, theBestSubgroups, isDirect);
 	}
 
 	// this is the version used by evaluateNumericRegularSingleBinary(Coarse)
@@ -3048,6 +3515,9 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 	 * TL;DR count + subgroup number will be decoupled / unsynchronised
 	 *
 	 * technically synchronisation needs only execute the addition to the result and candidate set as a logical block
+	 * NOTE itsResult is now collected per thread, and its top-k does not depend on the order of additions (Subgroup.compareTo() is a total
+	 * order), so a Subgroup that is in itsCandidateQueue but not in itsResult or vice versa is resolved the same way in every invocation
+	 * the same holds for the Levels of itsCandidateQueue, so additions to the two are no longer synchronized
 	 *
 	 * NOTE that in case of ties on the itsResult / itsCandidateQueue max_size boundary this may effect the final search result
 	 * this is related to the fixed max size and has the potential to break invocation invariant results in multi-threaded settings
@@ -3063,7 +3533,6 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 	 * they do no suffer from this problem anyway
 	 * (NOTE when a search is stopped because of max_time all bets are of)
 	 */
-	private final Object itsCheckLock = new Object();
 	private void checkAndLog(Subgroup theChild, int theParentCoverage)
 	{
 		setTitle(theChild);
@@ -3093,18 +3562,19 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 			final float aQuality;
 
 			// this is becoming a mess: to be replaced by Subgroup.hasQuality()
-			if ((lastAdded == AttributeType.BINARY) && isDirectSingleBinary())
+			if (((lastAdded == AttributeType.BINARY) || (lastAdded == AttributeType.NOMINAL)) && isDirectSingleBinary())
 			{
 				assert theChild.hasQuality();
 
 				// NOTE this path already performed the isValid-coverage check
 				aQuality = (float) theChild.getMeasureValue();
 			}
-			else if (isLastNumeric && isDirectSingleBinary())
+			else if (isLastNumeric && (isDirectSingleBinary() || isDirectDouble()))
 			{
 				assert theChild.hasQuality();
 
 				// currently only for SINGLE_NOMINAL (and no propensity scores)
+				// and DOUBLE_CORRELATION/DOUBLE_REGRESSION (not Cook's distance)
 				// NOTE this path already performed the isValid-coverage check
 				aQuality = (float) theChild.getMeasureValue();
 			}
@@ -3144,6 +3614,13 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 				isUsefulForCandidateSet = false;	// and no refinement will ever be above minsup again
 			}
 
+			// no refinement will ever enter itsResult
+			if (isUsefulForCandidateSet && isOptimisticEstimatePruning && isPrunable(theChild))
+			{
+				isUsefulForCandidateSet = false;
+				itsPrunedCount.incrementAndGet();
+			}
+
 			// FIXME to avoid excessive locking, itsCandidateQueue should also have a (dirty) hasPotential() method, such that if there is
 			//       no chance at all that the Subgroup would be added to either the CandidateSet or the ResultSet no lock is ever acquired
 			isUsefulForResultSet &= (ignoreQualityMinimum || (aQuality > itsQualityMeasureMinimum));
@@ -3155,18 +3632,17 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 			{
 				// do not Construct this Object within the synchronized block
 				Candidate aCandidate = (isUsefulForCandidateSet ? new Candidate(theChild) : null);
+				// likewise, compact members before they are killed
+				theChild.compactMembers(itsMembersAtRest, itsDiffSetBudget);
 
-				// performed as a logical unit, see REQUIREMENT 1
-				// all logic is performed outside of synchronized block
-				// to keep it as small as possible
-				synchronized (itsCheckLock)
-				{
-					if (isUsefulForResultSet)
-						itsResult.add(theChild);
+				// itsResult.add() does not depend on the order of additions
+				// and takes no shared lock, see SubgroupSet.LocalTopK
+				if (isUsefulForResultSet)
+					itsResult.add(theChild);
 
-					if (isUsefulForCandidateSet)
-						itsCandidateQueue.add(aCandidate);
-				}
+				// likewise, see CandidateQueue.Level
+				if (isUsefulForCandidateSet)
+					itsCandidateQueue.add(aCandidate);
 			}
 		}
 
@@ -3224,13 +3700,8 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 	private final float evaluateCandidateSingleNominal(Subgroup theChild)
 	{
 		int aCoverage = theChild.getCoverage();
-		BitSet aChildMembers = theChild.getMembers();
-
-		// getMembers() always returns a clone so and() is safe
-		aChildMembers.and(itsBinaryTarget);
-		int aCountHeadBody = aChildMembers.cardinality();
-		// FIXME MM - hold: functional change + needs testing / profiling
-		// int aCountHeadBody = theNewSubgroup.countCommon(itsBinaryTarget);
+		// no getMembers() clone + and() + cardinality(), see BitSetCount
+		int aCountHeadBody = theChild.countCommon(itsBinaryTargetWords);
 
 		final float aQuality;
 
@@ -3465,34 +3936,25 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
     
     private final float evaluateCandidateDoubleBinary(Subgroup theChild)
     {
-        BitSet theChildMembers = theChild.getMembers();
-        
         //subgroup size
         int aCoverage = theChild.getCoverage();
 //        System.out.println("coverage: " + aCoverage);
 
-        //FIXME these general statistics don't change per subgroup, so could be obtained once and stored. Saves time
-        //dataset statistics
-        BitSet aPrimaryMembers = itsPrimaryColumn.getBinaries(); // dataset A
-        BitSet aSecondaryMembers = itsSecondaryColumn.getBinaries();
-        int aSizeA = aPrimaryMembers.cardinality();
+        //dataset statistics, from the words obtained once in the constructor
+        int aSizeA = BitSetCount.cardinality(itsPrimaryWords); // dataset A
 	int aSizeB = itsNrRows-aSizeA;
 //        System.out.println("dataset: " + itsNrRows + ", Dataset A: " + aSizeA + ", Dataset B: " + aSizeB);
 
         //target within A and B
-        aSecondaryMembers.and(aPrimaryMembers);
-        float aTargetA = aSecondaryMembers.cardinality()/(float)aSizeA;
-//        System.out.println("target A: " + aSecondaryMembers.cardinality() + " (" + aTargetA + ")");
-        aSecondaryMembers = itsSecondaryColumn.getBinaries();
-        aSecondaryMembers.andNot(aPrimaryMembers);
-        float aTargetB = aSecondaryMembers.cardinality()/(float)aSizeB;
-//        System.out.println("target B: " + aSecondaryMembers.cardinality() + " (" + aTargetB + ")");
-
-        //subgroup within A
-        BitSet aSubset = theChild.getMembers(); //subgroup
-        aSubset.and(aPrimaryMembers); //subgroup within A
-        int aSubgroupPrimaryCountA = aSubset.cardinality();
-//        System.out.println("subgroup within A: " + aSubset.cardinality());
+        int aTargetCountA = BitSetCount.countCommon(itsSecondaryWords, itsPrimaryWords);
+        float aTargetA = aTargetCountA/(float)aSizeA;
+        float aTargetB = (BitSetCount.cardinality(itsSecondaryWords)-aTargetCountA)/(float)aSizeB;
+
+        //subgroup within A, target, and A with target = true, in one pass
+        int[] aCounts = new int[3];
+        theChild.countCommon(itsPrimaryWords, itsSecondaryWords, aCounts);
+        int aSubgroupPrimaryCountA = aCounts[0];
+//        System.out.println("subgroup within A: " + aSubgroupPrimaryCountA);
         if (aSubgroupPrimaryCountA == 0) //FIXME
         {
             theChild.setSecondaryStatistic(0);
@@ -3500,23 +3962,19 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
         }
 
         //subgroup within A with target = true
-        aSubset.and(itsSecondaryColumn.getBinaries()); //subgroup within A with target = true
-        int aSubgroupPrimarySecondaryCountA = aSubset.cardinality();
+        int aSubgroupPrimarySecondaryCountA = aCounts[2];
         float aSubgroupTargetA = aSubgroupPrimarySecondaryCountA/(float)aSubgroupPrimaryCountA;
 //        System.out.println("subgroup within A with target = true: " + aSubgroupPrimarySecondaryCountA + " (" + aSubgroupTargetA + ")");
         theChild.setTertiaryStatistic(aSubgroupTargetA); // used?
 
         //subgroup within B with target = true
-        aSubset = theChild.getMembers(); //subgroup
-        aSubset.andNot(aPrimaryMembers); //subgroup within B
-        int aSubgroupPrimaryCountB = aSubset.cardinality();
+        int aSubgroupPrimaryCountB = aCoverage-aSubgroupPrimaryCountA; //subgroup within B
         if (aSubgroupPrimaryCountB == 0) //FIXME
         {
             theChild.setSecondaryStatistic(0);
             return 0f;
         }
-        aSubset.and(itsSecondaryColumn.getBinaries()); //subgroup within B with target = true
-        int aSubgroupPrimarySecondaryCountB = aSubset.cardinality();
+        int aSubgroupPrimarySecondaryCountB = aCounts[1]-aCounts[2]; //subgroup within B with target = true
         float aSubgroupTargetB = aSubgroupPrimarySecondaryCountB/(float)aSubgroupPrimaryCountB;
 //        System.out.println("subgroup within B with target = true: " + aSubgroupPrimarySecondaryCountB + " (" + aSubgroupTargetB + ")");
 
@@ -3540,17 +3998,10 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 	private final float evaluateCandidateScape(Subgroup theChild)
 	{
 		int aCoverage = theChild.getCoverage();
+		// no getMembers() clone + and() + cardinality(), see BitSetCount
+		int aCountHeadBody = theChild.countCommon(itsPrimaryWords);
 
-		BitSet aChildMembers = theChild.getMembers();
-		BitSet aClone = (BitSet) aChildMembers.clone();
-
-		// getMembers() always returns a clone so and() is safe
-		aChildMembers.and(itsPrimaryColumn.getBinaries());
-		int aCountHeadBody = aChildMembers.cardinality();
-		// FIXME MM - hold: functional change
-		// int aCountHeadBody = theNewSubgroup.countCommon(itsPrimaryColumn.getBinaries());
-
-		float aQuality = itsQualityMeasure.calculate(aClone, aCoverage, aCountHeadBody);
+		float aQuality = itsQualityMeasure.calculate(theChild.getMembers(), aCoverage, aCountHeadBody);
 		theChild.setSecondaryStatistic(aCountHeadBody);
 		theChild.setTertiaryStatistic(aCoverage - aCountHeadBody);
 
@@ -3575,16 +4026,17 @@ TODO for stable jar, disabled, causes compile errors, reinstate later
 		return aQuality;
 	}
 
-	// FIXME
-	// getAverageRankingMatrix(Subgroup) and getAverageRanking(Subgroup)
-	// only use Subgroup.getMembers(), supply BitSet as sole parameter
+	// the members are counted per distinct ranking once, for both the
+	// average LabelRankingMatrix and the average LabelRanking
 	private final float evaluateCandidateLabelRanking(Subgroup theChild)
 	{
 		int aCoverage = theChild.getCoverage();
-		LabelRankingMatrix aLRM = itsTargetRankings.getAverageRankingMatrix(theChild);
+		LabelRankings aRankings = itsTargetRankings.getLabelRankings();
+		int[] aCounts = aRankings.getCounts(theChild.getMembers());
+		LabelRankingMatrix aLRM = aRankings.getAverageRankingMatrix(aCounts);
 
 		float aQuality = itsQualityMeasure.computeLabelRankingDistance(aCoverage, aLRM);
-		theChild.setLabelRanking(itsTargetRankings.getAverageRanking(theChild));
+		theChild.setLabelRanking(aRankings.getAverageRanking(aCounts));
 		theChild.setLabelRankingMatrix(aLRM);
 
 		// TODO make this more sensible
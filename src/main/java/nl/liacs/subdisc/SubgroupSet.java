@@ -3,6 +3,7 @@ package nl.liacs.subdisc;
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 /**
  * A SubgroupSet is a <code>TreeSet</code> of {@link Subgroup Subgroup}s. If its size is set to <= 0, the SubgroupSet has no maximum size, else the number of Subgroups it can contain is limited by its size. 
@@ -37,15 +38,29 @@ public class SubgroupSet extends TreeSet<Subgroup>
 	private int itsMaximumSize;
 	private ROCList itsROCList;
 	// used as quick check for add(), tests on NaN always return false
-	// could use AtomicLong.doubleBits
-	private double itsLowestScore = Double.NaN;
+	// the doubleBits of the lowest score, only rises during mining
+	private final AtomicLong itsLowestScore = new AtomicLong(Double.doubleToLongBits(Double.NaN));
 	private double itsJointEntropy = Double.NaN; //initially not set
 
 	private BinaryTable itsBinaryTable = null;
+	// used by Subgroup to re-evaluate killed members, set during mining only
+	private transient volatile PrefixCache itsPrefixCache = null;
+	// used by Subgroup to keep the parent for a diffset, set during mining only
+	private transient volatile AtomicLong itsDiffSetBudget = null;
 
-	// this is the long way around, new Subgroups are added to QUEUE when QUEUE.size() >= itsMaximumSize all Subgroups in QUEUE are added to this SubgroupSet, much better for concurrency
-	private final int MAX_QUEUE_SIZE = 1; // arbitrarily chosen
-	private final BlockingQueue<Subgroup> QUEUE = new ArrayBlockingQueue<Subgroup>(MAX_QUEUE_SIZE);
+	/*
+	 * new Subgroups are added to a LocalTopK of the calling thread, no lock
+	 * is shared with other threads, after MERGE_INTERVAL additions to it, all
+	 * Subgroups in the LocalTopK are added to this SubgroupSet
+	 * all methods that read this SubgroupSet first merge() all LocalTopKs
+	 * merged LocalTopKs are dropped from itsLocalTopKs, a thread that adds
+	 * to it again registers it again, see LocalTopK.retire()
+	 */
+	static final int MERGE_INTERVAL = 64; // additions per LocalTopK before merge
+	private final transient ThreadLocal<LocalTopK> itsLocalTopK = new ThreadLocal<LocalTopK>();
+	private final transient Queue<LocalTopK> itsLocalTopKs = new ConcurrentLinkedQueue<LocalTopK>();
+	// guards super.add() and super.remove() of concurrent merges
+	private final transient Object itsMergeLock = new Object();
 
 	/* private, meant to be used within this class only */
 	private SubgroupSet(int theSize, BitSet theSelection, int theNrRows, BitSet theBinaryTarget, boolean theNominalTargetSetting)
@@ -55,7 +70,10 @@ public class SubgroupSet extends TreeSet<Subgroup>
 		nominalTargetSetting = theNominalTargetSetting;
 		itsBinaryTarget = theBinaryTarget;
 
-		if (theSelection == null)
+		// NOTE a SubgroupSet(Comparator) has no itsNrRows, nor have its copies
+		if (itsNrRows < 0)
+			itsAllDataBitSet = null;
+		else if (theSelection == null)
 		{
 			BitSet aBitSet = new BitSet(itsNrRows);
 			aBitSet.set(0, itsNrRows);
@@ -167,8 +185,8 @@ public class SubgroupSet extends TreeSet<Subgroup>
 	 * NOTE DO NOT RELY ON RETURN VALUE
 	 * <code>false</code> means failure,
 	 * but <code>true</code> only means the Subgroup is added to the
-	 * internal Queue for processing later, it might not get added to this
-	 * SubgroupSet.
+	 * LocalTopK of the calling thread for merging later, it might not get
+	 * added to this SubgroupSet.
 	 */
 	@Override
 	public boolean add(Subgroup theSubgroup)
@@ -176,48 +194,31 @@ public class SubgroupSet extends TreeSet<Subgroup>
 		if (theSubgroup == null)
 			return false;
 		// avoid log(n) of TreeMap.put() (called by TreeSet.add())
-		// NOTE itsLowestScore is un-synchronized / non-volatile
-		// so some of these tests may succeed erroneously and the else
-		// below is run, this may be faster than synchronized/ volatile
-		else if (theSubgroup.getMeasureValue() < itsLowestScore)
+		else if (theSubgroup.getMeasureValue() < getLowestScore())
 			return false;
 		else
 		{
 			/*
-			 * using ConcurrentSkipList would be problematic because
-			 * of resetting of itsWorseScore as the add and poll
-			 * operations of concurrent threads might be interleaved
-			 *
-			 * similar problems arise from fixed maxSize (when used)
-			 * a soft maxSize would handle concurrent adds better
+			 * the top-k of this SubgroupSet does not depend on the
+			 * order of additions, as the Subgroup.compareTo() order
+			 * is total, a Subgroup is only discarded when k others
+			 * precede it, or when it scores lower than the k-th,
+			 * so ties are resolved the same way in every invocation
 			 *
-			 * NOTE calls to add() and size() need to be a compound
-			 * action to prevent concurrency related problems
-			 * but synchronized(this) would result in concurrent
-			 * threads being blocked from calling this method
-			 * during the lock
-			 * even though they might fail fast (when the score of
-			 * the candidate Subgroup is lower than the lowest
-			 * scoring Subgroup present in this SubgroupSet)
-			 * in the light of concurrent access, a splitting the
-			 * check and add into two methods would be a bad idea
+			 * per thread, Subgroups are collected in a LocalTopK
+			 * the lock of a LocalTopK is only contended for when
+			 * the thread that reads this SubgroupSet merges it
 			 */
-			try { QUEUE.put(theSubgroup); }
-			catch (InterruptedException e) { e.printStackTrace(); }
-			/*
-			 * NOTE drainTo/ addAll do not work, as they calls this
-			 * add() method again
-			 *
-			 * NOTE although MAX_QUEUE_SIZE prevents a lock after
-			 * every addition, it may actually be detrimental to
-			 * execution speed, as all threads will have to wait
-			 * till the QUEUE is completely emptied, update() after
-			 * each addition may actually be faster, but there is no
-			 * good way (access to massive concurrent systems) to
-			 * test this
-			 */
-			if (QUEUE.size() >= MAX_QUEUE_SIZE)
-				update();
+			LocalTopK aLocal = itsLocalTopK.get();
+			if (aLocal == null)
+			{
+				aLocal = new LocalTopK(comparator());
+				itsLocalTopK.set(aLocal);
+				itsLocalTopKs.add(aLocal);
+			}
+
+			if (aLocal.add(theSubgroup))
+				merge(aLocal);
 
 			return true;
 		}
@@ -225,33 +226,134 @@ public class SubgroupSet extends TreeSet<Subgroup>
 
 	// includes equal scores, as new Subgroups with the same score might be
 	// ordered before the old one, pushing the old one out
-	// note that this is an unsynchronised check, might use AtomicDouble one day
 	// isNaN() check is needed as itsLowestScore starts out like that
 	// FIXME use isEmpty() instead of NaN check
 	boolean hasPotential(float theQuality)
 	{
-		return (Double.isNaN(itsLowestScore) || (theQuality >= itsLowestScore));
+		double aLowestScore = getLowestScore();
+		return (Double.isNaN(aLowestScore) || (theQuality >= aLowestScore));
+	}
+
+	private double getLowestScore()
+	{
+		return Double.longBitsToDouble(itsLowestScore.get());
+	}
+
+	// only ever raises itsLowestScore, concurrent raises can not lower it
+	private void raiseLowestScore(double theScore)
+	{
+		while (true)
+		{
+			long aBits = itsLowestScore.get();
+			double aLowestScore = Double.longBitsToDouble(aBits);
+			if (!Double.isNaN(aLowestScore) && (theScore <= aLowestScore))
+				return;
+			if (itsLowestScore.compareAndSet(aBits, Double.doubleToLongBits(theScore)))
+				return;
+		}
 	}
 
+	// not monotonic, for the single threaded (post-processing) code only
+	private void setLowestScore(double theScore)
+	{
+		itsLowestScore.set(Double.doubleToLongBits(theScore));
+	}
+
+	// adds the Subgroups of all LocalTopKs to this SubgroupSet
 	private void update()
 	{
-		// make all put()'s wait until this QUEUE is empty again
-		synchronized (QUEUE)
+		for (Iterator<LocalTopK> i = itsLocalTopKs.iterator(); i.hasNext(); )
 		{
-			while (QUEUE.size() > 0)
-			{
-				Subgroup s = QUEUE.poll();
-				if (s.getMeasureValue() < itsLowestScore)
-					QUEUE.clear();
+			LocalTopK aLocal = i.next();
+			merge(aLocal);
+			// removes this entry only, when the thread of aLocal added
+			// to it in the meantime, it registered it again
+			if (aLocal.retire())
+				i.remove();
+		}
+	}
+
+	private void merge(LocalTopK theLocal)
+	{
+		// NOTE never hold both locks, add() holds the LocalTopK lock first
+		Subgroup[] aSubgroups = theLocal.drain();
+		if (aSubgroups.length == 0)
+			return;
+
+		synchronized (itsMergeLock)
+		{
+			for (Subgroup s : aSubgroups)
 				super.add(s);
-			}
-			// outside synchronized block leads to troubles if
-			// multiple (QUEUE.size() > MAX) call update
 			while (itsMaximumSize < super.size())
-				remove(last());
+				super.pollLast();
 			// null safe as itsMaximumSize is always > 0
 			if (itsMaximumSize == super.size())
-				itsLowestScore = last().getMeasureValue();
+				raiseLowestScore(super.last().getMeasureValue());
+		}
+	}
+
+	/*
+	 * Bounded top-k of the Subgroups added by a single thread.
+	 * Like a heap, it evicts its lowest ranking Subgroup, but it is a sorted
+	 * set, such that a Subgroup added twice counts once. When it holds k
+	 * Subgroups, its lowest score is a lower bound for that of the shared
+	 * SubgroupSet, and it is published through raiseLowestScore().
+	 */
+	private final class LocalTopK
+	{
+		private final TreeSet<Subgroup> itsTopK;
+		private int itsNrAdditions = 0;
+		// not in itsLocalTopKs, see retire()
+		private boolean isRetired = false;
+
+		LocalTopK(Comparator<? super Subgroup> theComparator)
+		{
+			itsTopK = new TreeSet<Subgroup>(theComparator);
+		}
+
+		// returns whether this LocalTopK should be merged
+		synchronized boolean add(Subgroup theSubgroup)
+		{
+			if (theSubgroup.getMeasureValue() < getLowestScore())
+				return false;
+			if (!itsTopK.add(theSubgroup))
+				return false;
+
+			if (isRetired)
+			{
+				isRetired = false;
+				itsLocalTopKs.add(this);
+			}
+
+			if (itsTopK.size() > itsMaximumSize)
+				itsTopK.pollLast();
+			if (itsTopK.size() == itsMaximumSize)
+				raiseLowestScore(itsTopK.last().getMeasureValue());
+
+			return (++itsNrAdditions >= MERGE_INTERVAL);
+		}
+
+		synchronized Subgroup[] drain()
+		{
+			Subgroup[] aSubgroups = itsTopK.toArray(new Subgroup[itsTopK.size()]);
+			itsTopK.clear();
+			itsNrAdditions = 0;
+			return aSubgroups;
+		}
+
+		/*
+		 * returns whether this LocalTopK is empty, it is then marked to be
+		 * removed from itsLocalTopKs by the caller, the next add() by its
+		 * thread registers it again, such that itsLocalTopKs only holds
+		 * the LocalTopKs of threads that added since the last update(),
+		 * not those of every thread that ever added to this SubgroupSet
+		 */
+		synchronized boolean retire()
+		{
+			if (isRetired || !itsTopK.isEmpty())
+				return false;
+			isRetired = true;
+			return true;
 		}
 	}
 
@@ -283,6 +385,11 @@ public class SubgroupSet extends TreeSet<Subgroup>
 		return (BitSet) itsAllDataBitSet.clone();
 	}
 
+	final PrefixCache getPrefixCache()                   { return itsPrefixCache; }
+	final void setPrefixCache(PrefixCache thePrefixCache) { itsPrefixCache = thePrefixCache; }
+	final AtomicLong getDiffSetBudget()                  { return itsDiffSetBudget; }
+	final void setDiffSetBudget(AtomicLong theBudget)    { itsDiffSetBudget = theBudget; }
+
 	public double getBestScore()
 	{
 		update();
@@ -307,18 +414,173 @@ public class SubgroupSet extends TreeSet<Subgroup>
 	@Override
 	public void clear()
 	{
+		for (LocalTopK aLocal : itsLocalTopKs)
+			aLocal.drain();
 		super.clear();
 		if (itsROCList != null)
 			itsROCList.clear();
-		itsLowestScore = Double.NaN;
+		setLowestScore(Double.NaN);
 		itsJointEntropy = Double.NaN;
 	}
 
+	/*
+	 * the methods below merge all LocalTopKs before reading this SubgroupSet
+	 * NOTE iterators are not guarded against concurrent merges, but during
+	 * mining only add() and hasPotential() are used
+	 */
 	@Override
 	public int size()
 	{
 		update();
-		return super.size();
+		synchronized (itsMergeLock) { return super.size(); }
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		update();
+		synchronized (itsMergeLock) { return super.isEmpty(); }
+	}
+
+	@Override
+	public Subgroup first()
+	{
+		update();
+		synchronized (itsMergeLock) { return super.first(); }
+	}
+
+	@Override
+	public Subgroup last()
+	{
+		update();
+		synchronized (itsMergeLock) { return super.last(); }
+	}
+
+	@Override
+	public boolean contains(Object theObject)
+	{
+		update();
+		synchronized (itsMergeLock) { return super.contains(theObject); }
+	}
+
+	@Override
+	public boolean remove(Object theObject)
+	{
+		update();
+		synchronized (itsMergeLock) { return super.remove(theObject); }
+	}
+
+	@Override
+	public Subgroup pollFirst()
+	{
+		update();
+		synchronized (itsMergeLock) { return super.pollFirst(); }
+	}
+
+	@Override
+	public Subgroup pollLast()
+	{
+		update();
+		synchronized (itsMergeLock) { return super.pollLast(); }
+	}
+
+	@Override
+	public Iterator<Subgroup> iterator()
+	{
+		update();
+		return super.iterator();
+	}
+
+	@Override
+	public Iterator<Subgroup> descendingIterator()
+	{
+		update();
+		return super.descendingIterator();
+	}
+
+	@Override
+	public Spliterator<Subgroup> spliterator()
+	{
+		update();
+		return super.spliterator();
+	}
+
+	// NOTE views are not guarded against concurrent merges, see iterator()
+	@Override
+	public NavigableSet<Subgroup> descendingSet()
+	{
+		update();
+		return super.descendingSet();
+	}
+
+	@Override
+	public SortedSet<Subgroup> headSet(Subgroup theToElement)
+	{
+		update();
+		return super.headSet(theToElement);
+	}
+
+	@Override
+	public NavigableSet<Subgroup> headSet(Subgroup theToElement, boolean isInclusive)
+	{
+		update();
+		return super.headSet(theToElement, isInclusive);
+	}
+
+	@Override
+	public SortedSet<Subgroup> tailSet(Subgroup theFromElement)
+	{
+		update();
+		return super.tailSet(theFromElement);
+	}
+
+	@Override
+	public NavigableSet<Subgroup> tailSet(Subgroup theFromElement, boolean isInclusive)
+	{
+		update();
+		return super.tailSet(theFromElement, isInclusive);
+	}
+
+	@Override
+	public SortedSet<Subgroup> subSet(Subgroup theFromElement, Subgroup theToElement)
+	{
+		update();
+		return super.subSet(theFromElement, theToElement);
+	}
+
+	@Override
+	public NavigableSet<Subgroup> subSet(Subgroup theFromElement, boolean isFromInclusive, Subgroup theToElement, boolean isToInclusive)
+	{
+		update();
+		return super.subSet(theFromElement, isFromInclusive, theToElement, isToInclusive);
+	}
+
+	@Override
+	public Subgroup ceiling(Subgroup theSubgroup)
+	{
+		update();
+		synchronized (itsMergeLock) { return super.ceiling(theSubgroup); }
+	}
+
+	@Override
+	public Subgroup floor(Subgroup theSubgroup)
+	{
+		update();
+		synchronized (itsMergeLock) { return super.floor(theSubgroup); }
+	}
+
+	@Override
+	public Subgroup higher(Subgroup theSubgroup)
+	{
+		update();
+		synchronized (itsMergeLock) { return super.higher(theSubgroup); }
+	}
+
+	@Override
+	public Subgroup lower(Subgroup theSubgroup)
+	{
+		update();
+		synchronized (itsMergeLock) { return super.lower(theSubgroup); }
 	}
 
 	////////////////////////////////////////////////////////////////////////////
@@ -358,7 +620,7 @@ public class SubgroupSet extends TreeSet<Subgroup>
 			for (Candidate c : CoverBasedSubgroupSelection.postProcessResultSet(this, COVER_BASED_SUBGROUP_SELECTION_TOP_K))
 				aCopy.add(c.getSubgroup()); // add not linear, but fine for now
 			aCopy.update();
-			aCopy.itsLowestScore = aCopy.last().getMeasureValue();
+			aCopy.setLowestScore(aCopy.last().getMeasureValue());
 
 			return aCopy;
 		}
@@ -396,7 +658,7 @@ public class SubgroupSet extends TreeSet<Subgroup>
 			aResult.add(aBest);
 		}
 		aResult.update();
-		aResult.itsLowestScore = aResult.last().getMeasureValue();
+		aResult.setLowestScore(aResult.last().getMeasureValue());
 
 		Log.logCommandLine("========================================================");
 		Log.logCommandLine("used: " + aUsed.toString());
@@ -417,26 +679,55 @@ public class SubgroupSet extends TreeSet<Subgroup>
 	/** topK must be > 0, only joint entropy is returned (CR is printed) */
 	public double postProcessGetCoverRedundancyAndJointEntropy(int topK)
 	{
-		if (topK <= 0)
-			throw new IllegalArgumentException(getClass().getName() + ".postProcessGetCoverRedundancyAndJointEntropy() invalid topK: " + topK);
+		return postProcessGetCoverRedundancyAndJointEntropy(new int[] { topK })[0];
+	}
 
-		update();
+	/**
+	 * As {@link #postProcessGetCoverRedundancyAndJointEntropy(int)}, for each
+	 * topK, but all are computed using a single pass over the members of the
+	 * Subgroups, the joint entropies are returned in the order of theTopKs.
+	 */
+	public double[] postProcessGetCoverRedundancyAndJointEntropy(int[] theTopKs)
+	{
+		for (int topK : theTopKs)
+			if (topK <= 0)
+				throw new IllegalArgumentException(getClass().getName() + ".postProcessGetCoverRedundancyAndJointEntropy() invalid topK: " + topK);
 
-		int max = Math.min(topK, super.size());
-		if (max == 0) // when size == 0
-			return 0.0;
+		update();
 
-		BitSet[] aRows      = new BitSet[itsNrRows];
+		int aSize = super.size();
+		int aMax = 0;
+		for (int topK : theTopKs)
+			aMax = Math.max(aMax, Math.min(topK, aSize));
+		if (aMax == 0) // when size == 0
+			return new double[theTopKs.length];
+
+		/*
+		 * each row has a signature that represents the Subgroups that cover it
+		 * rows covered by the same Subgroups have the same signature, so the
+		 * joint entropy follows from the counts of the distinct signatures
+		 * for the first 64 Subgroups, the signature holds one bit per Subgroup
+		 * (so it is exact), after that, the signature is XOR-ed with a random
+		 * 64-bit key per Subgroup, this is a fingerprint, and rows covered by
+		 * different Subgroups have the same fingerprint with probability 2^-64
+		 * this uses 8 bytes per row, instead of a BitSet per row, and the
+		 * signatures are counted in a hash table of size O(nrDistinct), instead
+		 * of sorting all rows, BitSet-by-BitSet
+		 */
+		long[] aSignatures  = new long[itsNrRows];
 		int[] aCoverCounts  = new int[itsNrRows];
 		long aCoverCountSum = 0L;
-		for (int i=0; i<itsNrRows; i++)
-			aRows[i] = new BitSet(max);
+		Random aKeys        = new Random(SIGNATURE_SEED);
 
-		int idx = -1;
-		for (Subgroup s : this)
+		long[] aCoverCountSums = new long[theTopKs.length];
+		double[] aCoverRedundancies = new double[theTopKs.length];
+		double[] anEntropies = new double[theTopKs.length];
+
+		int idx = 0;
+		for (Iterator<Subgroup> it = iterator(); idx < aMax; )
 		{
-			if (++idx == max)
-				break;
+			Subgroup s = it.next();
+			long aKey = (idx < Long.SIZE) ? (1L << idx) : aKeys.nextLong();
 
 			BitSet b = s.getMembers();
 			// no s.killMembers(); when called from ResultWindow members are set
@@ -445,81 +736,152 @@ public class SubgroupSet extends TreeSet<Subgroup>
 
 			for (int i = b.nextSetBit(0); i >= 0; i = b.nextSetBit(i+1))
 			{
-				aRows[i].set(idx);
+				aSignatures[i] ^= aKey;
 				++aCoverCounts[i];
 				++aCoverCountSum;
 			}
+
+			// compute the results for all topK that end at this Subgroup
+			++idx;
+			double aCoverRedundancy = Double.NaN;
+			double anEntropy        = Double.NaN;
+			for (int j = 0; j < theTopKs.length; ++j)
+			{
+				if (Math.min(theTopKs[j], aSize) != idx)
+					continue;
+
+				if (Double.isNaN(anEntropy))
+				{
+					aCoverRedundancy = getCoverRedundancy(aCoverCounts, aCoverCountSum);
+					anEntropy        = getJointEntropy(aSignatures);
+				}
+				aCoverCountSums[j]    = aCoverCountSum;
+				aCoverRedundancies[j] = aCoverRedundancy;
+				anEntropies[j]        = anEntropy;
+			}
+		}
+
+		double aTotalCount = itsNrRows;
+		for (int j = 0; j < theTopKs.length; ++j)
+		{
+			// prints topK (not max), fixed value is easier for log file parsing
+			// the value for max is logged as:
+			//   for !CBSS: number of subgroups
+			//   for  CBSS: NR CANDIDATES FOR NEXT LEVEL (last entry, with a -)
+//			Log.logCommandLine(String.format("CR(%d)=%f\tH(%1$d)=%f", max, aCoverRedundancy, anEntropy));
+			Log.logCommandLine(String.format("CCSUM=%d\tN=%d\tCCEXPECTED=%f\tCR(%d)=%f\tH(%4$d)=%f", aCoverCountSums[j], itsNrRows, (aCoverCountSums[j] / aTotalCount), theTopKs[j], aCoverRedundancies[j], anEntropies[j]));
 		}
 
+		return anEntropies;
+	}
+
+	// fixed, such that the (improbable) fingerprint collisions are reproducible
+	private static final long SIGNATURE_SEED = 20201017L;
+
+	private final double getCoverRedundancy(int[] theCoverCounts, long theCoverCountSum)
+	{
 		double aTotalCount          = itsNrRows;
-		double anExpectedCoverCount = (aCoverCountSum / aTotalCount);
+		double anExpectedCoverCount = (theCoverCountSum / aTotalCount);
 		double aCoverRedundancy     = 0.0;
-		for (int i : aCoverCounts)
+		for (int i : theCoverCounts)
 			aCoverRedundancy += (Math.abs(i - anExpectedCoverCount));
-		aCoverRedundancy = (aCoverRedundancy/anExpectedCoverCount/aTotalCount);
-
-		// TODO
-		// when there are many duplicates, a HashSet/TreeSet might be more
-		// efficient, as they allow to prevent duplicate rows permutations
-		// but these Sets (or Map<rowPermutation, count>) use a lot of memory
-		// and are often not faster, because of array data locality
-		// so the current n log n sorting + n count loop might well be faster
-		// than a Hash structure based O(n + n)
-		// a Tree would be O(n log m + n), where m = nrDistinctRowsPermutations
-		// it would need proper profiling to find the trade-off
-		BitSetComperator bc = new BitSetComperator();
-		Arrays.sort(aRows, bc);
-
-		double anEntropy = 0.0;
-		for (int i = 0, j = 0; ; )
-		{
-			if (bc.compare(aRows[i], aRows[j]) != 0)
-			{
-				double aFraction = (j-i) / aTotalCount;
-				anEntropy += (-aFraction * Math.log(aFraction));
-				i = j;
-			}
-			else if (++j == itsNrRows)
-			{
-				double aFraction = (j-i) / aTotalCount;
-				anEntropy += (-aFraction * Math.log(aFraction));
-				break;
-			}
-		}
-		anEntropy /= Math.log(2.0);
+		return (aCoverRedundancy/anExpectedCoverCount/aTotalCount);
+	}
+
+	private final double getJointEntropy(long[] theSignatures)
+	{
+		SignatureCounter aCounter = new SignatureCounter();
+		for (long aSignature : theSignatures)
+			aCounter.add(aSignature);
+
+		double aTotalCount = itsNrRows;
+		double anEntropy   = 0.0;
+		for (int i = -1; i < aCounter.itsCounts.length; ++i)
+		{
+			// -1 is the count of the signature 0, for rows that are not covered
+			int aCount = (i < 0) ? aCounter.itsZeroCount : aCounter.itsCounts[i];
+			if (aCount == 0)
+				continue;
 
-		// prints topK (not max), fixed value is easier for log file parsing
-		// the value for max is logged as:
-		//   for !CBSS: number of subgroups
-		//   for  CBSS: NR CANDIDATES FOR NEXT LEVEL (last entry, with a -)
-//		Log.logCommandLine(String.format("CR(%d)=%f\tH(%1$d)=%f", max, aCoverRedundancy, anEntropy));
-		Log.logCommandLine(String.format("CCSUM=%d\tN=%d\tCCEXPECTED=%f\tCR(%d)=%f\tH(%4$d)=%f", aCoverCountSum, itsNrRows, anExpectedCoverCount, topK, aCoverRedundancy, anEntropy));
+			double aFraction = aCount / aTotalCount;
+			anEntropy += (-aFraction * Math.log(aFraction));
+		}
 
-		return anEntropy;
+		return (anEntropy / Math.log(2.0));
 	}
 
-	private static final class BitSetComperator implements Comparator<BitSet>
+	/*
+	 * counts the occurrences of each signature, using open addressing with
+	 * linear probing, the key 0 is used to mark an empty slot, so the count of
+	 * the signature 0 is kept separately
+	 * the table grows with the number of distinct signatures, which is at most
+	 * 2^topK, and often much smaller than the number of rows
+	 */
+	private static final class SignatureCounter
 	{
-		@Override
-		public int compare(BitSet a, BitSet b)
+		private long[] itsKeys = new long[64];
+		private int[] itsCounts = new int[64];
+		private int itsZeroCount = 0;
+		private int itsSize = 0;
+
+		void add(long theSignature)
 		{
-			if (a == b)
-				return 0;
+			if (theSignature == 0L)
+			{
+				++itsZeroCount;
+				return;
+			}
 
-			int cmp = (a.cardinality() - b.cardinality());
-			if (cmp != 0)
-				return cmp;
+			int aMask = itsKeys.length - 1;
+			int i = hash(theSignature) & aMask;
+			for ( ; itsKeys[i] != 0L; i = (i+1) & aMask)
+			{
+				if (itsKeys[i] == theSignature)
+				{
+					++itsCounts[i];
+					return;
+				}
+			}
+
+			itsKeys[i] = theSignature;
+			itsCounts[i] = 1;
+			// load factor of at most 0.5
+			if (++itsSize > (itsKeys.length >>> 1))
+				grow();
+		}
 
-			// NOTE size could be larger than topK, but BitSets will be replaced
-			for (int i = 0, j = a.size(); i < j; ++i)
+		private void grow()
+		{
+			long[] aKeys = itsKeys;
+			int[] aCounts = itsCounts;
+			itsKeys = new long[aKeys.length << 1];
+			itsCounts = new int[aKeys.length << 1];
+
+			int aMask = itsKeys.length - 1;
+			for (int j = 0; j < aKeys.length; ++j)
 			{
-				boolean ai = a.get(i);
-				if (ai ^ b.get(i))
-					return (ai ? -1 : 1);
+				if (aKeys[j] == 0L)
+					continue;
+
+				int i = hash(aKeys[j]) & aMask;
+				while (itsKeys[i] != 0L)
+					i = (i+1) & aMask;
+				itsKeys[i] = aKeys[j];
+				itsCounts[i] = aCounts[j];
 			}
+		}
 
-			// all bits the same, enforce total ordering not required for array
-			return 0;
+		// signatures of the first 64 Subgroups have few set bits, mix them
+		// all bits affect the low bits, this is the MurmurHash3 finaliser
+		private static final int hash(long theSignature)
+		{
+			long h = theSignature;
+			h ^= (h >>> 33);
+			h *= 0xff51afd7ed558ccdL;
+			h ^= (h >>> 33);
+			h *= 0xc4ceb9fe1a85ec53L;
+			h ^= (h >>> 33);
+			return (int) h;
 		}
 	}
 
@@ -608,43 +970,79 @@ public class SubgroupSet extends TreeSet<Subgroup>
 		System.out.println("Filtered result set size: " + size());
 	}
 
-	public void saveExtent(BufferedWriter theWriter, Table theTable, BitSet theSubset, TargetConcept theTargetConcept)
+	// bytes of text rows that saveExtent() prepares at once
+	private static final int EXTENT_BLOCK_BYTES = (1 << 20);
+
+	/**
+	 * Writes a row for every row of theTable, starting with <code>train</code>
+	 * for the rows in theSubset, and <code>test </code> for the others,
+	 * followed by a 0/1 column for every {@link Subgroup}.
+	 * <p>
+	 * The members of the Subgroups index the rows in theSubset, as the
+	 * Subgroups are found on a Table that holds only those rows.
+	 * No members are cloned, see Subgroup.getMemberSet(), rows are prepared
+	 * in blocks of reusable bytes, and only the members of each Subgroup
+	 * are visited.
+	 *
+	 * @see #saveExtentBinary(File, Table, BitSet)
+	 */
+	public void saveExtent(ResultWriter theWriter, Table theTable, BitSet theSubset, TargetConcept theTargetConcept)
+	{
+		saveExtent(theWriter, theTable, theSubset, theTargetConcept, EXTENT_BLOCK_BYTES);
+	}
+
+	// prepares rows in blocks of at most theBlockBytes, but at least one row
+	void saveExtent(ResultWriter theWriter, Table theTable, BitSet theSubset, TargetConcept theTargetConcept, int theBlockBytes)
 	{
 		update();
 		Log.logCommandLine("saving extent...");
 		try
 		{
-			// get SubgroupMembers only once
-			List<BitSet> aMembers = new ArrayList<BitSet>(this.size());
-			for (Subgroup s : this)
-				aMembers.add(s.getMembers());
+			final MemberSet[] aMembers = getMemberSets();
+			final int aNrSubgroups = aMembers.length;
+			final int aNrRows = theTable.getNrRows();
+			final int aNrTrainRows = theSubset.get(0, aNrRows).cardinality();
 
 			// row length = 5 + size()*(,1) + \n
-			int aNrChars = this.size()*2 + 6;
+			final int aRowLength = 5 + 2*aNrSubgroups + 1;
+			final byte[] aTestRow = getExtentRow("test ", aNrSubgroups);
+			final byte[] aTrainRow = getExtentRow("train", aNrSubgroups);
+
+			final int aBlockRows = Math.max(1, theBlockBytes / aRowLength);
+			final byte[] aBlock = new byte[Math.min(aBlockRows, aNrTrainRows) * aRowLength];
+			// next member of every Subgroup, every member is visited once
+			final int[] aNext = new int[aNrSubgroups];
+			for (int s = 0; s < aNrSubgroups; ++s)
+				aNext[s] = aMembers[s].nextSetBit(0);
+
+			// i indexes theTable, k indexes the rows of theSubset
+			int i = 0;
+			for (int k = 0; k < aNrTrainRows; /* increments inside loop */)
+			{
+				final int aNrBlockRows = Math.min(aBlockRows, aNrTrainRows - k);
+				final int aTo = k + aNrBlockRows;
 
-			StringBuilder aRow = new StringBuilder(aNrChars);
-			aRow.append("test ");
-			for (int i = 0, j = this.size(); i < j; ++i)
-				aRow.append(",0");
-			String aTestRow = aRow.append("\n").toString();
+				for (int r = 0; r < aNrBlockRows; ++r)
+					System.arraycopy(aTrainRow, 0, aBlock, r * aRowLength, aRowLength);
+				for (int s = 0; s < aNrSubgroups; ++s)
+				{
+					int m = aNext[s];
+					for ( ; (m >= 0) && (m < aTo); m = aMembers[s].nextSetBit(m + 1))
+						aBlock[((m - k) * aRowLength) + 6 + (2 * s)] = '1';
+					aNext[s] = m;
+				}
 
-			for (int i = 0, j = theTable.getNrRows(), k = 0; i < j; ++i)
-			{
-				// add subgroup extents to current row
 				// since Cross-Validation Columns are shorter
 				// than the original Columns, we need to pad
-				if (theSubset.get(i))
+				for (int r = 0; r < aNrBlockRows; ++r, ++i, ++k)
 				{
-					aRow = new StringBuilder(aNrChars);
-					aRow.append("train");
-					for (BitSet b : aMembers)
-						aRow.append(b.get(k) ? ",1" : ",0");
-					theWriter.write(aRow.append("\n").toString());
-					++k;
+					for ( ; !theSubset.get(i); ++i)
+						theWriter.write(aTestRow, 0, aRowLength);
+					theWriter.write(aBlock, r * aRowLength, aRowLength);
 				}
-				else
-					theWriter.write(aTestRow);
 			}
+			for ( ; i < aNrRows; ++i)
+				theWriter.write(aTestRow, 0, aRowLength);
 		}
 		catch (IOException e)
 		{
@@ -652,6 +1050,121 @@ public class SubgroupSet extends TreeSet<Subgroup>
 		}
 	}
 
+	/**
+	 * Writes the extent of every {@link Subgroup} as a bit-packed bitmap over
+	 * the rows of theTable, a compact binary alternative to the text written
+	 * by {@link #saveExtent(ResultWriter, Table, BitSet, TargetConcept)}.
+	 * <p>
+	 * The format is big-endian, as written by a DataOutputStream:
+	 * <code>int</code> magic (EXTENT_MAGIC), <code>int</code> version (1),
+	 * <code>int</code> number of rows, <code>int</code> number of Subgroups,
+	 * <code>(nrRows + 63) / 64</code> longs holding theSubset (the train
+	 * rows), then for every Subgroup its <code>int</code> ID followed by
+	 * <code>(nrRows + 63) / 64</code> longs holding its members.
+	 * Bit <code>r</code> of long <code>w</code> is row <code>64*w + r</code>
+	 * of theTable, as for BitSet.valueOf(long[]).
+	 * <p>
+	 * Every bitmap is written while its members are visited, no BitSet is
+	 * created or cloned.
+	 */
+	public void saveExtentBinary(File theFile, Table theTable, BitSet theSubset)
+	{
+		update();
+		Log.logCommandLine("saving binary extent...");
+
+		ResultWriter aWriter = null;
+		try
+		{
+			final MemberSet[] aMembers = getMemberSets();
+			final int aNrRows = theTable.getNrRows();
+
+			// row of theTable for every row of theSubset
+			final int[] aRows = new int[theSubset.get(0, aNrRows).cardinality()];
+			for (int i = theSubset.nextSetBit(0), k = 0; (i >= 0) && (i < aNrRows); i = theSubset.nextSetBit(i + 1))
+				aRows[k++] = i;
+
+			aWriter = new ResultWriter(theFile);
+			aWriter.writeInt(EXTENT_MAGIC);
+			aWriter.writeInt(EXTENT_VERSION);
+			aWriter.writeInt(aNrRows);
+			aWriter.writeInt(aMembers.length);
+
+			writeBitmap(aWriter, aNrRows, aRows, null);
+			Iterator<Subgroup> anIterator = iterator();
+			for (MemberSet m : aMembers)
+			{
+				aWriter.writeInt(anIterator.next().getID());
+				writeBitmap(aWriter, aNrRows, aRows, m);
+			}
+		}
+		catch (IOException e)
+		{
+			Log.logCommandLine("SubgroupSet.saveExtentBinary(): error on file: " + e.getMessage());
+		}
+		finally
+		{
+			try
+			{
+				if (aWriter != null)
+					aWriter.close();
+			}
+			catch (IOException e)
+			{
+				Log.logCommandLine("SubgroupSet.saveExtentBinary(): error on file: " + e.getMessage());
+			}
+		}
+	}
+
+	// 'SDEX', see saveExtentBinary()
+	static final int EXTENT_MAGIC = 0x53444558;
+	static final int EXTENT_VERSION = 1;
+
+	// in iteration order, members are not cloned, see Subgroup.getMemberSet()
+	private MemberSet[] getMemberSets()
+	{
+		MemberSet[] aMembers = new MemberSet[size()];
+		int i = 0;
+		for (Subgroup s : this)
+			aMembers[i++] = s.getMemberSet();
+		return aMembers;
+	}
+
+	private static byte[] getExtentRow(String theLabel, int theNrSubgroups)
+	{
+		byte[] aRow = new byte[5 + 2*theNrSubgroups + 1];
+		for (int i = 0; i < 5; ++i)
+			aRow[i] = (byte) theLabel.charAt(i);
+		for (int i = 5; i < aRow.length - 1; i += 2)
+		{
+			aRow[i] = ',';
+			aRow[i + 1] = '0';
+		}
+		aRow[aRow.length - 1] = '\n';
+		return aRow;
+	}
+
+	/*
+	 * writes the bitmap of theMembers, mapped to the rows of theTable through
+	 * theRows, words are written as soon as they are complete
+	 * for theMembers == null all rows in theRows are written
+	 */
+	private static void writeBitmap(ResultWriter theWriter, int theNrRows, int[] theRows, MemberSet theMembers) throws IOException
+	{
+		final int aNrWords = (theNrRows + 63) >>> 6;
+		int aWordIndex = 0;
+		long aWord = 0L;
+
+		for (int k = (theMembers == null) ? 0 : theMembers.nextSetBit(0); (k >= 0) && (k < theRows.length); k = (theMembers == null) ? (k + 1) : theMembers.nextSetBit(k + 1))
+		{
+			int i = theRows[k];
+			for ( ; aWordIndex < (i >>> 6); ++aWordIndex, aWord = 0L)
+				theWriter.writeLong(aWord);
+			aWord |= (1L << i);
+		}
+		for ( ; aWordIndex < aNrWords; ++aWordIndex, aWord = 0L)
+			theWriter.writeLong(aWord);
+	}
+
 	/*
 	 * ROCList functions.
 	 * TODO update a single ROCList instance?
@@ -442,9 +442,135 @@ public class Table implements XMLNodeInterface
 	 * @param theTC the TargetConcept to swapRandomize.
 	 *
 	 * @see Column#permute(int[])
-	 * @see Validation#swapRandomization(int)
+	 * @see #swapRandomizedCopy(TargetConcept, Random)
 	 */
 	public void swapRandomizeTarget(TargetConcept theTC)
+	{
+		List<Column> aTargets = getSwapRandomizationTargets(theTC);
+		int[] aPermutation = getPermutation(getNrRows(), itsRandomNumber);
+
+		//execute permutation on all targets
+		for (Column aColumn : aTargets)
+		{
+			Log.logCommandLine("permuting \"" + aColumn.getName() + "\"");
+			aColumn.permute(aPermutation);
+		}
+	}
+
+	/**
+	 * Creates a new Table, where the targets of the {@link TargetConcept}
+	 * passed in as parameter are permuted, using a single permutation for
+	 * all targets.
+	 * <p>
+	 * NOTE the new Table is not a true deep-copy, this Table and theTC are
+	 * not modified.
+	 * All {@link Column}s are views created by {@link Column#copy()}, the
+	 * descriptive Columns share their data and presort with the Columns of
+	 * this Table, but mining can build its sort index for each view.
+	 * Use {@link TargetConcept#copy(Table)} to obtain a TargetConcept that
+	 * points to the permuted targets.
+	 *
+	 * @param theTC the TargetConcept to swapRandomize.
+	 * @param theRandom the source of the permutation, for reproducibility
+	 * use a new Random with a fixed seed for each copy.
+	 *
+	 * @return a new Table, with permuted targets.
+	 *
+	 * @see Validation#swapRandomization(int, int, long)
+	 */
+	public Table swapRandomizedCopy(TargetConcept theTC, Random theRandom)
+	{
+		List<Column> aTargets = getSwapRandomizationTargets(theTC);
+		int[] aPermutation = getPermutation(getNrRows(), theRandom);
+
+		Table aResult = new Table(new File(itsSource), itsName, itsNrRows, itsNrColumns);
+
+		for (Column aColumn : itsColumns)
+		{
+			Column aCopy = aColumn.copy();
+			// TargetConcept.isTargetAttribute() also compares by identity
+			for (Column aTarget : aTargets)
+				if (aTarget == aColumn)
+					aCopy.permute(aPermutation);
+			aResult.itsColumns.add(aCopy);
+		}
+
+		aResult.itsRandomNumber = itsRandomNumber;
+		aResult.itsDomains = itsDomains;
+		aResult.itsDomainIndices = itsDomainIndices;
+
+		// NOTE no update(), Column.close() would modify the shared data, and
+		//      this method is called concurrently, the sizes are unchanged
+
+		return aResult;
+	}
+
+	/**
+	 * Creates a new Table, holding a view of every {@link Column} of this
+	 * Table.
+	 * <p>
+	 * NOTE the new Table is not a true deep-copy, this Table is not
+	 * modified.
+	 * All Columns are views created by {@link Column#copy()}, as for
+	 * {@link #swapRandomizedCopy(TargetConcept, Random)}, such that
+	 * experiments using different targets can be mined concurrently.
+	 *
+	 * @return a new Table, holding views of the Columns of this Table.
+	 *
+	 * @see XMLAutoRun
+	 */
+	public Table copy()
+	{
+		Table aResult = new Table(new File(itsSource), itsName, itsNrRows, itsNrColumns);
+
+		for (Column aColumn : itsColumns)
+			aResult.itsColumns.add(aColumn.copy());
+
+		aResult.itsRandomNumber = itsRandomNumber;
+		aResult.itsDomains = itsDomains;
+		aResult.itsDomainIndices = itsDomainIndices;
+
+		// NOTE no update(), see swapRandomizedCopy()
+
+		return aResult;
+	}
+
+	/**
+	 * Creates a new Table, where the {@link Column} at the index of the
+	 * Column passed in as parameter is replaced by that Column.
+	 * <p>
+	 * NOTE the new Table is not a true deep-copy, this Table is not
+	 * modified.
+	 * All other Columns are views created by {@link Column#copy()}, as for
+	 * {@link #swapRandomizedCopy(TargetConcept, Random)}.
+	 * Use {@link TargetConcept#copy(Table)} to obtain a TargetConcept that
+	 * points to the Columns of the new Table.
+	 *
+	 * @param theColumn the Column to use in the new Table.
+	 *
+	 * @return a new Table, holding theColumn.
+	 */
+	public Table copyWith(Column theColumn)
+	{
+		int anIndex = theColumn.getIndex();
+		if ((anIndex < 0) || (anIndex >= itsNrColumns) || (theColumn.size() != itsNrRows))
+			throw new IllegalArgumentException(String.format("%s.copyWith(): invalid Column '%s'", Table.class.getSimpleName(), theColumn.getName()));
+
+		Table aResult = new Table(new File(itsSource), itsName, itsNrRows, itsNrColumns);
+
+		for (Column aColumn : itsColumns)
+			aResult.itsColumns.add((aColumn.getIndex() == anIndex) ? theColumn : aColumn.copy());
+
+		aResult.itsRandomNumber = itsRandomNumber;
+		aResult.itsDomains = itsDomains;
+		aResult.itsDomainIndices = itsDomainIndices;
+
+		// NOTE no update(), see swapRandomizedCopy()
+
+		return aResult;
+	}
+
+	private static final List<Column> getSwapRandomizationTargets(TargetConcept theTC)
 	{
 		TargetType aType = theTC.getTargetType();
 
@@ -497,7 +623,11 @@ public class Table implements XMLNodeInterface
 //			}
 //		}
 
-		int n = getNrRows();
+		return aTargets;
+	}
+
+	private static final int[] getPermutation(int n, Random theRandom)
+	{
 		//start with regular order
 		int[] aPermutation = new int[n];
 		for (int i=0; i<n; i++)
@@ -507,7 +637,7 @@ public class Table implements XMLNodeInterface
 		for (int i=0; i<n-1; i++)
 		{
 			int aFirst = i;
-			int aSecond = i+itsRandomNumber.nextInt(n-i);
+			int aSecond = i+theRandom.nextInt(n-i);
 
 			//swap first and second
 			int aSwap = aPermutation[aFirst];
@@ -515,12 +645,7 @@ public class Table implements XMLNodeInterface
 			aPermutation[aSecond] = aSwap;
 		}
 
-		//execute permutation on all targets
-		for (Column aColumn : aTargets)
-		{
-			Log.logCommandLine("permuting \"" + aColumn.getName() + "\"");
-			aColumn.permute(aPermutation);
-		}
+		return aPermutation;
 	}
 
 	public void print()
@@ -14,7 +14,7 @@ import org.w3c.dom.*;
  */
 public class TargetConcept implements XMLNodeInterface
 {
-	// when adding/removing members be sure to update addNodeTo() and loadNode()
+	// when adding/removing members be sure to update addNodeTo(), loadNode() and copy()
 	// itsMembers
 // FIXME MM
 // itsNrTargetAttributes is a very confusing member, and it is never used in code
@@ -140,7 +140,7 @@ public class TargetConcept implements XMLNodeInterface
 		}
 		if (itsMultiTargets != null) //replace entire list
 		{
-			List<Column> aList = new ArrayList<Column>(itsMultiTargets);
+			List<Column> aList = new ArrayList<Column>(itsMultiTargets.size());
 			for (Column aColumn : itsMultiTargets)
 			{
 				int aColumnIndex = aColumn.getIndex();
@@ -154,6 +154,39 @@ public class TargetConcept implements XMLNodeInterface
 		//for tertiary targets and multi-regression, when that is stable
 	}
 
+	/**
+	 * Creates a copy of this TargetConcept that points to the
+	 * {@link Column}s of a {@link Table} that is a copy of the
+	 * <code>Table</code> this TargetConcept is pointing to.
+	 * This TargetConcept is not modified.
+	 *
+	 * @param theTable
+	 *
+	 * @return a new TargetConcept, with the same settings as this one.
+	 *
+	 * @see #updateToNewTable(Table)
+	 */
+	TargetConcept copy(Table theTable)
+	{
+		TargetConcept aCopy = new TargetConcept();
+		aCopy.itsNrTargetAttributes = itsNrTargetAttributes;
+		aCopy.itsTargetType = itsTargetType;
+		aCopy.itsPrimaryTarget = itsPrimaryTarget;
+		aCopy.itsTargetValue = itsTargetValue;
+		aCopy.itsSecondaryTarget = itsSecondaryTarget;
+		aCopy.itsMultiRegressionTargets = itsMultiRegressionTargets;
+		aCopy.itsMultiTargets = itsMultiTargets;
+		aCopy.itsSecondaryTargets = itsSecondaryTargets;
+		aCopy.itsTertiaryTargets = itsTertiaryTargets;
+		aCopy.itsInterceptRelevance = itsInterceptRelevance;
+		aCopy.itsGlobalRegressionModel = itsGlobalRegressionModel;
+
+		// replaces, never modifies, the Columns and List of the copy
+		aCopy.updateToNewTable(theTable);
+
+		return aCopy;
+	}
+
 	public boolean isTargetAttribute(Column theColumn)
 	{
 		switch (itsTargetType)
@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
 
 import nl.liacs.subdisc.ConditionListBuilder.ConditionList;
 import nl.liacs.subdisc.gui.*;
@@ -43,6 +44,21 @@ public class Validation
 	//            also, the whole class should consist of just static methods
 	//            of split constructor (not all TargetTypes use QualityMeasure)
 	public double[] getQualities(String[] theSetup)
+	{
+		return getQualities(theSetup, null);
+	}
+
+	/**
+	 * As {@link #getQualities(String[])}, but random subsets and random
+	 * descriptions stop early when the empirical p-values of theSubgroupSet
+	 * are known precisely enough.
+	 * <p>
+	 * Use this only when the returned qualities are used for empirical
+	 * p-values, other uses require all requested qualities.
+	 *
+	 * @see #getRandomQualities(boolean, int, SubgroupSet)
+	 */
+	public double[] getQualities(String[] theSetup, SubgroupSet theSubgroupSet)
 	{
 		if (!RandomQualitiesWindow.isValidRandomQualitiesSetup(theSetup))
 			return null;
@@ -51,9 +67,9 @@ public class Validation
 		int aNrRepetitions = Integer.parseInt(theSetup[1]);
 
 		if (RandomQualitiesWindow.RANDOM_SUBSETS.equals(aMethod))
-			return getRandomQualities(true, aNrRepetitions);
+			return getRandomQualities(true, aNrRepetitions, theSubgroupSet);
 		else if (RandomQualitiesWindow.RANDOM_DESCRIPTIONS.equals(aMethod))
-			return getRandomQualities(false, aNrRepetitions);
+			return getRandomQualities(false, aNrRepetitions, theSubgroupSet);
 		else if (RandomQualitiesWindow.SWAP_RANDOMIZATION.equals(aMethod))
 			return swapRandomization(aNrRepetitions);
 
@@ -73,22 +89,75 @@ public class Validation
 	}
 
 	public double[] getRandomQualities(boolean forSubgroups, int theNrRepetitions)
+	{
+		return getRandomQualities(forSubgroups, theNrRepetitions, (SubgroupSet) null);
+	}
+
+	/**
+	 * Computes the qualities of random subsets or random descriptions.
+	 * <p>
+	 * When theSubgroupSet is not <code>null</code>, sampling stops early,
+	 * once the 95% confidence intervals of all empirical p-values that are
+	 * reported for theSubgroupSet have a half-width of at most
+	 * {@link #RANDOM_QUALITIES_MAX_HALF_WIDTH}, these are the p-value of
+	 * {@link #computeEmpiricalPValue(double[], SubgroupSet)} and those of
+	 * {@link Subgroup#setEmpiricalPValue(double[])}. The returned array
+	 * then holds fewer than theNrRepetitions qualities.
+	 *
+	 * @param forSubgroups <code>true</code> for random subsets,
+	 * <code>false</code> for random descriptions.
+	 * @param theNrRepetitions the (maximum) number of random subgroups.
+	 * @param theSubgroupSet the Subgroups for which the empirical p-values
+	 * are estimated, or <code>null</code> to never stop early.
+	 *
+	 * @return an array holding the quality of each random subgroup.
+	 */
+	public double[] getRandomQualities(boolean forSubgroups, int theNrRepetitions, SubgroupSet theSubgroupSet)
+	{
+		// the number of threads of the SearchParameters is the budget
+		return getRandomQualities(forSubgroups, theNrRepetitions, getPValueQualities(theSubgroupSet), itsSearchParameters.getNrThreads(), RANDOM_QUALITIES_SEED);
+	}
+
+	/*
+	 * the qualities for which empirical p-values are reported, see Sampler
+	 * the first is that of the top-1, see computeEmpiricalPValue(), the others
+	 * are those of all Subgroups, see Subgroup.setEmpiricalPValue()
+	 */
+	private static final double[] getPValueQualities(SubgroupSet theSubgroupSet)
+	{
+		if ((theSubgroupSet == null) || theSubgroupSet.isEmpty())
+			return null;
+
+		double[] aQualities = new double[theSubgroupSet.size() + 1];
+		int i = 0;
+		aQualities[i++] = theSubgroupSet.first().getMeasureValue();
+		for (Subgroup s : theSubgroupSet)
+			aQualities[i++] = s.getMeasureValue();
+
+		return aQualities;
+	}
+
+	/*
+	 * the result only depends on theSeed, not on theNrThreads
+	 * a number of threads <= 0 uses all available processors
+	 * thePValueQualities is null, or as getPValueQualities()
+	 */
+	double[] getRandomQualities(boolean forSubgroups, int theNrRepetitions, double[] thePValueQualities, int theNrThreads, long theSeed)
 	{
 		final int aMinimumCoverage = itsSearchParameters.getMinimumCoverage();
-		//final Random aRandom = new Random(System.currentTimeMillis());
-		final Random aRandom = new Random(10);
 		final int aDepth = itsSearchParameters.getSearchDepth();
+		final Sampler aSampler = new Sampler(forSubgroups, theNrRepetitions, aMinimumCoverage, aDepth, thePValueQualities, theNrThreads, theSeed);
 
 		final TargetType aTargetType = itsTargetConcept.getTargetType();
 		switch (aTargetType)
 		{
 			case SINGLE_NOMINAL :
 			{
-				return getSingleNominalQualities(forSubgroups, theNrRepetitions, aMinimumCoverage, aRandom, aDepth);
+				return getSingleNominalQualities(aSampler);
 			}
 			case SINGLE_NUMERIC :
 			{
-				return getSingleNumericQualities(forSubgroups, theNrRepetitions, aMinimumCoverage, aRandom, aDepth);
+				return getSingleNumericQualities(aSampler);
 			}
 			case SINGLE_ORDINAL:
 			{
@@ -96,23 +165,23 @@ public class Validation
 			}
 			case DOUBLE_REGRESSION :
 			{
-				return getDoubleRegressionQualities(forSubgroups, theNrRepetitions, aMinimumCoverage, aRandom, aDepth);
+				return getDoubleRegressionQualities(aSampler);
 			}
 			case DOUBLE_CORRELATION :
 			{
-				return getDoubleCorrelationQualities(forSubgroups, theNrRepetitions, aMinimumCoverage, aRandom, aDepth);
+				return getDoubleCorrelationQualities(aSampler);
 			}
 			case DOUBLE_BINARY :
 			{
-				return getDoubleBinaryQualities(forSubgroups, theNrRepetitions, aMinimumCoverage, aRandom, aDepth);
+				return getDoubleBinaryQualities(aSampler);
 			}
 			case MULTI_LABEL :
 			{
-				return getMultiLabelQualities(forSubgroups, theNrRepetitions, aMinimumCoverage, aRandom, aDepth);
+				return getMultiLabelQualities(aSampler);
 			}
 			case LABEL_RANKING :
 			{
-				return getLabelRankingQualities(forSubgroups, theNrRepetitions, aMinimumCoverage, aRandom, aDepth);
+				return getLabelRankingQualities(aSampler);
 			}
 			case MULTI_BINARY_CLASSIFICATION :
 			{
@@ -125,9 +194,35 @@ public class Validation
 		}
 	}
 
+	// random qualities seed, fixed, such that results are reproducible
+	private static final long RANDOM_QUALITIES_SEED = 10L;
+	// early stopping, the maximum half-width of the 95% confidence intervals
+	// of the empirical p-values, it is checked every RANDOM_QUALITIES_CHECK
+	private static final double RANDOM_QUALITIES_MAX_HALF_WIDTH = 0.005;
+	private static final int RANDOM_QUALITIES_CHECK = 1000;
+	// repetitions per Block, a multiple of it is RANDOM_QUALITIES_CHECK
+	private static final int RANDOM_QUALITIES_BLOCK = 50;
+
+	/*
+	 * computes the quality of a random subgroup, one for each TargetType
+	 * NOTE calculate() is called concurrently, unless isConcurrent() is
+	 * false, it must not modify any shared state
+	 */
+	private static abstract class Evaluator
+	{
+		boolean isConcurrent() { return true; }
+
+		abstract double calculate(int theRepetition, BitSet theMembers, int theCoverage);
+
+		// for random subsets, theWords are reused, do not keep a reference
+		double calculate(int theRepetition, long[] theWords, int theCoverage)
+		{
+			return calculate(theRepetition, BitSet.valueOf(theWords), theCoverage);
+		}
+	}
+
 	// if forSubgroups is true, create Subgroups, else create Conditions
-	// if forSubgroups is true, theDepth is ignored
-	private double[] getSingleNominalQualities(boolean forSubgroups, int theNrRepetitions, int theMinimumCoverage, Random theRandom, int theDepth)
+	private double[] getSingleNominalQualities(Sampler theSampler)
 	{
 ////////////////////////////////////////////////////////////////////////////////
 ///// FIXME - WHY IS THIS HERE, itsBinaryTarget IS AVAILABLE ALREADY       /////
@@ -163,242 +258,179 @@ public class Validation
 ////////////////////////////////////////////////////////////////////////////////
 ////////////////////////////////////////////////////////////////////////////////
 
-		final double[] aQualities = new double[theNrRepetitions];
+		// counts through BitSetCount, no and() on a clone of the members
+		final long[] aTargetWords = BitSetCount.toWords(b, itsTable.getNrRows());
 
-		for (int i = 0; i < theNrRepetitions; ++i)
+		return theSampler.sample(new Evaluator()
 		{
-			Subgroup aSubgroup;
-
-			// essential switch between Subgroups/ Conditions
-			if (forSubgroups)
-				aSubgroup = getValidSubgroup(theMinimumCoverage, theRandom);
-			else
-				aSubgroup = getValidSubgroup(theDepth, theMinimumCoverage, theRandom);
-
-			BitSet aMembers = aSubgroup.getMembers();
-			// aMembers is a clone so this is safe
-			aMembers.and(b);
-			int aCountHeadBody = aMembers.cardinality();
-
-			aQualities[i] = itsQualityMeasure.calculate(aCountHeadBody, aSubgroup.getCoverage());
-		}
+			@Override
+			double calculate(int theRepetition, BitSet theMembers, int theCoverage)
+			{
+				int aCountHeadBody = BitSetCount.countCommon(theMembers, theCoverage, aTargetWords);
+				return itsQualityMeasure.calculate(aCountHeadBody, theCoverage);
+			}
 
-		return aQualities;
+			@Override
+			double calculate(int theRepetition, long[] theWords, int theCoverage)
+			{
+				int aCountHeadBody = BitSetCount.countCommon(theWords, aTargetWords);
+				return itsQualityMeasure.calculate(aCountHeadBody, theCoverage);
+			}
+		});
 	}
 
 	// if forSubgroups is true, create Subgroups, else create Conditions
-	// if forSubgroups is true, theDepth is ignored
-	private double[] getSingleNumericQualities(boolean forSubgroups, int theNrRepetitions, int theMinimumCoverage, Random theRandom, int theDepth)
+	private double[] getSingleNumericQualities(Sampler theSampler)
 	{
-		final double[] aQualities = new double[theNrRepetitions];
-
 		final Column aTarget = itsTargetConcept.getPrimaryTarget();
+		final QM aQM = itsSearchParameters.getQualityMeasure();
 
-		for (int i = 0; i < theNrRepetitions; ++i)
+		return theSampler.sample(new Evaluator()
 		{
-			Subgroup aSubgroup;
-
-			// essential switch between Subgroups/ Conditions
-			if (forSubgroups)
-				aSubgroup = getValidSubgroup(theMinimumCoverage, theRandom);
-			else
-				aSubgroup = getValidSubgroup(theDepth, theMinimumCoverage, theRandom);
-
-			BitSet aMembers = aSubgroup.getMembers();
-
-			QM aQM = itsSearchParameters.getQualityMeasure();
-			Statistics aStatistics = aTarget.getStatistics(null, aMembers, aQM == QM.MMAD, QM.requiredStats(aQM).contains(Stat.COMPL)); //TODO check for theSelection
-
-			ProbabilityDensityFunction aPDF = null;
-			// DEBUG
-			if (!ProbabilityDensityFunction.USE_ProbabilityDensityFunction2)
-				aPDF = new ProbabilityDensityFunction(itsQualityMeasure.getProbabilityDensityFunction(), aMembers);
-			else
-				aPDF = new ProbabilityDensityFunction2(itsQualityMeasure.getProbabilityDensityFunction(), aMembers);
-			aPDF.smooth();
+			@Override
+			double calculate(int theRepetition, BitSet theMembers, int theCoverage)
+			{
+				Statistics aStatistics = aTarget.getStatistics(null, theMembers, aQM == QM.MMAD, QM.requiredStats(aQM).contains(Stat.COMPL)); //TODO check for theSelection
 
-			aQualities[i] = itsQualityMeasure.calculate(aStatistics, aPDF);
-		}
+				ProbabilityDensityFunction aPDF = null;
+				// DEBUG
+				if (!ProbabilityDensityFunction.USE_ProbabilityDensityFunction2)
+					aPDF = new ProbabilityDensityFunction(itsQualityMeasure.getProbabilityDensityFunction(), theMembers);
+				else
+					aPDF = new ProbabilityDensityFunction2(itsQualityMeasure.getProbabilityDensityFunction(), theMembers);
+				aPDF.smooth();
 
-		return aQualities;
+				return itsQualityMeasure.calculate(aStatistics, aPDF);
+			}
+		});
 	}
 
 	// if forSubgroups is true, create Subgroups, else create Conditions
-	// if forSubgroups is true, theDepth is ignored
-	private double[] getDoubleRegressionQualities(boolean forSubgroups, int theNrRepetitions, int theMinimumCoverage, Random theRandom, int theDepth)
+	private double[] getDoubleRegressionQualities(Sampler theSampler)
 	{
-		final double[] aQualities = new double[theNrRepetitions];
-
 		Column aPrimaryColumn = itsTargetConcept.getPrimaryTarget();
 		Column aSecondaryColumn = itsTargetConcept.getSecondaryTarget();
-		RegressionMeasure itsBaseRM =
+		final RegressionMeasure itsBaseRM =
 			new RegressionMeasure(itsSearchParameters.getQualityMeasure(), aPrimaryColumn, aSecondaryColumn);
 
-		for (int i = 0; i < theNrRepetitions; ++i)
+		return theSampler.sample(new Evaluator()
 		{
-			Subgroup aSubgroup;
-
-			// essential switch between Subgroups/ Conditions
-			if (forSubgroups)
-				aSubgroup = getValidSubgroup(theMinimumCoverage, theRandom);
-			else
-				aSubgroup = getValidSubgroup(theDepth, theMinimumCoverage, theRandom);
-
-			BitSet aMembers = aSubgroup.getMembers();
-
-			RegressionMeasure aRM = new RegressionMeasure(itsBaseRM, aMembers);
+			@Override
+			double calculate(int theRepetition, BitSet theMembers, int theCoverage)
+			{
+				RegressionMeasure aRM = new RegressionMeasure(itsBaseRM, theMembers);
 
-			aQualities[i] = aRM.getEvaluationMeasureValue();
-		}
+				return aRM.getEvaluationMeasureValue();
+			}
+		});
+	}
 
-		return aQualities;
+	// if forSubgroups is true, create Subgroups, else create Conditions
+	private double[] getDoubleCorrelationQualities(Sampler theSampler)
+	{
+		return theSampler.sample(getCorrelationEvaluator());
 	}
 
 	// if forSubgroups is true, create Subgroups, else create Conditions
-	// if forSubgroups is true, theDepth is ignored
-	private double[] getDoubleCorrelationQualities(boolean forSubgroups, int theNrRepetitions, int theMinimumCoverage, Random theRandom, int theDepth)
+	private double[] getDoubleBinaryQualities(Sampler theSampler)
 	{
-		final double[] aQualities = new double[theNrRepetitions];
+		return theSampler.sample(getCorrelationEvaluator());
+	}
 
-		Column aPrimaryColumn = itsTargetConcept.getPrimaryTarget();
-		Column aSecondaryColumn = itsTargetConcept.getSecondaryTarget();
-		CorrelationMeasure itsBaseCM =
+	// for DOUBLE_CORRELATION and DOUBLE_BINARY, these used identical code
+	private Evaluator getCorrelationEvaluator()
+	{
+		final Column aPrimaryColumn = itsTargetConcept.getPrimaryTarget();
+		final Column aSecondaryColumn = itsTargetConcept.getSecondaryTarget();
+		final CorrelationMeasure itsBaseCM =
 			new CorrelationMeasure(itsSearchParameters.getQualityMeasure(), aPrimaryColumn, aSecondaryColumn);
 
-		for (int i = 0; i < theNrRepetitions; ++i)
+		return new Evaluator()
 		{
-			Subgroup aSubgroup;
-
-			// essential switch between Subgroups/ Conditions
-			if (forSubgroups)
-				aSubgroup = getValidSubgroup(theMinimumCoverage, theRandom);
-			else
-				aSubgroup = getValidSubgroup(theDepth, theMinimumCoverage, theRandom);
-
-			BitSet aMembers = aSubgroup.getMembers();
-
-			CorrelationMeasure aCM = new CorrelationMeasure(itsBaseCM);
-
-			for (int k = aMembers.nextSetBit(0); k >= 0; k = aMembers.nextSetBit(k))
-				aCM.addObservation(aPrimaryColumn.getFloat(k), aSecondaryColumn.getFloat(k));
+			@Override
+			double calculate(int theRepetition, BitSet theMembers, int theCoverage)
+			{
+				CorrelationMeasure aCM = new CorrelationMeasure(itsBaseCM);
 
-			aQualities[i] = aCM.getEvaluationMeasureValue();
-		}
+				for (int k = theMembers.nextSetBit(0); k >= 0; k = theMembers.nextSetBit(k + 1))
+					aCM.addObservation(aPrimaryColumn.getFloat(k), aSecondaryColumn.getFloat(k));
 
-		return aQualities;
+				return aCM.getEvaluationMeasureValue();
+			}
+		};
 	}
 
-    // if forSubgroups is true, create Subgroups, else create Conditions
-    // if forSubgroups is true, theDepth is ignored
-    private double[] getDoubleBinaryQualities(boolean forSubgroups, int theNrRepetitions, int theMinimumCoverage, Random theRandom, int theDepth)
-    {
-        final double[] aQualities = new double[theNrRepetitions];
-
-        Column aPrimaryColumn = itsTargetConcept.getPrimaryTarget();
-        Column aSecondaryColumn = itsTargetConcept.getSecondaryTarget();
-        CorrelationMeasure itsBaseCM =
-            new CorrelationMeasure(itsSearchParameters.getQualityMeasure(), aPrimaryColumn, aSecondaryColumn);
-
-        for (int i = 0; i < theNrRepetitions; ++i)
-        {
-            Subgroup aSubgroup;
-
-            // essential switch between Subgroups/ Conditions
-            if (forSubgroups)
-                aSubgroup = getValidSubgroup(theMinimumCoverage, theRandom);
-            else
-                aSubgroup = getValidSubgroup(theDepth, theMinimumCoverage, theRandom);
-
-            BitSet aMembers = aSubgroup.getMembers();
-
-            CorrelationMeasure aCM = new CorrelationMeasure(itsBaseCM);
-
-            for (int k = aMembers.nextSetBit(0); k >= 0; k = aMembers.nextSetBit(k))
-                aCM.addObservation(aPrimaryColumn.getFloat(k), aSecondaryColumn.getFloat(k));
-
-            aQualities[i] = aCM.getEvaluationMeasureValue();
-        }
-
-        return aQualities;
-    }
-
 	// if forSubgroups is true, create Subgroups, else create Conditions
-	// if forSubgroups is true, theDepth is ignored
-	private double[] getMultiLabelQualities(boolean forSubgroups, int theNrRepetitions, int theMinimumCoverage, Random theRandom, int theDepth)
+	private double[] getMultiLabelQualities(final Sampler theSampler)
 	{
-		final double[] aQualities = new double[theNrRepetitions];
-
 		// base model
-		BinaryTable aBaseTable = new BinaryTable(itsTable, itsTargetConcept.getMultiTargets());
+		final BinaryTable aBaseTable = new BinaryTable(itsTable, itsTargetConcept.getMultiTargets());
 		Bayesian aBayesian = new Bayesian(aBaseTable);
 		aBayesian.climb();
 
-		for (int i = 0, j = aQualities.length; i < j; ++i)
+		return theSampler.sample(new Evaluator()
 		{
-			Subgroup aSubgroup;
+			// QualityMeasure holds the DAG of the base model in static members
+			@Override
+			boolean isConcurrent() { return false; }
 
-			// essential switch between Subgroups/ Conditions
-			if (forSubgroups)
-				aSubgroup = getValidSubgroup(theMinimumCoverage, theRandom);
-			else
-				aSubgroup = getValidSubgroup(theDepth, theMinimumCoverage, theRandom);
+			@Override
+			double calculate(int theRepetition, BitSet theMembers, int theCoverage)
+			{
+				Subgroup aSubgroup = new Subgroup(theMembers);
 
-			// build model
-			BinaryTable aBinaryTable = aBaseTable.selectRows(aSubgroup.getMembers());
-			aBayesian = new Bayesian(aBinaryTable);
-			aBayesian.climb();
-			aSubgroup.setDAG(aBayesian.getDAG()); // store DAG with subgroup for later use
+				// build model
+				BinaryTable aBinaryTable = aBaseTable.selectRows(aSubgroup.getMembers());
+				Bayesian aBayesian = new Bayesian(aBinaryTable);
+				aBayesian.climb();
+				aSubgroup.setDAG(aBayesian.getDAG()); // store DAG with subgroup for later use
 
-			aQualities[i] = itsQualityMeasure.calculate(aSubgroup);
+				double aQuality = itsQualityMeasure.calculate(aSubgroup);
 
-			// XXX original code only did this for Condition
-			if (!forSubgroups)
-				Log.logCommandLine((i + 1) + "," + aSubgroup.getCoverage() + "," + aQualities[i]);
-		}
+				// XXX original code only did this for Condition
+				if (!theSampler.isForSubgroups)
+					Log.logCommandLine((theRepetition + 1) + "," + aSubgroup.getCoverage() + "," + aQuality);
 
-		return aQualities;
+				return aQuality;
+			}
+		});
 	}
 
 	//TODO: fix implementation
 	// if forSubgroups is true, create Subgroups, else create Conditions
-	// if forSubgroups is true, theDepth is ignored
-	private double[] getLabelRankingQualities(boolean forSubgroups, int theNrRepetitions, int theMinimumCoverage, Random theRandom, int theDepth)
+	private double[] getLabelRankingQualities(Sampler theSampler)
 	{
-		final double[] aQualities = new double[theNrRepetitions];
-
-		Column aTarget = itsTargetConcept.getPrimaryTarget();
+		final Column aTarget = itsTargetConcept.getPrimaryTarget();
 		LabelRanking aLR = aTarget.getAverageRanking(null); //average ranking over entire dataset
 		LabelRankingMatrix aLRM = aTarget.getAverageRankingMatrix(null);
-		QualityMeasure aQualityMeasure = new QualityMeasure(itsSearchParameters.getQualityMeasure(), itsTable.getNrRows(), aLR, aLRM);
+		final QualityMeasure aQualityMeasure = new QualityMeasure(itsSearchParameters.getQualityMeasure(), itsTable.getNrRows(), aLR, aLRM);
+
+		final double[] aQualities = theSampler.sample(new Evaluator()
+		{
+			// as before, the qualities are logged in order
+			@Override
+			boolean isConcurrent() { return false; }
+
+			@Override
+			double calculate(int theRepetition, BitSet theMembers, int theCoverage)
+			{
+				Subgroup aSubgroup = new Subgroup(theMembers);
+				LabelRankingMatrix aSubgroupLRM = aTarget.getAverageRankingMatrix(aSubgroup);
+				double aQuality = aQualityMeasure.computeLabelRankingDistance(aSubgroup.getCoverage(), aSubgroupLRM);
+				Log.logCommandLine("qual: " + aQuality);
+				return aQuality;
+			}
+		});
 
 		//temp<--
 		BufferedWriter br = null;
 		try
 		{
-		final File f  = new File("output.txt");
-		br = new BufferedWriter(new FileWriter(f));
-		//temp-->
-
-		for (int i = 0; i < theNrRepetitions; ++i)
-		{
-			Subgroup aSubgroup;
-
-			// essential switch between Subgroups/ Conditions
-			if (forSubgroups)
-				aSubgroup = getValidSubgroup(theMinimumCoverage, theRandom);
-			else
-				aSubgroup = getValidSubgroup(theDepth, theMinimumCoverage, theRandom);
-
-			LabelRankingMatrix aSubgroupLRM = aTarget.getAverageRankingMatrix(aSubgroup);
-			aQualities[i] = aQualityMeasure.computeLabelRankingDistance(aSubgroup.getCoverage(), aSubgroupLRM);
-			Log.logCommandLine("qual: " + aQualities[i]);
-
-			//temp<--
-			br.write(aQualities[i] + "\r");
-			//temp-->
-		}
+			final File f  = new File("output.txt");
+			br = new BufferedWriter(new FileWriter(f));
+			for (double q : aQualities)
+				br.write(q + "\r");
 		}
-		//temp<--
 		catch (IOException e) {}
 		finally
 		{
@@ -413,8 +445,205 @@ public class Validation
 		return aQualities;
 	}
 
+	/*
+	 * draws the random subgroups, and has an Evaluator compute their quality
+	 *
+	 * the repetitions are split in Blocks of RANDOM_QUALITIES_BLOCK, every
+	 * Block draws from its own SplittableRandom, split() off a single root in
+	 * Block order, so every repetition gets the same subgroup, no matter how
+	 * many threads are used, or which thread runs the Block
+	 * Blocks are run in rounds of RANDOM_QUALITIES_CHECK repetitions, after
+	 * each round the early stopping criterion is checked
+	 */
+	private final class Sampler
+	{
+		private final boolean isForSubgroups;
+		private final int itsNrRepetitions;
+		private final int itsMinimumCoverage;
+		private final int itsDepth;
+		private final double[] itsPValueQualities;
+		private final int itsNrThreads;
+		private final long itsSeed;
+
+		Sampler(boolean forSubgroups, int theNrRepetitions, int theMinimumCoverage, int theDepth, double[] thePValueQualities, int theNrThreads, long theSeed)
+		{
+			isForSubgroups = forSubgroups;
+			itsNrRepetitions = theNrRepetitions;
+			itsMinimumCoverage = theMinimumCoverage;
+			itsDepth = theDepth;
+			itsPValueQualities = thePValueQualities;
+			itsNrThreads = (theNrThreads <= 0) ? Runtime.getRuntime().availableProcessors() : theNrThreads;
+			itsSeed = theSeed;
+		}
+
+		double[] sample(Evaluator theEvaluator)
+		{
+			// random descriptions use getMin()/getMax(), which are computed
+			// lazily, this must not happen concurrently
+			if (!isForSubgroups)
+				for (Column c : itsTable.getColumns())
+					if (c.getType() == AttributeType.NUMERIC)
+						c.getMin();
+
+			final double[] aQualities = new double[itsNrRepetitions];
+			final SplittableRandom aRoot = new SplittableRandom(itsSeed);
+			final int aNrThreads = theEvaluator.isConcurrent() ? Math.min(itsNrThreads, 1 + ((itsNrRepetitions - 1) / RANDOM_QUALITIES_BLOCK)) : 1;
+			ForkJoinPool aPool = (aNrThreads > 1) ? new ForkJoinPool(aNrThreads) : null;
+
+			int aDone = 0;
+			try
+			{
+				while (aDone < itsNrRepetitions)
+				{
+					int anEnd = Math.min(itsNrRepetitions, aDone + RANDOM_QUALITIES_CHECK);
+					List<Block> aBlocks = new ArrayList<Block>();
+					for (int i = aDone; i < anEnd; i += RANDOM_QUALITIES_BLOCK)
+						aBlocks.add(new Block(theEvaluator, aRoot.split(), aQualities, i, Math.min(anEnd, i + RANDOM_QUALITIES_BLOCK)));
+					run(aPool, aBlocks);
+					aDone = anEnd;
+
+					if ((aDone < itsNrRepetitions) && isPrecise(aQualities, aDone))
+					{
+						Log.logCommandLine(String.format("random qualities: stopped after %d of %d repetitions", aDone, itsNrRepetitions));
+						return Arrays.copyOf(aQualities, aDone);
+					}
+				}
+			}
+			finally
+			{
+				if (aPool != null)
+					aPool.shutdown();
+			}
+
+			return aQualities;
+		}
+
+		// the least precise p-value decides, for the top-1 a random quality
+		// counts when it is higher, for a Subgroup when it is at least as high
+		// NOTE a sorted copy, the p-values of many Subgroups are checked
+		private boolean isPrecise(double[] theQualities, int theNrDone)
+		{
+			if (itsPValueQualities == null)
+				return false;
+
+			double[] aSorted = Arrays.copyOf(theQualities, theNrDone);
+			Arrays.sort(aSorted);
+			// NaNs are sorted last, they are never higher
+			int aLength = theNrDone;
+			while ((aLength > 0) && Double.isNaN(aSorted[aLength - 1]))
+				--aLength;
+
+			for (int i = 0; i < itsPValueQualities.length; ++i)
+			{
+				double q = itsPValueQualities[i];
+				if (Double.isNaN(q))
+					continue;
+
+				// first index with a value > q (top-1) or >= q (Subgroup)
+				int aLow = 0;
+				int aHigh = aLength;
+				while (aLow < aHigh)
+				{
+					int aMid = (aLow + aHigh) >>> 1;
+					if ((i == 0) ? (aSorted[aMid] <= q) : (aSorted[aMid] < q))
+						aLow = aMid + 1;
+					else
+						aHigh = aMid;
+				}
+
+				if (getHalfWidth(aLength - aLow, theNrDone) > RANDOM_QUALITIES_MAX_HALF_WIDTH)
+					return false;
+			}
+
+			return true;
+		}
+
+		// Wilson score interval, valid for p-values close to 0 also
+		private double getHalfWidth(int theCount, int theNrDone)
+		{
+			final double z = 1.959963984540054;
+			double n = theNrDone;
+			double p = theCount / n;
+			return (z * Math.sqrt((p * (1.0 - p) / n) + (z * z / (4.0 * n * n)))) / (1.0 + (z * z / n));
+		}
+
+		private void run(ForkJoinPool thePool, List<Block> theBlocks)
+		{
+			if (thePool == null)
+			{
+				for (Block b : theBlocks)
+					b.call();
+				return;
+			}
+
+			try
+			{
+				for (Future<Void> f : thePool.invokeAll(theBlocks))
+					f.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+			catch (ExecutionException e)
+			{
+				Throwable aCause = e.getCause();
+				if (aCause instanceof RuntimeException)
+					throw (RuntimeException) aCause;
+				if (aCause instanceof Error)
+					throw (Error) aCause;
+				throw new AssertionError(aCause);
+			}
+		}
+
+		// repetitions [itsFrom, itsTo), the words are reused for every subset
+		private final class Block implements Callable<Void>
+		{
+			private final Evaluator itsEvaluator;
+			private final SplittableRandom itsRandom;
+			private final double[] itsQualities;
+			private final int itsFrom;
+			private final int itsTo;
+
+			Block(Evaluator theEvaluator, SplittableRandom theRandom, double[] theQualities, int theFrom, int theTo)
+			{
+				itsEvaluator = theEvaluator;
+				itsRandom = theRandom;
+				itsQualities = theQualities;
+				itsFrom = theFrom;
+				itsTo = theTo;
+			}
+
+			@Override
+			public Void call()
+			{
+				final int aNrRows = itsTable.getNrRows();
+				final long[] aWords = isForSubgroups ? new long[(aNrRows + 63) >>> 6] : null;
+
+				for (int i = itsFrom; i < itsTo; ++i)
+				{
+					// essential switch between Subgroups/ Conditions
+					if (isForSubgroups)
+					{
+						int aCoverage = getValidSubgroup(aWords, itsMinimumCoverage, itsRandom);
+						itsQualities[i] = itsEvaluator.calculate(i, aWords, aCoverage);
+					}
+					else
+					{
+						BitSet aMembers = getValidSubgroup(itsDepth, itsMinimumCoverage, itsRandom);
+						itsQualities[i] = itsEvaluator.calculate(i, aMembers, aMembers.cardinality());
+					}
+				}
+
+				return null;
+			}
+		}
+	}
+
 	// for RANDOM_SUBSETS/Subgroups, always uses an updated Random value
-	private Subgroup getValidSubgroup(int theMinimumCoverage, Random theRandom)
+	// sets theWords to the members of a uniformly drawn subset, returns its size
+	private int getValidSubgroup(long[] theWords, int theMinimumCoverage, SplittableRandom theRandom)
 	{
 		final int aNrRows = itsTable.getNrRows();
 		int aSubgroupSize;
@@ -423,11 +652,42 @@ public class Validation
 			aSubgroupSize = (int) (theRandom.nextDouble() * aNrRows);
 		while (aSubgroupSize < theMinimumCoverage || aSubgroupSize == aNrRows);
 
-		return new Subgroup(itsTable.getRandomBitSet(aSubgroupSize));
+		setRandomWords(theWords, aNrRows, aSubgroupSize, theRandom);
+
+		return aSubgroupSize;
+	}
+
+	/*
+	 * Floyd's algorithm, a uniform subset of theNrBitsToSet of theNrRows
+	 * bits, using theNrBitsToSet random numbers, instead of theNrRows for
+	 * Table.getRandomBitSet()
+	 * for large subsets, the bits of the complement are cleared instead
+	 */
+	static final void setRandomWords(long[] theWords, int theNrRows, int theNrBitsToSet, SplittableRandom theRandom)
+	{
+		boolean isComplement = (theNrBitsToSet > (theNrRows / 2));
+		int k = isComplement ? (theNrRows - theNrBitsToSet) : theNrBitsToSet;
+
+		Arrays.fill(theWords, 0L);
+		for (int j = theNrRows - k; j < theNrRows; ++j)
+		{
+			int t = theRandom.nextInt(j + 1);
+			int i = (((theWords[t >>> 6] >>> t) & 1L) == 0L) ? t : j;
+			theWords[i >>> 6] |= (1L << i);
+		}
+
+		if (isComplement)
+		{
+			for (int i = 0; i < theWords.length; ++i)
+				theWords[i] = ~theWords[i];
+			// clear the bits beyond theNrRows
+			if ((theNrRows & 63) != 0)
+				theWords[theWords.length - 1] &= ((1L << theNrRows) - 1L);
+		}
 	}
 
 	// for RANDOM_DESCRIPTIONS/Conditions, always uses the same Random value
-	private Subgroup getValidSubgroup(int theDepth, int theMinimumCoverage, Random theRandom)
+	private BitSet getValidSubgroup(int theDepth, int theMinimumCoverage, SplittableRandom theRandom)
 	{
 		final int aNrRows = itsTable.getNrRows();
 		int aSubgroupSize;
@@ -446,185 +706,210 @@ public class Validation
 
 		Log.logCommandLine(aCL.toString());
 
-		return new Subgroup(aMembers);
+		return aMembers;
 	}
 
 	/**
-	 * Swap randomizes the original {@link Table} and restores it to the
-	 * original state afterwards.
+	 * Swap randomizes the targets of the original {@link Table}, without
+	 * modifying it.
 	 *
 	 * @param theNrRepetitions the number of times to perform a permutation
 	 * of the {@link TargetConcept}.
 	 *
 	 * @return an array holding the qualities of the best scoring
 	 * {@link Subgroup} of each permutation.
+	 *
+	 * @see #swapRandomization(int, int, long)
 	 */
 	private double[] swapRandomization(int theNrRepetitions)
 	{
-		// Memorize COMMANDLINELOG setting
-		boolean aCOMMANDLINELOGmem = Log.COMMANDLINELOG;
-		double[] aQualities = new double[theNrRepetitions];
+		// the number of threads of the SearchParameters is the budget
+		return swapRandomization(theNrRepetitions, itsSearchParameters.getNrThreads(), SWAP_RANDOMIZATION_SEED);
+	}
 
-		// Always back up and restore columns that will be swap randomized.
+	/**
+	 * Swap randomizes the targets of the original {@link Table}, without
+	 * modifying it.
+	 * <p>
+	 * Every permutation is mined on its own copy of the Table, see
+	 * {@link Table#swapRandomizedCopy(TargetConcept, Random)}, so the
+	 * permutations can be mined concurrently. The permutation for
+	 * repetition <code>i</code> only depends on theSeed and <code>i</code>,
+	 * such that the result does not depend on theNrThreads.
+	 *
+	 * @param theNrRepetitions the number of times to perform a permutation
+	 * of the {@link TargetConcept}.
+	 * @param theNrThreads the number of permutations to mine concurrently,
+	 * a value <code>&lt;= 0</code> uses all available processors.
+	 * @param theSeed the seed from which the seed of each permutation is
+	 * derived.
+	 *
+	 * @return an array holding the qualities of the best scoring
+	 * {@link Subgroup} of each permutation.
+	 */
+	double[] swapRandomization(int theNrRepetitions, int theNrThreads, long theSeed)
+	{
 		final TargetType aTargetType = itsTargetConcept.getTargetType();
-		switch (aTargetType)
-		{
-			case SINGLE_NOMINAL :
-			{
-				// back up column that will be swap randomized
-				Column aPrimaryCopy = itsTargetConcept.getPrimaryTarget().copy();
-				int aPositiveCount =
-					itsTargetConcept.getPrimaryTarget().countValues(itsTargetConcept.getTargetValue(), itsSelection);
-
-				// generate swap randomized random results
-				for (int i = 0, j = theNrRepetitions; i < j; ++i)
-				{
-					itsTable.swapRandomizeTarget(itsTargetConcept);
-					i = runSRSD(new SubgroupDiscovery(itsSearchParameters, itsTable, itsSelection, aPositiveCount, null), aQualities, i);
-				}
-
-				// restore column that was swap randomized
-				itsTargetConcept.setPrimaryTarget(aPrimaryCopy);
-				itsTable.getColumns().set(aPrimaryCopy.getIndex(), aPrimaryCopy);
-
-				break;
-			}
-			case SINGLE_NUMERIC :
-			{
-				// back up column that will be swap randomized
-				Column aPrimaryCopy = itsTargetConcept.getPrimaryTarget().copy();
-				float aTargetAverage = itsTargetConcept.getPrimaryTarget().getAverage(itsSelection);
-
-				// generate swap randomized random results
-				for (int i = 0, j = theNrRepetitions; i < j; ++i)
-				{
-					itsTable.swapRandomizeTarget(itsTargetConcept);
-					SubgroupDiscovery anSD = new SubgroupDiscovery(itsSearchParameters, itsTable, itsSelection, aTargetAverage, null);
-					i = runSRSD(anSD, aQualities, i);
-				}
-
-				// restore column that was swap randomized
-				itsTargetConcept.setPrimaryTarget(aPrimaryCopy);
-				itsTable.getColumns().set(aPrimaryCopy.getIndex(), aPrimaryCopy);
-
-				break;
-			}
-			case DOUBLE_REGRESSION :
-			{
-				// back up columns that will be swap randomized
-				Column aPrimaryCopy = itsTargetConcept.getPrimaryTarget().copy();
-				Column aSecondaryCopy = itsTargetConcept.getSecondaryTarget().copy();
-
-				// generate swap randomized random results
-				for (int i = 0, j = theNrRepetitions; i < j; ++i)
-				{
-					itsTable.swapRandomizeTarget(itsTargetConcept);
-					i = runSRSD(new SubgroupDiscovery(itsSearchParameters, itsTable, itsSelection, true, null), aQualities, i);
-				}
+		if (!isValidRandomQualitiesTargetType(aTargetType))
+			throw new AssertionError(aTargetType);
+
+		// values of the original target, as before, the same for every permutation
+		final int aPositiveCount;
+		final float aTargetAverage;
+		if (aTargetType == TargetType.SINGLE_NOMINAL)
+			aPositiveCount = itsTargetConcept.getPrimaryTarget().countValues(itsTargetConcept.getTargetValue(), itsSelection);
+		else
+			aPositiveCount = 0;
+		if (aTargetType == TargetType.SINGLE_NUMERIC)
+			aTargetAverage = itsTargetConcept.getPrimaryTarget().getAverage(itsSelection);
+		else
+			aTargetAverage = 0.0f;
+
+		// sort once, all copies share the presort and only apply their mask
+		for (Column c : itsTable.getColumns())
+			c.presort();
+
+		if (theNrThreads <= 0)
+			theNrThreads = Runtime.getRuntime().availableProcessors();
+		// NOTE QualityMeasure holds the DOUBLE_BINARY targets and the
+		//      MULTI_LABEL DAG in static members, these can not run concurrently
+		if ((aTargetType == TargetType.DOUBLE_BINARY) || (aTargetType == TargetType.MULTI_LABEL))
+			theNrThreads = 1;
+		theNrThreads = Math.max(1, Math.min(theNrThreads, theNrRepetitions));
+		// when permutations run concurrently each is mined by a single thread,
+		// which is deterministic, also in the case of ties
+		final int aNrMiningThreads = (theNrThreads == 1) ? itsSearchParameters.getNrThreads() : 1;
+		// the permutations that run at the same time share one prefix cache budget
+		final long aPrefixCacheBudget = PrefixCache.share(itsSearchParameters.getPrefixCacheBudget(), theNrThreads);
+
+		// the output of the mining runs of the permutations is not logged, as
+		// before, every permutation buffers its own, COMMANDLINELOG is not
+		// changed, as it is shared by all threads
+		List<Log.CommandLineBuffered<Double>> aReplicates = new ArrayList<Log.CommandLineBuffered<Double>>(theNrRepetitions);
+		for (int i = 0; i < theNrRepetitions; ++i)
+			aReplicates.add(new Log.CommandLineBuffered<Double>(new Replicate(i, theSeed, aNrMiningThreads, aPrefixCacheBudget, aPositiveCount, aTargetAverage)));
 
-				// restore columns that were swap randomized
-				itsTargetConcept.setPrimaryTarget(aPrimaryCopy);
-				itsTable.getColumns().set(aPrimaryCopy.getIndex(), aPrimaryCopy);
-				itsTargetConcept.setSecondaryTarget(aSecondaryCopy);
-				itsTable.getColumns().set(aSecondaryCopy.getIndex(), aSecondaryCopy);
+		double[] aQualities = new double[theNrRepetitions];
 
-				break;
-			}
-			case DOUBLE_CORRELATION :
+		ForkJoinPool aPool = new ForkJoinPool(theNrThreads);
+		try
+		{
+			List<Future<Double>> aResults = aPool.invokeAll(aReplicates);
+			for (int i = 0; i < theNrRepetitions; ++i)
 			{
-				// back up columns that will be swap randomized
-				Column aPrimaryCopy = itsTargetConcept.getPrimaryTarget().copy();
-				Column aSecondaryCopy = itsTargetConcept.getSecondaryTarget().copy();
-
-				// generate swap randomized random results
-				for (int i = 0, j = theNrRepetitions; i < j; ++i)
-				{
-					itsTable.swapRandomizeTarget(itsTargetConcept);
-					i = runSRSD(new SubgroupDiscovery(itsSearchParameters, itsTable, itsSelection, false, null), aQualities, i);
-				}
-
-				// restore columns that were swap randomized
-				itsTargetConcept.setPrimaryTarget(aPrimaryCopy);
-				itsTable.getColumns().set(aPrimaryCopy.getIndex(), aPrimaryCopy);
-				itsTargetConcept.setSecondaryTarget(aSecondaryCopy);
-				itsTable.getColumns().set(aSecondaryCopy.getIndex(), aSecondaryCopy);
-
-				break;
+				aQualities[i] = aResults.get(i).get();
+				aReplicates.get(i).discardOutput();
 			}
-			case DOUBLE_BINARY :
-			{
-				// back up columns that will be swap randomized
-				Column aPrimaryCopy = itsTargetConcept.getPrimaryTarget().copy();
-				Column aSecondaryCopy = itsTargetConcept.getSecondaryTarget().copy();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable aCause = e.getCause();
+			if (aCause instanceof RuntimeException)
+				throw (RuntimeException) aCause;
+			if (aCause instanceof Error)
+				throw (Error) aCause;
+			throw new AssertionError(aCause);
+		}
+		finally
+		{
+			aPool.shutdown();
+		}
 
-				// generate swap randomized random results
-				for (int i = 0, j = theNrRepetitions; i < j; ++i)
-				{
-					itsTable.swapRandomizeTarget(itsTargetConcept);
-					i = runSRSD(new SubgroupDiscovery(itsSearchParameters, itsTable, itsSelection, false, null), aQualities, i);
-				}
+		for (int i = 0; i < theNrRepetitions; ++i)
+			Log.logCommandLine((i + 1) + ", " + aQualities[i]);
 
-				// restore columns that were swap randomized
-				itsTargetConcept.setPrimaryTarget(aPrimaryCopy);
-				itsTable.getColumns().set(aPrimaryCopy.getIndex(), aPrimaryCopy);
-				itsTargetConcept.setSecondaryTarget(aSecondaryCopy);
-				itsTable.getColumns().set(aSecondaryCopy.getIndex(), aSecondaryCopy);
+		return aQualities;
+	}
 
-				break;
-			}
-			case MULTI_LABEL :
-			{
-				// back up columns that will be swap randomized
-				List<Column> aMultiCopy =
-					new ArrayList<Column>(itsTargetConcept.getMultiTargets().size());
-				for (Column c : itsTargetConcept.getMultiTargets())
-					aMultiCopy.add(c.copy());
-
-				// generate swap randomized random results
-				for (int i = 0, j = theNrRepetitions; i < j; ++i)
-				{
-					// swapRandomization should be performed before creating new SubgroupDiscovery
-					itsTable.swapRandomizeTarget(itsTargetConcept);
-					i = runSRSD(new SubgroupDiscovery(itsSearchParameters, itsTable, itsSelection, null), aQualities, i);
-				}
+	// swap-randomization seed, fixed, such that results are reproducible
+	private static final long SWAP_RANDOMIZATION_SEED = 10L;
 
-				// restore columns that were swap randomized
-				itsTargetConcept.setMultiTargets(aMultiCopy);
-				for (Column c : aMultiCopy)
-					itsTable.getColumns().set(c.getIndex(), c);
+	/*
+	 * a single permutation, mined on its own copy of the Table, with its own
+	 * TargetConcept and SearchParameters, none of these are shared
+	 * if no subgroups are found, the next permutation is tried, as before
+	 */
+	private final class Replicate implements Callable<Double>
+	{
+		private final int itsRepetition;
+		private final long itsSeed;
+		private final int itsNrThreads;
+		private final long itsPrefixCacheBudget;
+		private final int itsPositiveCount;
+		private final float itsTargetAverage;
+
+		Replicate(int theRepetition, long theSeed, int theNrThreads, long thePrefixCacheBudget, int thePositiveCount, float theTargetAverage)
+		{
+			itsRepetition = theRepetition;
+			itsSeed = theSeed;
+			itsNrThreads = theNrThreads;
+			itsPrefixCacheBudget = thePrefixCacheBudget;
+			itsPositiveCount = thePositiveCount;
+			itsTargetAverage = theTargetAverage;
+		}
 
-				break;
-			}
-			case MULTI_BINARY_CLASSIFICATION :
+		@Override
+		public Double call()
+		{
+			for (int anAttempt = 0; ; ++anAttempt)
 			{
-				throw new AssertionError(aTargetType);
+				Random aRandom = new Random(getSeed(itsSeed, itsRepetition, anAttempt));
+				Table aTable = itsTable.swapRandomizedCopy(itsTargetConcept, aRandom);
+				SearchParameters aSearchParameters = itsSearchParameters.copy(itsTargetConcept.copy(aTable));
+				aSearchParameters.setPrefixCacheBudget(itsPrefixCacheBudget);
+
+				SubgroupDiscovery anSD = getSubgroupDiscovery(aSearchParameters, aTable);
+				//quality minimum should not be taken into account when computing distribution of random qualities
+				anSD.ignoreQualityMinimum();
+				anSD.mine(System.currentTimeMillis(), itsNrThreads);
+
+				SubgroupSet aSubgroupSet = anSD.getResult();
+				if (aSubgroupSet.size() != 0)
+					return aSubgroupSet.getBestScore();
+				// if no subgroups are found, try again
 			}
-			case LABEL_RANKING:
-			{
-				// back up column that will be swap randomized
-				Column aPrimaryCopy = itsTargetConcept.getPrimaryTarget().copy();
-
-				// generate swap randomized random results
-				for (int i = 0, j = theNrRepetitions; i < j; ++i)
-				{
-					itsTable.swapRandomizeTarget(itsTargetConcept);
-					i = runSRSD(new SubgroupDiscovery(itsSearchParameters, null, itsTable, itsSelection), aQualities, i);
-				}
-
-				// restore column that was swap randomized
-				itsTargetConcept.setPrimaryTarget(aPrimaryCopy);
-				itsTable.getColumns().set(aPrimaryCopy.getIndex(), aPrimaryCopy);
+		}
 
-				break;
-			}
-			default :
+		private SubgroupDiscovery getSubgroupDiscovery(SearchParameters theSearchParameters, Table theTable)
+		{
+			final TargetType aTargetType = theSearchParameters.getTargetConcept().getTargetType();
+			switch (aTargetType)
 			{
-				throw new AssertionError(aTargetType);
+				case SINGLE_NOMINAL :
+					return new SubgroupDiscovery(theSearchParameters, theTable, itsSelection, itsPositiveCount, null);
+				case SINGLE_NUMERIC :
+					return new SubgroupDiscovery(theSearchParameters, theTable, itsSelection, itsTargetAverage, null);
+				case DOUBLE_REGRESSION :
+					return new SubgroupDiscovery(theSearchParameters, theTable, itsSelection, true, null);
+				case DOUBLE_CORRELATION :
+					return new SubgroupDiscovery(theSearchParameters, theTable, itsSelection, false, null);
+				case DOUBLE_BINARY :
+					return new SubgroupDiscovery(theSearchParameters, theTable, itsSelection, false, null);
+				case MULTI_LABEL :
+					return new SubgroupDiscovery(theSearchParameters, theTable, itsSelection, null);
+				case LABEL_RANKING :
+					return new SubgroupDiscovery(theSearchParameters, null, theTable, itsSelection);
+				default :
+					throw new AssertionError(aTargetType);
 			}
 		}
+	}
 
-		Log.COMMANDLINELOG = aCOMMANDLINELOGmem;
-		return aQualities;
+	// well-mixed, distinct seeds for every repetition and attempt (MurmurHash3 fmix64)
+	private static final long getSeed(long theSeed, int theRepetition, int theAttempt)
+	{
+		long h = theSeed ^ (0x9E3779B97F4A7C15L * ((((long) theAttempt) << 32) | (theRepetition & 0xFFFFFFFFL)));
+		h ^= (h >>> 33);
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= (h >>> 33);
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= (h >>> 33);
+		return h;
 	}
 
 	//returns the 5% significance of swap randomisation.
@@ -635,35 +920,8 @@ public class Validation
 		return aDistro.getFivePercentSignificance();
 	}
 
-	/*
-	 * NOTE for the first result (i = 0) to be not equal to the original
-	 * mining result the calling function should run:
-	 * itsTable.swapRandomizeTarget(itsTargetConcept);
-	 * before creating the new theSubgroupDiscovery, and calling this
-	 * method.
-	 */
-	private int runSRSD(SubgroupDiscovery theSubgroupDiscovery, double[] theQualities, int theRepetition)
-	{
-		//quality minimum should not be taken into account when computing distribution of random qualities
-		theSubgroupDiscovery.ignoreQualityMinimum();
-
-		Log.COMMANDLINELOG = false;
-		theSubgroupDiscovery.mine(System.currentTimeMillis(), itsSearchParameters.getNrThreads());
-		Log.COMMANDLINELOG = true;
-		SubgroupSet aSubgroupSet = theSubgroupDiscovery.getResult();
-		if (aSubgroupSet.size() == 0)
-			--theRepetition; // if no subgroups are found, try again
-		else
-		{
-			theQualities[theRepetition] = aSubgroupSet.getBestScore();
-			Log.logCommandLine((theRepetition + 1) + ", " + theQualities[theRepetition]);
-		}
-
-		return theRepetition;
-	}
-
 	//private ConditionList getRandomConditionList(int theDepth, Random theRandom)
-	private ConditionList getRandomConditionList(int theDepth, Random theRandom)
+	private ConditionList getRandomConditionList(int theDepth, SplittableRandom theRandom)
 	{
 		int aDepth = 1+theRandom.nextInt(theDepth); //random nr between 1 and theDepth (incl)
 		//ConditionList aCL = new ConditionList(aDepth);
@@ -705,7 +963,7 @@ public class Validation
 					float aMax = aColumn.getMax();
 					float aRange = aMax - aMin;
 					// fairly crude way of producing random thresholds, but will do for now
-					float aValue = (aMin + 0.1f*aRange + 0.8f*aRange*theRandom.nextFloat());
+					float aValue = (aMin + 0.1f*aRange + 0.8f*aRange*(float) theRandom.nextDouble());
 
 					aConditionBase = new ConditionBase(aColumn, anOperator);
 					// value may not occur in Column, so can not set sort index
@@ -3,6 +3,7 @@ package nl.liacs.subdisc;
 import java.io.*;
 import java.text.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import nl.liacs.subdisc.XMLDocument.XMLType;
 import nl.liacs.subdisc.gui.*;
@@ -180,44 +181,312 @@ public class XMLAutoRun
 		return true;
 	}
 
-	private static void runAllFromFile(File theFile, boolean showWindows, int theNrThreads)
+	/*
+	 * runs all experiments of theFile, the result file of an experiment is
+	 * written as soon as it finishes
+	 *
+	 * experiments that use the same data, that is, the same source and Column
+	 * setup, share a single Table, it is loaded when it is first needed, and
+	 * released after the last experiment using it, see TableCache
+	 * experiments run concurrently, every experiment mines its own copy of
+	 * the shared Table, see Table.copy(), theNrThreads is the budget for all
+	 * threads together, those running experiments and those used by
+	 * SubgroupDiscovery.mine(long, int) of the running experiments
+	 * the commandline output of a concurrent experiment is buffered, and
+	 * logged in file order, see Log.CommandLineBuffered
+	 *
+	 * experiments run serially, in file order and after the others, when
+	 * windows are shown, when they use the old mine() (nrThreads < 0), or
+	 * when QualityMeasure holds their targets in static members
+	 *
+	 * returns the result file of every experiment, in file order
+	 */
+	static List<File> runAllFromFile(File theFile, boolean showWindows, int theNrThreads)
 	{
 		NodeList allExperiments = XMLDocument.parseXMLFile(theFile).getLastChild().getChildNodes();
+		final int aNrExperiments = allExperiments.getLength();
+		final TableCache aCache = new TableCache(theFile.getParent() == null ? "." : theFile.getParent(), showWindows);
+
+		// all DOM access of the calling thread happens here, before any task
+		// is submitted, the tasks only access the DOM through the TableCache
+		List<Experiment> aConcurrent = new ArrayList<Experiment>(aNrExperiments);
+		List<Experiment> aSerial = new ArrayList<Experiment>();
+		for (int i = 0; i < aNrExperiments; ++i)
+		{
+			Experiment e = new Experiment(allExperiments.item(i), i, theFile, aCache, theNrThreads);
+			aCache.register(e.itsKey);
+
+			if (showWindows || (e.itsNrThreads < 0) || !isConcurrent(e.itsTargetType))
+				aSerial.add(e);
+			else
+				aConcurrent.add(e);
+		}
+
+		File[] aResults = new File[aNrExperiments];
+
+		if (!aConcurrent.isEmpty())
+		{
+			final int aBudget = (theNrThreads > 0) ? theNrThreads : Runtime.getRuntime().availableProcessors();
+			final int aNrConcurrent = Math.min(aBudget, aConcurrent.size());
+			// the remainder of the budget is used for mining
+			final int aShare = Math.max(1, aBudget / aNrConcurrent);
+			for (Experiment e : aConcurrent)
+			{
+				e.itsNrThreads = Math.min(aShare, (e.itsNrThreads == 0) ? aBudget : e.itsNrThreads);
+				// the experiments that run at the same time share one
+				// prefix cache budget
+				e.itsSearchParameters.setPrefixCacheBudget(PrefixCache.share(e.itsSearchParameters.getPrefixCacheBudget(), aNrConcurrent));
+			}
+
+			// every experiment buffers its own output, it is logged in order
+			List<Log.CommandLineBuffered<File>> aTasks = new ArrayList<Log.CommandLineBuffered<File>>(aConcurrent.size());
+			ForkJoinPool aPool = new ForkJoinPool(aNrConcurrent);
+			try
+			{
+				List<Future<File>> aFutures = new ArrayList<Future<File>>(aConcurrent.size());
+				for (Experiment e : aConcurrent)
+				{
+					Log.CommandLineBuffered<File> aTask = new Log.CommandLineBuffered<File>(e);
+					aTasks.add(aTask);
+					aFutures.add(aPool.submit(aTask));
+				}
+
+				for (int i = 0, j = aConcurrent.size(); i < j; ++i)
+				{
+					Experiment e = aConcurrent.get(i);
+					aResults[e.itsIndex] = aFutures.get(i).get();
+					aTasks.get(i).logOutput();
+					Log.logCommandLine(getMessage(e, aResults[e.itsIndex]));
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+			catch (ExecutionException e)
+			{
+				Throwable aCause = e.getCause();
+				if (aCause instanceof RuntimeException)
+					throw (RuntimeException) aCause;
+				if (aCause instanceof Error)
+					throw (Error) aCause;
+				throw new AssertionError(aCause);
+			}
+			finally
+			{
+				aPool.shutdownNow();
+			}
+		}
+
+		for (Experiment e : aSerial)
+		{
+			aResults[e.itsIndex] = e.call();
+			Log.logCommandLine(getMessage(e, aResults[e.itsIndex]));
+		}
+
+		return Arrays.asList(aResults);
+	}
+
+	// NOTE QualityMeasure holds the DOUBLE_BINARY targets and the MULTI_LABEL
+	//      DAG in static members, these can not run concurrently
+	private static boolean isConcurrent(TargetType theTargetType)
+	{
+		return (theTargetType != TargetType.DOUBLE_BINARY) && (theTargetType != TargetType.MULTI_LABEL);
+	}
+
+	private static String getMessage(Experiment theExperiment, File theResult)
+	{
+		return String.format("experiment %d: %s", theExperiment.itsIndex, (theResult == null) ? "no result" : theResult.getPath());
+	}
+
+	/*
+	 * a single experiment, its SearchParameters are parsed when it is created,
+	 * its Table and TargetConcept are created when it runs
+	 */
+	private static final class Experiment implements Callable<File>
+	{
+		private final Node itsTargetConceptNode;
+		private final Node itsTableNode;
+		private final String itsKey;
+		private final int itsIndex;
+		private final File itsFile;
+		private final TableCache itsCache;
+		private final SearchParameters itsSearchParameters;
+		private final TargetType itsTargetType;
+		private int itsNrThreads;
+
+		Experiment(Node theExperimentNode, int theIndex, File theFile, TableCache theCache, int theNrThreads)
+		{
+			NodeList aSettings = theExperimentNode.getChildNodes();
+			itsTargetConceptNode = aSettings.item(0);
+			itsTableNode = aSettings.item(2);
+			itsKey = getKey(itsTableNode);
+			itsIndex = theIndex;
+			itsFile = theFile;
+			itsCache = theCache;
+			itsSearchParameters = new SearchParameters(aSettings.item(1));
+			itsTargetType = getTargetType(itsTargetConceptNode);
+			// allows to overwrite the number defined in the XML file
+			itsNrThreads = (theNrThreads == Integer.MIN_VALUE) ? itsSearchParameters.getNrThreads() : theNrThreads;
+		}
+
+		@Override
+		public File call()
+		{
+			final Table aTable;
+			try
+			{
+				// NOTE the DOM is not thread safe, not even for reading
+				synchronized (itsCache)
+				{
+					aTable = itsCache.acquire(itsKey, itsTableNode);
+					itsSearchParameters.setTargetConcept(new TargetConcept(itsTargetConceptNode, aTable));
+				}
+
+				long aBegin = System.currentTimeMillis();
+				SubgroupDiscovery aSubgroupDiscovery =
+					Process.runSubgroupDiscovery(aTable, 0, null, itsSearchParameters, itsCache.showWindows, itsNrThreads, null); //null means no progress update to mainwindow
+				if (aSubgroupDiscovery == null)
+					return null;
+
+				// always save result TODO search parameters based filename
+				// NOTE the index keeps names of concurrent experiments unique
+				String aTimeStamp = new SimpleDateFormat("yyyyMMddHHmmssSSS").format(new Date(aBegin));
+				File aResult = new File(itsFile.getAbsolutePath().replace(".xml", ("_"+ aTimeStamp + "_" + itsIndex + ".txt")));
+				save(aSubgroupDiscovery.getResult(), aResult.getPath(), itsSearchParameters.getTargetType());
+				return aResult;
+			}
+			finally
+			{
+				itsCache.release(itsKey);
+			}
+		}
+
+		private static TargetType getTargetType(Node theTargetConceptNode)
+		{
+			NodeList aChildren = theTargetConceptNode.getChildNodes();
+			for (int i = 0, j = aChildren.getLength(); i < j; ++i)
+				if ("target_type".equalsIgnoreCase(aChildren.item(i).getNodeName()))
+					return TargetType.fromString(aChildren.item(i).getTextContent());
+
+			throw new IllegalArgumentException("XMLAutoRun: experiment without target_type");
+		}
+
+		// the table_name, source and Column setup, as they are in the XML
+		private static String getKey(Node theTableNode)
+		{
+			StringBuilder sb = new StringBuilder(1024);
+			appendKey(sb, theTableNode);
+			return sb.toString();
+		}
 
-		for (int i = 0, j = allExperiments.getLength(); i < j; ++i)
-			runSubgroupDiscovery(allExperiments.item(i), theFile, showWindows, theNrThreads);
+		// length prefixed values, such that different setups never collide
+		private static void appendKey(StringBuilder theKey, Node theNode)
+		{
+			NodeList aChildren = theNode.getChildNodes();
+			for (int i = 0, j = aChildren.getLength(); i < j; ++i)
+			{
+				Node aNode = aChildren.item(i);
+				if (aNode.getNodeType() == Node.ELEMENT_NODE)
+				{
+					theKey.append('<').append(aNode.getNodeName()).append('>');
+					appendKey(theKey, aNode);
+					theKey.append("</>");
+				}
+				else
+				{
+					String aValue = aNode.getNodeValue();
+					theKey.append(aValue.length()).append(':').append(aValue);
+				}
+			}
+		}
 	}
 
-	private static void runSubgroupDiscovery(Node theExperimentNode, File theFile, boolean showWindows, int theNrThreads)
+	/*
+	 * holds a single Table for all experiments with the same key, it is loaded
+	 * by the first experiment that acquires it, and removed when all
+	 * experiments that registered the key have released it
+	 * the Table is presorted once, every experiment gets its own copy, as
+	 * mining builds the sort index for its target in the Columns it uses
+	 *
+	 * when windows are shown every experiment loads its own Table, as before,
+	 * as the Table of a ResultWindow can be altered through the GUI
+	 */
+	private static final class TableCache
 	{
-		NodeList aSettings = theExperimentNode.getChildNodes();
-		Table aTable = new Table(aSettings.item(2), theFile.getParent() == null ? "." : theFile.getParent(), showWindows);
-		aTable.update();
-		SearchParameters aSearchParameters = new SearchParameters(aSettings.item(1));
-		// allows to overwrite the number defined in the XML file
-		if (theNrThreads == Integer.MIN_VALUE)
-			theNrThreads = aSearchParameters.getNrThreads();
-		aSearchParameters.setTargetConcept(new TargetConcept(aSettings.item(0), aTable));
-
-		long aBegin = System.currentTimeMillis();
-		SubgroupDiscovery aSubgroupDiscovery =
-			Process.runSubgroupDiscovery(aTable, 0, null, aSearchParameters, showWindows, theNrThreads, null); //null means no progress update to mainwindow
-		// always save result TODO search parameters based filename
-		String aTimeStamp = new SimpleDateFormat("yyyyMMddHHmmssSSS").format(new Date(aBegin));
-		save(aSubgroupDiscovery.getResult(), theFile.getAbsolutePath().replace(".xml", ("_"+ aTimeStamp + ".txt")), aSearchParameters.getTargetType());
+		private final String itsDirectory;
+		private final boolean showWindows;
+		private final Map<String, Table> itsTables = new HashMap<String, Table>();
+		private final Map<String, Integer> itsNrUsers = new HashMap<String, Integer>();
+
+		TableCache(String theDirectory, boolean showWindows)
+		{
+			itsDirectory = theDirectory;
+			this.showWindows = showWindows;
+		}
+
+		synchronized void register(String theKey)
+		{
+			Integer n = itsNrUsers.get(theKey);
+			itsNrUsers.put(theKey, (n == null) ? 1 : (n + 1));
+		}
+
+		// loading is done while holding the lock, one Table at a time
+		synchronized Table acquire(String theKey, Node theTableNode)
+		{
+			if (showWindows)
+				return load(theTableNode);
+
+			Table aTable = itsTables.get(theKey);
+			if (aTable == null)
+			{
+				aTable = load(theTableNode);
+				// sort once, all copies share the presort
+				for (Column c : aTable.getColumns())
+					c.presort();
+				itsTables.put(theKey, aTable);
+			}
+
+			return aTable.copy();
+		}
+
+		synchronized void release(String theKey)
+		{
+			int n = itsNrUsers.get(theKey) - 1;
+			if (n > 0)
+				itsNrUsers.put(theKey, n);
+			else
+			{
+				itsNrUsers.remove(theKey);
+				itsTables.remove(theKey);
+			}
+		}
+
+		private Table load(Node theTableNode)
+		{
+			Table aTable = new Table(theTableNode, itsDirectory, showWindows);
+			aTable.update();
+			return aTable;
+		}
 	}
 
+	/*
+	 * ints are written without intermediate Strings, doubles as by
+	 * String.valueOf(double), such that the output is unchanged, see
+	 * ResultWriter
+	 */
 	public static void save(SubgroupSet theSubgroupSet, String theFileName, TargetType theTargetType)
 	{
 		if (theSubgroupSet == null || theFileName == null)
 			return;
 
-		BufferedWriter aWriter = null;
+		ResultWriter aWriter = null;
 
 		try
 		{
 			String aDelimiter = RESULT_SET_DELIMITER;
-			aWriter = new BufferedWriter(new FileWriter(theFileName));
+			aWriter = new ResultWriter(new File(theFileName));
 
 			aWriter.write(ResultTableModel.getColumnName(0, theTargetType));
 			for (int i = 1, j = ResultTableModel.COLUMN_COUNT; i < j; ++i)
@@ -227,25 +496,21 @@ public class XMLAutoRun
 			}
 			aWriter.write("\n");
 
-			Iterator<Subgroup> anIterator = theSubgroupSet.iterator();
-			Subgroup aSubgroup;
-			while (anIterator.hasNext())
+			for (Subgroup aSubgroup : theSubgroupSet)
 			{
-				aSubgroup = anIterator.next();
-
-				aWriter.write(String.valueOf(aSubgroup.getID()));
+				aWriter.write(aSubgroup.getID());
 				aWriter.write(aDelimiter);
-				aWriter.write(String.valueOf(aSubgroup.getDepth()));
+				aWriter.write(aSubgroup.getDepth());
 				aWriter.write(aDelimiter);
-				aWriter.write(String.valueOf(aSubgroup.getCoverage()));
+				aWriter.write(aSubgroup.getCoverage());
 				aWriter.write(aDelimiter);
-				aWriter.write(String.valueOf(aSubgroup.getMeasureValue()));
+				aWriter.write(aSubgroup.getMeasureValue());
 				aWriter.write(aDelimiter);
-				aWriter.write(String.valueOf(aSubgroup.getSecondaryStatistic()));
+				aWriter.write(aSubgroup.getSecondaryStatistic());
 				aWriter.write(aDelimiter);
-				aWriter.write(String.valueOf(aSubgroup.getTertiaryStatistic()));
+				aWriter.write(aSubgroup.getTertiaryStatistic());
 				aWriter.write(aDelimiter);
-				aWriter.write(String.valueOf(aSubgroup.getPValue()));
+				aWriter.write(aSubgroup.getPValue());
 				aWriter.write(aDelimiter);
 				if (IS_MULTI_THREAD_TEST)
 					aWriter.write(ConditionListBuilder.toCanonicalOrderString(aSubgroup.getConditions()));
@@ -25,6 +25,9 @@ public class MiningWindow extends JFrame implements ActionListener
 {
 	// leave false in git
 	private static final boolean ADD_DISCRETISE_BUTTON = false;
+	// leave false in git - also store a binary extent file for each fold
+	// see SubgroupSet.saveExtentBinary()
+	private static final boolean SAVE_BINARY_EXTENT = false;
 
 	static final long serialVersionUID = 1L;
 
@@ -2145,13 +2148,13 @@ public class MiningWindow extends JFrame implements ActionListener
 		int aK = 10; //TODO set k from GUI
 		CrossValidation aCV = new CrossValidation(itsTable.getNrRows(), aK);
 
-		BufferedWriter aWriter = null;
+		ResultWriter aWriter = null;
 		String aFileName = itsTable.getName() + "_folds_" + itsTimeStamp +".txt";
 
 		if (aStore == 0)
 			try
 			{
-				aWriter = new BufferedWriter(new FileWriter(aFileName));
+				aWriter = new ResultWriter(new File(aFileName));
 			}
 			catch (IOException e)
 			{
@@ -2179,6 +2182,8 @@ public class MiningWindow extends JFrame implements ActionListener
 					Log.logCommandLine("File writer error: " + e.getMessage());
 				}
 				aResult.getResult().saveExtent(aWriter, itsTable, aSet, itsTargetConcept);
+				if (SAVE_BINARY_EXTENT)
+					aResult.getResult().saveExtentBinary(new File(itsTable.getName() + "_fold_" + (i+1) + "_" + itsTimeStamp + ".bin"), itsTable, aSet);
 			}
 		}
 		itsTargetConcept.updateToNewTable(itsTable); //point it back to the original again
@@ -742,7 +742,7 @@ public class ResultWindow extends JFrame implements ActionListener
 	{
 		setBusy(true);
 		// Obtain input
-		double[] aQualities = obtainRandomQualities();
+		double[] aQualities = obtainRandomQualities(null);
 		if (aQualities == null)
 			return;
 		NormalDistribution aDistro = new NormalDistribution(aQualities);
@@ -758,7 +758,7 @@ public class ResultWindow extends JFrame implements ActionListener
 	{
 		setBusy(true);
 		// Obtain input
-		double[] aQualities = obtainRandomQualities();
+		double[] aQualities = obtainRandomQualities(null);
 		if (aQualities == null)
 			return;
 		double[] aRegressionTestScore = Validation.performRegressionTest(aQualities, itsSubgroupSet);
@@ -770,7 +770,8 @@ public class ResultWindow extends JFrame implements ActionListener
 	{
 		setBusy(true);
 		// Obtain input
-		double[] aQualities = obtainRandomQualities();
+		// only empirical p-values are computed, so sampling may stop early
+		double[] aQualities = obtainRandomQualities(itsSubgroupSet);
 		if ( aQualities == null)
 			return;
 
@@ -784,7 +785,9 @@ public class ResultWindow extends JFrame implements ActionListener
 		setBusy(false);
 	}
 
-	private double[] obtainRandomQualities()
+	// theSubgroupSet is null, or the Subgroups for which empirical p-values
+	// are computed, see Validation.getRandomQualities()
+	private double[] obtainRandomQualities(SubgroupSet theSubgroupSet)
 	{
 		String[] aSetup = new RandomQualitiesWindow(itsSearchParameters.getTargetType()).getSettings();
 
@@ -794,7 +797,7 @@ public class ResultWindow extends JFrame implements ActionListener
 
 		// Compute qualities
 		Validation aValidation = new Validation(itsSearchParameters, itsTable, itsSelection, itsQualityMeasure);
-		return aValidation.getQualities(aSetup);
+		return aValidation.getQualities(aSetup, theSubgroupSet);
 	}
 
 	private void jButtonSaveActionPerformed()
@@ -0,0 +1,63 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class BitSetCountTest
+{
+	// members range from sparse to dense, such that both code paths are used
+	@Test
+	@DisplayName("BitSetCount kernels equal clone() + and() + cardinality()")
+	public void test()
+	{
+		Random aRandom = new Random(20201017L);
+		int aNrRows = 10000;
+
+		BitSet aA = new BitSet(aNrRows);
+		BitSet aB = new BitSet(aNrRows);
+		for (int i = 0; i < aNrRows; ++i)
+		{
+			if (aRandom.nextBoolean())
+				aA.set(i);
+			if (aRandom.nextInt(5) == 0)
+				aB.set(i);
+		}
+		long[] aWordsA = BitSetCount.toWords(aA, aNrRows);
+		long[] aWordsB = BitSetCount.toWords(aB, aNrRows);
+
+		assertEquals(aA.cardinality(), BitSetCount.cardinality(aWordsA));
+		assertEquals(count(aA, aB), BitSetCount.countCommon(aWordsA, aWordsB));
+
+		for (int aDensity : new int[] { 1000, 100, 10, 2, 1 })
+		{
+			BitSet aMembers = new BitSet(aNrRows);
+			for (int i = 0; i < aNrRows; ++i)
+				if (aRandom.nextInt(aDensity) == 0)
+					aMembers.set(i);
+			int aCardinality = aMembers.cardinality();
+
+			int aCommonA = count(aMembers, aA);
+			assertEquals(aCommonA, BitSetCount.countCommon(aMembers, aCardinality, aWordsA));
+			assertEquals(aCardinality - aCommonA, BitSetCount.countAndNot(aMembers, aCardinality, aWordsA));
+
+			BitSet aAB = (BitSet) aA.clone();
+			aAB.and(aB);
+			int[] aCounts = new int[3];
+			BitSetCount.countCommon(aMembers, aCardinality, aWordsA, aWordsB, aCounts);
+			assertEquals(aCommonA, aCounts[0]);
+			assertEquals(count(aMembers, aB), aCounts[1]);
+			assertEquals(count(aMembers, aAB), aCounts[2]);
+		}
+	}
+
+	private static final int count(BitSet theA, BitSet theB)
+	{
+		BitSet aClone = (BitSet) theA.clone();
+		aClone.and(theB);
+		return aClone.cardinality();
+	}
+}
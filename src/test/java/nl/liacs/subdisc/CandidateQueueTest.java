@@ -0,0 +1,120 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class CandidateQueueTest
+{
+	private static final int NR_THREADS = 64;
+	private static final int NR_ADDITIONS = 500; // per thread
+	private static final int NR_ROWS = 64;
+	private static final int WIDTH = 10;
+
+	@Test
+	@DisplayName("CandidateQueue.add() from 64 threads yields the same levels as serial additions")
+	public void test() throws InterruptedException
+	{
+		Random aRandom = new Random(20201017L);
+
+		// few distinct priorities and coverages, so there are many ties
+		SubgroupSet aSet = new SubgroupSet(0, null, NR_ROWS);
+		Candidate aRoot = new Candidate(new Subgroup(ConditionListBuilder.emptyList(), getMembers(NR_ROWS), aSet));
+		Candidate[][] aCandidates = new Candidate[NR_THREADS][NR_ADDITIONS];
+		for (Candidate[] a : aCandidates)
+		{
+			for (int i = 0; i < NR_ADDITIONS; ++i)
+			{
+				Subgroup s = new Subgroup(ConditionListBuilder.emptyList(), getMembers(2 + aRandom.nextInt(NR_ROWS - 1)), aSet);
+				s.setMeasureValue(aRandom.nextInt(300) / 64.0);
+				a[i] = new Candidate(s);
+			}
+		}
+
+		TreeSet<Candidate> anExpected = new TreeSet<Candidate>();
+		for (Candidate[] a : aCandidates)
+			anExpected.addAll(Arrays.asList(a));
+
+		for (int aRun = 0; aRun < 3; ++aRun)
+		{
+			// BEAM: Candidates go to the next level, trimmed to WIDTH
+			CandidateQueue aBeam = new CandidateQueue(getSearchParameters(SearchStrategy.BEAM), aRoot);
+			addConcurrently(aBeam, aCandidates);
+			assertEquals(1 + WIDTH, aBeam.size());
+			assertEquals(1, aBeam.currentLevelQueueSize());
+			assertSame(aRoot, aBeam.removeFirst());
+			assertDrains(aBeam, new ArrayList<Candidate>(anExpected).subList(0, WIDTH));
+			// moving to an empty next level
+			assertNull(aBeam.removeFirst());
+
+			// BEST_FIRST: a single unbounded level
+			CandidateQueue aBestFirst = new CandidateQueue(getSearchParameters(SearchStrategy.BEST_FIRST), aRoot);
+			assertSame(aRoot, aBestFirst.removeFirst());
+			addConcurrently(aBestFirst, aCandidates);
+			assertEquals(anExpected.size(), aBestFirst.size());
+			assertDrains(aBestFirst, new ArrayList<Candidate>(anExpected));
+		}
+	}
+
+	private static final BitSet getMembers(int theCoverage)
+	{
+		BitSet aMembers = new BitSet(NR_ROWS);
+		aMembers.set(0, theCoverage);
+		return aMembers;
+	}
+
+	private static final SearchParameters getSearchParameters(SearchStrategy theSearchStrategy)
+	{
+		SearchParameters aSearchParameters = new SearchParameters();
+		aSearchParameters.setSearchStrategy(theSearchStrategy);
+		aSearchParameters.setSearchDepth(2);
+		aSearchParameters.setSearchStrategyWidth(WIDTH);
+		return aSearchParameters;
+	}
+
+	private static final void addConcurrently(final CandidateQueue theQueue, Candidate[][] theCandidates) throws InterruptedException
+	{
+		final CountDownLatch aStart = new CountDownLatch(1);
+		Thread[] aThreads = new Thread[theCandidates.length];
+
+		for (int t = 0; t < aThreads.length; ++t)
+		{
+			final Candidate[] aSlice = theCandidates[t];
+			aThreads[t] = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try { aStart.await(); }
+					catch (InterruptedException e) { return; }
+
+					for (Candidate c : aSlice)
+						theQueue.add(c);
+				}
+			});
+			aThreads[t].start();
+		}
+
+		aStart.countDown();
+		for (Thread t : aThreads)
+			t.join();
+	}
+
+	// Candidates that compare equal are interchangeable, compare their keys
+	private static final void assertDrains(CandidateQueue theQueue, List<Candidate> theExpected)
+	{
+		for (Candidate e : theExpected)
+		{
+			Candidate c = theQueue.removeFirst();
+			assertEquals(e.getPriority(), c.getPriority());
+			assertEquals(e.getSubgroup().getCoverage(), c.getSubgroup().getCoverage());
+		}
+		assertEquals(0, theQueue.currentLevelQueueSize());
+	}
+}
@@ -0,0 +1,139 @@
+package nl.liacs.subdisc;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CaucHeavyTest
+{
+	private static final int TARGET_INDEX = 4; // education-num, 16 values
+
+	@Test
+	@DisplayName("Process.caucHeavy() selects the same Subgroups as a run per threshold, and does not modify the Table")
+	public void test()
+	{
+		Table aTable = new DataLoaderTXT(new File("src/test/resources/adult.txt")).getTable();
+		List<Column> aColumns = new ArrayList<Column>(aTable.getColumns());
+		Column aTarget = aTable.getColumns().get(TARGET_INDEX);
+
+		TargetConcept aTC = new TargetConcept();
+		aTC.setTargetType(TargetType.SINGLE_NUMERIC);
+		aTC.setPrimaryTarget(aTarget);
+		SearchParameters anSP = getSearchParameters(aTC);
+
+		List<String> anExpected = getExpected(aTable, aTarget);
+
+		for (int aNrThreads : new int[] { 1, 4 })
+		{
+			PrintStream anOut = System.out;
+			ByteArrayOutputStream aLog = new ByteArrayOutputStream();
+			SubgroupSet aResult;
+			try
+			{
+				System.setOut(new PrintStream(aLog, true));
+				aResult = Process.caucHeavy(aTable, 0, null, anSP, false, aNrThreads);
+			}
+			finally
+			{
+				System.setOut(anOut);
+			}
+			assertTrue(Log.COMMANDLINELOG);
+			assertOutput(aLog.toString(), aTarget);
+
+			List<String> aConditions = new ArrayList<String>();
+			for (Subgroup s : aResult)
+				aConditions.add(s.getConditions().toString());
+			assertEquals(anExpected, aConditions);
+
+			// the original Table, TargetConcept and SearchParameters are untouched
+			for (int i = 0; i < aColumns.size(); ++i)
+				assertSame(aColumns.get(i), aTable.getColumns().get(i));
+			assertSame(aTC, anSP.getTargetConcept());
+			assertSame(aTarget, aTC.getPrimaryTarget());
+			assertEquals(TargetType.SINGLE_NUMERIC, aTC.getTargetType());
+			assertEquals(QM.Z_SCORE, anSP.getQualityMeasure());
+		}
+	}
+
+	// the output of the run of every threshold precedes its threshold value,
+	// it is not interleaved with that of other thresholds
+	private static final void assertOutput(String theOutput, Column theTarget)
+	{
+		float[] aDomain = Function.getUniqueValues(theTarget.getFloats());
+		int aNrThresholds = 0;
+		int aNrRuns = 0;
+
+		for (String s : theOutput.split("\\R"))
+		{
+			if (s.startsWith("number of subgroups"))
+				++aNrRuns;
+			else if (s.startsWith("Threshold value"))
+			{
+				assertEquals("Threshold value : " + aDomain[aNrThresholds], s);
+				assertEquals(++aNrThresholds, aNrRuns);
+			}
+		}
+		assertEquals(aDomain.length - 1, aNrThresholds);
+	}
+
+	// the original procedure, a binary target Column built row by row,
+	// swapped into the Table, and a complete run for every threshold
+	private static final List<String> getExpected(Table theTable, Column theTarget)
+	{
+		float[] aDomain = Function.getUniqueValues(theTarget.getFloats());
+		SubgroupSet aSet = new SubgroupSet(new SubgroupConditionListComparator());
+
+		for (int i = 0; i < aDomain.length - 1; ++i)
+		{
+			Column aColumn = new Column(theTarget.getName(), theTarget.getShort(), AttributeType.BINARY, TARGET_INDEX, theTarget.size());
+			for (int k = 0; k < theTarget.size(); ++k)
+				aColumn.add(!(theTarget.getFloat(k) > aDomain[i]));
+
+			theTable.getColumns().set(TARGET_INDEX, aColumn);
+			TargetConcept aTC = new TargetConcept();
+			aTC.setTargetType(TargetType.SINGLE_NOMINAL);
+			aTC.setPrimaryTarget(aColumn);
+			aTC.setTargetValue("1");
+			SearchParameters anSP = getSearchParameters(aTC);
+			anSP.setQualityMeasure(QM.WRACC);
+			anSP.setQualityMeasureMinimum(0.01f);
+
+			SubgroupDiscovery anSD = Process.runSubgroupDiscovery(theTable, 0, null, anSP, false, 1, null);
+			if (anSD.getResult().size() > 0)
+				aSet.add(anSD.getResult().first());
+		}
+		theTable.getColumns().set(TARGET_INDEX, theTarget);
+
+		List<String> aConditions = new ArrayList<String>();
+		for (Subgroup s : aSet)
+			aConditions.add(s.getConditions().toString());
+		return aConditions;
+	}
+
+	private static final SearchParameters getSearchParameters(TargetConcept theTC)
+	{
+		SearchParameters anSP = new SearchParameters();
+		anSP.setTargetConcept(theTC);
+		anSP.setQualityMeasure(QM.Z_SCORE);
+		anSP.setQualityMeasureMinimum(0.1f);
+		anSP.setSearchDepth(2);
+		anSP.setMinimumCoverage(2);
+		anSP.setMaximumCoverageFraction(1f);
+		anSP.setMaximumSubgroups(100);
+		anSP.setMaximumTime(1000);
+		anSP.setSearchStrategy(SearchStrategy.BEAM);
+		anSP.setNominalSets(false);
+		anSP.setNumericOperators(NumericOperatorSetting.NORMAL);
+		anSP.setNumericStrategy(NumericStrategy.NUMERIC_BEST);
+		anSP.setSearchStrategyWidth(10);
+		anSP.setNrBins(8);
+		anSP.setNrThreads(1);
+		return anSP;
+	}
+}
@@ -0,0 +1,132 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class CoverBasedSubgroupSelectionTest
+{
+	private static final int NR_ROWS = 3000;
+	private static final int NR_CANDIDATES = 2000;
+	private static final int TOP_K = 50;
+	private static final double ALPHA = 0.9;
+
+	@Test
+	@DisplayName("CoverBasedSubgroupSelection selects the same Candidates as the greedy selection using Math.pow()")
+	public void test()
+	{
+		Random aRandom = new Random(20201017L);
+
+		// narrow and sparse covers, some priorities are negative
+		SubgroupSet aSet = new SubgroupSet(0, null, NR_ROWS);
+		BitSet[] aMembers = new BitSet[NR_CANDIDATES];
+		double[] aPriorities = new double[NR_CANDIDATES];
+		for (int i = 0; i < NR_CANDIDATES; ++i)
+		{
+			BitSet b = new BitSet(NR_ROWS);
+			if (aRandom.nextBoolean())
+			{
+				int aFrom = aRandom.nextInt(NR_ROWS - 2);
+				b.set(aFrom, aFrom + 2 + aRandom.nextInt(NR_ROWS - aFrom - 1));
+			}
+			else
+			{
+				int p = 2 + aRandom.nextInt(20);
+				for (int r = 0; r < NR_ROWS; ++r)
+					if (aRandom.nextInt(p) == 0)
+						b.set(r);
+				b.set(0);
+			}
+			aMembers[i] = b;
+			aPriorities[i] = (aRandom.nextInt(1000) - 200) / 1000.0;
+		}
+
+		TreeSet<Candidate> aCandidates = new TreeSet<Candidate>();
+		for (int i = 0; i < NR_CANDIDATES; ++i)
+		{
+			Subgroup s = new Subgroup(ConditionListBuilder.emptyList(), aMembers[i], aSet);
+			s.setMeasureValue(aPriorities[i]);
+			aCandidates.add(new Candidate(s));
+		}
+
+		// reference is computed before postProcess() modifies the priorities
+		List<double[]> anExpected = select(aCandidates, TOP_K);
+		SortedSet<Candidate> aResult = CoverBasedSubgroupSelection.postProcessCandidateSet(aCandidates, TOP_K);
+
+		assertEquals(anExpected.size(), aResult.size());
+		Iterator<Candidate> it = aResult.iterator();
+		for (double[] e : anExpected)
+		{
+			Candidate c = it.next();
+			assertEquals(e[0], c.getPriority());
+			assertEquals((int) e[1], c.getSubgroup().getCoverage());
+		}
+		assertFalse(it.hasNext());
+	}
+
+	// the plain greedy selection: re-weight every unused Candidate every step
+	// returns {score, coverage} pairs, in the sort order of a SortedSet
+	private static final List<double[]> select(SortedSet<Candidate> theCandidates, int theTopK)
+	{
+		Candidate[] aCandidates = theCandidates.toArray(new Candidate[0]);
+		BitSet[] aMembers = new BitSet[aCandidates.length];
+		for (int i = 0; i < aCandidates.length; ++i)
+			aMembers[i] = aCandidates[i].getSubgroup().getMembers();
+
+		int[] aCoverCounts = new int[NR_ROWS];
+		boolean[] isUsed = new boolean[aCandidates.length];
+		final Map<double[], Candidate> aSortKeys = new IdentityHashMap<double[], Candidate>();
+		List<double[]> aResult = new ArrayList<double[]>();
+
+		for (int k = 0; k < Math.min(theTopK, aCandidates.length); ++k)
+		{
+			int aBest = -1;
+			double aMax = Double.NaN;
+			for (int i = 0; i < aCandidates.length; ++i)
+			{
+				if (isUsed[i])
+					continue;
+
+				double aWeight = 0.0;
+				for (int r = aMembers[i].nextSetBit(0); r >= 0; r = aMembers[i].nextSetBit(r + 1))
+					aWeight += Math.pow(ALPHA, aCoverCounts[r]);
+				aWeight /= aCandidates[i].getSubgroup().getCoverage();
+
+				double aPriority = aCandidates[i].getPriority();
+				double aScore = aPriority - ((1.0 - aWeight) * aPriority);
+				if ((aBest == -1) || (aScore > aMax))
+				{
+					aBest = i;
+					aMax = aScore;
+				}
+			}
+
+			isUsed[aBest] = true;
+			for (int r = aMembers[aBest].nextSetBit(0); r >= 0; r = aMembers[aBest].nextSetBit(r + 1))
+				++aCoverCounts[r];
+
+			double[] e = { aMax, aCandidates[aBest].getSubgroup().getCoverage() };
+			aSortKeys.put(e, aCandidates[aBest]);
+			aResult.add(e);
+		}
+
+		// same order as a TreeSet<Candidate>, priority first, then Subgroup
+		Collections.sort(aResult, new Comparator<double[]>()
+		{
+			@Override
+			public int compare(double[] x, double[] y)
+			{
+				int c = Double.compare(y[0], x[0]);
+				if (c != 0)
+					return c;
+				return aSortKeys.get(x).getSubgroup().compareTo(aSortKeys.get(y).getSubgroup());
+			}
+		});
+
+		return aResult;
+	}
+}
@@ -0,0 +1,89 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CoverRedundancyTest
+{
+	private static final int NR_ROWS = 5000;
+	private static final int NR_SUBGROUPS = 150;
+	private static final int NR_BLOCKS = 12;
+
+	@Test
+	@DisplayName("SubgroupSet.postProcessGetCoverRedundancyAndJointEntropy() equals the joint entropy of the distinct row covers")
+	public void test()
+	{
+		Random aRandom = new Random(20201017L);
+
+		// few distinct row covers, as Subgroups are nested intervals or unions
+		// of row blocks, so entropies also differ for topK > 64
+		SubgroupSet aSet = new SubgroupSet(0, null, NR_ROWS);
+		for (int i = 0; i < NR_SUBGROUPS; ++i)
+		{
+			BitSet b = new BitSet(NR_ROWS);
+			if (i < 20)
+				b.set(0, 1 + aRandom.nextInt(NR_ROWS));
+			else
+			{
+				int aBlocks = aRandom.nextInt(1 << NR_BLOCKS);
+				for (int r = 0; r < NR_ROWS; ++r)
+					if ((aBlocks & (1 << (r % NR_BLOCKS))) != 0)
+						b.set(r);
+				b.set(aRandom.nextInt(NR_ROWS));
+			}
+			Subgroup s = new Subgroup(ConditionListBuilder.emptyList(), b, aSet);
+			s.setMeasureValue(i);
+			aSet.add(s);
+		}
+
+		int[] aTopKs = { 10, 100, 1, 64, 65, 1000, 100 };
+		double[] anEntropies = aSet.postProcessGetCoverRedundancyAndJointEntropy(aTopKs);
+		assertEquals(aTopKs.length, anEntropies.length);
+
+		for (int i = 0; i < aTopKs.length; ++i)
+		{
+			double anExpected = getJointEntropy(aSet, aTopKs[i]);
+			assertEquals(anExpected, anEntropies[i], 1e-9);
+			assertEquals(anEntropies[i], aSet.postProcessGetCoverRedundancyAndJointEntropy(aTopKs[i]));
+		}
+
+		SubgroupSet anEmpty = new SubgroupSet(0, null, NR_ROWS);
+		assertArrayEquals(new double[2], anEmpty.postProcessGetCoverRedundancyAndJointEntropy(new int[] { 10, 100 }));
+	}
+
+	private static final double getJointEntropy(SubgroupSet theSet, int theTopK)
+	{
+		BitSet[] aRows = new BitSet[NR_ROWS];
+		for (int i = 0; i < NR_ROWS; ++i)
+			aRows[i] = new BitSet();
+
+		int idx = 0;
+		for (Iterator<Subgroup> it = theSet.iterator(); it.hasNext() && (idx < theTopK); ++idx)
+		{
+			BitSet b = it.next().getMembers();
+			for (int i = b.nextSetBit(0); i >= 0; i = b.nextSetBit(i + 1))
+				aRows[i].set(idx);
+		}
+
+		Map<BitSet, Integer> aCounts = new HashMap<BitSet, Integer>();
+		for (BitSet b : aRows)
+		{
+			Integer aCount = aCounts.get(b);
+			aCounts.put(b, (aCount == null) ? 1 : (aCount + 1));
+		}
+
+		double anEntropy = 0.0;
+		for (int aCount : aCounts.values())
+		{
+			double aFraction = aCount / (double) NR_ROWS;
+			anEntropy += (-aFraction * Math.log(aFraction));
+		}
+
+		return (anEntropy / Math.log(2.0));
+	}
+}
@@ -5,12 +5,14 @@ import java.util.*;
 // Testing lib
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 
 // Java lib
 import java.io.*;
@@ -18,6 +20,9 @@ import java.io.*;
 
 public class DataLoaderTxtTest 
 {
+	@TempDir
+	File itsDirectory;
+
 	@ParameterizedTest
 	@ValueSource(strings = {
 		"src/test/resources/adult.txt", 
@@ -89,4 +94,158 @@ public class DataLoaderTxtTest
 		assertEquals(aColumns.get(17).getCardinality(), 6);
 		assertEquals(aColumns.get(18).getCardinality(), 3); //#veroordelingen_zeden
 	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+		"src/test/resources/adult.txt",
+		"src/test/resources/adult with missing.txt",
+		"src/test/resources/dataloader no missing.txt",
+		"src/test/resources/long10k.txt",
+		"src/test/resources/commas in fields.txt",
+		"src/test/resources/discretisation.txt",
+		"src/test/resources/long10.txt",
+		"src/test/resources/long with unique nums.txt",
+		"src/test/resources/missing values.txt",
+		"src/test/resources/subset selection.txt"
+	})
+	@DisplayName("Parallel loading equals sequential loading")
+	public void parallel(String filename) throws IOException
+	{
+		assertParallelEquals(new File(filename));
+	}
+
+	@Test
+	@DisplayName("Parallel loading of type changes, quotes, missing values and line terminators")
+	public void parallelTypeChanges() throws IOException
+	{
+		Random aRandom = new Random(20201017L);
+		String[] aTerminators = { "\n", "\n", "\r\n", "\r" };
+		StringBuilder sb = new StringBuilder("\n\"b01\",bWords,num,'quoted',bMissing,formats,b01Only,bNum,numLate\n\n");
+		int aNrLines = 20000;
+		for (int i = 0; i < aNrLines; ++i)
+		{
+			String[] f = new String[9];
+			// binary, becomes numeric halfway
+			f[0] = (i > aNrLines / 2 && aRandom.nextInt(50) == 0) ? "0.5" : aRandom.nextInt(10) == 0 ? "" : String.valueOf(aRandom.nextInt(2));
+			// binary words, becomes nominal in a late chunk
+			f[1] = (i > (aNrLines * 9) / 10 && aRandom.nextInt(100) == 0) ? "maybe" : (i < 2 ? (i == 0 ? "TRUE" : " False ") : (aRandom.nextBoolean() ? "true" : "FALSE"));
+			// numeric, becomes nominal
+			f[2] = (i > aNrLines / 3 && aRandom.nextInt(500) == 0) ? "n/a" : aRandom.nextInt(20) == 0 ? " " : Float.toString(aRandom.nextInt(1000) / 8.0f);
+			// nominal, with quoted delimiters
+			f[3] = aRandom.nextBoolean() ? "\"v" + aRandom.nextInt(30) + ",x\"" : "'w" + aRandom.nextInt(30) + "'";
+			// missing only, becomes binary then nominal
+			f[4] = (i > aNrLines / 4 && aRandom.nextInt(100) == 0) ? (aRandom.nextInt(10) == 0 ? "no" : String.valueOf(aRandom.nextInt(2))) : "";
+			// numbers in many formats
+			String[] aFormats = { "1e3", "-0", ".5", "00012.50", "1234567.8", "12345678", "-3.25", "0.000123", "NaN", "+7", "3.4028236E38", "1.", "0.1" };
+			f[5] = (i == 0) ? "2" : aFormats[aRandom.nextInt(aFormats.length)];
+			// binary throughout
+			f[6] = aRandom.nextInt(5) == 0 ? "" : String.valueOf(aRandom.nextInt(2));
+			// binary, becomes numeric, becomes nominal
+			f[7] = (i > aNrLines / 5) ? ((i > aNrLines / 2 && aRandom.nextInt(1000) == 0) ? "x" : Float.toString(aRandom.nextFloat())) : String.valueOf(aRandom.nextInt(2));
+			// numeric, becomes nominal on the last line, without terminator
+			f[8] = (i == aNrLines - 1) ? "last" : String.valueOf(aRandom.nextInt(7) - 3);
+
+			for (int j = 0; j < f.length; ++j)
+				sb.append(j == 0 ? "" : ",").append(f[j]);
+			if (i < aNrLines - 1)
+				sb.append(aTerminators[aRandom.nextInt(aTerminators.length)]);
+			if (aRandom.nextInt(100) == 0)
+				sb.append("\n");
+		}
+
+		File aFile = new File(itsDirectory, "type changes.txt");
+		Writer aWriter = new OutputStreamWriter(new FileOutputStream(aFile), java.nio.charset.Charset.defaultCharset());
+		aWriter.write(sb.toString());
+		aWriter.close();
+
+		assertParallelEquals(aFile);
+	}
+
+	@Test
+	@DisplayName("Parsing floats without String equals Float.parseFloat()")
+	public void parseFloat()
+	{
+		Random aRandom = new Random(20201017L);
+		List<String> aValues = new ArrayList<String>(Arrays.asList("0", "-0", "+0", "0.0", ".0", "0.", "1", "-1", "9999999", "10000000",
+				"16777217", "0.1", "0.3", "1.1", "123.456", "0.0000001", "0.00000000001", "1234567.0", "000000001234567",
+				"3.4028235E38", "1e-3", "NaN", "-Infinity", " 12 ", "1f", "0x1p3"));
+		for (int i = 0; i < 200000; ++i)
+		{
+			int aDigits = aRandom.nextInt(10000000);
+			int aScale = aRandom.nextInt(12);
+			StringBuilder sb = new StringBuilder(Integer.toString(aDigits));
+			while (sb.length() <= aScale)
+				sb.insert(0, '0');
+			if (aScale > 0)
+				sb.insert(sb.length() - aScale, '.');
+			if (aRandom.nextBoolean())
+				sb.insert(0, '-');
+			aValues.add(sb.toString());
+		}
+
+		for (String s : aValues)
+		{
+			char[] c = ("#" + s + "#").toCharArray();
+			assertEquals(Float.floatToRawIntBits(Float.parseFloat(s)), Float.floatToRawIntBits(DataLoaderTXT.parseFloat(c, 1, c.length - 1)), s);
+		}
+
+		for (String s : new String[] { "", "-", ".", "+.", "1.2.3", "1-2", "abc" })
+		{
+			char[] c = s.toCharArray();
+			try
+			{
+				DataLoaderTXT.parseFloat(c, 0, c.length);
+				throw new AssertionError(s);
+			}
+			catch (NumberFormatException e) {}
+		}
+	}
+
+	// compares all data, and the order of the distinct values, through the columnar format
+	private void assertParallelEquals(File theFile) throws IOException
+	{
+		long aMinBytes = DataLoaderTXT.PARALLEL_MIN_BYTES;
+		int aNrThreads = DataLoaderTXT.NR_THREADS;
+		int aChunkBytes = DataLoaderTXT.MIN_CHUNK_BYTES;
+		Table aSequential;
+		Table aParallel;
+		try
+		{
+			DataLoaderTXT.PARALLEL_MIN_BYTES = Long.MAX_VALUE;
+			aSequential = new DataLoaderTXT(theFile).getTable();
+			DataLoaderTXT.PARALLEL_MIN_BYTES = 0L;
+			DataLoaderTXT.NR_THREADS = 4;
+			DataLoaderTXT.MIN_CHUNK_BYTES = 1024;
+			aParallel = new DataLoaderTXT(theFile).getTable();
+		}
+		finally
+		{
+			DataLoaderTXT.PARALLEL_MIN_BYTES = aMinBytes;
+			DataLoaderTXT.NR_THREADS = aNrThreads;
+			DataLoaderTXT.MIN_CHUNK_BYTES = aChunkBytes;
+		}
+
+		assertEquals(aSequential.getNrRows(), aParallel.getNrRows());
+		assertEquals(aSequential.getNrColumns(), aParallel.getNrColumns());
+		aSequential.update();
+		aParallel.update();
+		for (int i = 0; i < aSequential.getNrColumns(); ++i)
+		{
+			Column c = aSequential.getColumn(i);
+			Column d = aParallel.getColumn(i);
+			assertEquals(c.getName(), d.getName());
+			assertEquals(c.getType(), d.getType(), c.getName());
+			assertEquals(c.size(), d.size(), c.getName());
+			assertEquals(c.getMissing(), d.getMissing(), c.getName());
+			assertEquals(c.getCardinality(), d.getCardinality(), c.getName());
+			for (int j = 0; j < c.size(); ++j)
+				assertEquals(c.getString(j), d.getString(j), c.getName());
+		}
+
+		File aSequentialFile = new File(itsDirectory, "sequential.sdt");
+		File aParallelFile = new File(itsDirectory, "parallel.sdt");
+		FileLoaderColumnar.write(aSequential, aSequentialFile);
+		FileLoaderColumnar.write(aParallel, aParallelFile);
+		assertArrayEquals(java.nio.file.Files.readAllBytes(aSequentialFile.toPath()), java.nio.file.Files.readAllBytes(aParallelFile.toPath()));
+	}
 }
@@ -739,5 +739,92 @@ public class EndToEndTest
 		SubgroupDiscovery anSDLarge = Process.runSubgroupDiscovery(aTable, 0, aSelection, anSP, false, 1, null);
 	}
 
+	@Test
+	@DisplayName("Check end-to-end run on Adult.txt with diffsets (vertical mining) yields the same result")
+	public void testAdultDiffSet()
+	{
+		DataLoaderTXT aLoader = new DataLoaderTXT(new File("src/test/resources/adult.txt"));
+		Table aTable = aLoader.getTable();
+
+		SearchParameters anSP = getAdultDepth3(aTable);
+		assertEquals(0L, anSP.getDiffSetBudget());
+		SubgroupSet aReference = runAdultDepth3(aTable, anSP).getResult();
+		anSP.setDiffSetBudget(1L << 30);
+		SubgroupSet aResult = runAdultDepth3(aTable, anSP).getResult();
+
+		assertEquals(aReference.size(), aResult.size());
+		Iterator<Subgroup> anIterator = aResult.iterator();
+		for (Subgroup r : aReference)
+		{
+			Subgroup aSubgroup = anIterator.next();
+			assertEquals(r.toString(), aSubgroup.toString());
+			assertEquals(r.getCoverage(), aSubgroup.getCoverage());
+			assertEquals(r.getMeasureValue(), aSubgroup.getMeasureValue());
+			// revives members through the diffsets of the parents
+			assertEquals(r.getMembers(), aSubgroup.getMembers());
+		}
+	}
+
+	@Test
+	@DisplayName("Check end-to-end run on Adult.txt with a prefix cache for re-evaluated members yields the same result")
+	public void testAdultPrefixCache()
+	{
+		DataLoaderTXT aLoader = new DataLoaderTXT(new File("src/test/resources/adult.txt"));
+		Table aTable = aLoader.getTable();
+
+		// killed members are always re-evaluated
+		SearchParameters anSP = getAdultDepth3(aTable);
+		anSP.setMembersAtRest(null);
+
+		anSP.setPrefixCacheBudget(0L);
+		SubgroupSet aReference = runAdultDepth3(aTable, anSP).getResult();
+		// small, such that entries are evicted
+		anSP.setPrefixCacheBudget(1L << 9);
+		SubgroupSet aResult = runAdultDepth3(aTable, anSP).getResult();
+
+		assertEquals(aReference.size(), aResult.size());
+		Iterator<Subgroup> anIterator = aResult.iterator();
+		for (Subgroup r : aReference)
+		{
+			Subgroup aSubgroup = anIterator.next();
+			assertEquals(r.toString(), aSubgroup.toString());
+			assertEquals(r.getCoverage(), aSubgroup.getCoverage());
+			assertEquals(r.getMeasureValue(), aSubgroup.getMeasureValue());
+			assertEquals(r.getMembers(), aSubgroup.getMembers());
+		}
+	}
+
+	private SubgroupDiscovery runAdultDepth3(Table theTable, SearchParameters theSearchParameters)
+	{
+		return Process.runSubgroupDiscovery(theTable, 0, null, theSearchParameters, false, 1, null);
+	}
+
+	private SearchParameters getAdultDepth3(Table theTable)
+	{
+		Column aTarget = theTable.getColumns().get(0); //get target (age)
+		TargetConcept aTC = new TargetConcept();
+		aTC.setTargetType(TargetType.SINGLE_NUMERIC);
+		aTC.setPrimaryTarget(aTarget);
+
+		SearchParameters anSP = new SearchParameters();
+		anSP.setTargetConcept(aTC);
+		anSP.setQualityMeasure(QM.Z_SCORE);
+		anSP.setQualityMeasureMinimum(1f);
+		anSP.setSearchDepth(3);
+		anSP.setMinimumCoverage(2);
+		anSP.setMaximumCoverageFraction(1f);
+		anSP.setMaximumSubgroups(100);
+		anSP.setMaximumTime(1000); //1000 seconds
+		anSP.setSearchStrategy(SearchStrategy.BEAM);
+		anSP.setNominalSets(false);
+		anSP.setNumericOperators(NumericOperatorSetting.NORMAL);
+		anSP.setNumericStrategy(NumericStrategy.NUMERIC_BINS);
+		anSP.setSearchStrategyWidth(10);
+		anSP.setNrBins(8);
+		anSP.setNrThreads(1);
+
+		return anSP;
+	}
+
 	private float roundToFive(double f) { return (float) Math.round(f*100000)/100000; }
 }
@@ -0,0 +1,72 @@
+package nl.liacs.subdisc;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+public class FileLoaderColumnarTest
+{
+	@TempDir
+	File itsDirectory;
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+		"src/test/resources/adult.txt",
+		"src/test/resources/adult with missing.txt",
+		"src/test/resources/missing values.txt",
+		"src/test/resources/long10.txt"
+	})
+	public void roundTrip(String filename) throws IOException
+	{
+		Table aTable = new DataLoaderTXT(new File(filename)).getTable();
+		aTable.update();
+
+		File aFile = new File(itsDirectory, "table.sdt");
+		FileLoaderColumnar.write(aTable, aFile);
+		Table aLoaded = new FileLoaderColumnar(aFile).getTable();
+		assertNotNull(aLoaded);
+		aLoaded.update();
+
+		assertEquals(aTable.getName(), aLoaded.getName());
+		assertEquals(aTable.getNrRows(), aLoaded.getNrRows());
+		assertEquals(aTable.getNrColumns(), aLoaded.getNrColumns());
+
+		BitSet anAll = new BitSet();
+		anAll.set(0, aTable.getNrRows());
+
+		for (int i = 0; i < aTable.getColumns().size(); ++i)
+		{
+			Column c = aTable.getColumn(i);
+			Column d = aLoaded.getColumn(i);
+
+			assertEquals(c.getName(), d.getName());
+			assertEquals(c.getType(), d.getType());
+			assertEquals(c.getIndex(), d.getIndex());
+			assertEquals(c.getIsEnabled(), d.getIsEnabled());
+			assertEquals(c.getTargetStatus(), d.getTargetStatus());
+			assertEquals(c.size(), d.size());
+			assertEquals(c.getCardinality(), d.getCardinality());
+			assertEquals(c.getMissing(), d.getMissing());
+			for (int j = 0; j < c.size(); ++j)
+				assertEquals(c.getString(j), d.getString(j));
+
+			// the loaded sort index is used
+			if (c.getType() == AttributeType.NUMERIC)
+			{
+				c.buildSorted(null);
+				d.buildSorted(null);
+				assertArrayEquals(c.getSortedValuesCopy(), d.getSortedValuesCopy());
+				assertArrayEquals(c.getSortedValues(anAll, c.size()), d.getSortedValues(anAll, d.size()));
+				c.removeSorted();
+				d.removeSorted();
+			}
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LabelRankingsTest
+{
+	private static final String[] RANKINGS = { "a>b>c>d", "b>a>c>d", "d>c>b>a", "ab>c>d", "c>abd", "a>d>b>c", "abcd" };
+
+	@Test
+	@DisplayName("Per-ranking aggregation equals per-record aggregation")
+	public void aggregates()
+	{
+		Random aRandom = new Random(20201017L);
+		int N = 500;
+
+		Column aColumn = new Column("ranking", "ranking", AttributeType.NOMINAL, 0, N);
+		for (int i = 0; i < N; ++i)
+			aColumn.add(RANKINGS[aRandom.nextInt(RANKINGS.length)]);
+		aColumn.close();
+
+		for (int t = 0; t < 50; ++t)
+		{
+			BitSet aMembers = new BitSet(N);
+			for (int i = 0; i < N; ++i)
+				if (aRandom.nextInt(4) == 0)
+					aMembers.set(i);
+			if (t == 0)
+				aMembers.set(0, N);
+			Subgroup aSubgroup = new Subgroup(aMembers);
+
+			LabelRanking anExpected = averageRanking(aColumn, aMembers);
+			LabelRanking anAverage = aColumn.getAverageRanking(aSubgroup);
+			for (int i = 0; i < 4; ++i)
+				assertEquals(anExpected.getRank(i), anAverage.getRank(i));
+
+			assertMatrixEquals(averageRankingMatrix(aColumn, aMembers), aColumn.getAverageRankingMatrix(aSubgroup));
+			assertMatrixEquals(modeMatrix(aColumn, aMembers), aColumn.getAverageRankingMatrix0(aSubgroup));
+		}
+	}
+
+	private static void assertMatrixEquals(LabelRankingMatrix theExpected, LabelRankingMatrix theActual)
+	{
+		assertEquals(theExpected.getSize(), theActual.getSize());
+		for (int i = 0; i < theExpected.getSize(); ++i)
+			assertArrayEquals(theExpected.itsMatrix[i], theActual.itsMatrix[i]);
+	}
+
+	// per-record reference implementations
+
+	private static LabelRanking averageRanking(Column theColumn, BitSet theMembers)
+	{
+		LabelRanking aResult = new LabelRanking(theColumn.getNominal(0));
+		int aSize = aResult.getSize();
+		int[] aTotalRanks = new int[aSize];
+		for (int i = theMembers.nextSetBit(0); i >= 0; i = theMembers.nextSetBit(i + 1))
+		{
+			LabelRanking aRanking = new LabelRanking(theColumn.getNominal(i));
+			for (int j = 0; j < aSize; ++j)
+				aTotalRanks[j] += aRanking.getRank(j);
+		}
+		int[] aRanks = Arrays.copyOf(aTotalRanks, aSize);
+		Arrays.sort(aRanks);
+		for (int i = 0; i < aSize; ++i)
+		{
+			int aFirst = -1;
+			for (int j = 0; j < aSize; ++j)
+				if (aTotalRanks[i] == aRanks[j])
+					aFirst = j;
+			aResult.setRank(i, aFirst);
+		}
+		return aResult;
+	}
+
+	private static LabelRankingMatrix averageRankingMatrix(Column theColumn, BitSet theMembers)
+	{
+		LabelRankingMatrix aResult = new LabelRankingMatrix(new LabelRanking(theColumn.getNominal(0)).getSize());
+		for (int i = theMembers.nextSetBit(0); i >= 0; i = theMembers.nextSetBit(i + 1))
+			aResult.add(new LabelRankingMatrix(new LabelRanking(theColumn.getNominal(i))));
+		aResult.divide(theMembers.cardinality());
+		return aResult;
+	}
+
+	private static LabelRankingMatrix modeMatrix(Column theColumn, BitSet theMembers)
+	{
+		int aSize = new LabelRanking(theColumn.getNominal(0)).getSize();
+		int[][][] aModes = new int[3][aSize][aSize];
+		for (int k = theMembers.nextSetBit(0); k >= 0; k = theMembers.nextSetBit(k + 1))
+		{
+			int[][][] aModeMatrix = new LabelRankingMatrix(new LabelRanking(theColumn.getNominal(k))).getModeMatrix();
+			for (int s = 0; s < 3; ++s)
+				for (int i = 0; i < aSize; ++i)
+					for (int j = 0; j < aSize; ++j)
+						aModes[s][i][j] += aModeMatrix[s][i][j];
+		}
+
+		LabelRankingMatrix aResult = new LabelRankingMatrix(aSize);
+		for (int i = 0; i < aSize; ++i)
+			for (int j = 0; j < aSize; ++j)
+				if (aModes[0][i][j] > aModes[1][i][j])
+					aResult.itsMatrix[i][j] = (aModes[0][i][j] > aModes[2][i][j]) ? -1 : 1;
+				else
+					aResult.itsMatrix[i][j] = (aModes[1][i][j] > aModes[2][i][j]) ? 0 : 1;
+		return aResult;
+	}
+}
@@ -0,0 +1,80 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MemberSetTest
+{
+	// sparse, dense and run-heavy data, with chunks that are empty, partially
+	// filled, and one that ends before the end of a chunk
+	private static final BitSet[] createBitSets()
+	{
+		Random aRandom = new Random(20201017L);
+		int aNrRows = (3 << 16) + 1234;
+
+		BitSet aSparse = new BitSet(aNrRows);
+		BitSet aDense  = new BitSet(aNrRows);
+		BitSet aRuns   = new BitSet(aNrRows);
+		for (int i = 0; i < aNrRows; ++i)
+		{
+			if (aRandom.nextInt(100) == 0)
+				aSparse.set(i);
+			if ((i >= (1 << 16)) && (aRandom.nextInt(3) != 0))
+				aDense.set(i);
+		}
+		for (int i = 0; i < aNrRows; i += 1 + aRandom.nextInt(5000))
+			aRuns.set(i, Math.min(aNrRows, i + aRandom.nextInt(3000)));
+		aRuns.set(aNrRows - 1);
+
+		return new BitSet[] { aSparse, aDense, aRuns, new BitSet() };
+	}
+
+	@Test
+	@DisplayName("COMPRESSED and BITSET MemberSets behave as the BitSet they are created from")
+	public void test()
+	{
+		BitSet[] aBitSets = createBitSets();
+
+		for (BitSet b : aBitSets)
+		{
+			for (MemberSet.Type t : MemberSet.Type.values())
+			{
+				MemberSet m = MemberSet.valueOf(b, t);
+
+				assertEquals(b, m.toBitSet());
+				assertEquals(b.cardinality(), m.cardinality());
+
+				for (int i = 0; i < b.length() + 70000; i += 7)
+				{
+					assertEquals(b.get(i), m.get(i));
+					assertEquals(b.nextSetBit(i), m.nextSetBit(i));
+				}
+
+				for (BitSet o : aBitSets)
+				{
+					BitSet c = (BitSet) b.clone();
+					c.and(o);
+					assertEquals(c.cardinality(), m.countCommon(o));
+				}
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("COMPRESSED MemberSet is small for sparse and run-heavy data")
+	public void size()
+	{
+		BitSet[] aBitSets = createBitSets();
+
+		for (int i = 0; i < 3; i += 2)
+		{
+			MemberSet m = MemberSet.valueOf(aBitSets[i], MemberSet.Type.COMPRESSED);
+			assertTrue(m.getSizeInBytes() < (aBitSets[i].size() >>> 3) / 2);
+		}
+	}
+}
@@ -16,6 +16,7 @@ import org.junit.jupiter.params.provider.ValueSource;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
 public class MissingValuesTest 
@@ -124,5 +125,79 @@ public class MissingValuesTest
 		assertEquals(45.70549f, roundToFive(aTable.getColumns().get(0).getAverage(null)));
 	}
 
+	@Test
+	@DisplayName("Check DOUBLE_CORRELATION and DOUBLE_REGRESSION on adult with missing.txt against member-based evaluation")
+	public void testAdultDouble()
+	{
+		DataLoaderTXT aLoader = new DataLoaderTXT(new File("src/test/resources/adult with missing.txt"));
+		Table aTable = aLoader.getTable();
+
+		// age has missing values, fnlwgt and capital-gain do not
+		assertTrue(aTable.getColumns().get(0).getHasMissingValues());
+
+		//disable all but 0: age, 2: fnlwgt, 10: capital-gain
+		for (int i : new int[] { 1, 3, 4, 5, 6, 7, 8, 9, 11, 12, 13, 14 })
+			aTable.getColumns().get(i).setIsEnabled(false);
+
+		//education-num and hours-per-week, these have no missing values
+		Column aPrimary = aTable.getColumns().get(4);
+		Column aSecondary = aTable.getColumns().get(12);
+
+		for (TargetType aTargetType : EnumSet.of(TargetType.DOUBLE_CORRELATION, TargetType.DOUBLE_REGRESSION))
+		{
+			for (NumericStrategy aNumericStrategy : EnumSet.of(NumericStrategy.NUMERIC_ALL, NumericStrategy.NUMERIC_BEST, NumericStrategy.NUMERIC_BINS, NumericStrategy.NUMERIC_BEST_BINS))
+			{
+				TargetConcept aTC = new TargetConcept();
+				aTC.setTargetType(aTargetType);
+				aTC.setPrimaryTarget(aPrimary);
+				aTC.setSecondaryTarget(aSecondary);
+
+				SearchParameters anSP = new SearchParameters();
+				anSP.setTargetConcept(aTC);
+				anSP.setQualityMeasure((aTargetType == TargetType.DOUBLE_CORRELATION) ? QM.CORRELATION_R : QM.REGRESSION_SSD_COMPLEMENT);
+				anSP.setQualityMeasureMinimum(-Float.MAX_VALUE);
+				anSP.setSearchDepth(2);
+				anSP.setMinimumCoverage(2);
+				anSP.setMaximumCoverageFraction(1f);
+				anSP.setMaximumSubgroups(100);
+				anSP.setMaximumTime(1000);
+				anSP.setSearchStrategy(SearchStrategy.BEAM);
+				anSP.setNominalSets(false);
+				anSP.setNumericOperators(NumericOperatorSetting.ALL);
+				anSP.setNumericStrategy(aNumericStrategy);
+				anSP.setSearchStrategyWidth(10);
+				anSP.setNrBins(8);
+				anSP.setNrThreads(1);
+				SubgroupSet aResult = Process.runSubgroupDiscovery(aTable, 0, null, anSP, false, 1, null).getResult();
+				String aMessage = aTargetType + " " + aNumericStrategy;
+				assertTrue(aResult.size() > 0, aMessage);
+
+				// member-based evaluation, missing values are not selected
+				int aNrAge = 0;
+				for (Subgroup s : aResult)
+				{
+					if (s.toString().contains("age"))
+						++aNrAge;
+					BitSet aMembers = aTable.evaluate(s.getConditions());
+					assertEquals(aMembers.cardinality(), s.getCoverage(), aMessage + " " + s);
+
+					double q;
+					if (aTargetType == TargetType.DOUBLE_CORRELATION)
+					{
+						CorrelationMeasure aCM = new CorrelationMeasure(new CorrelationMeasure(anSP.getQualityMeasure(), aPrimary, aSecondary));
+						for (int j = aMembers.nextSetBit(0); j >= 0; j = aMembers.nextSetBit(j + 1))
+							aCM.addObservation(aPrimary.getFloat(j), aSecondary.getFloat(j));
+						q = aCM.getEvaluationMeasureValue();
+					}
+					else
+						q = new RegressionMeasure(new RegressionMeasure(anSP.getQualityMeasure(), aPrimary, aSecondary), aMembers).getEvaluationMeasureValue();
+
+					assertEquals(q, s.getMeasureValue(), 1e-4 * Math.max(1.0, Math.abs(q)), aMessage + " " + s);
+				}
+				assertTrue(aNrAge > 0, aMessage);
+			}
+		}
+	}
+
 	private float roundToFive(double f) { return (float) Math.round(f*100000)/100000; }
 }
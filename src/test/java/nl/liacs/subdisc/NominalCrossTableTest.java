@@ -0,0 +1,69 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NominalCrossTableTest
+{
+	@Test
+	@DisplayName("NominalCrossTable counts member values, in value order, and sorts them by p/n")
+	public void test()
+	{
+		Random aRandom = new Random(20201017L);
+		int N = 5000;
+
+		Column aColumn = new Column("a", "a", AttributeType.NOMINAL, 0, N);
+		BitSet aTarget = new BitSet(N);
+		for (int i = 0; i < N; ++i)
+		{
+			// codes are assigned in order of appearance, not in value order
+			int v = aRandom.nextInt(300);
+			aColumn.add("v" + (299 - v));
+			if (aRandom.nextInt(300) < v)
+				aTarget.set(i);
+		}
+		aColumn.close();
+		aColumn.buildSharedDomain();
+
+		BitSet aMembers = new BitSet(N);
+		for (int i = 0; i < N; ++i)
+			if (aRandom.nextInt(3) != 0)
+				aMembers.set(i);
+
+		SortedMap<String, int[]> anExpected = new TreeMap<String, int[]>();
+		for (int i = aMembers.nextSetBit(0); i >= 0; i = aMembers.nextSetBit(i + 1))
+		{
+			int[] pn = anExpected.get(aColumn.getNominal(i));
+			if (pn == null)
+				anExpected.put(aColumn.getNominal(i), pn = new int[2]);
+			++pn[aTarget.get(i) ? 0 : 1];
+		}
+
+		NominalCrossTable aNCT = new NominalCrossTable(aColumn, aMembers, aTarget);
+		assertEquals(anExpected.size(), aNCT.size());
+		int j = 0;
+		for (Map.Entry<String, int[]> e : anExpected.entrySet())
+		{
+			assertEquals(e.getKey(), aNCT.getValue(j));
+			assertEquals(e.getValue()[0], aNCT.getPositiveCount(j));
+			assertEquals(e.getValue()[1], aNCT.getNegativeCount(j));
+			++j;
+		}
+
+		// descending p/n, ties in value order
+		int[] aSorted = aNCT.getSortedDomainIndices();
+		assertEquals(aNCT.size(), aSorted.length);
+		assertEquals(aNCT.size(), Arrays.stream(aSorted).distinct().count());
+		for (int i = 1; i < aSorted.length; ++i)
+		{
+			long x = (long) aNCT.getPositiveCount(aSorted[i-1]) * aNCT.getNegativeCount(aSorted[i]);
+			long y = (long) aNCT.getPositiveCount(aSorted[i]) * aNCT.getNegativeCount(aSorted[i-1]);
+			assertTrue((x > y) || ((x == y) && (aSorted[i-1] < aSorted[i])));
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ProbabilityDensityFunction2Test
+{
+	private static final int N = 20000;
+
+	@Test
+	@DisplayName("ProbabilityDensityFunction2 complement densities equal the densities of the complement")
+	public void test()
+	{
+		Random aRandom = new Random(20201017L);
+
+		// many ties, so equal values are processed together
+		float[] aData = new float[N];
+		for (int i = 0; i < N; ++i)
+			aData[i] = (float) (Math.round(aRandom.nextGaussian() * 100.0) / 10.0);
+
+		// the sort index is used when available, the result is the same
+		Column aSorted = getColumn(aData);
+		aSorted.buildSorted(null);
+		ProbabilityDensityFunction2 aPDF = new ProbabilityDensityFunction2(aSorted, null);
+		ProbabilityDensityFunction2 anUnsortedPDF = new ProbabilityDensityFunction2(getColumn(aData), null);
+		assertArrayEquals(anUnsortedPDF.smooth(), aPDF.smooth());
+
+		for (int p = 2; p < 64; p *= 2)
+		{
+			BitSet aMembers = new BitSet(N);
+			for (int i = 0; i < N; ++i)
+				if (aRandom.nextInt(p) == 0)
+					aMembers.set(i);
+			BitSet aComplement = (BitSet) aMembers.clone();
+			aComplement.flip(0, N);
+
+			ProbabilityDensityFunction2 aSubgroupPDF = new ProbabilityDensityFunction2(aPDF, aMembers);
+			ProbabilityDensityFunction2 aComplementPDF = new ProbabilityDensityFunction2(aPDF, aComplement);
+			assertEquals(aPDF.size(), aSubgroupPDF.size());
+
+			for (int i = 0; i < aPDF.size(); ++i)
+			{
+				assertEquals(aComplementPDF.getDensity(i), aSubgroupPDF.getComplementDensity(i), 1e-6);
+				assertEquals(aSubgroupPDF.getDensity(i), aComplementPDF.getComplementDensity(i), 1e-6);
+			}
+		}
+	}
+
+	private static final Column getColumn(float[] theData)
+	{
+		Column aColumn = new Column("target", "target", AttributeType.NUMERIC, 0, theData.length);
+		for (float f : theData)
+			aColumn.add(f);
+		aColumn.close();
+
+		return aColumn;
+	}
+}
@@ -0,0 +1,81 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProbabilityDensityFunction_NDTest
+{
+	private static final int N = 600;
+
+	@Test
+	@DisplayName("ProbabilityDensityFunction_ND divergences equal those of its density grids")
+	public void test()
+	{
+		Random aRandom = new Random(20201017L);
+
+		// correlated, so the kernels have a covariance term
+		Column x = new Column("x", "x", AttributeType.NUMERIC, 0, N);
+		Column y = new Column("y", "y", AttributeType.NUMERIC, 1, N);
+		for (int i = 0; i < N; ++i)
+		{
+			double g = aRandom.nextGaussian();
+			x.add((float) g);
+			y.add((float) ((0.6 * g) + (0.8 * aRandom.nextGaussian())));
+		}
+		x.close();
+		y.close();
+		ProbabilityDensityFunction_ND aPDF = new ProbabilityDensityFunction_ND(new Column[] { x, y });
+
+		// a random subgroup, and one in a corner, far from most of the data
+		BitSet aRandomSubgroup = new BitSet(N);
+		BitSet aCornerSubgroup = new BitSet(N);
+		for (int i = 0; i < N; ++i)
+		{
+			if (aRandom.nextInt(3) == 0)
+				aRandomSubgroup.set(i);
+			if ((x.getFloat(i) > 1.0f) && (y.getFloat(i) < 0.0f))
+				aCornerSubgroup.set(i);
+		}
+
+		for (BitSet b : new BitSet[] { aRandomSubgroup, aCornerSubgroup })
+		{
+			float[][][] aGrids = aPDF.getDensityDifference2D(b, true, null);
+
+			// both densities integrate to (about) 1
+			double aSubgroupSum = 0.0;
+			double aComplementSum = 0.0;
+			double aHellinger = 0.0;
+			boolean hasZero = false;
+			for (int i = 0; i < aGrids[0].length; ++i)
+			{
+				for (int j = 0; j < aGrids[0][i].length; ++j)
+				{
+					double p = aGrids[0][i][j];
+					double q = aGrids[1][i][j];
+					assertEquals((float) (p - q), aGrids[2][i][j], 1e-7);
+					aSubgroupSum += p;
+					aComplementSum += q;
+					double d = Math.sqrt(p) - Math.sqrt(q);
+					aHellinger += (0.5 * (d*d));
+					hasZero |= (p == 0.0);
+				}
+			}
+			assertEquals(1.0, aSubgroupSum, 1e-3);
+			assertEquals(1.0, aComplementSum, 1e-3);
+
+			float aQuality = aPDF.getDensityDifference(b, true, QM.SQUARED_HELLINGER_2D);
+			assertEquals(aHellinger, aQuality, 1e-5);
+
+			// only a grid point without subgroup density makes KL infinite
+			// NOTE the float grids can be 0.0 where the double KDE is not
+			float aKL = aPDF.getDensityDifference(b, true, QM.KULLBACK_LEIBLER_2D);
+			assertTrue(hasZero || !Float.isInfinite(aKL));
+			assertTrue(Float.isInfinite(aKL) || (aKL >= 0.0f));
+		}
+	}
+}
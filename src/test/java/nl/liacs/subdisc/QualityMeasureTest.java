@@ -0,0 +1,109 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QualityMeasureTest
+{
+	@Test
+	@DisplayName("SINGLE_NOMINAL optimistic estimates bound the quality of every refinement")
+	public void optimisticEstimate()
+	{
+		int N = 30;
+		int H = 11;
+
+		for (QM aQM : QM.getQualityMeasures(TargetType.SINGLE_NOMINAL))
+		{
+			if (!QualityMeasure.hasOptimisticEstimate(aQM))
+				continue;
+
+			QualityMeasure aMeasure = new QualityMeasure(aQM, N, H);
+
+			// every valid Subgroup (HB, nHB), and every subset (HB', nHB')
+			for (int HB = 0; HB <= H; ++HB)
+				for (int nHB = 0; nHB <= (N - H); ++nHB)
+				{
+					if ((HB + nHB) == 0)
+						continue;
+
+					double anEstimate = aMeasure.getOptimisticEstimate(HB, HB + nHB);
+
+					for (int i = 0; i <= HB; ++i)
+						for (int j = 0; j <= nHB; ++j)
+						{
+							if ((i + j) == 0)
+								continue;
+
+							double aQuality = aMeasure.calculate(i, i + j);
+							assertTrue(aQuality <= anEstimate + 1e-9,
+									String.format("%s HB=%d B=%d: %f > estimate %f for HB'=%d B'=%d", aQM, HB, HB + nHB, aQuality, anEstimate, i, i + j));
+						}
+				}
+		}
+	}
+
+	@Test
+	@DisplayName("SINGLE_NUMERIC optimistic estimates bound the quality of every subset")
+	public void optimisticEstimateNumeric()
+	{
+		Random aRandom = new Random(20201017L);
+		int N = 10;
+
+		Column aColumn = new Column("target", "target", AttributeType.NUMERIC, 0, N);
+		for (int i = 0; i < N; ++i)
+			aColumn.add((float) Math.round(aRandom.nextGaussian() * 100.0) / 10.0f);
+		aColumn.close();
+		Statistics aTotal = aColumn.getStatistics(null, null, false, false);
+		ProbabilityDensityFunction2 aPDF = new ProbabilityDensityFunction2(aColumn, null);
+
+		aColumn.buildSorted(null);
+
+		for (QM aQM : QM.getQualityMeasures(TargetType.SINGLE_NUMERIC))
+		{
+			if (!QualityMeasure.hasOptimisticEstimate(aQM))
+				continue;
+
+			QualityMeasure aMeasure = new QualityMeasure(aQM, N, aTotal.getSubgroupSum(), aTotal.getSubgroupSumSquaredDeviations(), aPDF);
+
+			// every Subgroup, and every subset of it
+			for (int s = 1; s < (1 << N); ++s)
+			{
+				BitSet aMembers = toBitSet(s);
+				float[] aSorted = aColumn.getSortedValues(aMembers, aMembers.cardinality());
+				double anEstimate = aMeasure.getOptimisticEstimate(aSorted);
+
+				for (int t = s; t > 0; t = ((t - 1) & s))
+				{
+					double aQuality = aMeasure.calculate(aColumn.getStatistics(null, toBitSet(t), false, false), null);
+					assertTrue(aQuality <= anEstimate,
+							String.format("%s %s: %f > estimate %f for %s", aQM, aMembers, aQuality, anEstimate, toBitSet(t)));
+				}
+			}
+		}
+
+		// counting sort using the sort index, and the copy and sort path
+		for (int aPass = 0; aPass < 2; ++aPass)
+		{
+			for (int s = 1; s < (1 << N); ++s)
+			{
+				BitSet aMembers = toBitSet(s);
+				float[] anExpected = new float[aMembers.cardinality()];
+				for (int i = aMembers.nextSetBit(0), j = 0; i >= 0; i = aMembers.nextSetBit(i + 1))
+					anExpected[j++] = aColumn.getFloat(i);
+				Arrays.sort(anExpected);
+				assertArrayEquals(anExpected, aColumn.getSortedValues(aMembers, anExpected.length));
+			}
+			aColumn.removeSorted();
+		}
+	}
+
+	private static final BitSet toBitSet(int theBits)
+	{
+		return BitSet.valueOf(new long[] { theBits });
+	}
+}
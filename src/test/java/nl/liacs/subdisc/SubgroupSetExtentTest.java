@@ -0,0 +1,147 @@
+package nl.liacs.subdisc;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SubgroupSetExtentTest
+{
+	@TempDir
+	File itsDirectory;
+
+	@Test
+	@DisplayName("ResultWriter writes the same bytes as a FileWriter")
+	public void testResultWriter() throws IOException
+	{
+		File aFile = new File(itsDirectory, "writer.txt");
+		StringBuilder sb = new StringBuilder();
+
+		// small buffer, so it is drained often
+		try (ResultWriter aWriter = new ResultWriter(aFile, 7))
+		{
+			for (int i : new int[] { 0, 1, -1, 9, 10, -10, 123456789, Integer.MAX_VALUE, Integer.MIN_VALUE })
+			{
+				aWriter.write(i);
+				aWriter.write("\t");
+				sb.append(i).append("\t");
+			}
+			for (double d : new double[] { 0.0, -0.0, 0.1, 1e-10, Double.NaN, Double.NEGATIVE_INFINITY })
+			{
+				aWriter.write(d);
+				sb.append(d);
+			}
+			for (String s : new String[] { "age <= 40.0", "", "native-country = 'Curaçao'", "\n" })
+			{
+				aWriter.write(s);
+				sb.append(s);
+			}
+		}
+
+		assertArrayEquals(sb.toString().getBytes(Charset.defaultCharset()), Files.readAllBytes(aFile.toPath()));
+	}
+
+	@Test
+	@DisplayName("SubgroupSet.saveExtent() and saveExtentBinary() write the members of every Subgroup for a fold")
+	public void testExtent() throws IOException
+	{
+		Table aTable = new DataLoaderTXT(new File("src/test/resources/adult.txt")).getTable();
+		BitSet aSet = new CrossValidation(aTable.getNrRows(), 10).getSet(0, true);
+		Table aFold = aTable.select(aSet);
+
+		TargetConcept aTC = new TargetConcept();
+		aTC.setTargetType(TargetType.SINGLE_NOMINAL);
+		aTC.setPrimaryTarget(aFold.getColumns().get(14));
+		aTC.setTargetValue("gr50K");
+
+		SearchParameters anSP = new SearchParameters();
+		anSP.setTargetConcept(aTC);
+		anSP.setQualityMeasure(QM.CORTANA_QUALITY);
+		anSP.setQualityMeasureMinimum(0.1f);
+		anSP.setSearchDepth(2);
+		anSP.setMinimumCoverage(2);
+		anSP.setMaximumCoverageFraction(1f);
+		anSP.setMaximumSubgroups(50);
+		anSP.setMaximumTime(1000);
+		anSP.setSearchStrategy(SearchStrategy.BEAM);
+		anSP.setNominalSets(false);
+		anSP.setNumericOperators(NumericOperatorSetting.NORMAL);
+		anSP.setNumericStrategy(NumericStrategy.NUMERIC_BEST);
+		anSP.setSearchStrategyWidth(10);
+		anSP.setNrBins(8);
+		anSP.setNrThreads(1);
+
+		SubgroupSet aResult = Process.runSubgroupDiscovery(aFold, 1, null, anSP, false, 1, null).getResult();
+		assertTrue(aResult.size() > 1);
+
+		// the members of the fold Table, and those of aTable
+		List<BitSet> aMembers = new ArrayList<BitSet>();
+		List<BitSet> aTableMembers = new ArrayList<BitSet>();
+		for (Subgroup s : aResult)
+		{
+			BitSet b = s.getMembers();
+			BitSet t = new BitSet(aTable.getNrRows());
+			for (int i = aSet.nextSetBit(0), k = 0; i >= 0; i = aSet.nextSetBit(i + 1), ++k)
+				if (b.get(k))
+					t.set(i);
+			aMembers.add(b);
+			aTableMembers.add(t);
+		}
+
+		// small blocks, so the members of a Subgroup span many blocks
+		File aText = new File(itsDirectory, "extent.txt");
+		File aBinary = new File(itsDirectory, "extent.bin");
+		try (ResultWriter aWriter = new ResultWriter(aText))
+		{
+			aWriter.write("Fold 1:\n");
+			aResult.saveExtent(aWriter, aTable, aSet, aTC, 1000);
+			aResult.saveExtentBinary(aBinary, aTable, aSet);
+		}
+
+		// the original procedure, a row at a time, with a clone of all members
+		StringBuilder sb = new StringBuilder("Fold 1:\n");
+		for (int i = 0, k = 0; i < aTable.getNrRows(); ++i)
+		{
+			boolean isTrain = aSet.get(i);
+			sb.append(isTrain ? "train" : "test ");
+			for (BitSet b : aMembers)
+				sb.append(isTrain && b.get(k) ? ",1" : ",0");
+			sb.append("\n");
+			if (isTrain)
+				++k;
+		}
+		assertEquals(sb.toString(), new String(Files.readAllBytes(aText.toPath()), StandardCharsets.US_ASCII));
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(aBinary))))
+		{
+			assertEquals(SubgroupSet.EXTENT_MAGIC, in.readInt());
+			assertEquals(SubgroupSet.EXTENT_VERSION, in.readInt());
+			assertEquals(aTable.getNrRows(), in.readInt());
+			assertEquals(aResult.size(), in.readInt());
+			assertEquals(aSet, readBitmap(in, aTable.getNrRows()));
+			Iterator<Subgroup> anIterator = aResult.iterator();
+			for (BitSet t : aTableMembers)
+			{
+				assertEquals(anIterator.next().getID(), in.readInt());
+				assertEquals(t, readBitmap(in, aTable.getNrRows()));
+			}
+			assertEquals(-1, in.read());
+		}
+	}
+
+	private static final BitSet readBitmap(DataInputStream theStream, int theNrRows) throws IOException
+	{
+		long[] aWords = new long[(theNrRows + 63) / 64];
+		for (int i = 0; i < aWords.length; ++i)
+			aWords[i] = theStream.readLong();
+		return BitSet.valueOf(aWords);
+	}
+}
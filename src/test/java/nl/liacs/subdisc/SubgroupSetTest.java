@@ -0,0 +1,169 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SubgroupSetTest
+{
+	private static final int NR_THREADS = 64;
+	private static final int NR_ADDITIONS = 2000; // per thread
+	private static final int NR_ROWS = 64;
+
+	@Test
+	@DisplayName("SubgroupSet.add() from 64 threads yields the same top-k as serial additions")
+	public void test() throws InterruptedException
+	{
+		Random aRandom = new Random(20201017L);
+
+		// few distinct scores and coverages, so there are many ties, and
+		// Subgroups that compare equal, as all ConditionLists are empty
+		final Subgroup[][] aSubgroups = new Subgroup[NR_THREADS][NR_ADDITIONS];
+		SubgroupSet aFactory = new SubgroupSet(0, null, NR_ROWS);
+		for (Subgroup[] a : aSubgroups)
+		{
+			for (int i = 0; i < NR_ADDITIONS; ++i)
+			{
+				BitSet aMembers = new BitSet(NR_ROWS);
+				aMembers.set(0, 1 + aRandom.nextInt(NR_ROWS));
+				a[i] = new Subgroup(ConditionListBuilder.emptyList(), aMembers, aFactory);
+				a[i].setMeasureValue(aRandom.nextInt(500) / 64.0); // exact as float
+			}
+		}
+
+		for (int aMaximumSize : new int[] { 1, 100, 0 })
+		{
+			TreeSet<Subgroup> anExpected = new TreeSet<Subgroup>();
+			for (Subgroup[] a : aSubgroups)
+				anExpected.addAll(Arrays.asList(a));
+			while ((aMaximumSize > 0) && (anExpected.size() > aMaximumSize))
+				anExpected.pollLast();
+
+			for (int aRun = 0; aRun < 3; ++aRun)
+			{
+				final SubgroupSet aSet = new SubgroupSet(aMaximumSize, null, NR_ROWS);
+				final CountDownLatch aStart = new CountDownLatch(1);
+				final AtomicBoolean isMonotonic = new AtomicBoolean(true);
+				Thread[] aThreads = new Thread[NR_THREADS];
+
+				for (int t = 0; t < NR_THREADS; ++t)
+				{
+					final Subgroup[] aSlice = aSubgroups[t];
+					aThreads[t] = new Thread(new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							try { aStart.await(); }
+							catch (InterruptedException e) { return; }
+
+							// once a score is rejected, it should stay rejected
+							float aRejected = Float.NEGATIVE_INFINITY;
+							for (Subgroup s : aSlice)
+							{
+								float q = (float) s.getMeasureValue();
+								if (aSet.hasPotential(q))
+								{
+									if (q <= aRejected)
+										isMonotonic.set(false);
+									aSet.add(s);
+								}
+								else
+									aRejected = Math.max(aRejected, q);
+							}
+						}
+					});
+					aThreads[t].start();
+				}
+
+				aStart.countDown();
+				for (Thread t : aThreads)
+					t.join();
+
+				assertTrue(isMonotonic.get());
+				assertEquals(anExpected.size(), aSet.size());
+
+				Iterator<Subgroup> i = aSet.iterator();
+				for (Subgroup s : anExpected)
+				{
+					Subgroup r = i.next();
+					assertEquals(s.getMeasureValue(), r.getMeasureValue());
+					assertEquals(s.getCoverage(), r.getCoverage());
+				}
+				assertFalse(i.hasNext());
+
+				// a full SubgroupSet rejects what scores below its last
+				if (aMaximumSize > 0)
+				{
+					double aLowest = aSet.last().getMeasureValue();
+					assertTrue(aSet.hasPotential((float) aLowest));
+					assertFalse(aSet.hasPotential((float) (aLowest - (1.0 / 64.0))));
+				}
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("SubgroupSet views and navigation methods see Subgroups that are not merged yet, also those of a thread that adds again after a merge")
+	public void testViews() throws Exception
+	{
+		final SubgroupSet aSet = new SubgroupSet(0, null, NR_ROWS);
+		final Subgroup[] aSubgroups = new Subgroup[6];
+		for (int i = 0; i < aSubgroups.length; ++i)
+		{
+			BitSet aMembers = new BitSet(NR_ROWS);
+			aMembers.set(0, i + 1);
+			aSubgroups[i] = new Subgroup(ConditionListBuilder.emptyList(), aMembers, aSet);
+			aSubgroups[i].setMeasureValue(aSubgroups.length - i);
+		}
+
+		// a single thread, such that it reuses its LocalTopK after a merge
+		ExecutorService anExecutor = Executors.newSingleThreadExecutor();
+		try
+		{
+			// fewer than MERGE_INTERVAL additions, so nothing is merged
+			addAll(anExecutor, aSet, aSubgroups, 0, 3);
+			assertEquals(3, aSet.headSet(aSubgroups[5]).size());
+			// merged, the LocalTopK is dropped until its thread adds again
+			addAll(anExecutor, aSet, aSubgroups, 3, 6);
+
+			assertEquals(6, aSet.descendingSet().size());
+			assertSame(aSubgroups[5], aSet.descendingSet().first());
+			assertEquals(2, aSet.headSet(aSubgroups[2]).size());
+			assertEquals(3, aSet.headSet(aSubgroups[2], true).size());
+			assertEquals(4, aSet.tailSet(aSubgroups[2]).size());
+			assertEquals(3, aSet.tailSet(aSubgroups[2], false).size());
+			assertEquals(3, aSet.subSet(aSubgroups[1], aSubgroups[4]).size());
+			assertEquals(4, aSet.subSet(aSubgroups[1], true, aSubgroups[4], true).size());
+			assertSame(aSubgroups[4], aSet.ceiling(aSubgroups[4]));
+			assertSame(aSubgroups[4], aSet.floor(aSubgroups[4]));
+			assertSame(aSubgroups[5], aSet.higher(aSubgroups[4]));
+			assertSame(aSubgroups[3], aSet.lower(aSubgroups[4]));
+		}
+		finally
+		{
+			anExecutor.shutdown();
+		}
+	}
+
+	private static final void addAll(ExecutorService theExecutor, final SubgroupSet theSet, final Subgroup[] theSubgroups, final int theFrom, final int theTo) throws Exception
+	{
+		theExecutor.submit(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for (int i = theFrom; i < theTo; ++i)
+					theSet.add(theSubgroups[i]);
+			}
+		}).get();
+	}
+}
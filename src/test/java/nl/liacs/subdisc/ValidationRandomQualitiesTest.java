@@ -0,0 +1,147 @@
+package nl.liacs.subdisc;
+
+import java.io.*;
+import java.util.*;
+
+import nl.liacs.subdisc.gui.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ValidationRandomQualitiesTest
+{
+	private static final int NR_REPETITIONS = 3000;
+	private static final long SEED = 20201017L;
+
+	@Test
+	@DisplayName("Validation.setRandomWords() sets exactly the requested number of bits, all in range")
+	public void testRandomWords()
+	{
+		SplittableRandom aRandom = new SplittableRandom(SEED);
+
+		for (int aNrRows : new int[] { 1, 63, 64, 65, 1000 })
+		{
+			long[] aWords = new long[(aNrRows + 63) >>> 6];
+			int[] aCounts = new int[aNrRows];
+			for (int k = 0; k <= aNrRows; k += Math.max(1, aNrRows / 7))
+			{
+				Validation.setRandomWords(aWords, aNrRows, k, aRandom);
+				BitSet b = BitSet.valueOf(aWords);
+				assertEquals(k, b.cardinality());
+				assertTrue(b.length() <= aNrRows);
+			}
+
+			// every row is (about) equally likely
+			int aNrDraws = 2000;
+			for (int i = 0; i < aNrDraws; ++i)
+			{
+				Validation.setRandomWords(aWords, aNrRows, aNrRows / 3, aRandom);
+				BitSet b = BitSet.valueOf(aWords);
+				for (int r = b.nextSetBit(0); r >= 0; r = b.nextSetBit(r + 1))
+					++aCounts[r];
+			}
+			double anExpected = aNrDraws * (aNrRows / 3) / (double) aNrRows;
+			for (int c : aCounts)
+				assertEquals(anExpected, c, 5.0 * Math.sqrt(anExpected) + 1.0);
+		}
+	}
+
+	@Test
+	@DisplayName("Validation.getRandomQualities() does not depend on the number of threads, and stops early")
+	public void testRandomQualities()
+	{
+		Table aTable = new DataLoaderTXT(new File("src/test/resources/adult.txt")).getTable();
+
+		Column aTarget = aTable.getColumns().get(14);
+		TargetConcept aTC = new TargetConcept();
+		aTC.setTargetType(TargetType.SINGLE_NOMINAL);
+		aTC.setPrimaryTarget(aTarget);
+		aTC.setTargetValue("gr50K");
+
+		SearchParameters anSP = new SearchParameters();
+		anSP.setTargetConcept(aTC);
+		anSP.setQualityMeasure(QM.CORTANA_QUALITY);
+		anSP.setSearchDepth(1);
+		anSP.setMinimumCoverage(2);
+
+		int aNrPositives = aTarget.countValues("gr50K", null);
+		QualityMeasure aQM = new QualityMeasure(QM.CORTANA_QUALITY, aTable.getNrRows(), aNrPositives);
+		Validation aValidation = new Validation(anSP, aTable, null, aQM);
+
+		// random subsets
+		double[] aSerial = aValidation.getRandomQualities(true, NR_REPETITIONS, null, 1, SEED);
+		double[] aParallel = aValidation.getRandomQualities(true, NR_REPETITIONS, null, 4, SEED);
+		assertEquals(NR_REPETITIONS, aSerial.length);
+		assertArrayEquals(aSerial, aParallel);
+		for (double q : aSerial)
+			assertTrue(Math.abs(q) <= 1.0);
+
+		// no random subset is better, the p-value is 0 after the first check
+		double[] aStopped = aValidation.getRandomQualities(true, NR_REPETITIONS, new double[] { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY }, 4, SEED);
+		assertTrue(aStopped.length < NR_REPETITIONS);
+		assertArrayEquals(Arrays.copyOf(aSerial, aStopped.length), aStopped);
+
+		// a Subgroup with a median quality, the least precise p-value decides
+		double[] aSorted = aSerial.clone();
+		Arrays.sort(aSorted);
+		double[] aFull = aValidation.getRandomQualities(true, NR_REPETITIONS, new double[] { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, aSorted[NR_REPETITIONS / 2] }, 4, SEED);
+		assertArrayEquals(aSerial, aFull);
+
+		// random descriptions
+		aSerial = aValidation.getRandomQualities(false, NR_REPETITIONS / 2, null, 1, SEED);
+		aParallel = aValidation.getRandomQualities(false, NR_REPETITIONS / 2, null, 3, SEED);
+		assertArrayEquals(aSerial, aParallel);
+	}
+
+	@Test
+	@DisplayName("Validation.getQualities() only stops early for the empirical p-values of a SubgroupSet")
+	public void testQualities()
+	{
+		Table aTable = new DataLoaderTXT(new File("src/test/resources/adult.txt")).getTable();
+
+		Column aTarget = aTable.getColumns().get(14);
+		TargetConcept aTC = new TargetConcept();
+		aTC.setTargetType(TargetType.SINGLE_NOMINAL);
+		aTC.setPrimaryTarget(aTarget);
+		aTC.setTargetValue("gr50K");
+
+		SearchParameters anSP = new SearchParameters();
+		anSP.setTargetConcept(aTC);
+		anSP.setQualityMeasure(QM.CORTANA_QUALITY);
+		anSP.setQualityMeasureMinimum(0.1f);
+		anSP.setSearchDepth(1);
+		anSP.setMinimumCoverage(2);
+		anSP.setMaximumCoverageFraction(1f);
+		anSP.setMaximumSubgroups(10);
+		anSP.setMaximumTime(1000);
+		anSP.setSearchStrategy(SearchStrategy.BEAM);
+		anSP.setNominalSets(false);
+		anSP.setNumericOperators(NumericOperatorSetting.NORMAL);
+		anSP.setNumericStrategy(NumericStrategy.NUMERIC_BEST);
+		anSP.setSearchStrategyWidth(10);
+		anSP.setNrBins(8);
+		anSP.setNrThreads(1);
+		SubgroupSet aResult = Process.runSubgroupDiscovery(aTable, 0, null, anSP, false, 1, null).getResult();
+		assertTrue(aResult.size() > 1);
+
+		int aNrPositives = aTarget.countValues("gr50K", null);
+		QualityMeasure aQM = new QualityMeasure(QM.CORTANA_QUALITY, aTable.getNrRows(), aNrPositives);
+		Validation aValidation = new Validation(anSP, aTable, null, aQM);
+
+		// as the normal distribution p-values and the regression test
+		String[] aSetup = { RandomQualitiesWindow.RANDOM_SUBSETS, String.valueOf(NR_REPETITIONS) };
+		double[] aQualities = aValidation.getQualities(aSetup);
+		assertEquals(NR_REPETITIONS, aQualities.length);
+		assertEquals(NR_REPETITIONS, aValidation.getQualities(aSetup, null).length);
+
+		// empirical p-values, no random subset is as good as any Subgroup
+		double[] aStopped = aValidation.getQualities(aSetup, aResult);
+		assertTrue(aStopped.length < NR_REPETITIONS);
+		assertArrayEquals(Arrays.copyOf(aQualities, aStopped.length), aStopped);
+		assertEquals(0.0, Validation.computeEmpiricalPValue(aStopped, aResult));
+	}
+}
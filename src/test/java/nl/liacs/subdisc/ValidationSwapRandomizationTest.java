@@ -0,0 +1,129 @@
+package nl.liacs.subdisc;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ValidationSwapRandomizationTest
+{
+	private static final int NR_REPETITIONS = 6;
+	private static final long SEED = 20201017L;
+
+	@Test
+	@DisplayName("Validation.swapRandomization() does not depend on the number of threads, and does not modify the Table")
+	public void test()
+	{
+		Table aTable = new DataLoaderTXT(new File("src/test/resources/adult.txt")).getTable();
+		List<Column> aColumns = new ArrayList<Column>(aTable.getColumns());
+
+		// SINGLE_NOMINAL, the sort indices of the copies hold a target mask
+		Column aNominal = aTable.getColumns().get(14);
+		TargetConcept aTC = new TargetConcept();
+		aTC.setTargetType(TargetType.SINGLE_NOMINAL);
+		aTC.setPrimaryTarget(aNominal);
+		aTC.setTargetValue("gr50K");
+		assertSwapRandomization(aTable, aColumns, getSearchParameters(aTC, QM.CORTANA_QUALITY));
+
+		// SINGLE_NUMERIC (age)
+		Column aNumeric = aTable.getColumns().get(0);
+		aTC = new TargetConcept();
+		aTC.setTargetType(TargetType.SINGLE_NUMERIC);
+		aTC.setPrimaryTarget(aNumeric);
+		assertSwapRandomization(aTable, aColumns, getSearchParameters(aTC, QM.Z_SCORE));
+	}
+
+	private static final void assertSwapRandomization(Table theTable, List<Column> theColumns, SearchParameters theSearchParameters)
+	{
+		TargetConcept aTC = theSearchParameters.getTargetConcept();
+		Column aTarget = aTC.getPrimaryTarget();
+		String[] aValues = getValues(aTarget);
+
+		Validation aValidation = new Validation(theSearchParameters, theTable, null, null);
+		double[] aSerial = aValidation.swapRandomization(NR_REPETITIONS, 1, SEED);
+
+		// the quality of every permutation is logged, in order, the Log
+		// output of the mining runs is discarded without muting Log
+		// NOTE some code writes to System.out directly, that is not buffered
+		PrintStream anOut = System.out;
+		ByteArrayOutputStream aLog = new ByteArrayOutputStream();
+		double[] aParallel;
+		try
+		{
+			System.setOut(new PrintStream(aLog, true));
+			aParallel = aValidation.swapRandomization(NR_REPETITIONS, 4, SEED);
+		}
+		finally
+		{
+			System.setOut(anOut);
+		}
+		assertArrayEquals(aSerial, aParallel);
+		assertTrue(Log.COMMANDLINELOG);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < NR_REPETITIONS; ++i)
+			sb.append((i + 1) + ", " + aParallel[i]).append(System.lineSeparator());
+		assertTrue(aLog.toString().endsWith(sb.toString()));
+		assertFalse(aLog.toString().contains("number of subgroups"));
+
+		// distinct permutations, so (almost surely) distinct qualities
+		assertEquals(NR_REPETITIONS, aSerial.length);
+		assertFalse(aSerial[0] == aSerial[1]);
+
+		// the original Table and TargetConcept are untouched
+		assertEquals(theColumns, theTable.getColumns());
+		for (int i = 0; i < theColumns.size(); ++i)
+			assertSame(theColumns.get(i), theTable.getColumns().get(i));
+		assertSame(aTarget, aTC.getPrimaryTarget());
+		assertSame(aTC, theSearchParameters.getTargetConcept());
+		assertArrayEquals(aValues, getValues(aTarget));
+
+		// a permuted copy holds the same values, in a different order
+		Table aCopy = theTable.swapRandomizedCopy(aTC, new Random(SEED));
+		TargetConcept aCopyTC = aTC.copy(aCopy);
+		assertSame(aCopy.getColumns().get(aTarget.getIndex()), aCopyTC.getPrimaryTarget());
+		assertTrue(aCopyTC.isTargetAttribute(aCopyTC.getPrimaryTarget()));
+		assertFalse(aCopyTC.isTargetAttribute(aTarget));
+		String[] aPermuted = getValues(aCopyTC.getPrimaryTarget());
+		assertFalse(Arrays.equals(aValues, aPermuted));
+		Arrays.sort(aPermuted);
+		String[] aSorted = aValues.clone();
+		Arrays.sort(aSorted);
+		assertArrayEquals(aSorted, aPermuted);
+	}
+
+	private static final SearchParameters getSearchParameters(TargetConcept theTC, QM theQualityMeasure)
+	{
+		SearchParameters anSP = new SearchParameters();
+		anSP.setTargetConcept(theTC);
+		anSP.setQualityMeasure(theQualityMeasure);
+		anSP.setQualityMeasureMinimum(0.1f);
+		anSP.setSearchDepth(1);
+		anSP.setMinimumCoverage(2);
+		anSP.setMaximumCoverageFraction(1f);
+		anSP.setMaximumSubgroups(1000);
+		anSP.setMaximumTime(1000);
+		anSP.setSearchStrategy(SearchStrategy.BEAM);
+		anSP.setNominalSets(false);
+		anSP.setNumericOperators(NumericOperatorSetting.NORMAL);
+		anSP.setNumericStrategy(NumericStrategy.NUMERIC_BEST);
+		anSP.setSearchStrategyWidth(10);
+		anSP.setNrBins(8);
+		anSP.setNrThreads(1);
+		return anSP;
+	}
+
+	private static final String[] getValues(Column theColumn)
+	{
+		String[] aValues = new String[theColumn.size()];
+		for (int i = 0; i < aValues.length; ++i)
+			aValues[i] = theColumn.getString(i);
+		return aValues;
+	}
+}
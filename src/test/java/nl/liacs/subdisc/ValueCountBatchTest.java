@@ -0,0 +1,104 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+
+import nl.liacs.subdisc.Column.ValueCount;
+import nl.liacs.subdisc.Column.ValueCountTP;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ValueCountBatchTest
+{
+	private static final int N = 2000;
+	private static final int NR_COLUMNS = 5;
+
+	@Test
+	@DisplayName("Column.getValueCounts() and getUniqueNumericDomainMaps() equal their single Column versions")
+	public void test()
+	{
+		Random aRandom = new Random(20201017L);
+
+		BitSet aTarget = new BitSet(N);
+		for (int i = 0; i < N; ++i)
+			if (aRandom.nextInt(3) == 0)
+				aTarget.set(i);
+
+		BitSet aParent = new BitSet(N);
+		for (int i = 0; i < N; ++i)
+			if (aRandom.nextInt(4) != 0)
+				aParent.set(i);
+
+		// a null Column in the middle, like non-numeric ColumnConditionBases
+		Column[] aColumns = new Column[NR_COLUMNS];
+		Column[] aTPColumns = new Column[NR_COLUMNS];
+		for (int c = 0; c < NR_COLUMNS; ++c)
+		{
+			if (c == 2)
+				continue;
+
+			aColumns[c] = getColumn(aRandom, c, 1 + (c * 50), false);
+			aColumns[c].buildSorted(null);
+			aTPColumns[c] = getColumn(aRandom, c, 1 + (c * 50), (c % 2 == 1));
+			aTPColumns[c].buildSorted(aTarget);
+		}
+
+		ValueCount[] aValueCounts = Column.getValueCounts(aParent, aColumns);
+		ValueCountTP[] aValueCountTPs = Column.getUniqueNumericDomainMaps(aParent, aTPColumns);
+		assertEquals(NR_COLUMNS, aValueCounts.length);
+		assertEquals(NR_COLUMNS, aValueCountTPs.length);
+
+		for (int c = 0; c < NR_COLUMNS; ++c)
+		{
+			if (aColumns[c] == null)
+			{
+				assertNull(aValueCounts[c]);
+				assertNull(aValueCountTPs[c]);
+				continue;
+			}
+
+			assertArrayEquals(aColumns[c].getValueCount(aParent).itsCounts, aValueCounts[c].itsCounts);
+
+			ValueCountTP v = aTPColumns[c].getUniqueNumericDomainMap(aParent);
+			assertArrayEquals(v.itsCounts, aValueCountTPs[c].itsCounts);
+			assertArrayEquals(v.itsTruePositives, aValueCountTPs[c].itsTruePositives);
+			assertEquals(v.itsMissingCount, aValueCountTPs[c].itsMissingCount);
+			assertEquals(v.itsMissingPositiveCount, aValueCountTPs[c].itsMissingPositiveCount);
+
+			// the target mask is also set for records with a missing value
+			int aMissingCount = 0;
+			int aMissingPositiveCount = 0;
+			for (int i = aParent.nextSetBit(0); i >= 0; i = aParent.nextSetBit(i + 1))
+			{
+				if (aTPColumns[c].getMissing(i))
+				{
+					++aMissingCount;
+					if (aTarget.get(i))
+						++aMissingPositiveCount;
+				}
+			}
+			assertEquals(aMissingCount, v.itsMissingCount);
+			assertEquals(aMissingPositiveCount, v.itsMissingPositiveCount);
+		}
+	}
+
+	private static final Column getColumn(Random theRandom, int theIndex, int theNrDistinct, boolean withMissing)
+	{
+		Column aColumn = new Column("c" + theIndex, "c" + theIndex, AttributeType.NUMERIC, theIndex, N);
+		// missing values as DataLoaderTXT adds them, NaN is sorted last
+		for (int i = 0; i < N; ++i)
+		{
+			if (withMissing && (i % 7 == 0))
+				aColumn.addMissing();
+			else
+				aColumn.add((float) theRandom.nextInt(theNrDistinct));
+		}
+		aColumn.close();
+
+		return aColumn;
+	}
+}
@@ -0,0 +1,115 @@
+package nl.liacs.subdisc;
+
+import java.util.*;
+
+import nl.liacs.subdisc.Column.ValueCountXY;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ValueCountXYTest
+{
+	private static final int N = 500;
+
+	@Test
+	@DisplayName("DOUBLE_CORRELATION and DOUBLE_REGRESSION measures from ValueCountXY equal those of the members")
+	public void test()
+	{
+		Random aRandom = new Random(20201017L);
+
+		Column aColumn = new Column("a", "a", AttributeType.NUMERIC, 0, N);
+		Column aPrimary = new Column("x", "x", AttributeType.NUMERIC, 1, N);
+		Column aSecondary = new Column("y", "y", AttributeType.NUMERIC, 2, N);
+		for (int i = 0; i < N; ++i)
+		{
+			// few distinct values, such that sort indexes hold many records
+			aColumn.add((float) aRandom.nextInt(40));
+			float x = (float) Math.round(aRandom.nextGaussian() * 100.0) / 10.0f;
+			aPrimary.add(x);
+			aSecondary.add((i % 3 == 0) ? (2.0f * x) + (float) aRandom.nextGaussian() : (float) aRandom.nextGaussian());
+		}
+		aColumn.close();
+		aPrimary.close();
+		aSecondary.close();
+		aColumn.buildSorted(null);
+
+		BitSet aParent = new BitSet(N);
+		for (int i = 0; i < N; ++i)
+			if (aRandom.nextInt(4) != 0)
+				aParent.set(i);
+
+		ValueCountXY v = aColumn.getValueCountXY(aParent, aPrimary, aSecondary);
+		int aLast = v.itsCounts.length - 1;
+
+		for (QM aQM : EnumSet.of(QM.CORRELATION_R, QM.CORRELATION_R_NEG_SQ, QM.CORRELATION_DISTANCE, QM.CORRELATION_P, QM.CORRELATION_ENTROPY))
+		{
+			CorrelationMeasure aBase = new CorrelationMeasure(aQM, aPrimary, aSecondary);
+
+			for (int i = 0; i <= aLast; ++i)
+				for (int[] r : new int[][] { { i, i }, { 0, i }, { i, aLast }, { i / 2, i } })
+				{
+					BitSet aMembers = getMembers(aColumn, aParent, r[0], r[1]);
+					int n = aMembers.cardinality();
+					if (n == 0)
+						continue;
+
+					CorrelationMeasure aCM = new CorrelationMeasure(aBase);
+					for (int j = aMembers.nextSetBit(0); j >= 0; j = aMembers.nextSetBit(j + 1))
+						aCM.addObservation(aPrimary.getFloat(j), aSecondary.getFloat(j));
+
+					CorrelationMeasure aSums = new CorrelationMeasure(aBase, n,
+																		ValueCountXY.getSum(v.itsYSums, r[0], r[1]),
+																		ValueCountXY.getSum(v.itsXSums, r[0], r[1]),
+																		ValueCountXY.getSum(v.itsXYSums, r[0], r[1]),
+																		ValueCountXY.getSum(v.itsYYSums, r[0], r[1]),
+																		ValueCountXY.getSum(v.itsXXSums, r[0], r[1]));
+
+					assertEquals(aCM.getEvaluationMeasureValue(), aSums.getEvaluationMeasureValue(), 1e-9, aQM + " " + Arrays.toString(r));
+				}
+		}
+
+		for (QM aQM : EnumSet.of(QM.REGRESSION_SSD_COMPLEMENT, QM.REGRESSION_SSD_DATASET, QM.REGRESSION_FLATNESS, QM.REGRESSION_SSD_4))
+		{
+			RegressionMeasure aBase = new RegressionMeasure(aQM, aPrimary, aSecondary);
+
+			for (int i = 0; i <= aLast; ++i)
+				for (int[] r : new int[][] { { i, i }, { 0, i }, { i, aLast }, { i / 2, i } })
+				{
+					BitSet aMembers = getMembers(aColumn, aParent, r[0], r[1]);
+					int n = aMembers.cardinality();
+					if (n == 0)
+						continue;
+
+					RegressionMeasure aRM = new RegressionMeasure(aBase, aMembers);
+					RegressionMeasure aSums = new RegressionMeasure(aBase, n,
+																	ValueCountXY.getSum(v.itsXSums, r[0], r[1]),
+																	ValueCountXY.getSum(v.itsYSums, r[0], r[1]),
+																	ValueCountXY.getSum(v.itsXYSums, r[0], r[1]),
+																	ValueCountXY.getSum(v.itsXXSums, r[0], r[1]),
+																	ValueCountXY.getSum(v.itsYYSums, r[0], r[1]));
+
+					// the base uses float products, and the members float sums
+					double q = aRM.getEvaluationMeasureValue();
+					assertEquals(q, aSums.getEvaluationMeasureValue(), 1e-4 * Math.max(1.0, Math.abs(q)), aQM + " " + Arrays.toString(r));
+					assertEquals(aRM.getSlope(), aSums.getSlope(), 1e-4 * Math.max(1.0, Math.abs(aRM.getSlope())));
+					assertEquals(aRM.getIntercept(), aSums.getIntercept(), 1e-4 * Math.max(1.0, Math.abs(aRM.getIntercept())));
+				}
+		}
+	}
+
+	// the parent members with a value at sort index theFrom up to theTo
+	private static final BitSet getMembers(Column theColumn, BitSet theParent, int theFrom, int theTo)
+	{
+		float[] aSorted = theColumn.getSortedValuesCopy();
+		BitSet aResult = new BitSet(N);
+		for (int i = theParent.nextSetBit(0); i >= 0; i = theParent.nextSetBit(i + 1))
+		{
+			float f = theColumn.getFloat(i);
+			if ((f >= aSorted[theFrom]) && (f <= aSorted[theTo]))
+				aResult.set(i);
+		}
+		return aResult;
+	}
+}
@@ -0,0 +1,164 @@
+package nl.liacs.subdisc;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import nl.liacs.subdisc.XMLDocument.XMLType;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class XMLAutoRunTest
+{
+	@TempDir
+	File itsDirectory;
+
+	@Test
+	@DisplayName("XMLAutoRun.runAllFromFile() writes the same results as a run per experiment, for any number of threads")
+	public void test() throws IOException
+	{
+		File aData = new File(itsDirectory, "adult.txt");
+		Files.copy(Paths.get("src/test/resources/adult.txt"), aData.toPath());
+		Table aTable = new DataLoaderTXT(aData).getTable();
+
+		Document aDocument = XMLDocument.buildDocument(XMLType.AUTORUN);
+		Node anAutorunNode = aDocument.getLastChild();
+
+		// two experiments per Column setup, on different targets
+		addExperiment(anAutorunNode, aTable, getSearchParameters(getNominal(aTable), QM.CORTANA_QUALITY, 1));
+		addExperiment(anAutorunNode, aTable, getSearchParameters(getNumeric(aTable), QM.Z_SCORE, 1));
+		aTable.getColumns().get(1).setIsEnabled(false);
+		addExperiment(anAutorunNode, aTable, getSearchParameters(getNominal(aTable), QM.WRACC, 2));
+		addExperiment(anAutorunNode, aTable, getSearchParameters(getNumeric(aTable), QM.Z_SCORE, 2));
+
+		File aFile = new File(itsDirectory, "autorun.xml");
+		XMLDocument.saveDocument(aDocument, aFile);
+
+		List<List<String>> anExpected = getExpected(aFile);
+		for (List<String> l : anExpected)
+			assertTrue(l.size() > 1);
+
+		for (int aNrThreads : new int[] { 1, 4 })
+		{
+			PrintStream anOut = System.out;
+			ByteArrayOutputStream aLog = new ByteArrayOutputStream();
+			List<File> aResults;
+			try
+			{
+				System.setOut(new PrintStream(aLog, true));
+				aResults = XMLAutoRun.runAllFromFile(aFile, false, aNrThreads);
+			}
+			finally
+			{
+				System.setOut(anOut);
+			}
+			assertTrue(Log.COMMANDLINELOG);
+			assertOutput(aLog.toString(), anExpected.size());
+
+			assertEquals(anExpected.size(), aResults.size());
+			for (int i = 0; i < aResults.size(); ++i)
+			{
+				assertNotNull(aResults.get(i));
+				assertEquals(anExpected.get(i), Files.readAllLines(aResults.get(i).toPath()));
+			}
+		}
+	}
+
+	// the output of every experiment precedes its message, it is not
+	// interleaved with that of other experiments
+	private static final void assertOutput(String theOutput, int theNrExperiments)
+	{
+		int aNrExperiments = 0;
+		int aNrRuns = 0;
+
+		for (String s : theOutput.split("\\R"))
+		{
+			if (s.startsWith("number of subgroups"))
+				++aNrRuns;
+			else if (s.startsWith("experiment "))
+			{
+				assertTrue(s.startsWith("experiment " + aNrExperiments + ": "));
+				assertEquals(++aNrExperiments, aNrRuns);
+			}
+		}
+		assertEquals(theNrExperiments, aNrExperiments);
+	}
+
+	// the original procedure, a newly loaded Table for every experiment
+	private static final List<List<String>> getExpected(File theFile) throws IOException
+	{
+		NodeList allExperiments = XMLDocument.parseXMLFile(theFile).getLastChild().getChildNodes();
+		List<List<String>> aResults = new ArrayList<List<String>>();
+
+		for (int i = 0, j = allExperiments.getLength(); i < j; ++i)
+		{
+			NodeList aSettings = allExperiments.item(i).getChildNodes();
+			Table aTable = new Table(aSettings.item(2), theFile.getParent(), false);
+			aTable.update();
+			SearchParameters aSearchParameters = new SearchParameters(aSettings.item(1));
+			aSearchParameters.setTargetConcept(new TargetConcept(aSettings.item(0), aTable));
+
+			SubgroupDiscovery anSD = Process.runSubgroupDiscovery(aTable, 0, null, aSearchParameters, false, 1, null);
+			File aResult = new File(theFile.getParent(), "expected_" + i + ".txt");
+			XMLAutoRun.save(anSD.getResult(), aResult.getPath(), aSearchParameters.getTargetType());
+			aResults.add(Files.readAllLines(aResult.toPath()));
+		}
+
+		return aResults;
+	}
+
+	private static final void addExperiment(Node theAutorunNode, Table theTable, SearchParameters theSearchParameters)
+	{
+		Element anExperimentNode = theAutorunNode.getOwnerDocument().createElement("experiment");
+		anExperimentNode.setAttribute("id", String.valueOf(theAutorunNode.getChildNodes().getLength()));
+		theSearchParameters.getTargetConcept().addNodeTo(anExperimentNode);
+		theSearchParameters.addNodeTo(anExperimentNode);
+		theTable.addNodeTo(anExperimentNode);
+		theAutorunNode.appendChild(anExperimentNode);
+	}
+
+	private static final TargetConcept getNominal(Table theTable)
+	{
+		TargetConcept aTC = new TargetConcept();
+		aTC.setTargetType(TargetType.SINGLE_NOMINAL);
+		aTC.setPrimaryTarget(theTable.getColumns().get(14));
+		aTC.setTargetValue("gr50K");
+		return aTC;
+	}
+
+	private static final TargetConcept getNumeric(Table theTable)
+	{
+		TargetConcept aTC = new TargetConcept();
+		aTC.setTargetType(TargetType.SINGLE_NUMERIC);
+		aTC.setPrimaryTarget(theTable.getColumns().get(0));
+		return aTC;
+	}
+
+	private static final SearchParameters getSearchParameters(TargetConcept theTC, QM theQualityMeasure, int theSearchDepth)
+	{
+		SearchParameters anSP = new SearchParameters();
+		anSP.setTargetConcept(theTC);
+		anSP.setQualityMeasure(theQualityMeasure);
+		anSP.setQualityMeasureMinimum(0.01f);
+		anSP.setSearchDepth(theSearchDepth);
+		anSP.setMinimumCoverage(2);
+		anSP.setMaximumCoverageFraction(1f);
+		anSP.setMaximumSubgroups(100);
+		anSP.setMaximumTime(1000);
+		anSP.setSearchStrategy(SearchStrategy.BEAM);
+		anSP.setNominalSets(false);
+		anSP.setNumericOperators(NumericOperatorSetting.NORMAL);
+		anSP.setNumericStrategy(NumericStrategy.NUMERIC_BEST);
+		anSP.setSearchStrategyWidth(10);
+		anSP.setNrBins(8);
+		anSP.setNrThreads(1);
+		return anSP;
+	}
+}